@@ -160,6 +160,23 @@ public class AcquireImageValues implements Copyable<AcquireImageValues> {
     this.ratio = ratio;
   }
 
+  /**
+   * @param other the values to compare with
+   * @return true if both values produce the same pixels (the calibration is not compared)
+   */
+  public boolean hasSamePixels(AcquireImageValues other) {
+    return other != null
+        && autoLevel == other.autoLevel
+        && brightness == other.brightness
+        && contrast == other.contrast
+        && flip == other.flip
+        && orientation == other.orientation
+        && rotation == other.rotation
+        && Objects.equals(cropZone, other.cropZone)
+        && Objects.equals(layerOffset, other.layerOffset)
+        && Objects.equals(ratio, other.ratio);
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
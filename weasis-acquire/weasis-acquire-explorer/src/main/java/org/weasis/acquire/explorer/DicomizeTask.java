@@ -10,15 +10,22 @@
 package org.weasis.acquire.explorer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.swing.SwingWorker;
 import org.dcm4che3.util.UIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.acquire.explorer.dicom.Transform2Dicom;
 import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.util.FileUtil;
 
 /**
@@ -26,56 +33,158 @@ import org.weasis.core.util.FileUtil;
  * the job is done outside of the EDT instead of setting AcquireImageStatus change. But, full
  * process progression can still be listened with propertyChange notification of this workerTask.
  *
+ * <p>The images are dicomized in parallel by a bounded number of workers, which also limits the
+ * number of decoded images in memory. The progression and the status changes are published in the
+ * order of the collection. An image which cannot be dicomized does not stop the others, it is
+ * available with {@link #getFailedImages()} once the task is done.
+ *
+ * <p>When a publishing task is given, each image is written into its own folder of the export
+ * directory of the publishing task and handed off as soon as it is dicomized.
+ *
  * @version $Rev$ $Date$
  */
 public class DicomizeTask extends SwingWorker<File, AcquireImageInfo> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DicomizeTask.class);
 
+  /** Maximum number of images dicomized at the same time */
+  public static final String DICOMIZE_THREADS = "weasis.acquire.dicomize.threads"; // NON-NLS
+
   private final Collection<AcquireImageInfo> toDicomize;
+  private final PublishDicomTask publishTask;
+  private final List<AcquireImageInfo> failedImages =
+      Collections.synchronizedList(new ArrayList<>());
 
   public DicomizeTask(Collection<AcquireImageInfo> toDicomize) {
+    this(toDicomize, null);
+  }
+
+  /**
+   * @param toDicomize the images to dicomize
+   * @param publishTask the publishing task in streaming mode, or null to keep all the DICOM files
+   *     in the export directory returned by the task
+   */
+  public DicomizeTask(Collection<AcquireImageInfo> toDicomize, PublishDicomTask publishTask) {
     this.toDicomize = Objects.requireNonNull(toDicomize);
+    this.publishTask = publishTask;
+  }
+
+  /** @return the images which have not been dicomized */
+  public List<AcquireImageInfo> getFailedImages() {
+    synchronized (failedImages) {
+      return new ArrayList<>(failedImages);
+    }
   }
 
   @Override
   protected File doInBackground() throws Exception {
 
     File exportDirDicom =
-        FileUtil.createTempDir(
-            AppProperties.buildAccessibleTempDirectory("tmp", "dicomize", "dcm")); // NON-NLS
+        publishTask == null
+            ? FileUtil.createTempDir(
+                AppProperties.buildAccessibleTempDirectory("tmp", "dicomize", "dcm")) // NON-NLS
+            : publishTask.getExportDirDicom();
     File exportDirImage =
         FileUtil.createTempDir(
             AppProperties.buildAccessibleTempDirectory("tmp", "dicomize", "img")); // NON-NLS
 
     final int nbImageToProcess = toDicomize.size();
     int nbImageProcessed = 0;
+    ExecutorService executor = null;
 
     try {
       Transform2Dicom.buildStudySeriesDate(toDicomize, AcquireManager.GLOBAL);
 
       String seriesInstanceUID = UIDUtils.createUID(); // Global series for all PR
 
+      // The number of workers bounds the number of images decoded at the same time
+      int nbThreads = Math.min(nbImageToProcess, getNumberOfThreads());
+      executor =
+          ThreadUtil.buildNewFixedThreadExecutor(Math.max(1, nbThreads), "Dicomizer"); // NON-NLS
+      List<File> imageDirs = new ArrayList<>(nbImageToProcess);
+      List<Future<Boolean>> results = new ArrayList<>(nbImageToProcess);
       for (AcquireImageInfo imageInfo : toDicomize) {
-        if (!Transform2Dicom.dicomize(
-            imageInfo, exportDirDicom, exportDirImage, seriesInstanceUID)) {
-          FileUtil.recursiveDelete(exportDirDicom);
-          return null;
+        File imageDir = exportDirDicom;
+        if (publishTask != null) {
+          // One folder per image which is published as soon as it is complete
+          imageDir = new File(exportDirDicom, String.valueOf(imageDirs.size()));
+          imageDir.mkdirs();
+        }
+        File outputDir = imageDir;
+        imageDirs.add(outputDir);
+        results.add(
+            executor.submit(
+                () ->
+                    Transform2Dicom.dicomize(
+                        imageInfo, outputDir, exportDirImage, seriesInstanceUID)));
+      }
+
+      int index = 0;
+      for (AcquireImageInfo imageInfo : toDicomize) {
+        File imageDir = imageDirs.get(index);
+        Future<Boolean> result = results.get(index++);
+        if (isDone(imageInfo, result)) {
+          publish(imageInfo);
+          if (publishTask != null) {
+            publishTask.addDicomFolder(imageDir);
+          }
+        } else {
+          failedImages.add(imageInfo);
+          if (publishTask != null) {
+            FileUtil.recursiveDelete(imageDir);
+          }
         }
         setProgress(++nbImageProcessed * 100 / nbImageToProcess);
-        publish(imageInfo);
       }
+    } catch (InterruptedException e) {
+      LOGGER.warn("Dicomize process interrupted");
+      Thread.currentThread().interrupt();
+      deleteExportDir(exportDirDicom);
+      return null;
     } catch (Exception ex) {
       LOGGER.error("Dicomize process", ex);
-      FileUtil.recursiveDelete(exportDirDicom);
+      deleteExportDir(exportDirDicom);
       return null;
     } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
       FileUtil.recursiveDelete(exportDirImage);
+      if (publishTask != null) {
+        publishTask.finish();
+      }
     }
 
+    if (failedImages.size() == nbImageToProcess) {
+      deleteExportDir(exportDirDicom);
+      return null;
+    }
     return exportDirDicom;
   }
 
+  private void deleteExportDir(File exportDirDicom) {
+    // In streaming mode, the export directory is deleted by the publishing task
+    if (publishTask == null) {
+      FileUtil.recursiveDelete(exportDirDicom);
+    }
+  }
+
+  private static boolean isDone(AcquireImageInfo imageInfo, Future<Boolean> result)
+      throws InterruptedException {
+    try {
+      return Boolean.TRUE.equals(result.get());
+    } catch (ExecutionException e) {
+      LOGGER.error("Cannot dicomize {}", imageInfo.getImage().getName(), e.getCause());
+      return false;
+    }
+  }
+
+  private static int getNumberOfThreads() {
+    int defaultValue = Math.min(4, Runtime.getRuntime().availableProcessors());
+    return Math.max(
+        1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(DICOMIZE_THREADS, defaultValue));
+  }
+
   @Override
   protected void process(List<AcquireImageInfo> chunks) {
     chunks.stream().forEach(AcquireImageInfo.changeStatus(AcquireImageStatus.SUBMITTED));
@@ -13,11 +13,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.SwingWorker;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.util.UIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.util.FileUtil;
@@ -35,6 +37,10 @@ import org.weasis.dicom.param.DicomState;
  * AcquireImageStatus change and removing related Acquired Images from the dataModel. But, full
  * process progression can still be listened with propertyChange notification of this workerTask.
  *
+ * <p>In streaming mode, the files are published while they are being dicomized: each folder added
+ * with {@link #addDicomFolder(File)} is sent as soon as possible and the status of the images is
+ * updated incrementally.
+ *
  * @version $Rev$ $Date$
  */
 public class PublishDicomTask extends SwingWorker<DicomState, File> {
@@ -43,6 +49,9 @@ public class PublishDicomTask extends SwingWorker<DicomState, File> {
   private final File exportDirDicom;
   private final DicomNode callingNode;
   private final DicomNode destinationNode;
+  private final PublishStream stream;
+  private final int nbImages;
+  private final AtomicInteger nbPublished = new AtomicInteger();
 
   private final DicomProgress dicomProgress = new DicomProgress();
 
@@ -52,35 +61,94 @@ public class PublishDicomTask extends SwingWorker<DicomState, File> {
     this.callingNode =
         new DicomNode(
             BundleTools.SYSTEM_PREFERENCES.getProperty("weasis.aet", "WEASIS_AE")); // NON-NLS
+    this.stream = null;
+    this.nbImages = 0;
+    LOGGER.debug("destinationNode is : {}", destinationNode);
+    initDicomProgress();
+  }
+
+  /**
+   * Builds a task in streaming mode, the task waits for the folders to publish until {@link
+   * #finish()} is called.
+   *
+   * @param destinationNode the DICOM node destination
+   * @param nbImages the number of images to publish, used for the progression
+   */
+  public PublishDicomTask(DicomNode destinationNode, int nbImages) {
+    this.exportDirDicom =
+        FileUtil.createTempDir(
+            AppProperties.buildAccessibleTempDirectory("tmp", "publish", "dcm")); // NON-NLS
+    this.destinationNode = Objects.requireNonNull(destinationNode);
+    this.callingNode =
+        new DicomNode(
+            BundleTools.SYSTEM_PREFERENCES.getProperty("weasis.aet", "WEASIS_AE")); // NON-NLS
+    this.stream = new PublishStream(callingNode, destinationNode, buildParams());
+    this.nbImages = nbImages;
     LOGGER.debug("destinationNode is : {}", destinationNode);
     initDicomProgress();
   }
 
+  /** @return the temporary folder of the DICOM files to publish */
+  public File getExportDirDicom() {
+    return exportDirDicom;
+  }
+
+  /**
+   * Hands off a folder of the export directory containing the DICOM files of one image (streaming
+   * mode only).
+   *
+   * @param dir the folder to publish, it is deleted once sent
+   */
+  public void addDicomFolder(File dir) {
+    if (stream != null) {
+      stream.add(dir);
+    }
+  }
+
+  /** Notifies that all the folders have been added (streaming mode only). */
+  public void finish() {
+    if (stream != null) {
+      stream.finish();
+    }
+  }
+
   private void initDicomProgress() {
     dicomProgress.addProgressListener(
         progress -> {
-          int completed =
-              progress.getNumberOfCompletedSuboperations()
-                  + progress.getNumberOfFailedSuboperations();
-          int remaining = progress.getNumberOfRemainingSuboperations();
-
-          setProgress((completed * 100) / (completed + remaining));
-          publish(progress.getProcessedFile());
+          File file = progress.getProcessedFile();
+          if (stream == null) {
+            int completed =
+                progress.getNumberOfCompletedSuboperations()
+                    + progress.getNumberOfFailedSuboperations();
+            int remaining = progress.getNumberOfRemainingSuboperations();
+            setProgress((completed * 100) / (completed + remaining));
+          } else if (file != null && AcquireManager.findByUId(file.getName()) != null) {
+            // Only the images are counted, not the presentation states
+            setProgress(Math.min(100, nbPublished.incrementAndGet() * 100 / nbImages));
+          }
+          publish(file);
         });
   }
 
-  @Override
-  protected DicomState doInBackground() throws Exception {
-    List<String> exportFilesDicomPath = new ArrayList<>();
-    exportFilesDicomPath.add(exportDirDicom.getPath());
+  private static AdvancedParams buildParams() {
     AdvancedParams params = new AdvancedParams();
     ConnectOptions connectOptions = new ConnectOptions();
     connectOptions.setConnectTimeout(3000);
     connectOptions.setAcceptTimeout(5000);
     params.setConnectOptions(connectOptions);
+    return params;
+  }
+
+  @Override
+  protected DicomState doInBackground() throws Exception {
     try {
+      if (stream != null) {
+        return stream.send(dicomProgress, this::isCancelled);
+      }
+      List<String> exportFilesDicomPath = new ArrayList<>();
+      exportFilesDicomPath.add(exportDirDicom.getPath());
       return CStore.process(
-          params, callingNode, destinationNode, exportFilesDicomPath, dicomProgress);
+          buildParams(), callingNode, destinationNode, exportFilesDicomPath, dicomProgress);
     } finally {
       FileUtil.recursiveDelete(exportDirDicom);
     }
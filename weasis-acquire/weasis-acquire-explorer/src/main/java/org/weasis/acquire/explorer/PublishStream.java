@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.acquire.explorer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.dcm4che3.net.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.util.FileUtil;
+import org.weasis.dicom.op.CStore;
+import org.weasis.dicom.param.AdvancedParams;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomProgress;
+import org.weasis.dicom.param.DicomState;
+
+/**
+ * Sends the DICOM files to a DICOM node as soon as they are written. Each folder handed off is
+ * sent with C-STORE and then deleted, the folders added while a C-STORE is running are sent
+ * together with the next association.
+ */
+public class PublishStream {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PublishStream.class);
+
+  private final DicomNode callingNode;
+  private final DicomNode destinationNode;
+  private final AdvancedParams params;
+  private final BlockingQueue<File> queue = new LinkedBlockingQueue<>();
+  private volatile boolean finished;
+  private volatile boolean closed;
+
+  public PublishStream(DicomNode callingNode, DicomNode destinationNode, AdvancedParams params) {
+    this.callingNode = Objects.requireNonNull(callingNode);
+    this.destinationNode = Objects.requireNonNull(destinationNode);
+    this.params = params;
+  }
+
+  /**
+   * Hands off a folder of DICOM files, the folder is deleted once sent.
+   *
+   * @param dir the folder containing the DICOM files
+   */
+  public void add(File dir) {
+    if (closed) {
+      // Sending has stopped (error or cancel)
+      FileUtil.recursiveDelete(dir);
+    } else {
+      queue.offer(dir);
+    }
+  }
+
+  /** Notifies that no more folder will be added, sending ends when the queue is empty. */
+  public void finish() {
+    finished = true;
+  }
+
+  /**
+   * Sends the folders until {@link #finish()} has been called and all of them have been sent. It
+   * stops at the first C-STORE which fails.
+   *
+   * @param progress the progression of the C-STORE operations
+   * @param cancelled the cancel state of the caller
+   * @return the state of the failed C-STORE, of the last one or null if nothing has been sent
+   * @throws InterruptedException if the thread is interrupted while waiting for a folder
+   */
+  public DicomState send(DicomProgress progress, BooleanSupplier cancelled)
+      throws InterruptedException {
+    DicomState result = null;
+    List<File> batch = new ArrayList<>();
+    try {
+      while (!cancelled.getAsBoolean()) {
+        File dir = queue.poll(500, TimeUnit.MILLISECONDS);
+        if (dir == null) {
+          if (finished && queue.isEmpty()) {
+            break;
+          }
+          continue;
+        }
+        batch.add(dir);
+        queue.drainTo(batch);
+        List<String> paths = batch.stream().map(File::getPath).collect(Collectors.toList());
+        try {
+          result = CStore.process(params, callingNode, destinationNode, paths, progress);
+        } finally {
+          batch.forEach(FileUtil::recursiveDelete);
+          batch.clear();
+        }
+        if (result != null
+            && result.getStatus() != Status.Success
+            && result.getStatus() != Status.Cancel) {
+          LOGGER.error("Stop publishing to {}: {}", destinationNode, result.getMessage());
+          break;
+        }
+      }
+    } finally {
+      closed = true;
+      List<File> remaining = new ArrayList<>();
+      queue.drainTo(remaining);
+      remaining.forEach(FileUtil::recursiveDelete);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.acquire.explorer.dicom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Writes the acquired images into DICOM files without lossy re-encoding. A JPEG 2000 file is
+ * encapsulated as is, the other lossless images are encoded in lossless JPEG 2000.
+ */
+final class ImageEncapsulator {
+
+  private static final int JP2C_BOX = 0x6A703263; // jp2c
+  private static final int MARKER_SOC = 0xFF4F;
+  private static final int MARKER_SIZ = 0xFF51;
+  private static final int MARKER_COD = 0xFF52;
+  private static final int MARKER_SOT = 0xFF90;
+
+  private ImageEncapsulator() {}
+
+  static class Jpeg2000Header {
+    int offset;
+    int length;
+    int width;
+    int height;
+    int components;
+    int bitsStored;
+    boolean signed;
+    boolean mct;
+    boolean reversible;
+
+    String getPhotometricInterpretation() {
+      if (components == 1) {
+        return "MONOCHROME2"; // NON-NLS
+      }
+      if (components == 3) {
+        if (mct) {
+          return reversible ? "YBR_RCT" : "YBR_ICT"; // NON-NLS
+        }
+        return "RGB"; // NON-NLS
+      }
+      return null;
+    }
+  }
+
+  /**
+   * @param data the content of a JPEG 2000 file (JP2 format or raw codestream)
+   * @return the header of the codestream or null if the data is not a supported JPEG 2000 image
+   */
+  static Jpeg2000Header readJpeg2000Header(byte[] data) {
+    int offset = 0;
+    int length = data.length;
+    if (length > 12 && readInt(data, 0) == 12 && readInt(data, 4) == 0x6A502020) {
+      // JP2 file format, the codestream is in the contiguous codestream box
+      offset = -1;
+      int pos = 0;
+      while (pos + 8 <= data.length) {
+        long boxLength = readInt(data, pos) & 0xFFFFFFFFL;
+        int type = readInt(data, pos + 4);
+        int headerLength = 8;
+        if (boxLength == 1 && pos + 16 <= data.length) {
+          boxLength =
+              ((long) readInt(data, pos + 8) << 32) | (readInt(data, pos + 12) & 0xFFFFFFFFL);
+          headerLength = 16;
+        } else if (boxLength == 0) {
+          boxLength = (long) data.length - pos;
+        }
+        if (boxLength < headerLength || pos + boxLength > data.length) {
+          return null;
+        }
+        if (type == JP2C_BOX) {
+          offset = pos + headerLength;
+          length = (int) boxLength - headerLength;
+          break;
+        }
+        pos += (int) boxLength;
+      }
+      if (offset < 0) {
+        return null;
+      }
+    }
+
+    int end = offset + length;
+    if (length < 42
+        || readShort(data, offset) != MARKER_SOC
+        || readShort(data, offset + 2) != MARKER_SIZ) {
+      return null;
+    }
+    int siz = offset + 4;
+    Jpeg2000Header header = new Jpeg2000Header();
+    header.offset = offset;
+    header.length = length;
+    header.width = readInt(data, siz + 4) - readInt(data, siz + 12);
+    header.height = readInt(data, siz + 8) - readInt(data, siz + 16);
+    header.components = readShort(data, siz + 36);
+    int precision = data[siz + 38] & 0xFF;
+    header.bitsStored = (precision & 0x7F) + 1;
+    header.signed = (precision & 0x80) != 0;
+
+    int pos = siz + readShort(data, siz);
+    while (pos + 4 <= end) {
+      int marker = readShort(data, pos);
+      if (marker == MARKER_SOT) {
+        break;
+      }
+      if (marker == MARKER_COD && pos + 14 <= end) {
+        header.mct = data[pos + 8] == 1;
+        header.reversible = data[pos + 13] == 1;
+      }
+      pos += 2 + readShort(data, pos + 2);
+    }
+
+    if (header.width <= 0
+        || header.height <= 0
+        || header.bitsStored > 16
+        || header.getPhotometricInterpretation() == null) {
+      return null;
+    }
+    return header;
+  }
+
+  /**
+   * Encapsulates the JPEG 2000 codestream into the DICOM pixel data, without decoding it.
+   *
+   * @param attrs the DICOM attributes of the image
+   * @param source the JPEG 2000 file
+   * @param dcmFile the DICOM file to write
+   * @return false if the file is not a supported JPEG 2000 image
+   * @throws IOException if the files cannot be read or written
+   */
+  static boolean jpeg2000(Attributes attrs, File source, File dcmFile) throws IOException {
+    byte[] data = Files.readAllBytes(source.toPath());
+    Jpeg2000Header header = readJpeg2000Header(data);
+    if (header == null) {
+      return false;
+    }
+    writeJpeg2000(attrs, data, header, dcmFile);
+    return true;
+  }
+
+  private static void writeJpeg2000(
+      Attributes attrs, byte[] data, Jpeg2000Header header, File dcmFile) throws IOException {
+    setImagePixelAttributes(
+        attrs,
+        header.width,
+        header.height,
+        header.components,
+        header.bitsStored,
+        header.signed,
+        header.getPhotometricInterpretation());
+    setInstanceAttributes(attrs);
+    attrs.setString(Tag.LossyImageCompression, VR.CS, header.reversible ? "00" : "01");
+
+    try (DicomOutputStream dos = new DicomOutputStream(dcmFile)) {
+      dos.writeDataset(attrs.createFileMetaInformation(UID.JPEG2000), attrs);
+      dos.writeHeader(Tag.PixelData, VR.OB, -1);
+      // Empty basic offset table
+      dos.writeHeader(Tag.Item, null, 0);
+      dos.writeHeader(Tag.Item, null, (header.length + 1) & ~1);
+      dos.write(data, header.offset, header.length);
+      if ((header.length & 1) != 0) {
+        dos.write(0);
+      }
+      dos.writeHeader(Tag.SequenceDelimitationItem, null, 0);
+    }
+  }
+
+  /**
+   * Encodes the decoded image in lossless JPEG 2000 and encapsulates the codestream.
+   *
+   * @param attrs the DICOM attributes of the image
+   * @param image the decoded image (BGR order for color images)
+   * @param dcmFile the DICOM file to write
+   * @return false if the pixel type of the image is not supported or if the image cannot be
+   *     encoded losslessly
+   * @throws IOException if the file cannot be written
+   */
+  static boolean losslessJpeg2000(Attributes attrs, Mat image, File dcmFile) throws IOException {
+    int depth = image.depth();
+    int channels = image.channels();
+    if ((depth != CvType.CV_8U && depth != CvType.CV_16U) || channels == 2 || channels > 4) {
+      return false;
+    }
+
+    Mat img = image;
+    if (channels == 4) {
+      img = new Mat();
+      Imgproc.cvtColor(image, img, Imgproc.COLOR_BGRA2BGR);
+    }
+    MatOfByte buf = new MatOfByte();
+    try {
+      // Reversible wavelet transform by default
+      if (!Imgcodecs.imencode(".jp2", img, buf)) { // NON-NLS
+        return false;
+      }
+      byte[] data = buf.toArray();
+      Jpeg2000Header header = readJpeg2000Header(data);
+      if (header == null || !header.reversible) {
+        return false;
+      }
+      writeJpeg2000(attrs, data, header, dcmFile);
+    } finally {
+      if (img != image) {
+        img.release();
+      }
+      buf.release();
+    }
+    return true;
+  }
+
+  private static void setImagePixelAttributes(
+      Attributes attrs,
+      int width,
+      int height,
+      int samples,
+      int bitsStored,
+      boolean signed,
+      String photometric) {
+    int bitsAllocated = bitsStored > 8 ? 16 : 8;
+    attrs.setInt(Tag.SamplesPerPixel, VR.US, samples);
+    attrs.setString(Tag.PhotometricInterpretation, VR.CS, photometric);
+    if (samples > 1) {
+      attrs.setInt(Tag.PlanarConfiguration, VR.US, 0);
+    } else {
+      attrs.remove(Tag.PlanarConfiguration);
+    }
+    attrs.setInt(Tag.Rows, VR.US, height);
+    attrs.setInt(Tag.Columns, VR.US, width);
+    attrs.setInt(Tag.BitsAllocated, VR.US, bitsAllocated);
+    attrs.setInt(Tag.BitsStored, VR.US, bitsStored);
+    attrs.setInt(Tag.HighBit, VR.US, bitsStored - 1);
+    attrs.setInt(Tag.PixelRepresentation, VR.US, signed ? 1 : 0);
+  }
+
+  private static void setInstanceAttributes(Attributes attrs) {
+    if (!attrs.containsValue(Tag.SOPClassUID)) {
+      attrs.setString(Tag.SOPClassUID, VR.UI, UID.VLPhotographicImageStorage);
+    }
+    ensureUID(attrs, Tag.StudyInstanceUID);
+    ensureUID(attrs, Tag.SeriesInstanceUID);
+    ensureUID(attrs, Tag.SOPInstanceUID);
+    Date now = new Date();
+    attrs.setDate(Tag.InstanceCreationDate, VR.DA, now);
+    attrs.setDate(Tag.InstanceCreationTime, VR.TM, now);
+  }
+
+  private static void ensureUID(Attributes attrs, int tag) {
+    if (!attrs.containsValue(tag)) {
+      attrs.setString(tag, VR.UI, UIDUtils.createUID());
+    }
+  }
+
+  private static int readShort(byte[] data, int pos) {
+    return ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+  }
+
+  private static int readInt(byte[] data, int pos) {
+    return ((data[pos] & 0xFF) << 24)
+        | ((data[pos + 1] & 0xFF) << 16)
+        | ((data[pos + 2] & 0xFF) << 8)
+        | (data[pos + 3] & 0xFF);
+  }
+}
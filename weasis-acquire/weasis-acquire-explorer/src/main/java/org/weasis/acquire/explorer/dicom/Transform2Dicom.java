@@ -57,6 +57,10 @@ public final class Transform2Dicom {
    * AcquireImageInfo. This Dicom is written in the exportDirDicom with its sopInstanceUID as
    * filename.
    *
+   * <p>The images are not re-encoded when possible: an unmodified JPEG or JPEG 2000 file is
+   * directly encapsulated and a PNG image is written with the native pixel data (even with
+   * pre-processing operations), without temporary image file.
+   *
    * @param imageInfo
    * @param exportDirDicom
    * @param exportDirImage
@@ -73,93 +77,130 @@ public final class Transform2Dicom {
     String sopInstanceUID =
         Objects.requireNonNull((String) imageElement.getTagValue(TagD.getUID(Level.INSTANCE)));
 
-    // Transform to JPEG
-    File imgFile = imageElement.getFileCache().getOriginalFile().orElse(null);
-    if (imgFile == null
-        || !imageElement.getMimeType().contains("jpeg")
-        || !imageInfo.getCurrentValues().equals(imageInfo.getDefaultValues())) {
-
-      imgFile = new File(exportDirImage, sopInstanceUID + ".jpg");
-      SimpleOpManager opManager = imageInfo.getPostProcessOpManager();
-      PlanarImage transformedImage = imageElement.getImage(opManager, false);
-
-      // TODO should be handled in the transformation
-      // Rectangle area = (Rectangle) opManager.getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
-      // Integer rotationAngle = Optional
-      // .ofNullable((Integer) opManager.getParamValue(RotationOp.OP_NAME,
-      // RotationOp.P_ROTATE)).orElse(0);
-      // rotationAngle = rotationAngle % 360;
-      // if (area != null && rotationAngle != 0 && rotationAngle != 180) {
-      // transformedImage = TranslateDescriptor.create(transformedImage, (float) -area.getX(),
-      // (float) -area.getY(), null, null);
-      // }
-
-      MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
-      if (!ImageProcessor.writeImage(transformedImage.toImageCV(), imgFile, map)) {
-        // out of memory ??
-        FileUtil.delete(imgFile);
-        LOGGER.error("Cannot Transform to jpeg {}", imageElement.getName());
-        return false;
-      }
+    Attributes attrs = imageInfo.getAttributes();
+    DicomMediaUtils.fillAttributes(AcquireManager.GLOBAL.getTagEntrySetIterator(), attrs);
+    DicomMediaUtils.fillAttributes(imageInfo.getSeries().getTagEntrySetIterator(), attrs);
+    DicomMediaUtils.fillAttributes(imageElement.getTagEntrySetIterator(), attrs);
+    // Spatial calibration
+    if (Unit.PIXEL != imageElement.getPixelSpacingUnit()) {
+      attrs.setString(Tag.PixelSpacingCalibrationDescription, VR.LO, "Used fiducial"); // NON-NLS
+      double unitRatio =
+          imageElement.getPixelSize()
+              * Unit.MILLIMETER.getConversionRatio(
+                  imageElement.getPixelSpacingUnit().getConvFactor());
+      attrs.setDouble(Tag.PixelSpacing, VR.DS, unitRatio, unitRatio);
     }
 
-    // Dicomize
-    if (imgFile.canRead()) {
-      Attributes attrs = imageInfo.getAttributes();
-      DicomMediaUtils.fillAttributes(AcquireManager.GLOBAL.getTagEntrySetIterator(), attrs);
-      DicomMediaUtils.fillAttributes(imageInfo.getSeries().getTagEntrySetIterator(), attrs);
-      DicomMediaUtils.fillAttributes(imageElement.getTagEntrySetIterator(), attrs);
-      // Spatial calibration
-      if (Unit.PIXEL != imageElement.getPixelSpacingUnit()) {
-        attrs.setString(Tag.PixelSpacingCalibrationDescription, VR.LO, "Used fiducial"); // NON-NLS
-        double unitRatio =
-            imageElement.getPixelSize()
-                * Unit.MILLIMETER.getConversionRatio(
-                    imageElement.getPixelSpacingUnit().getConvFactor());
-        attrs.setDouble(Tag.PixelSpacing, VR.DS, unitRatio, unitRatio);
+    File dcmFile = new File(exportDirDicom, sopInstanceUID);
+    try {
+      if (!writeWithoutReencoding(imageInfo, attrs, dcmFile)) {
+        // Transform to JPEG
+        File imgFile = writeJpeg(imageInfo, exportDirImage, sopInstanceUID);
+        if (imgFile == null) {
+          return false;
+        }
+        if (!imgFile.canRead()) {
+          LOGGER.error("Cannot read JPEG image {}", imageElement.getName());
+          return false;
+        }
+        // Dicomize
+        Dicomizer.jpeg(attrs, imgFile, dcmFile, false);
       }
+    } catch (Exception e) {
+      LOGGER.error("Cannot Dicomize {}", imageElement.getName(), e);
+      return false;
+    }
 
-      try {
-        Dicomizer.jpeg(attrs, imgFile, new File(exportDirDicom, sopInstanceUID), false);
-      } catch (Exception e) {
-        LOGGER.error("Cannot Dicomize {}", imageElement.getName(), e);
-        return false;
+    // Presentation State
+    GraphicModel grModel = (GraphicModel) imageElement.getTagValue(TagW.PresentationModel);
+    if (grModel != null && grModel.hasSerializableGraphics()) {
+      Point2D offset = null;
+      Rectangle crop =
+          (Rectangle)
+              imageInfo.getPostProcessOpManager().getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
+      if (crop != null) {
+        Integer rotationAngle =
+            Optional.ofNullable(
+                    (Integer)
+                        imageInfo
+                            .getPostProcessOpManager()
+                            .getParamValue(RotationOp.OP_NAME, RotationOp.P_ROTATE))
+                .orElse(0);
+        rotationAngle = rotationAngle % 360;
+        if (rotationAngle == 0 || rotationAngle == 180) {
+          offset = new Point2D.Double(crop.getX(), crop.getY());
+        } else {
+          double factor = 2.0; // work only with 90 and 270 degrees
+          offset = new Point2D.Double(crop.getX() * factor, crop.getY() * factor);
+        }
       }
+      String prUid = UIDUtils.createUID();
+      File outputFile = new File(exportDirDicom, prUid);
+      DicomPrSerializer.writePresentation(
+          grModel, attrs, outputFile, seriesInstanceUID, prUid, offset);
+    }
 
-      // Presentation State
-      GraphicModel grModel = (GraphicModel) imageElement.getTagValue(TagW.PresentationModel);
-      if (grModel != null && grModel.hasSerializableGraphics()) {
-        Point2D offset = null;
-        Rectangle crop =
-            (Rectangle)
-                imageInfo.getPostProcessOpManager().getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
-        if (crop != null) {
-          Integer rotationAngle =
-              Optional.ofNullable(
-                      (Integer)
-                          imageInfo
-                              .getPostProcessOpManager()
-                              .getParamValue(RotationOp.OP_NAME, RotationOp.P_ROTATE))
-                  .orElse(0);
-          rotationAngle = rotationAngle % 360;
-          if (rotationAngle == 0 || rotationAngle == 180) {
-            offset = new Point2D.Double(crop.getX(), crop.getY());
-          } else {
-            double factor = 2.0; // work only with 90 and 270 degrees
-            offset = new Point2D.Double(crop.getX() * factor, crop.getY() * factor);
-          }
-        }
-        String prUid = UIDUtils.createUID();
-        File outputFile = new File(exportDirDicom, prUid);
-        DicomPrSerializer.writePresentation(
-            grModel, attrs, outputFile, seriesInstanceUID, prUid, offset);
+    return true;
+  }
+
+  private static boolean writeWithoutReencoding(
+      AcquireImageInfo imageInfo, Attributes attrs, File dcmFile) throws Exception {
+    ImageElement imageElement = imageInfo.getImage();
+    String mime = imageElement.getMimeType();
+    File original = imageElement.getFileCache().getOriginalFile().orElse(null);
+    boolean samePixels =
+        imageInfo.getCurrentValues().hasSamePixels(imageInfo.getDefaultValues());
+
+    if (isJpeg2000(mime)) {
+      return original != null
+          && samePixels
+          && ImageEncapsulator.jpeg2000(attrs, original, dcmFile);
+    }
+    if (mime.contains("jpeg")) { // NON-NLS
+      if (original != null && samePixels) {
+        Dicomizer.jpeg(attrs, original, dcmFile, false);
+        return true;
       }
-    } else {
-      LOGGER.error("Cannot read JPEG image {}", imageElement.getName());
       return false;
     }
+    if (mime.contains("png")) { // NON-NLS
+      // Lossless source: encode the pixels with the pre-processing operations in lossless JPEG 2000
+      PlanarImage image = imageElement.getImage(imageInfo.getPostProcessOpManager(), false);
+      return image != null && ImageEncapsulator.losslessJpeg2000(attrs, image.toImageCV(), dcmFile);
+    }
+    return false;
+  }
 
-    return true;
+  private static boolean isJpeg2000(String mime) {
+    return mime.contains("jp2") || mime.contains("j2k") || mime.contains("jpeg2000"); // NON-NLS
+  }
+
+  private static File writeJpeg(
+      AcquireImageInfo imageInfo, File exportDirImage, String sopInstanceUID) {
+    ImageElement imageElement = imageInfo.getImage();
+    File imgFile = new File(exportDirImage, sopInstanceUID + ".jpg");
+    SimpleOpManager opManager = imageInfo.getPostProcessOpManager();
+    PlanarImage transformedImage = imageElement.getImage(opManager, false);
+
+    // TODO should be handled in the transformation
+    // Rectangle area = (Rectangle) opManager.getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
+    // Integer rotationAngle = Optional
+    // .ofNullable((Integer) opManager.getParamValue(RotationOp.OP_NAME,
+    // RotationOp.P_ROTATE)).orElse(0);
+    // rotationAngle = rotationAngle % 360;
+    // if (area != null && rotationAngle != 0 && rotationAngle != 180) {
+    // transformedImage = TranslateDescriptor.create(transformedImage, (float) -area.getX(),
+    // (float) -area.getY(), null, null);
+    // }
+
+    MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
+    if (!ImageProcessor.writeImage(transformedImage.toImageCV(), imgFile, map)) {
+      // out of memory ??
+      FileUtil.delete(imgFile);
+      LOGGER.error("Cannot Transform to jpeg {}", imageElement.getName());
+      return null;
+    }
+    return imgFile;
   }
 
   /**
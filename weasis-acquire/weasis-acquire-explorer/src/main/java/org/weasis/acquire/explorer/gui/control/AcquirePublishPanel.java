@@ -71,6 +71,21 @@ public class AcquirePublishPanel extends JPanel {
     PUBLISH_DICOM.execute(publishDicomTask);
   }
 
+  /**
+   * Starts a publishing task which sends the DICOM files while they are being dicomized.
+   *
+   * @param destinationNode the DICOM node destination
+   * @param nbImages the number of images to publish
+   * @return the task receiving the dicomized files
+   */
+  public PublishDicomTask publishStream(DicomNode destinationNode, int nbImages) {
+    PublishDicomTask publishDicomTask = new PublishDicomTask(destinationNode, nbImages);
+    publishDicomTask.addPropertyChangeListener(this::publishChanged);
+
+    PUBLISH_DICOM.execute(publishDicomTask);
+    return publishDicomTask;
+  }
+
   private void publishChanged(PropertyChangeEvent evt) {
     if ("progress".equals(evt.getPropertyName())) {
       int progress = (Integer) evt.getNewValue();
@@ -85,8 +100,11 @@ public class AcquirePublishPanel extends JPanel {
         try {
           SwingWorker<DicomState, File> publishDicomTask =
               (SwingWorker<DicomState, File>) evt.getSource();
-          final DicomState dicomState = publishDicomTask.get();
-          if (dicomState.getStatus() != Status.Success && dicomState.getStatus() != Status.Cancel) {
+          final DicomState dicomState =
+              publishDicomTask.isCancelled() ? null : publishDicomTask.get();
+          if (dicomState != null
+              && dicomState.getStatus() != Status.Success
+              && dicomState.getStatus() != Status.Cancel) {
             LOGGER.error("Dicom send error: {}", dicomState.getMessage());
             JOptionPane.showMessageDialog(
                 WinUtil.getParentWindow(AcquirePublishPanel.this),
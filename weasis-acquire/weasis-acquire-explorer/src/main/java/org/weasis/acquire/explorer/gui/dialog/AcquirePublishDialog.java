@@ -30,7 +30,6 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
-import javax.swing.SwingWorker;
 import javax.swing.SwingWorker.StateValue;
 import javax.swing.WindowConstants;
 import javax.swing.border.EmptyBorder;
@@ -44,6 +43,7 @@ import org.weasis.acquire.explorer.AcquireImageInfo;
 import org.weasis.acquire.explorer.AcquireManager;
 import org.weasis.acquire.explorer.DicomizeTask;
 import org.weasis.acquire.explorer.Messages;
+import org.weasis.acquire.explorer.PublishDicomTask;
 import org.weasis.acquire.explorer.gui.central.meta.model.imp.AcquireGlobalMeta;
 import org.weasis.acquire.explorer.gui.central.meta.model.imp.AcquireImageMeta;
 import org.weasis.acquire.explorer.gui.central.meta.model.imp.AcquireSerieMeta;
@@ -68,6 +68,8 @@ public class AcquirePublishDialog extends JDialog {
 
   public static final String P_LAST_RESOLUTION = "last.resolution";
   public static final String PREFERENCE_NODE = "publish"; // NON-NLS
+  /** Publish the images while they are dicomized, without waiting for the end of the process */
+  public static final String PUBLISH_STREAMING = "weasis.acquire.publish.streaming"; // NON-NLS
 
   public enum Resolution {
     ORIGINAL(Messages.getString("AcquirePublishDialog.original"), Integer.MAX_VALUE),
@@ -307,8 +309,21 @@ public class AcquirePublishDialog extends JDialog {
       }
     }
 
-    SwingWorker<File, AcquireImageInfo> dicomizeTask = new DicomizeTask(toPublish);
-    ActionListener taskCancelActionListener = e -> dicomizeTask.cancel(true);
+    AbstractDicomNode destination = (AbstractDicomNode) comboNode.getSelectedItem();
+    final PublishDicomTask publishTask =
+        destination instanceof DefaultDicomNode
+                && BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(PUBLISH_STREAMING, true)
+            ? publishPanel.publishStream(
+                ((DefaultDicomNode) destination).getDicomNode(), toPublish.size())
+            : null;
+    DicomizeTask dicomizeTask = new DicomizeTask(toPublish, publishTask);
+    ActionListener taskCancelActionListener =
+        e -> {
+          dicomizeTask.cancel(true);
+          if (publishTask != null) {
+            publishTask.cancel(true);
+          }
+        };
 
     dicomizeTask.addPropertyChangeListener(
         evt -> {
@@ -339,10 +354,19 @@ public class AcquirePublishDialog extends JDialog {
                 }
 
                 if (exportDirDicom != null) {
-                  AbstractDicomNode node = (AbstractDicomNode) comboNode.getSelectedItem();
-                  if (node instanceof DefaultDicomNode) {
+                  if (!dicomizeTask.getFailedImages().isEmpty()) {
+                    JOptionPane.showMessageDialog(
+                        this,
+                        Messages.getString("AcquirePublishDialog.dicomize_error_msg"),
+                        Messages.getString("AcquirePublishDialog.dicomize_error_title"),
+                        JOptionPane.WARNING_MESSAGE);
+                  }
+                  if (publishTask != null) {
+                    // The images are already being published
+                    clearAndHide();
+                  } else if (destination instanceof DefaultDicomNode) {
                     publishPanel.publishDirDicom(
-                        exportDirDicom, ((DefaultDicomNode) node).getDicomNode());
+                        exportDirDicom, ((DefaultDicomNode) destination).getDicomNode());
                     clearAndHide();
                   }
                 } else {
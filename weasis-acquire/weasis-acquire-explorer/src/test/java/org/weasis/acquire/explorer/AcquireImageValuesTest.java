@@ -35,4 +35,24 @@ public class AcquireImageValuesTest {
     assertThat(a1.getRotation()).isEqualTo(0);
     assertThat(a1.isAutoLevel()).isFalse();
   }
+
+  @Test
+  public void testHasSamePixels() {
+    AcquireImageValues defaultValues = new AcquireImageValues();
+    AcquireImageValues values = new AcquireImageValues();
+
+    assertThat(values.hasSamePixels(defaultValues)).isTrue();
+    assertThat(values.hasSamePixels(null)).isFalse();
+
+    values.setCalibrationUnit(Unit.MILLIMETER);
+    values.setCalibrationRatio(0.5);
+    assertThat(values.hasSamePixels(defaultValues)).isTrue();
+    assertThat(values).isNotEqualTo(defaultValues);
+
+    values.setRotation(90);
+    assertThat(values.hasSamePixels(defaultValues)).isFalse();
+    values.setRotation(0);
+    values.setContrast(120);
+    assertThat(values.hasSamePixels(defaultValues)).isFalse();
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.acquire.explorer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.util.UIDUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.dicom.param.AdvancedParams;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomProgress;
+import org.weasis.dicom.param.DicomState;
+import org.weasis.dicom.tool.DicomListener;
+
+public class PublishStreamTest {
+  private static final String STUDY_UID = UIDUtils.createUID();
+  private static final String SERIES_UID = UIDUtils.createUID();
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static void writeInstance(File dir, String iuid) throws IOException {
+    Attributes attrs = new Attributes();
+    attrs.setString(Tag.SOPClassUID, VR.UI, UID.SecondaryCaptureImageStorage);
+    attrs.setString(Tag.SOPInstanceUID, VR.UI, iuid);
+    attrs.setString(Tag.StudyInstanceUID, VR.UI, STUDY_UID);
+    attrs.setString(Tag.SeriesInstanceUID, VR.UI, SERIES_UID);
+    attrs.setString(Tag.PatientID, VR.LO, "PUBLISH-TEST");
+    try (DicomOutputStream dos = new DicomOutputStream(new File(dir, iuid))) {
+      dos.writeDataset(attrs.createFileMetaInformation(UID.ExplicitVRLittleEndian), attrs);
+    }
+  }
+
+  private static int getFreePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  @Test
+  public void testSendWhileWriting() throws Exception {
+    File storeDir = folder.newFolder("store");
+    DicomNode scpNode = new DicomNode("STORESCP", "127.0.0.1", getFreePort());
+    DicomListener listener = new DicomListener(storeDir);
+    listener.start(scpNode);
+
+    List<String> uids = new ArrayList<>();
+    List<File> dirs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      uids.add(UIDUtils.createUID());
+      dirs.add(folder.newFolder("image" + i));
+    }
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    DicomProgress progress = new DicomProgress();
+    progress.addProgressListener(
+        p -> {
+          if (p.getProcessedFile() != null) {
+            sent.add(p.getProcessedFile().getName());
+          }
+        });
+
+    PublishStream stream =
+        new PublishStream(new DicomNode("PUBLISH-SCU"), scpNode, new AdvancedParams());
+    ExecutorService producer = Executors.newSingleThreadExecutor();
+    try {
+      // Simulate the dicomization: the files are written one after the other
+      Future<?> writing =
+          producer.submit(
+              () -> {
+                for (int i = 0; i < dirs.size(); i++) {
+                  writeInstance(dirs.get(i), uids.get(i));
+                  stream.add(dirs.get(i));
+                  Thread.sleep(200);
+                }
+                stream.finish();
+                return null;
+              });
+
+      DicomState state = stream.send(progress, () -> false);
+      writing.get();
+
+      assertThat(state).isNotNull();
+      assertThat(state.getStatus()).isEqualTo(Status.Success);
+      assertThat(sent).containsExactlyInAnyOrderElementsOf(uids);
+      assertThat(dirs).noneMatch(File::exists);
+      try (Stream<Path> files = Files.walk(storeDir.toPath())) {
+        List<Path> received = files.filter(Files::isRegularFile).collect(Collectors.toList());
+        assertThat(received).hasSize(uids.size());
+      }
+    } finally {
+      producer.shutdownNow();
+      listener.stop();
+    }
+  }
+
+  @Test
+  public void testAddAfterFailure() throws Exception {
+    // No listener on this port: the first C-STORE fails and the stream is closed
+    DicomNode scpNode = new DicomNode("STORESCP", "127.0.0.1", getFreePort());
+    PublishStream stream =
+        new PublishStream(new DicomNode("PUBLISH-SCU"), scpNode, new AdvancedParams());
+
+    File dir = folder.newFolder("image");
+    writeInstance(dir, UIDUtils.createUID());
+    stream.add(dir);
+    DicomState state = stream.send(new DicomProgress(), () -> false);
+
+    assertThat(state).isNotNull();
+    assertThat(state.getStatus()).isNotEqualTo(Status.Success);
+    assertThat(dir).doesNotExist();
+
+    File late = folder.newFolder("late");
+    stream.add(late);
+    assertThat(late).doesNotExist();
+  }
+}
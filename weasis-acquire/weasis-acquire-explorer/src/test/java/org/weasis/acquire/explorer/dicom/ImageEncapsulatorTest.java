@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.acquire.explorer.dicom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.io.DicomInputStream;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.weasis.acquire.explorer.dicom.ImageEncapsulator.Jpeg2000Header;
+
+public class ImageEncapsulatorTest {
+  private static boolean nativeLoaded;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void loadNativeLibrary() {
+    try {
+      String dir = System.getProperty("weasis.native.dir");
+      if (dir == null) {
+        System.loadLibrary("opencv_java");
+      } else {
+        System.load(new File(dir, System.mapLibraryName("opencv_java")).getAbsolutePath());
+      }
+      nativeLoaded = true;
+    } catch (UnsatisfiedLinkError e) {
+      nativeLoaded = false;
+    }
+  }
+
+  private static byte[] buildCodestream(int components, int mct, int transform)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeShort(0xFF4F); // SOC
+    out.writeShort(0xFF51); // SIZ
+    out.writeShort(38 + 3 * components);
+    out.writeShort(0); // Rsiz
+    out.writeInt(640); // Xsiz
+    out.writeInt(480); // Ysiz
+    out.writeInt(0);
+    out.writeInt(0);
+    out.writeInt(640);
+    out.writeInt(480);
+    out.writeInt(0);
+    out.writeInt(0);
+    out.writeShort(components);
+    for (int i = 0; i < components; i++) {
+      out.writeByte(7); // 8 bits unsigned
+      out.writeByte(1);
+      out.writeByte(1);
+    }
+    out.writeShort(0xFF52); // COD
+    out.writeShort(12);
+    out.writeByte(0);
+    out.writeByte(0);
+    out.writeShort(1);
+    out.writeByte(mct);
+    out.writeByte(5);
+    out.writeByte(4);
+    out.writeByte(4);
+    out.writeByte(0);
+    out.writeByte(transform);
+    out.writeShort(0xFF90); // SOT
+    out.writeShort(10);
+    out.write(new byte[8]);
+    out.writeShort(0xFFD9); // EOC
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void testRawCodestream() throws IOException {
+    byte[] data = buildCodestream(3, 1, 0);
+    Jpeg2000Header header = ImageEncapsulator.readJpeg2000Header(data);
+
+    assertThat(header).isNotNull();
+    assertThat(header.offset).isEqualTo(0);
+    assertThat(header.length).isEqualTo(data.length);
+    assertThat(header.width).isEqualTo(640);
+    assertThat(header.height).isEqualTo(480);
+    assertThat(header.components).isEqualTo(3);
+    assertThat(header.bitsStored).isEqualTo(8);
+    assertThat(header.signed).isFalse();
+    assertThat(header.reversible).isFalse();
+    assertThat(header.getPhotometricInterpretation()).isEqualTo("YBR_ICT");
+  }
+
+  @Test
+  public void testJp2File() throws IOException {
+    byte[] codestream = buildCodestream(1, 0, 1);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(12); // Signature box
+    out.writeInt(0x6A502020);
+    out.writeInt(0x0D0A870A);
+    out.writeInt(20); // File type box
+    out.writeInt(0x66747970);
+    out.writeInt(0x6A703220);
+    out.writeInt(0);
+    out.writeInt(0x6A703220);
+    out.writeInt(8 + codestream.length); // Contiguous codestream box
+    out.writeInt(0x6A703263);
+    out.write(codestream);
+
+    Jpeg2000Header header = ImageEncapsulator.readJpeg2000Header(bytes.toByteArray());
+
+    assertThat(header).isNotNull();
+    assertThat(header.offset).isEqualTo(40);
+    assertThat(header.length).isEqualTo(codestream.length);
+    assertThat(header.components).isEqualTo(1);
+    assertThat(header.reversible).isTrue();
+    assertThat(header.getPhotometricInterpretation()).isEqualTo("MONOCHROME2");
+  }
+
+  @Test
+  public void testNotJpeg2000() throws IOException {
+    assertThat(ImageEncapsulator.readJpeg2000Header(new byte[64])).isNull();
+    // Four components are not supported
+    assertThat(ImageEncapsulator.readJpeg2000Header(buildCodestream(4, 0, 0))).isNull();
+  }
+
+  private static Mat buildImage(int type, double max) {
+    Assume.assumeTrue("OpenCV native library not available", nativeLoaded);
+    Mat img = new Mat(48, 65, type);
+    Core.randu(img, 0, max);
+    return img;
+  }
+
+  private void assertLosslessJpeg2000(Mat img, String photometric) throws IOException {
+    File dcmFile = folder.newFile();
+    assertThat(ImageEncapsulator.losslessJpeg2000(new Attributes(), img, dcmFile)).isTrue();
+
+    Attributes dataset;
+    String tsuid;
+    try (DicomInputStream dis = new DicomInputStream(dcmFile)) {
+      dataset = dis.readDataset(-1, -1);
+      tsuid = dis.getTransferSyntax();
+    }
+    assertThat(tsuid).isEqualTo(UID.JPEG2000);
+    assertThat(dataset.getString(Tag.LossyImageCompression)).isEqualTo("00");
+    assertThat(dataset.getString(Tag.PhotometricInterpretation)).isEqualTo(photometric);
+    assertThat(dataset.getInt(Tag.Columns, 0)).isEqualTo(img.width());
+    assertThat(dataset.getInt(Tag.Rows, 0)).isEqualTo(img.height());
+
+    // The decoded codestream has exactly the pixels of the source
+    Fragments fragments = (Fragments) dataset.getValue(Tag.PixelData);
+    assertThat(fragments).hasSize(2);
+    MatOfByte codestream = new MatOfByte((byte[]) fragments.get(1));
+    Mat decoded = Imgcodecs.imdecode(codestream, Imgcodecs.IMREAD_UNCHANGED);
+    assertThat(decoded.size()).isEqualTo(img.size());
+    assertThat(decoded.type()).isEqualTo(img.type());
+    assertThat(Core.norm(img, decoded, Core.NORM_INF)).isZero();
+  }
+
+  @Test
+  public void testLosslessJpeg2000Gray() throws IOException {
+    assertLosslessJpeg2000(buildImage(CvType.CV_16UC1, 4096), "MONOCHROME2");
+  }
+
+  @Test
+  public void testLosslessJpeg2000Color() throws IOException {
+    assertLosslessJpeg2000(buildImage(CvType.CV_8UC3, 256), "YBR_RCT");
+  }
+
+  @Test
+  public void testLosslessJpeg2000Unsupported() throws IOException {
+    Mat img = buildImage(CvType.CV_16SC1, 1000);
+    assertThat(ImageEncapsulator.losslessJpeg2000(new Attributes(), img, folder.newFile()))
+        .isFalse();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.weasis.core.util.FileUtil;
+
+/** Environment of the benchmarks running outside of the OSGI framework. */
+public final class BenchmarkEnv {
+
+  /** Folder containing the OpenCV native library, "target/native" by default */
+  public static final String NATIVE_DIR = "weasis.native.dir"; // NON-NLS
+
+  private static boolean nativeLoaded = false;
+
+  private BenchmarkEnv() {}
+
+  /**
+   * Loads the OpenCV native library, which is done by the OSGI fragment of the platform in the
+   * application.
+   */
+  public static synchronized void loadNativeLibrary() {
+    if (!nativeLoaded) {
+      String libName = "opencv_java"; // NON-NLS
+      File lib =
+          new File(
+              System.getProperty(NATIVE_DIR, "target/native"), // NON-NLS
+              System.mapLibraryName(libName));
+      if (lib.canRead()) {
+        System.load(lib.getAbsolutePath());
+      } else {
+        System.loadLibrary(libName);
+      }
+      nativeLoaded = true;
+    }
+  }
+
+  /**
+   * @param prefix the prefix of the folder name
+   * @return a new empty temporary folder
+   * @throws IOException if the folder cannot be created
+   */
+  public static File createTempDir(String prefix) throws IOException {
+    return Files.createTempDirectory(prefix).toFile();
+  }
+
+  public static void delete(File dir) {
+    if (dir != null) {
+      FileUtil.recursiveDelete(dir);
+    }
+  }
+}
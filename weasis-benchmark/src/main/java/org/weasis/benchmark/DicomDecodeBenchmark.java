@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.SyntheticDicom.Encoding;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageConversion;
+
+/**
+ * Decoding of one frame by {@link DicomMediaIO} (without the image cache), the frames are read one
+ * after the other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class DicomDecodeBenchmark {
+
+  public enum Dataset {
+    /** 64 slices of 512x512, one file per slice */
+    CT_STACK,
+    /** 64 frames of 1024x1024 in one file */
+    MULTIFRAME,
+    /** 32 frames of 512x512 encoded in JPEG 2000 */
+    JPEG_2000,
+    /** 32 frames of 512x512 encoded in JPEG baseline (8-bit) */
+    JPEG_BASELINE
+  }
+
+  @Param Dataset dataset;
+
+  private File dir;
+  private final List<DicomMediaIO> readers = new ArrayList<>();
+  private final List<MediaElement> frames = new ArrayList<>();
+  private int index;
+
+  @Setup
+  public void setup() throws Exception {
+    BenchmarkEnv.loadNativeLibrary();
+    dir = BenchmarkEnv.createTempDir("bench-decode"); // NON-NLS
+    List<File> files;
+    if (dataset == Dataset.CT_STACK) {
+      files = SyntheticDicom.writeCtStack(dir, 64, 512);
+    } else {
+      File file = new File(dir, "multiframe.dcm"); // NON-NLS
+      if (dataset == Dataset.MULTIFRAME) {
+        SyntheticDicom.writeMultiframe(file, 64, 1024, Encoding.NATIVE);
+      } else {
+        Encoding encoding =
+            dataset == Dataset.JPEG_2000 ? Encoding.JPEG_2000 : Encoding.JPEG_BASELINE;
+        SyntheticDicom.writeMultiframe(file, 32, 512, encoding);
+      }
+      files = Collections.singletonList(file);
+    }
+
+    for (File file : files) {
+      DicomMediaIO reader = new DicomMediaIO(file);
+      MediaElement[] elements = reader.getMediaElement();
+      if (elements == null || elements.length == 0) {
+        throw new IllegalStateException("Cannot read " + file);
+      }
+      readers.add(reader);
+      Collections.addAll(frames, elements);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    readers.forEach(DicomMediaIO::close);
+    BenchmarkEnv.delete(dir);
+  }
+
+  @Benchmark
+  public int decodeFrame() throws Exception {
+    MediaElement frame = frames.get(index);
+    index = (index + 1) % frames.size();
+    PlanarImage img = ((DicomMediaIO) frame.getMediaReader()).getImageFragment(frame);
+    int width = img.width();
+    ImageConversion.releasePlanarImage(img);
+    return width;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.dicom.rt.Contour;
+import org.weasis.dicom.rt.Dose;
+import org.weasis.dicom.rt.Dvh;
+import org.weasis.dicom.rt.KeyDouble;
+import org.weasis.dicom.rt.RtLayer;
+import org.weasis.dicom.rt.RtSet;
+import org.weasis.dicom.rt.Structure;
+
+/**
+ * Calculated DVH of a spherical structure (one circular contour per dose plane) in a gaussian dose
+ * distribution, by {@link RtSet#initCalculatedDvh(Structure, Dose)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class DvhBenchmark {
+
+  private static final int PLANES = 40;
+  private static final double SPACING = 2.5;
+  private static final double DOSE_GRID_SCALING = 0.001;
+  private static final int CONTOUR_POINTS = 64;
+
+  /** Width and height of the dose grid */
+  @Param({"100", "200"})
+  int grid;
+
+  private File dir;
+  private DicomMediaIO reader;
+  private RtSet rtSet;
+  private Dose dose;
+  private Structure structure;
+
+  @Setup
+  public void setup() throws Exception {
+    BenchmarkEnv.loadNativeLibrary();
+    dir = BenchmarkEnv.createTempDir("bench-dvh"); // NON-NLS
+    double half = grid * SPACING / 2.0;
+    double[] origin = {-half, -half, -PLANES * SPACING / 2.0};
+    File file = new File(dir, "rtdose.dcm"); // NON-NLS
+    SyntheticDicom.writeDose(file, PLANES, grid, origin, SPACING, DOSE_GRID_SCALING);
+
+    reader = new DicomMediaIO(file);
+    List<MediaElement> planes = new ArrayList<>(Arrays.asList(reader.getMediaElement()));
+    for (MediaElement plane : planes) {
+      ((ImageElement) plane).getImage();
+    }
+    double[] offsets = new double[PLANES];
+    for (int i = 0; i < PLANES; i++) {
+      offsets[i] = i * SPACING;
+    }
+    double[] x = new double[grid];
+    double[] y = new double[grid];
+    for (int i = 0; i < grid; i++) {
+      x[i] = origin[0] + i * SPACING;
+      y[i] = origin[1] + i * SPACING;
+    }
+    dose = new Dose();
+    dose.setImages(planes);
+    dose.setImagePositionPatient(origin);
+    dose.setGridFrameOffsetVector(offsets);
+    dose.setDoseGridScaling(DOSE_GRID_SCALING);
+    dose.setDoseMmLUT(new Pair<>(x, y));
+
+    // Sphere centered in the dose grid, its radius is a third of the grid
+    double radius = half * 2.0 / 3.0;
+    double centerZ = origin[2] + (PLANES - 1) * SPACING / 2.0;
+    Map<KeyDouble, List<Contour>> contours = new TreeMap<>();
+    for (int i = 0; i < PLANES; i++) {
+      double z = origin[2] + i * SPACING;
+      double dz = z - centerZ;
+      if (Math.abs(dz) < radius) {
+        List<Contour> list = new ArrayList<>();
+        list.add(createCircle(Math.sqrt(radius * radius - dz * dz), z));
+        contours.put(new KeyDouble(z), list);
+      }
+    }
+    structure = new Structure();
+    structure.setRoiNumber(1);
+    structure.setThickness(SPACING);
+    structure.setPlanes(contours);
+    rtSet = new RtSet(SyntheticDicom.FRAME_OF_REFERENCE_UID, new ArrayList<>());
+  }
+
+  private static Contour createCircle(double radius, double z) {
+    double[] points = new double[CONTOUR_POINTS * 3];
+    for (int i = 0; i < CONTOUR_POINTS; i++) {
+      double angle = 2.0 * Math.PI * i / CONTOUR_POINTS;
+      points[i * 3] = radius * Math.cos(angle);
+      points[i * 3 + 1] = radius * Math.sin(angle);
+      points[i * 3 + 2] = z;
+    }
+    Contour contour = new Contour(new RtLayer());
+    contour.setPoints(points);
+    contour.setContourPoints(CONTOUR_POINTS);
+    contour.setGeometricType("CLOSED_PLANAR"); // NON-NLS
+    return contour;
+  }
+
+  @TearDown
+  public void tearDown() {
+    reader.close();
+    BenchmarkEnv.delete(dir);
+  }
+
+  @Benchmark
+  public Dvh calculatedDvh() {
+    return rtSet.initCalculatedDvh(structure, dose);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.image.cv.CvUtil;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Mean of a stack of 512x512 CT slices by {@link CvUtil#meanStack(List)}, the slices are decoded
+ * and kept in the image cache before the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class MeanStackBenchmark {
+
+  @Param({"16", "64"})
+  int slices;
+
+  private File dir;
+  private final List<ImageElement> images = new ArrayList<>();
+
+  @Setup
+  public void setup() throws Exception {
+    BenchmarkEnv.loadNativeLibrary();
+    dir = BenchmarkEnv.createTempDir("bench-stack"); // NON-NLS
+    for (File file : SyntheticDicom.writeCtStack(dir, slices, 512)) {
+      ImageElement img = (ImageElement) new DicomMediaIO(file).getMediaElement()[0];
+      if (img.getImage() == null) {
+        throw new IllegalStateException("Cannot read " + file);
+      }
+      images.add(img);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (ImageElement img : images) {
+      img.removeImageFromCache();
+      img.getMediaReader().close();
+    }
+    BenchmarkEnv.delete(dir);
+  }
+
+  @Benchmark
+  public int meanStack() {
+    ImageCV mean = CvUtil.meanStack(images);
+    int width = mean.width();
+    mean.release();
+    return width;
+  }
+}
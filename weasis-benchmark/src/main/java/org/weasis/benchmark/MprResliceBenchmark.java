@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.opencv.core.Core;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Reslicing of an axial stack of 512x512 images into the coronal and the sagittal stacks. It does
+ * the same rotation and copy of the rows as SeriesBuilder when building the MPR views, but the new
+ * images are not written in the MPR cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class MprResliceBenchmark {
+
+  private static final int SIZE = 512;
+
+  @Param({"128", "256"})
+  int slices;
+
+  private ImageCV[] stack;
+
+  @Setup
+  public void setup() {
+    BenchmarkEnv.loadNativeLibrary();
+    stack = new ImageCV[slices];
+    for (int i = 0; i < slices; i++) {
+      stack[i] = SyntheticDicom.createPhantomImage(SIZE, SIZE, i);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (ImageCV img : stack) {
+      img.release();
+    }
+  }
+
+  @Benchmark
+  public int coronal() {
+    return reslice(-1);
+  }
+
+  @Benchmark
+  public int sagittal() {
+    return reslice(Core.ROTATE_90_COUNTERCLOCKWISE);
+  }
+
+  private int reslice(int rotateCvType) {
+    ImageCV[] newSeries = null;
+    try {
+      for (int i = 0; i < stack.length; i++) {
+        ImageCV img = ImageProcessor.getRotatedImage(stack[i], rotateCvType);
+        if (newSeries == null) {
+          newSeries = new ImageCV[img.height()];
+          for (int j = 0; j < newSeries.length; j++) {
+            newSeries[j] = new ImageCV(stack.length, img.width(), img.type());
+          }
+        }
+        // Each row of the rotated image is the row i of a new image
+        for (int j = 0; j < newSeries.length; j++) {
+          img.row(j).copyTo(newSeries[j].row(i));
+        }
+        if (img != stack[i]) {
+          img.release();
+        }
+      }
+      return newSeries == null ? 0 : newSeries.length;
+    } finally {
+      if (newSeries != null) {
+        for (ImageCV img : newSeries) {
+          if (img != null) {
+            img.release();
+          }
+        }
+      }
+    }
+  }
+}
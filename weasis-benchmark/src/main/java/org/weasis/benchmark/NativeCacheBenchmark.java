@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.media.data.NativeCache;
+import org.weasis.core.api.media.data.NativeMemoryGovernor;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Put and get of {@link NativeCache} with 256x256 16-bit images and a limit of 32 MB (256 images).
+ * With more keys than the limit, each put evicts the least recently used entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class NativeCacheBenchmark {
+
+  private static final int IMAGE_SIZE = 256;
+  private static final long MAX_MEMORY = 32L * 1024 * 1024;
+
+  /** Number of distinct keys */
+  @Param({"128", "1024"})
+  int keys;
+
+  private ImageCV[] images;
+  private NativeCache<Integer, ImageCV> cache;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int index;
+
+    int next(int max) {
+      index = (index + 1) % max;
+      return index;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    BenchmarkEnv.loadNativeLibrary();
+    images = new ImageCV[keys];
+    for (int i = 0; i < keys; i++) {
+      images[i] = SyntheticDicom.createPhantomImage(IMAGE_SIZE, IMAGE_SIZE, i);
+    }
+    cache =
+        new NativeCache<Integer, ImageCV>(
+            "Benchmark", NativeMemoryGovernor.PRIORITY_NORMAL, MAX_MEMORY) { // NON-NLS
+          @Override
+          protected void afterEntryRemove(Integer key, ImageCV val) {
+            // The images belong to the benchmark
+          }
+        };
+    for (int i = 0; i < keys; i++) {
+      cache.put(i, images[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    NativeMemoryGovernor.getInstance().unregister(cache);
+    cache.clear();
+    for (ImageCV img : images) {
+      img.release();
+    }
+  }
+
+  @Benchmark
+  public ImageCV put(Cursor cursor) {
+    int key = cursor.next(keys);
+    return cache.put(key, images[key]);
+  }
+
+  @Benchmark
+  public ImageCV get(Cursor cursor) {
+    return cache.get(cursor.next(keys));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public ImageCV getConcurrent(Cursor cursor) {
+    return cache.get(cursor.next(keys));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.gui.util.ActionW;
+import org.weasis.dicom.codec.DicomImageElement;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageConversion;
+
+/**
+ * Application of the modality and VOI LUTs on a CT image by {@link
+ * DicomImageElement#getRenderedImage(PlanarImage, Map)}. With a fixed window the LUTs come from the
+ * cache, with a moving window (like when dragging the mouse) the VOI LUT is built at each call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class RenderingBenchmark {
+
+  @Param({"512", "2048"})
+  int size;
+
+  private File dir;
+  private DicomMediaIO reader;
+  private DicomImageElement image;
+  private PlanarImage source;
+  private final Map<String, Object> params = new HashMap<>();
+  private long count;
+
+  @Setup
+  public void setup() throws Exception {
+    BenchmarkEnv.loadNativeLibrary();
+    dir = BenchmarkEnv.createTempDir("bench-render"); // NON-NLS
+    File file = SyntheticDicom.writeCtStack(dir, 1, size).get(0);
+    reader = new DicomMediaIO(file);
+    image = (DicomImageElement) reader.getMediaElement()[0];
+    source = image.getImage();
+    if (source == null) {
+      throw new IllegalStateException("Cannot read " + file);
+    }
+    params.put(ActionW.WINDOW.cmd(), 400.0);
+    params.put(ActionW.LEVEL.cmd(), 40.0);
+  }
+
+  @TearDown
+  public void tearDown() {
+    image.removeImageFromCache();
+    reader.close();
+    BenchmarkEnv.delete(dir);
+  }
+
+  @Benchmark
+  public int fixedWindow() {
+    return render();
+  }
+
+  @Benchmark
+  public int movingWindow() {
+    // A new level at each call, the values repeat after 100000 calls
+    params.put(ActionW.LEVEL.cmd(), 40.0 + (count++ % 100_000) * 0.01);
+    return render();
+  }
+
+  private int render() {
+    PlanarImage img = image.getRenderedImage(source, params);
+    int width = img.width();
+    if (img != source) {
+      ImageConversion.releasePlanarImage(img);
+    }
+    return width;
+  }
+}
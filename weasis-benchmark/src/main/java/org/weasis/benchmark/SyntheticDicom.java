@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.weasis.dicom.codec.TransferSyntax;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Writes the synthetic DICOM files used by the benchmarks. The pixel values only depend on the
+ * size and on the slice index (fixed random seed), so the datasets are identical between the runs.
+ */
+public final class SyntheticDicom {
+
+  public static final String FRAME_OF_REFERENCE_UID = "1.2.826.0.1.3680043.2.1143.99.1"; // NON-NLS
+
+  /** Pixel spacing in mm of the CT images */
+  public static final double CT_SPACING = 0.7;
+  /** Distance in mm between two CT slices */
+  public static final double CT_SLICE_SPACING = 1.25;
+
+  private static final long SEED = 20200101L;
+  private static final int CT_OFFSET = 1024;
+
+  public enum Encoding {
+    NATIVE(TransferSyntax.EXPLICIT_VR_LE),
+    JPEG_BASELINE(TransferSyntax.JPEG_LOSSY_8),
+    JPEG_2000(TransferSyntax.JPEG2000);
+
+    private final TransferSyntax syntax;
+
+    Encoding(TransferSyntax syntax) {
+      this.syntax = syntax;
+    }
+
+    public String getTransferSyntaxUID() {
+      return syntax.getTransferSyntaxUID();
+    }
+  }
+
+  private SyntheticDicom() {}
+
+  /**
+   * Builds a CT-like phantom: an ellipse of soft tissue containing a bone disk which moves with the
+   * slice index, surrounded by air, with a gaussian noise.
+   *
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param slice the slice index
+   * @return the stored values (rescale intercept of -1024)
+   */
+  public static short[] createPhantom(int width, int height, int slice) {
+    Random random = new Random(SEED + slice);
+    short[] pixels = new short[width * height];
+    double cx = width / 2.0;
+    double cy = height / 2.0;
+    double rx = width * 0.42;
+    double ry = height * 0.36;
+    double boneX = cx + width * 0.2 * Math.cos(slice * 0.1);
+    double boneRadius = width * 0.08;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        double dx = (x - cx) / rx;
+        double dy = (y - cy) / ry;
+        double hu = -1000.0;
+        if (dx * dx + dy * dy <= 1.0) {
+          double bx = x - boneX;
+          double by = y - cy;
+          hu = bx * bx + by * by < boneRadius * boneRadius ? 700.0 : 40.0;
+        }
+        hu += random.nextGaussian() * 10.0;
+        pixels[y * width + x] = (short) Math.max(0, Math.round(hu) + CT_OFFSET);
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * @param width the width of the image
+   * @param height the height of the image
+   * @param slice the slice index
+   * @return the phantom as an unsigned 16-bit image
+   */
+  public static ImageCV createPhantomImage(int width, int height, int slice) {
+    ImageCV img = new ImageCV(height, width, CvType.CV_16UC1);
+    img.put(0, 0, createPhantom(width, height, slice));
+    return img;
+  }
+
+  /**
+   * Writes an axial CT series with one slice per file.
+   *
+   * @param dir the output folder
+   * @param slices the number of slices
+   * @param size the width and the height of the images
+   * @return the files sorted by slice position
+   * @throws IOException if a file cannot be written
+   */
+  public static List<File> writeCtStack(File dir, int slices, int size) throws IOException {
+    String studyUID = UIDUtils.createUID();
+    String seriesUID = UIDUtils.createUID();
+    List<File> files = new ArrayList<>(slices);
+    for (int i = 0; i < slices; i++) {
+      Attributes attrs = createCtAttributes(studyUID, seriesUID, size, 1);
+      attrs.setInt(Tag.InstanceNumber, VR.IS, i + 1);
+      attrs.setDouble(Tag.ImagePositionPatient, VR.DS, getCtOrigin(size, i));
+      attrs.setDouble(Tag.SliceLocation, VR.DS, i * CT_SLICE_SPACING);
+      File file = new File(dir, "ct" + i + ".dcm"); // NON-NLS
+      final int slice = i;
+      writeFrames(file, attrs, 1, f -> createPhantom(size, size, slice), Encoding.NATIVE);
+      files.add(file);
+    }
+    return files;
+  }
+
+  /**
+   * Writes a multiframe CT image, each frame is a slice of the phantom.
+   *
+   * @param file the output file
+   * @param frames the number of frames
+   * @param size the width and the height of the frames
+   * @param encoding the encoding of the pixel data
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeMultiframe(File file, int frames, int size, Encoding encoding)
+      throws IOException {
+    Attributes attrs = createCtAttributes(UIDUtils.createUID(), UIDUtils.createUID(), size, frames);
+    attrs.setDouble(Tag.ImagePositionPatient, VR.DS, getCtOrigin(size, 0));
+    writeFrames(file, attrs, frames, f -> createPhantom(size, size, f), encoding);
+  }
+
+  /**
+   * Writes a multiframe RT Dose. The dose is a 3D gaussian centered in the grid, with a maximum of
+   * 60 Gy.
+   *
+   * @param file the output file
+   * @param planes the number of dose planes
+   * @param size the width and the height of the dose grid
+   * @param origin the position (mm) of the first voxel
+   * @param spacing the distance (mm) between two voxels in the three directions
+   * @param doseGridScaling the dose (Gy) of one unit of the stored values
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeDose(
+      File file, int planes, int size, double[] origin, double spacing, double doseGridScaling)
+      throws IOException {
+    Attributes attrs = new Attributes();
+    setInstanceAttributes(
+        attrs, UID.RTDoseStorage, "RTDOSE", UIDUtils.createUID(), UIDUtils.createUID()); // NON-NLS
+    setImageAttributes(attrs, size, planes, 16);
+    attrs.setDouble(Tag.PixelSpacing, VR.DS, spacing, spacing);
+    attrs.setDouble(Tag.ImageOrientationPatient, VR.DS, 1, 0, 0, 0, 1, 0);
+    attrs.setDouble(Tag.ImagePositionPatient, VR.DS, origin);
+    attrs.setDouble(Tag.SliceThickness, VR.DS, spacing);
+    double[] offsets = new double[planes];
+    for (int i = 0; i < planes; i++) {
+      offsets[i] = i * spacing;
+    }
+    attrs.setDouble(Tag.GridFrameOffsetVector, VR.DS, offsets);
+    attrs.setInt(Tag.FrameIncrementPointer, VR.AT, Tag.GridFrameOffsetVector);
+    attrs.setDouble(Tag.DoseGridScaling, VR.DS, doseGridScaling);
+    attrs.setString(Tag.DoseUnits, VR.CS, "GY"); // NON-NLS
+    attrs.setString(Tag.DoseType, VR.CS, "PHYSICAL"); // NON-NLS
+    attrs.setString(Tag.DoseSummationType, VR.CS, "PLAN"); // NON-NLS
+
+    double maxValue = 60.0 / doseGridScaling;
+    double sigma = size / 4.0;
+    double center = (size - 1) / 2.0;
+    double centerZ = (planes - 1) / 2.0;
+    writeFrames(
+        file,
+        attrs,
+        planes,
+        f -> {
+          short[] pixels = new short[size * size];
+          double dz = (f - centerZ) * size / planes;
+          for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+              double dx = x - center;
+              double dy = y - center;
+              double r2 = (dx * dx + dy * dy + dz * dz) / (2 * sigma * sigma);
+              // Unsigned values, stored in a short
+              pixels[y * size + x] = (short) Math.round(maxValue * Math.exp(-r2));
+            }
+          }
+          return pixels;
+        },
+        Encoding.NATIVE);
+  }
+
+  private static double[] getCtOrigin(int size, int slice) {
+    double half = size * CT_SPACING / 2.0;
+    return new double[] {-half, -half, -slice * CT_SLICE_SPACING};
+  }
+
+  private static Attributes createCtAttributes(
+      String studyUID, String seriesUID, int size, int frames) {
+    Attributes attrs = new Attributes();
+    setInstanceAttributes(attrs, UID.CTImageStorage, "CT", studyUID, seriesUID); // NON-NLS
+    setImageAttributes(attrs, size, frames, 12);
+    attrs.setDouble(Tag.PixelSpacing, VR.DS, CT_SPACING, CT_SPACING);
+    attrs.setDouble(Tag.ImageOrientationPatient, VR.DS, 1, 0, 0, 0, 1, 0);
+    attrs.setDouble(Tag.SliceThickness, VR.DS, CT_SLICE_SPACING);
+    attrs.setDouble(Tag.RescaleIntercept, VR.DS, -CT_OFFSET);
+    attrs.setDouble(Tag.RescaleSlope, VR.DS, 1.0);
+    attrs.setDouble(Tag.WindowCenter, VR.DS, 40.0);
+    attrs.setDouble(Tag.WindowWidth, VR.DS, 400.0);
+    return attrs;
+  }
+
+  private static void setInstanceAttributes(
+      Attributes attrs, String sopClassUID, String modality, String studyUID, String seriesUID) {
+    attrs.setString(Tag.SOPClassUID, VR.UI, sopClassUID);
+    attrs.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+    attrs.setString(Tag.StudyInstanceUID, VR.UI, studyUID);
+    attrs.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+    attrs.setString(Tag.FrameOfReferenceUID, VR.UI, FRAME_OF_REFERENCE_UID);
+    attrs.setString(Tag.PatientID, VR.LO, "BENCHMARK"); // NON-NLS
+    attrs.setString(Tag.PatientName, VR.PN, "Benchmark^Phantom"); // NON-NLS
+    attrs.setString(Tag.Modality, VR.CS, modality);
+    attrs.setInt(Tag.SeriesNumber, VR.IS, 1);
+  }
+
+  private static void setImageAttributes(Attributes attrs, int size, int frames, int bitsStored) {
+    attrs.setInt(Tag.SamplesPerPixel, VR.US, 1);
+    attrs.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2"); // NON-NLS
+    attrs.setInt(Tag.Rows, VR.US, size);
+    attrs.setInt(Tag.Columns, VR.US, size);
+    attrs.setInt(Tag.BitsAllocated, VR.US, 16);
+    attrs.setInt(Tag.BitsStored, VR.US, bitsStored);
+    attrs.setInt(Tag.HighBit, VR.US, bitsStored - 1);
+    attrs.setInt(Tag.PixelRepresentation, VR.US, 0);
+    if (frames > 1) {
+      attrs.setInt(Tag.NumberOfFrames, VR.IS, frames);
+    }
+  }
+
+  private static void writeFrames(
+      File file, Attributes attrs, int frames, IntFunction<short[]> source, Encoding encoding)
+      throws IOException {
+    if (encoding == Encoding.JPEG_BASELINE) {
+      // Lossy JPEG is limited to 8 bits
+      attrs.setInt(Tag.BitsAllocated, VR.US, 8);
+      attrs.setInt(Tag.BitsStored, VR.US, 8);
+      attrs.setInt(Tag.HighBit, VR.US, 7);
+      attrs.remove(Tag.RescaleIntercept);
+      attrs.remove(Tag.RescaleSlope);
+      attrs.remove(Tag.WindowCenter);
+      attrs.remove(Tag.WindowWidth);
+    }
+    if (encoding != Encoding.NATIVE) {
+      attrs.setString(
+          Tag.LossyImageCompression, VR.CS, encoding == Encoding.JPEG_BASELINE ? "01" : "00");
+    }
+
+    int rows = attrs.getInt(Tag.Rows, 0);
+    int columns = attrs.getInt(Tag.Columns, 0);
+    try (DicomOutputStream dos = new DicomOutputStream(file)) {
+      dos.writeDataset(attrs.createFileMetaInformation(encoding.getTransferSyntaxUID()), attrs);
+      if (encoding == Encoding.NATIVE) {
+        int frameLength = rows * columns * 2;
+        dos.writeHeader(Tag.PixelData, VR.OW, frameLength * frames);
+        ByteBuffer buf = ByteBuffer.allocate(frameLength).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < frames; i++) {
+          buf.clear();
+          buf.asShortBuffer().put(source.apply(i));
+          dos.write(buf.array(), 0, frameLength);
+        }
+      } else {
+        dos.writeHeader(Tag.PixelData, VR.OB, -1);
+        // Empty basic offset table
+        dos.writeHeader(Tag.Item, null, 0);
+        for (int i = 0; i < frames; i++) {
+          byte[] data = encodeFrame(source.apply(i), columns, rows, encoding);
+          dos.writeHeader(Tag.Item, null, (data.length + 1) & ~1);
+          dos.write(data);
+          if ((data.length & 1) != 0) {
+            dos.write(0);
+          }
+        }
+        dos.writeHeader(Tag.SequenceDelimitationItem, null, 0);
+      }
+    }
+  }
+
+  private static byte[] encodeFrame(short[] pixels, int width, int height, Encoding encoding)
+      throws IOException {
+    Mat img = new Mat(height, width, CvType.CV_16UC1);
+    Mat img8 = new Mat();
+    MatOfByte buf = new MatOfByte();
+    try {
+      img.put(0, 0, pixels);
+      boolean done;
+      if (encoding == Encoding.JPEG_BASELINE) {
+        // Window of 400 HU centered on the soft tissue
+        img.convertTo(img8, CvType.CV_8U, 255.0 / 400.0, -255.0 * (CT_OFFSET - 160) / 400.0);
+        done =
+            Imgcodecs.imencode(
+                ".jpg", img8, buf, new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 90)); // NON-NLS
+      } else {
+        done = Imgcodecs.imencode(".jp2", img, buf); // NON-NLS
+      }
+      if (!done) {
+        throw new IOException("Cannot encode the frame in " + encoding);
+      }
+      byte[] data = buf.toArray();
+      return encoding == Encoding.JPEG_2000 ? getCodestream(data) : data;
+    } finally {
+      img.release();
+      img8.release();
+      buf.release();
+    }
+  }
+
+  /** Returns the JPEG 2000 codestream contained in a JP2 file. */
+  private static byte[] getCodestream(byte[] jp2) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(jp2);
+    int pos = 0;
+    while (pos + 8 <= jp2.length) {
+      int length = buf.getInt(pos);
+      int type = buf.getInt(pos + 4);
+      if (length == 0) {
+        length = jp2.length - pos;
+      }
+      if (type == 0x6A703263) { // jp2c
+        byte[] codestream = new byte[length - 8];
+        System.arraycopy(jp2, pos + 8, codestream, 0, codestream.length);
+        return codestream;
+      }
+      if (length < 8) {
+        break;
+      }
+      pos += length;
+    }
+    throw new IOException("No JPEG 2000 codestream");
+  }
+}
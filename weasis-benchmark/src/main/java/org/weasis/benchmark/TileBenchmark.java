@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.opencv.core.CvType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.image.cv.CvUtil;
+import org.weasis.core.api.image.cv.TileProcessor;
+import org.weasis.core.api.image.op.ByteLutCollection;
+import org.weasis.core.api.image.util.KernelData;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Speed-up of the operations processed by {@link TileProcessor} according to the number of
+ * threads, on a 4096x4096 image. The number of threads is read once by the JVM, each value of the
+ * parameter runs in its own fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"}) // NON-NLS
+public class TileBenchmark {
+
+  private static final int SIZE = 4096;
+
+  @Param({"1", "2", "4", "8"})
+  int threads;
+
+  private ImageCV img16;
+  private ImageCV img8;
+  private byte[][] lut;
+
+  @Setup
+  public void setup() {
+    BenchmarkEnv.loadNativeLibrary();
+    BundleTools.SYSTEM_PREFERENCES.putIntProperty(TileProcessor.TILE_THREADS, threads);
+    img16 = SyntheticDicom.createPhantomImage(SIZE, SIZE, 0);
+    img8 = new ImageCV();
+    img16.convertTo(img8, CvType.CV_8U, 1.0 / 16.0);
+    lut = ByteLutCollection.Lut.HUE.getByteLut().getLutTable();
+  }
+
+  @TearDown
+  public void tearDown() {
+    img16.release();
+    img8.release();
+  }
+
+  @Benchmark
+  public int meanFilter() {
+    ImageCV result = CvUtil.filter(img16, KernelData.MEAN);
+    int width = result.width();
+    result.release();
+    return width;
+  }
+
+  @Benchmark
+  public int applyLut() {
+    PlanarImage result = TileProcessor.pointOp(img8, t -> ImageProcessor.applyLUT(t, lut));
+    int width = result.width();
+    result.release();
+    return width;
+  }
+}
@@ -14,9 +14,11 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import org.weasis.core.api.Messages;
 import org.weasis.core.api.gui.util.ActionW;
+import org.weasis.core.api.image.cv.TileProcessor;
 import org.weasis.core.api.image.op.ByteLut;
 import org.weasis.core.api.image.op.ByteLutCollection;
 import org.weasis.core.util.LangUtil;
+import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageProcessor;
 
@@ -62,13 +64,17 @@ public class PseudoColorOp extends AbstractOp {
       byte[][] lut = lutTable.getLutTable();
       if (lut == null) {
         if (invert) {
-          result = ImageProcessor.invertLUT(source.toImageCV());
+          result =
+              TileProcessor.pointOp(
+                  source.toMat(), tile -> ImageProcessor.invertLUT(ImageCV.toImageCV(tile)));
         }
       } else {
         if (invert) {
           lut = ByteLutCollection.invert(lut);
         }
-        result = ImageProcessor.applyLUT(source.toMat(), lut);
+        byte[][] lookup = lut;
+        result =
+            TileProcessor.pointOp(source.toMat(), tile -> ImageProcessor.applyLUT(tile, lookup));
         // result = new LookupTableCV(lut).lookup(source);
       }
     }
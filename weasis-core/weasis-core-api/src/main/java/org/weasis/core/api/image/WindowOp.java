@@ -12,9 +12,11 @@ package org.weasis.core.api.image;
 import org.weasis.core.api.Messages;
 import org.weasis.core.api.gui.util.ActionW;
 import org.weasis.core.api.image.ImageOpEvent.OpEvent;
+import org.weasis.core.api.image.cv.TileProcessor;
 import org.weasis.core.api.image.util.WindLevelParameters;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.util.LangUtil;
+import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.PlanarImage;
 
 public class WindowOp extends AbstractOp {
@@ -70,7 +72,10 @@ public class WindowOp extends AbstractOp {
     ImageElement imageElement = (ImageElement) params.get(P_IMAGE_ELEMENT);
 
     if (imageElement != null) {
-      result = imageElement.getRenderedImage(source, params);
+      result =
+          TileProcessor.pointOp(
+              source.toMat(),
+              tile -> imageElement.getRenderedImage(ImageCV.toImageCV(tile), params));
     }
 
     params.put(Param.OUTPUT_IMG, result);
@@ -32,6 +32,9 @@ import org.weasis.opencv.data.PlanarImage;
 public class CvUtil {
   private static final Logger LOGGER = LoggerFactory.getLogger(CvUtil.class);
 
+  // Smallest kernel size (width x height) which can be applied with a DFT by filter2D()
+  private static final int DFT_KERNEL_SIZE = 50;
+
   private CvUtil() {}
 
   public static void runGarbageCollectorAndWait(long ms) {
@@ -51,11 +54,16 @@ public class CvUtil {
     Mat srcImg = Objects.requireNonNull(source);
     Mat k = new Mat(kernel.getHeight(), kernel.getWidth(), CvType.CV_32F);
     k.put(0, 0, kernel.getData());
-    ImageCV dstImg = new ImageCV();
-    Imgproc.filter2D(srcImg, dstImg, -1, k);
+    if (kernel.getWidth() * kernel.getHeight() >= DFT_KERNEL_SIZE) {
+      // OpenCV can filter in the frequency domain, the result would depend on the tile size
+      ImageCV dstImg = new ImageCV();
+      Imgproc.filter2D(srcImg, dstImg, -1, k);
+      return dstImg;
+    }
     // TODO improve speed with dedicated call
     // Imgproc.blur(srcImg, dstImg, new Size(3,3));
-    return dstImg;
+    return TileProcessor.neighborhoodOp(
+        srcImg, srcImg.type(), (src, dst) -> Imgproc.filter2D(src, dst, -1, k));
   }
 
   public static VolatileImage getVolatileImage(GraphicsConfiguration gc, BufferedImage src) {
@@ -9,6 +9,7 @@
  */
 package org.weasis.core.api.image.cv;
 
+import java.awt.Rectangle;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
@@ -16,11 +17,14 @@ import java.io.RandomAccessFile;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -44,12 +48,15 @@ import org.weasis.core.api.media.data.Codec;
 import org.weasis.core.api.media.data.FileCache;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.MediaElement;
-import org.weasis.core.api.media.data.MediaReader;
 import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.SeriesEvent;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.Thumbnail;
+import org.weasis.core.api.media.data.TileKey;
+import org.weasis.core.api.media.data.TilePyramid;
+import org.weasis.core.api.media.data.TiledMediaReader;
+import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.util.FileUtil;
 import org.weasis.core.util.StringUtil;
 import org.weasis.opencv.data.FileRawImage;
@@ -57,19 +64,28 @@ import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 import org.weasis.opencv.op.ImageProcessor;
 
-public class ImageCVIO implements MediaReader {
+public class ImageCVIO implements TiledMediaReader {
   private static final Logger LOGGER = LoggerFactory.getLogger(ImageCVIO.class);
 
   public static final File CACHE_UNCOMPRESSED_DIR =
       AppProperties.buildAccessibleTempDirectory(
           AppProperties.FILE_CACHE_DIR.getName(), "uncompressed"); // NON-NLS
 
+  /** Minimum size of an image (in megapixels) to be displayed by tiles */
+  public static final String TILED_IMAGE_MIN_SIZE = "weasis.tiled.image.min.size"; // NON-NLS
+
+  // Formats which can store the image by tiles
+  private static final Set<String> TILED_MIME_TYPES =
+      new HashSet<>(Arrays.asList("image/tiff", "image/x-tiff", "image/jp2")); // NON-NLS
+
   private final URI uri;
   private final String mimeType;
 
   private final FileCache fileCache;
   private final Codec codec;
   private ImageElement image = null;
+  private boolean pyramidChecked = false;
+  private TilePyramid tilePyramid;
 
   public ImageCVIO(URI media, String mimeType, Codec codec) {
     this.uri = Objects.requireNonNull(media);
@@ -167,6 +183,81 @@ public class ImageCVIO implements MediaReader {
     return ImageConversion.toMat(bi);
   }
 
+  @Override
+  public synchronized TilePyramid getTilePyramid(MediaElement media) {
+    if (!pyramidChecked) {
+      pyramidChecked = true;
+      long minPixels =
+          BundleTools.SYSTEM_PREFERENCES.getLongProperty(TILED_IMAGE_MIN_SIZE, 64L) * 1_000_000L;
+      Integer width = (Integer) Objects.requireNonNull(media).getTagValue(TagW.ImageWidth);
+      Integer height = (Integer) media.getTagValue(TagW.ImageHeight);
+      if (width != null && height != null && (long) width * height <= minPixels) {
+        return null;
+      }
+      // Only the sources stored by tiles can be decoded by region without reading the whole image
+      File file = media.getFileCache().getOriginalFile().orElse(null);
+      if (file != null && TILED_MIME_TYPES.contains(mimeType)) {
+        tilePyramid = readTilePyramid(file, minPixels);
+      }
+    }
+    return tilePyramid;
+  }
+
+  private TilePyramid readTilePyramid(File file, long minPixels) {
+    ImageReader reader = getDefaultReader(mimeType);
+    if (reader == null) {
+      return null;
+    }
+    try (ImageInputStream stream = new FileImageInputStream(new RandomAccessFile(file, "r"))) {
+      reader.setInput(stream, true, true);
+      if (reader.isImageTiled(0)
+          && (long) reader.getWidth(0) * reader.getHeight(0) > minPixels
+          && reader.getTileWidth(0) >= 128
+          && reader.getTileHeight(0) >= 128) {
+        // Align on the tiles of the file
+        return new TilePyramid(
+            reader.getWidth(0),
+            reader.getHeight(0),
+            Math.min(reader.getTileWidth(0), 2048),
+            Math.min(reader.getTileHeight(0), 2048));
+      }
+    } catch (IOException e) {
+      LOGGER.error("Cannot read the image layout of {}", file, e);
+    } finally {
+      reader.dispose();
+    }
+    return null;
+  }
+
+  @Override
+  public PlanarImage getTile(MediaElement media, TilePyramid pyramid, TileKey key)
+      throws Exception {
+    File file = Objects.requireNonNull(media).getFileCache().getOriginalFile().orElse(null);
+    ImageReader reader = getDefaultReader(mimeType);
+    if (file == null || reader == null) {
+      return null;
+    }
+    // The lower resolution levels are read by subsampling the tiles of the full resolution image
+    int factor = 1 << key.getLevel();
+    Rectangle bounds = pyramid.getTileBounds(key.getLevel(), key.getX(), key.getY());
+    Rectangle region =
+        new Rectangle(
+                bounds.x * factor, bounds.y * factor, bounds.width * factor, bounds.height * factor)
+            .intersection(pyramid.getLevelBounds(0));
+    try (ImageInputStream stream = new FileImageInputStream(new RandomAccessFile(file, "r"))) {
+      reader.setInput(stream, true, true);
+      if (!reader.isImageTiled(0)) {
+        throw new IOException("The image is not stored by tiles: " + file);
+      }
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceRegion(region);
+      param.setSourceSubsampling(factor, factor, 0, 0);
+      return ImageConversion.toMat(ImageFiler.getReadableImage(reader.read(0, param)));
+    } finally {
+      reader.dispose();
+    }
+  }
+
   @Override
   public URI getUri() {
     return uri;
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.image.cv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import org.opencv.core.Mat;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Executes the per-pixel and the neighborhood operations on horizontal tiles of the large images
+ * in parallel. The result is identical to the operation applied on the whole image: the tiles are
+ * sub-matrices of the source, so the OpenCV filters read the rows around a tile (halo) in the
+ * source instead of extrapolating the border.
+ */
+public final class TileProcessor {
+
+  /** Number of threads processing the tiles, the tiling is disabled with 1 */
+  public static final String TILE_THREADS = "weasis.image.tile.threads"; // NON-NLS
+  /** Minimum number of pixels of an image for being processed by tiles */
+  public static final String TILE_MIN_PIXELS = "weasis.image.tile.min.pixels"; // NON-NLS
+
+  static final int MIN_TILE_ROWS = 64;
+  private static final int TILES_PER_THREAD = 4;
+
+  private static final ThreadLocal<Boolean> TILE_WORKER = ThreadLocal.withInitial(() -> false);
+  private static ExecutorService executor;
+  private static int nbThreads;
+
+  private TileProcessor() {}
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      nbThreads =
+          Math.max(
+              1,
+              BundleTools.SYSTEM_PREFERENCES.getIntProperty(
+                  TILE_THREADS, Runtime.getRuntime().availableProcessors()));
+      if (nbThreads > 1) {
+        executor = ThreadUtil.buildNewFixedThreadExecutor(nbThreads - 1, "Image Tiles"); // NON-NLS
+      }
+    }
+    return executor;
+  }
+
+  static int getNumberOfTiles(Mat source) {
+    if (TILE_WORKER.get() || getExecutor() == null) {
+      // Nested call or tiling disabled
+      return 1;
+    }
+    long minPixels = BundleTools.SYSTEM_PREFERENCES.getIntProperty(TILE_MIN_PIXELS, 4 << 20);
+    if ((long) source.width() * source.height() < minPixels) {
+      return 1;
+    }
+    return getNumberOfTiles(source.rows(), nbThreads);
+  }
+
+  /**
+   * @param rows the number of rows of the image
+   * @param threads the number of threads
+   * @return the number of tiles
+   */
+  static int getNumberOfTiles(int rows, int threads) {
+    return Math.max(1, Math.min(threads * TILES_PER_THREAD, rows / MIN_TILE_ROWS));
+  }
+
+  /**
+   * @param rows the number of rows of the image
+   * @param nbTiles the number of tiles
+   * @return the first row of each tile followed by the number of rows
+   */
+  static int[] getTileBounds(int rows, int nbTiles) {
+    int[] bounds = new int[nbTiles + 1];
+    for (int i = 0; i <= nbTiles; i++) {
+      bounds[i] = (int) ((long) rows * i / nbTiles);
+    }
+    return bounds;
+  }
+
+  /**
+   * Applies an operation computing each pixel only from the same pixel of the source. The result
+   * of each tile is copied into the destination image allocated once.
+   *
+   * @param source the source image
+   * @param op the operation, it must be thread-safe
+   * @return the result of the operation
+   */
+  public static PlanarImage pointOp(Mat source, Function<Mat, PlanarImage> op) {
+    int nbTiles = getNumberOfTiles(source);
+    if (nbTiles < 2) {
+      return op.apply(source);
+    }
+
+    int[] bounds = getTileBounds(source.rows(), nbTiles);
+    // Allocated from the result of the first tile, which is processed alone
+    ImageCV[] dst = new ImageCV[1];
+    AtomicBoolean failed = new AtomicBoolean();
+    AtomicBoolean untiled = new AtomicBoolean();
+    execute(
+        nbTiles,
+        i -> {
+          if (failed.get() || untiled.get()) {
+            return;
+          }
+          Mat tile = source.rowRange(bounds[i], bounds[i + 1]);
+          PlanarImage result = op.apply(tile);
+          if (result == null) {
+            failed.set(true);
+            return;
+          }
+          Mat m = result.toMat();
+          boolean unchanged = m.dataAddr() == tile.dataAddr();
+          if (i == 0 && !unchanged) {
+            dst[0] = new ImageCV(source.rows(), source.cols(), m.type());
+          }
+          if (dst[0] == null) {
+            if (!unchanged) {
+              // The operation returns the source of the first tile but not of this one
+              untiled.set(true);
+            }
+          } else {
+            m.copyTo(dst[0].rowRange(bounds[i], bounds[i + 1]));
+          }
+          if (!unchanged) {
+            m.release();
+          }
+        });
+
+    if (failed.get() || untiled.get()) {
+      if (dst[0] != null) {
+        dst[0].release();
+      }
+      return failed.get() ? null : op.apply(source);
+    }
+    if (dst[0] == null) {
+      // The operation returns the source
+      return ImageCV.toImageCV(source);
+    }
+    return dst[0];
+  }
+
+  /**
+   * Applies an operation computing each pixel from the neighborhood of the pixel in the source,
+   * like the OpenCV filters with the default border type (not BORDER_ISOLATED).
+   *
+   * @param source the source image
+   * @param dstType the OpenCV type of the result
+   * @param op the operation writing the destination tile from the source tile, it must be
+   *     thread-safe
+   * @return the result of the operation
+   */
+  public static ImageCV neighborhoodOp(Mat source, int dstType, BiConsumer<Mat, Mat> op) {
+    ImageCV dst = new ImageCV(source.rows(), source.cols(), dstType);
+    int nbTiles = getNumberOfTiles(source);
+    if (nbTiles < 2) {
+      op.accept(source, dst);
+      return dst;
+    }
+
+    int[] bounds = getTileBounds(source.rows(), nbTiles);
+    execute(
+        nbTiles,
+        i ->
+            op.accept(
+                source.rowRange(bounds[i], bounds[i + 1]),
+                dst.rowRange(bounds[i], bounds[i + 1])));
+    return dst;
+  }
+
+  private static void execute(int nbTiles, IntConsumer task) {
+    // The first tile is processed alone, it initializes the data shared by the tiles (e.g. LUTs)
+    task.accept(0);
+
+    AtomicInteger next = new AtomicInteger(1);
+    Runnable worker =
+        () -> {
+          boolean nested = TILE_WORKER.get();
+          TILE_WORKER.set(true);
+          try {
+            int i;
+            while ((i = next.getAndIncrement()) < nbTiles) {
+              task.accept(i);
+            }
+          } finally {
+            TILE_WORKER.set(nested);
+          }
+        };
+
+    List<Future<?>> futures = new ArrayList<>();
+    ExecutorService service = getExecutor();
+    for (int i = 1; i < Math.min(nbThreads, nbTiles - 1); i++) {
+      futures.add(service.submit(worker));
+    }
+    // The calling thread also processes the tiles
+    worker.run();
+
+    try {
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } catch (InterruptedException e) {
+      next.set(nbTiles);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Tile processing interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Tile processing", cause);
+    }
+  }
+}
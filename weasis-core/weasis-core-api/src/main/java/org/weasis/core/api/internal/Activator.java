@@ -11,8 +11,10 @@ package org.weasis.core.api.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import javax.management.ObjectName;
 import org.apache.felix.prefs.BackingStore;
 import org.osgi.annotation.bundle.Header;
 import org.osgi.framework.BundleActivator;
@@ -27,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.media.data.Codec;
+import org.weasis.core.api.media.data.NativeMemoryGovernor;
 import org.weasis.core.api.service.AuditLog;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.util.LangUtil;
@@ -53,11 +56,29 @@ public class Activator implements BundleActivator, ServiceListener {
     }
 
     initLoggerAndAudit(bundleContext);
+
+    try {
+      // Next to the MBean of the main window registered by the launcher
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(
+              NativeMemoryGovernor.getInstance(),
+              new ObjectName(NativeMemoryGovernor.OBJECT_NAME));
+    } catch (Exception e) {
+      LOGGER.error("Cannot register the native memory MBean", e);
+    }
   }
 
   @Override
   public void stop(BundleContext bundleContext) throws Exception {
     BundleTools.saveSystemPreferences();
+    try {
+      ObjectName name = new ObjectName(NativeMemoryGovernor.OBJECT_NAME);
+      if (ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      }
+    } catch (Exception e) {
+      LOGGER.error("Cannot unregister the native memory MBean", e);
+    }
   }
 
   @Override
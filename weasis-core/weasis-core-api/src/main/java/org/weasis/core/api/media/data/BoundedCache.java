@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.weasis.core.api.service.BundleTools;
+
+/**
+ * Thread-safe LRU cache bounded by the total size of its values. Unlike {@link SoftHashMap}, the
+ * entries are evicted only when the budget is exceeded and not at each garbage collection.
+ *
+ * <p>The size of a value is computed once when it is added. The hooks are called outside of the
+ * lock of the cache.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public abstract class BoundedCache<K, V> extends AbstractMap<K, V> {
+
+  private final String name;
+  private final long maxSize;
+  private final Map<K, Node<V>> hash = new LinkedHashMap<>(64, 0.75f, true);
+  private long usedSize;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * @param name the name of the cache (for the logs)
+   * @param maxSize the maximum of the sum of the sizes of the values
+   */
+  protected BoundedCache(String name, long maxSize) {
+    this.name = name;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param value the value to add in the cache
+   * @return the estimated size of the value (usually in bytes)
+   */
+  protected abstract long sizeOf(V value);
+
+  /**
+   * Called when an entry is evicted or removed.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   */
+  protected void afterEntryRemove(K key, V value) {}
+
+  @Override
+  public V get(Object key) {
+    Node<V> node;
+    synchronized (hash) {
+      node = hash.get(key);
+    }
+    if (node == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return node.value;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    if (value == null) {
+      return remove(key);
+    }
+    Node<V> node = new Node<>(value, Math.max(0L, sizeOf(value)));
+    List<Map.Entry<K, V>> evicted = new ArrayList<>();
+    Node<V> old;
+    synchronized (hash) {
+      old = hash.put(key, node);
+      usedSize += node.size - (old == null ? 0L : old.size);
+      // Keep at least the last added value
+      Iterator<Map.Entry<K, Node<V>>> it = hash.entrySet().iterator();
+      while (usedSize > maxSize && hash.size() > 1 && it.hasNext()) {
+        Map.Entry<K, Node<V>> e = it.next();
+        if (e.getValue() != node) {
+          it.remove();
+          usedSize -= e.getValue().size;
+          evicted.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue().value));
+        }
+      }
+    }
+    evictionCount.addAndGet(evicted.size());
+    for (Map.Entry<K, V> e : evicted) {
+      afterEntryRemove(e.getKey(), e.getValue());
+    }
+    return old == null ? null : old.value;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V remove(Object key) {
+    Node<V> node;
+    synchronized (hash) {
+      node = hash.remove(key);
+      if (node != null) {
+        usedSize -= node.size;
+      }
+    }
+    if (node == null) {
+      return null;
+    }
+    afterEntryRemove((K) key, node.value);
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    synchronized (hash) {
+      hash.clear();
+      usedSize = 0L;
+    }
+  }
+
+  @Override
+  public int size() {
+    synchronized (hash) {
+      return hash.size();
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    synchronized (hash) {
+      return hash.containsKey(key);
+    }
+  }
+
+  /** Returns a copy of the entries at the point of calling, from the least recently used. */
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    Set<Entry<K, V>> result = new LinkedHashSet<>();
+    synchronized (hash) {
+      for (Map.Entry<K, Node<V>> e : hash.entrySet()) {
+        result.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue().value));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(this);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getUsedSize() {
+    synchronized (hash) {
+      return usedSize;
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d entries, %d/%d, hits: %d, misses: %d, evictions: %d", // NON-NLS
+        name,
+        size(),
+        getUsedSize(),
+        maxSize,
+        getHitCount(),
+        getMissCount(),
+        getEvictionCount());
+  }
+
+  /**
+   * @param property the name of the property giving the maximum size in MB
+   * @param defaultSize the maximum size in bytes when the property is not set
+   * @return the maximum size of a cache in bytes
+   */
+  public static long getMaxSizeProperty(String property, long defaultSize) {
+    long size = BundleTools.SYSTEM_PREFERENCES.getLongProperty(property, 0L);
+    return size > 0 ? size * 1024L * 1024L : defaultSize;
+  }
+
+  private static class Node<V> {
+    private final V value;
+    private final long size;
+
+    Node(V value, long size) {
+      this.value = value;
+      this.size = size;
+    }
+  }
+}
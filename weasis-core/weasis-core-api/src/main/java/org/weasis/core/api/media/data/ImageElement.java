@@ -41,8 +41,10 @@ public class ImageElement extends MediaElement {
   public static final ExecutorService IMAGE_LOADER =
       ThreadUtil.buildNewSingleThreadExecutor("Image Loader"); // NON-NLS
 
+  // Only limited by the native memory budget of the governor
   private static final NativeCache<ImageElement, PlanarImage> mCache =
-      new NativeCache<ImageElement, PlanarImage>(Runtime.getRuntime().maxMemory() / 2) {
+      new NativeCache<ImageElement, PlanarImage>(
+          "Images", NativeMemoryGovernor.PRIORITY_NORMAL, Long.MAX_VALUE) { // NON-NLS
 
         @Override
         protected void afterEntryRemove(ImageElement key, PlanarImage img) {
@@ -71,6 +73,10 @@ public class ImageElement extends MediaElement {
   protected Double minPixelValue;
   protected Double maxPixelValue;
 
+  private final Object tiledLock = new Object();
+  private boolean tiledChecked = false;
+  private TiledImage tiledImage;
+
   public ImageElement(MediaReader mediaIO, Object key) {
     super(mediaIO, key);
   }
@@ -242,11 +248,10 @@ public class ImageElement extends MediaElement {
       unit = Unit.PIXEL;
     }
 
-    double unitRatio;
-    if (unit.equals(Unit.PIXEL)) {
-      unitRatio = 1.0;
-    } else {
-      unitRatio = getPixelSize() * unit.getConversionRatio(pixelSpacingUnit.getConvFactor());
+    // The measurements are done on the overview when the image is tiled
+    double unitRatio = getImageDownsampling();
+    if (!unit.equals(Unit.PIXEL)) {
+      unitRatio *= getPixelSize() * unit.getConversionRatio(pixelSpacingUnit.getConvFactor());
     }
     int offsetx = offset == null ? 0 : -offset.x;
     int offsety = offset == null ? 0 : -offset.y;
@@ -254,7 +259,7 @@ public class ImageElement extends MediaElement {
   }
 
   public boolean isImageInCache() {
-    return mCache.get(this) != null;
+    return mCache.containsKey(this);
   }
 
   public void removeImageFromCache() {
@@ -277,9 +282,45 @@ public class ImageElement extends MediaElement {
 
   /** Loads the original image. Must load and return the original image. */
   protected PlanarImage loadImage() throws Exception {
+    TiledImage tiled = getTiledImage();
+    if (tiled != null) {
+      return tiled.getOverview();
+    }
     return mediaIO.getImageFragment(this);
   }
 
+  /**
+   * Returns the tiled representation of a large image. In this case, the image returned by {@link
+   * #getImage()} is the overview of the pyramid, see {@link #getImageDownsampling()}.
+   *
+   * @return the tiled image or null when the image is decoded in one piece
+   */
+  public TiledImage getTiledImage() {
+    synchronized (tiledLock) {
+      if (!tiledChecked) {
+        tiledChecked = true;
+        if (mediaIO instanceof TiledMediaReader) {
+          TiledMediaReader reader = (TiledMediaReader) mediaIO;
+          TilePyramid pyramid = reader.getTilePyramid(this);
+          if (pyramid != null) {
+            tiledImage = new TiledImage(this, reader, pyramid);
+            LOGGER.info("Display tiled image {}: {}", this, pyramid);
+          }
+        }
+      }
+      return tiledImage;
+    }
+  }
+
+  /**
+   * @return the number of full resolution pixels in one pixel of the image returned by {@link
+   *     #getImage()} (by dimension), greater than 1 only for the overview of a tiled image
+   */
+  public double getImageDownsampling() {
+    TiledImage tiled = getTiledImage();
+    return tiled == null ? 1.0 : tiled.getOverviewDownsampling();
+  }
+
   public PlanarImage getRenderedImage(final PlanarImage imageSource) {
     return getRenderedImage(imageSource, null);
   }
@@ -452,6 +493,11 @@ public class ImageElement extends MediaElement {
   public void dispose() {
     // Let the soft reference mechanism dispose the display image
     super.dispose();
+    synchronized (tiledLock) {
+      if (tiledImage != null) {
+        tiledImage.dispose();
+      }
+    }
   }
 
   class Load implements Callable<PlanarImage> {
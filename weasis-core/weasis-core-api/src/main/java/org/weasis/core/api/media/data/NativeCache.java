@@ -12,6 +12,7 @@ package org.weasis.core.api.media.data;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,50 +20,90 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import org.weasis.opencv.data.PlanarImage;
 
-public abstract class NativeCache<K, V extends PlanarImage> extends AbstractMap<K, V> {
+/**
+ * LRU cache of images bounded by the native memory of the images. The cache is registered in the
+ * {@link NativeMemoryGovernor}, which evicts its entries when the total native memory exceeds the
+ * global budget.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of images
+ */
+public abstract class NativeCache<K, V extends PlanarImage> extends AbstractMap<K, V>
+    implements NativeMemoryGovernor.EvictableMemory {
 
   protected final Map<K, V> hash;
+  private final String name;
+  private final int priority;
   private final long maxNativeMemory;
-  private AtomicLong useNativeMemory;
-
-  public NativeCache(long maxNativeMemory) {
+  private final AtomicLong useNativeMemory;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * @param name the name of the cache (for the metrics)
+   * @param priority the priority of eviction (see {@link NativeMemoryGovernor#PRIORITY_NORMAL})
+   * @param maxNativeMemory the maximum native memory of this cache, also limited by the budget of
+   *     the governor
+   */
+  public NativeCache(String name, int priority, long maxNativeMemory) {
+    this.name = name;
+    this.priority = priority;
     this.maxNativeMemory = maxNativeMemory;
     this.useNativeMemory = new AtomicLong(0);
     this.hash = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true));
+    NativeMemoryGovernor.getInstance().register(this);
   }
 
   @Override
   public V get(Object key) {
-    return hash.get(key);
+    V val = hash.get(key);
+    if (val == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return val;
+  }
+
+  public long getMaxNativeMemory() {
+    return Math.min(maxNativeMemory, NativeMemoryGovernor.getInstance().getMaxBytes());
   }
 
   public boolean isMemoryAvailable() {
-    return useNativeMemory.get() < maxNativeMemory;
+    return useNativeMemory.get() < getMaxNativeMemory();
   }
 
   public void expungeStaleEntries() {
-    if (!isMemoryAvailable()) {
-      synchronized (hash) {
-        List<K> remKeys = new ArrayList<>();
-        // 5% of max memory + diff
-        long maxfreeSize = maxNativeMemory / 20 + (useNativeMemory.get() - maxNativeMemory);
-        long freeSize = 0;
-
-        for (Map.Entry<K, V> e : hash.entrySet()) {
-          freeSize += physicalBytes(e.getValue());
-          if (freeSize > maxfreeSize) {
-            break;
-          }
-          remKeys.add(e.getKey());
-        }
-
-        for (K key : remKeys) {
-          V val = hash.remove(key);
-          useNativeMemory.addAndGet(-physicalBytes(val));
-          afterEntryRemove(key, val);
-        }
+    long max = getMaxNativeMemory();
+    long used = useNativeMemory.get();
+    if (used >= max) {
+      // 5% of max memory + diff
+      evict(max / 20 + (used - max));
+    }
+  }
+
+  @Override
+  public long evict(long bytes) {
+    List<Map.Entry<K, V>> removed = new ArrayList<>();
+    long freeSize = 0;
+    synchronized (hash) {
+      Iterator<Map.Entry<K, V>> it = hash.entrySet().iterator();
+      while (freeSize < bytes && it.hasNext()) {
+        Map.Entry<K, V> e = it.next();
+        it.remove();
+        freeSize += physicalBytes(e.getValue());
+        removed.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue()));
       }
     }
+    useNativeMemory.addAndGet(-freeSize);
+    evictionCount.addAndGet(removed.size());
+    // The hooks are called outside of the lock, they can access to other caches
+    for (Map.Entry<K, V> e : removed) {
+      afterEntryRemove(e.getKey(), e.getValue());
+    }
+    return freeSize;
   }
 
   private long physicalBytes(V val) {
@@ -76,9 +117,11 @@ public abstract class NativeCache<K, V extends PlanarImage> extends AbstractMap<
 
   @Override
   public V put(K key, V value) {
+    long size = physicalBytes(value);
     expungeStaleEntries();
+    NativeMemoryGovernor.getInstance().makeRoom(size);
     V result = hash.put(key, value);
-    useNativeMemory.addAndGet(physicalBytes(value));
+    useNativeMemory.addAndGet(size);
     useNativeMemory.addAndGet(-physicalBytes(result));
     return result;
   }
@@ -132,4 +175,34 @@ public abstract class NativeCache<K, V extends PlanarImage> extends AbstractMap<
     NativeCache other = (NativeCache) obj;
     return hash.equals(other.hash);
   }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getPriority() {
+    return priority;
+  }
+
+  @Override
+  public long getUsedNativeMemory() {
+    return useNativeMemory.get();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
 }
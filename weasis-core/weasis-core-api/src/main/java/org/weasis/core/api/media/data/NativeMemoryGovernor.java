@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares one native memory budget between the caches of images ({@link NativeCache}) and the
+ * temporary buffers (e.g. the images of a MPR or a MIP series being built). When the budget is
+ * exceeded, the least recently used entries of the caches with the lowest priority are evicted
+ * first. The temporary buffers are reserved and never evicted.
+ *
+ * <p>The metrics are available through JMX with the name {@link #OBJECT_NAME}.
+ */
+public final class NativeMemoryGovernor implements NativeMemoryGovernorMBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(NativeMemoryGovernor.class);
+
+  /** Native memory budget (in MB) */
+  public static final String NATIVE_MEMORY_SIZE = "weasis.native.memory.size"; // NON-NLS
+
+  public static final String OBJECT_NAME = "weasis:name=NativeMemory"; // NON-NLS
+
+  /** Priority of the data which can be recomputed quickly (evicted first) */
+  public static final int PRIORITY_LOW = 0;
+  /** Priority of the images */
+  public static final int PRIORITY_NORMAL = 5;
+  /** Priority of the small data which are always displayed (evicted last) */
+  public static final int PRIORITY_HIGH = 10;
+
+  private static final long MIN_BUDGET = 256L * 1024L * 1024L;
+
+  private static final NativeMemoryGovernor instance = new NativeMemoryGovernor(getDefaultSize());
+
+  private final List<EvictableMemory> caches = new CopyOnWriteArrayList<>();
+  private final Map<String, AtomicLong> reservations = new ConcurrentHashMap<>();
+  private final AtomicLong overBudgetCount = new AtomicLong();
+  private volatile long maxBytes;
+
+  NativeMemoryGovernor(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public static NativeMemoryGovernor getInstance() {
+    return instance;
+  }
+
+  /** Native memory of the cache of values which can be evicted by the governor. */
+  public interface EvictableMemory {
+
+    String getName();
+
+    /** @return the priority, the caches with the lowest priority are evicted first */
+    int getPriority();
+
+    /** @return the native memory used by the cache (in bytes) */
+    long getUsedNativeMemory();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * Removes the least recently used values.
+     *
+     * @param bytes the amount of native memory to free
+     * @return the amount of native memory freed
+     */
+    long evict(long bytes);
+  }
+
+  /**
+   * The budget is the property {@link #NATIVE_MEMORY_SIZE} or, by default, the half of the
+   * physical memory not used by the Java heap.
+   */
+  private static long getDefaultSize() {
+    long heap = Runtime.getRuntime().maxMemory();
+    long physical = getTotalPhysicalMemory();
+    long defaultSize = physical > heap ? Math.max(MIN_BUDGET, (physical - heap) / 2) : heap / 2;
+    return BoundedCache.getMaxSizeProperty(NATIVE_MEMORY_SIZE, defaultSize);
+  }
+
+  private static long getTotalPhysicalMemory() {
+    try {
+      Object size =
+          ManagementFactory.getPlatformMBeanServer()
+              .getAttribute(
+                  new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME),
+                  "TotalPhysicalMemorySize"); // NON-NLS
+      if (size instanceof Long) {
+        return (Long) size;
+      }
+    } catch (Exception e) {
+      LOGGER.debug("Cannot get the size of the physical memory", e);
+    }
+    return 0L;
+  }
+
+  // Compare the instances, a cache can be a map with equals() based on the content
+  public synchronized void register(EvictableMemory cache) {
+    if (cache != null && caches.stream().noneMatch(c -> c == cache)) {
+      caches.add(cache);
+    }
+  }
+
+  public synchronized void unregister(EvictableMemory cache) {
+    caches.removeIf(c -> c == cache);
+  }
+
+  /**
+   * Evicts values from the caches when adding the amount of native memory exceeds the budget.
+   *
+   * @param bytes the amount of native memory to add
+   */
+  public void makeRoom(long bytes) {
+    long max = maxBytes;
+    long excess = getUsedBytes() + bytes - max;
+    if (excess > 0) {
+      overBudgetCount.incrementAndGet();
+      // 5% of the budget + diff, to avoid evicting at each new value
+      evict(excess + max / 20);
+    }
+  }
+
+  private long evict(long bytes) {
+    List<EvictableMemory> list = new ArrayList<>(caches);
+    // Stable sort: with the same priority, the first registered cache is evicted first
+    list.sort(Comparator.comparingInt(EvictableMemory::getPriority));
+    long freed = 0L;
+    for (EvictableMemory cache : list) {
+      if (freed >= bytes) {
+        break;
+      }
+      freed += cache.evict(bytes - freed);
+    }
+    if (freed < bytes) {
+      LOGGER.debug("Native memory budget exceeded by {} bytes", bytes - freed);
+    }
+    return freed;
+  }
+
+  /**
+   * Reserves native memory for a temporary buffer. The memory must be given back with {@link
+   * #release(String, long)}.
+   *
+   * @param consumer the name of the consumer (for the metrics)
+   * @param bytes the amount of native memory
+   */
+  public void reserve(String consumer, long bytes) {
+    if (bytes > 0) {
+      makeRoom(bytes);
+      reservations.computeIfAbsent(consumer, k -> new AtomicLong()).addAndGet(bytes);
+    }
+  }
+
+  /**
+   * @param consumer the name of the consumer
+   * @param bytes the amount of native memory previously reserved
+   */
+  public void release(String consumer, long bytes) {
+    AtomicLong val = reservations.get(consumer);
+    if (val != null && bytes > 0) {
+      val.addAndGet(-bytes);
+    }
+  }
+
+  @Override
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @Override
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = Math.max(0L, maxBytes);
+    makeRoom(0L);
+  }
+
+  @Override
+  public long getUsedBytes() {
+    long used = getReservedBytes();
+    for (EvictableMemory cache : caches) {
+      used += cache.getUsedNativeMemory();
+    }
+    return used;
+  }
+
+  @Override
+  public long getReservedBytes() {
+    long reserved = 0L;
+    for (AtomicLong val : reservations.values()) {
+      reserved += val.get();
+    }
+    return reserved;
+  }
+
+  @Override
+  public long getHitCount() {
+    return caches.stream().mapToLong(EvictableMemory::getHitCount).sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return caches.stream().mapToLong(EvictableMemory::getMissCount).sum();
+  }
+
+  @Override
+  public double getHitRate() {
+    return getHitRate(getHitCount(), getMissCount());
+  }
+
+  private static double getHitRate(long hits, long misses) {
+    long total = hits + misses;
+    return total == 0L ? 0.0 : (double) hits / total;
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return caches.stream().mapToLong(EvictableMemory::getEvictionCount).sum();
+  }
+
+  @Override
+  public long getOverBudgetCount() {
+    return overBudgetCount.get();
+  }
+
+  @Override
+  public String[] getCaches() {
+    return caches.stream()
+        .map(
+            c ->
+                String.format(
+                    "%s (priority %d): %d bytes, hit rate: %.3f, evictions: %d", // NON-NLS
+                    c.getName(),
+                    c.getPriority(),
+                    c.getUsedNativeMemory(),
+                    getHitRate(c.getHitCount(), c.getMissCount()),
+                    c.getEvictionCount()))
+        .toArray(String[]::new);
+  }
+
+  @Override
+  public String[] getReservations() {
+    return reservations.entrySet().stream()
+        .map(e -> String.format("%s: %d bytes", e.getKey(), e.getValue().get())) // NON-NLS
+        .toArray(String[]::new);
+  }
+}
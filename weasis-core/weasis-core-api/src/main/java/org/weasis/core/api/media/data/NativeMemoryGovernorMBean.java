@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+/** Metrics of the native memory used by the images, the sizes are in bytes. */
+public interface NativeMemoryGovernorMBean {
+
+  long getMaxBytes();
+
+  /** Changes the budget at runtime, the caches are evicted immediately when it is exceeded. */
+  void setMaxBytes(long maxBytes);
+
+  /** @return the memory used by the caches and the reservations */
+  long getUsedBytes();
+
+  /** @return the memory reserved by the temporary buffers */
+  long getReservedBytes();
+
+  long getHitCount();
+
+  long getMissCount();
+
+  double getHitRate();
+
+  long getEvictionCount();
+
+  /** @return the number of times the budget was exceeded */
+  long getOverBudgetCount();
+
+  /** @return the metrics of each cache */
+  String[] getCaches();
+
+  /** @return the memory reserved by each consumer */
+  String[] getReservations();
+}
@@ -65,7 +65,8 @@ public class Thumbnail extends JLabel implements Thumbnailable {
   public static final int MAX_SIZE = 256;
 
   private static final NativeCache<Thumbnail, PlanarImage> mCache =
-      new NativeCache<Thumbnail, PlanarImage>(30_000_000) {
+      new NativeCache<Thumbnail, PlanarImage>(
+          "Thumbnails", NativeMemoryGovernor.PRIORITY_HIGH, 30_000_000) { // NON-NLS
 
         @Override
         protected void afterEntryRemove(Thumbnail key, PlanarImage img) {
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.util.Objects;
+
+/** Identifies a tile of a resolution level of a tiled image. */
+public class TileKey {
+
+  private final ImageElement image;
+  private final int level;
+  private final int x;
+  private final int y;
+
+  public TileKey(ImageElement image, int level, int x, int y) {
+    this.image = Objects.requireNonNull(image);
+    this.level = level;
+    this.x = x;
+    this.y = y;
+  }
+
+  public ImageElement getImage() {
+    return image;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /** @return the column index of the tile */
+  public int getX() {
+    return x;
+  }
+
+  /** @return the row index of the tile */
+  public int getY() {
+    return y;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TileKey tileKey = (TileKey) o;
+    return level == tileKey.level && x == tileKey.x && y == tileKey.y && image == tileKey.image;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(System.identityHashCode(image), level, x, y);
+  }
+
+  @Override
+  public String toString() {
+    return image + " level:" + level + " tile:" + x + "," + y; // NON-NLS
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.awt.Rectangle;
+
+/**
+ * Describes the resolution levels of a tiled image. The level 0 is the full resolution and each
+ * next level is downsampled by a factor of two, until the whole image fits in one tile. All the
+ * levels share the same tile size.
+ */
+public class TilePyramid {
+
+  private final int width;
+  private final int height;
+  private final int tileWidth;
+  private final int tileHeight;
+  private final int levelCount;
+
+  public TilePyramid(int width, int height, int tileWidth, int tileHeight) {
+    if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0) {
+      throw new IllegalArgumentException("Invalid image or tile size");
+    }
+    this.width = width;
+    this.height = height;
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    int level = 0;
+    while (getLevelWidth(level) > tileWidth || getLevelHeight(level) > tileHeight) {
+      level++;
+    }
+    this.levelCount = level + 1;
+  }
+
+  /** @return the width of the full resolution image */
+  public int getWidth() {
+    return width;
+  }
+
+  /** @return the height of the full resolution image */
+  public int getHeight() {
+    return height;
+  }
+
+  public int getTileWidth() {
+    return tileWidth;
+  }
+
+  public int getTileHeight() {
+    return tileHeight;
+  }
+
+  public int getLevelCount() {
+    return levelCount;
+  }
+
+  public int getLevelWidth(int level) {
+    return (int) ((width + (1L << level) - 1) >> level);
+  }
+
+  public int getLevelHeight(int level) {
+    return (int) ((height + (1L << level) - 1) >> level);
+  }
+
+  public int getTileColumns(int level) {
+    return (getLevelWidth(level) + tileWidth - 1) / tileWidth;
+  }
+
+  public int getTileRows(int level) {
+    return (getLevelHeight(level) + tileHeight - 1) / tileHeight;
+  }
+
+  /**
+   * @param level the resolution level
+   * @param tileX the column index of the tile
+   * @param tileY the row index of the tile
+   * @return the bounds of the tile in the coordinates of the level (smaller at the right and the
+   *     bottom borders)
+   */
+  public Rectangle getTileBounds(int level, int tileX, int tileY) {
+    int x = tileX * tileWidth;
+    int y = tileY * tileHeight;
+    return new Rectangle(
+        x,
+        y,
+        Math.min(tileWidth, getLevelWidth(level) - x),
+        Math.min(tileHeight, getLevelHeight(level) - y));
+  }
+
+  public Rectangle getLevelBounds(int level) {
+    return new Rectangle(0, 0, getLevelWidth(level), getLevelHeight(level));
+  }
+
+  @Override
+  public String toString() {
+    return width + "x" + height + " tiles:" + tileWidth + "x" + tileHeight; // NON-NLS
+  }
+}
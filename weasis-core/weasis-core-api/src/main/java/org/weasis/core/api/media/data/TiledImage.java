@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Decodes a large image by tiles. The image is represented by an overview (a downsampled level of
+ * the pyramid) and the tiles of the higher resolution levels are decoded on demand, only for the
+ * area which is displayed. The tiles are shared in a cache limited by a native memory budget.
+ */
+public class TiledImage {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TiledImage.class);
+
+  /** Maximum size of the tile cache (in MB) */
+  public static final String TILE_CACHE_SIZE = "weasis.tile.cache.size"; // NON-NLS
+  /** Maximum size of the overview image (in MB) */
+  public static final String OVERVIEW_MEMORY = "weasis.tile.overview.memory"; // NON-NLS
+
+  // Estimation for the images with 4 bytes per pixel (e.g. RGBA or 32-bit)
+  private static final int OVERVIEW_BYTES_PER_PIXEL = 4;
+
+  private static final ExecutorService TILE_LOADER =
+      ThreadUtil.buildNewFixedThreadExecutor(2, "Tile Loader"); // NON-NLS
+
+  private static final NativeCache<TileKey, PlanarImage> TILE_CACHE =
+      new NativeCache<TileKey, PlanarImage>(
+          "Tiles", NativeMemoryGovernor.PRIORITY_LOW, getCacheSize()) { // NON-NLS
+
+        @Override
+        protected void afterEntryRemove(TileKey key, PlanarImage img) {
+          if (img != null) {
+            img.release();
+          }
+        }
+      };
+
+  private static final Set<TileKey> PENDING_TILES = ConcurrentHashMap.newKeySet();
+
+  private final ImageElement image;
+  private final TiledMediaReader reader;
+  private final TilePyramid pyramid;
+  private final int overviewLevel;
+  private volatile Set<TileKey> visibleTiles = Collections.emptySet();
+
+  public TiledImage(ImageElement image, TiledMediaReader reader, TilePyramid pyramid) {
+    this.image = Objects.requireNonNull(image);
+    this.reader = Objects.requireNonNull(reader);
+    this.pyramid = Objects.requireNonNull(pyramid);
+    this.overviewLevel = getOverviewLevel(pyramid, getOverviewMemory());
+  }
+
+  private static long getOverviewMemory() {
+    return Math.max(1L, BundleTools.SYSTEM_PREFERENCES.getLongProperty(OVERVIEW_MEMORY, 64L)) << 20;
+  }
+
+  /**
+   * @param pyramid the pyramid of the image
+   * @param maxBytes the memory budget of the overview
+   * @return the highest resolution level which fits in the memory budget
+   */
+  static int getOverviewLevel(TilePyramid pyramid, long maxBytes) {
+    int level = 0;
+    while (level < pyramid.getLevelCount() - 1
+        && (long) pyramid.getLevelWidth(level)
+                * pyramid.getLevelHeight(level)
+                * OVERVIEW_BYTES_PER_PIXEL
+            > maxBytes) {
+      level++;
+    }
+    return level;
+  }
+
+  private static long getCacheSize() {
+    long size = BundleTools.SYSTEM_PREFERENCES.getLongProperty(TILE_CACHE_SIZE, 0L);
+    return size > 0 ? size * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 4;
+  }
+
+  public TilePyramid getPyramid() {
+    return pyramid;
+  }
+
+  public int getOverviewLevel() {
+    return overviewLevel;
+  }
+
+  /** @return the number of full resolution pixels in one pixel of the overview (by dimension) */
+  public double getOverviewDownsampling() {
+    return 1 << overviewLevel;
+  }
+
+  /**
+   * Decodes the overview from the lower resolution source of the reader, otherwise tile by tile.
+   * The full resolution image is never loaded in memory.
+   *
+   * @return the overview image
+   * @throws Exception if the tiles cannot be decoded
+   */
+  public PlanarImage getOverview() throws Exception {
+    PlanarImage img = reader.getOverview(image, pyramid, overviewLevel);
+    if (img != null) {
+      return img;
+    }
+    return readRegion(overviewLevel, pyramid.getLevelBounds(overviewLevel));
+  }
+
+  /**
+   * @param scale the scale between the overview and the view
+   * @return the level having enough resolution for this scale, or the overview level
+   */
+  public int getBestLevel(double scale) {
+    int level = overviewLevel;
+    double s = scale;
+    while (level > 0 && s > 1.0) {
+      level--;
+      s /= 2.0;
+    }
+    return level;
+  }
+
+  /**
+   * @param level the resolution level
+   * @param area an area in the coordinates of the overview
+   * @return the area in the coordinates of the level, clipped to the image bounds
+   */
+  public Rectangle getLevelArea(int level, Rectangle2D area) {
+    double f = (double) (1 << overviewLevel) / (1 << level);
+    int x = (int) Math.floor(area.getX() * f) - 1;
+    int y = (int) Math.floor(area.getY() * f) - 1;
+    int x2 = (int) Math.ceil(area.getMaxX() * f) + 1;
+    int y2 = (int) Math.ceil(area.getMaxY() * f) + 1;
+    return new Rectangle(x, y, x2 - x, y2 - y).intersection(pyramid.getLevelBounds(level));
+  }
+
+  /**
+   * Builds the image of an area from the tiles in cache. The missing tiles are loaded in background
+   * and the area is filled meanwhile with the overview.
+   *
+   * @param level the resolution level
+   * @param area the area in the coordinates of the level
+   * @param overview the overview image
+   * @param tileLoaded called from a background thread each time a missing tile is available
+   * @return the image of the area
+   */
+  public PlanarImage getRegion(
+      int level, Rectangle area, PlanarImage overview, Runnable tileLoaded) {
+    ImageCV dst = new ImageCV(area.height, area.width, overview.type());
+    fillWithOverview(dst, level, area, overview);
+
+    List<TileKey> missingTiles = new ArrayList<>();
+    Set<TileKey> visible = new HashSet<>();
+    int tw = pyramid.getTileWidth();
+    int th = pyramid.getTileHeight();
+    for (int r = area.y / th; r <= (area.y + area.height - 1) / th; r++) {
+      for (int c = area.x / tw; c <= (area.x + area.width - 1) / tw; c++) {
+        TileKey key = new TileKey(image, level, c, r);
+        visible.add(key);
+        synchronized (TILE_CACHE) {
+          PlanarImage tile = TILE_CACHE.get(key);
+          if (tile != null) {
+            copyTile(tile, pyramid.getTileBounds(level, c, r), dst, area);
+            continue;
+          }
+        }
+        missingTiles.add(key);
+      }
+    }
+    // The tiles which are not visible anymore are not loaded (e.g. fast panning)
+    this.visibleTiles = visible;
+    for (TileKey key : missingTiles) {
+      if (PENDING_TILES.add(key)) {
+        TILE_LOADER.execute(() -> loadTile(key, tileLoaded));
+      }
+    }
+    return dst;
+  }
+
+  private void fillWithOverview(ImageCV dst, int level, Rectangle area, PlanarImage overview) {
+    int scale = 1 << (overviewLevel - level);
+    int x = area.x / scale;
+    int y = area.y / scale;
+    int x2 = Math.min(overview.width(), (area.x + area.width + scale - 1) / scale);
+    int y2 = Math.min(overview.height(), (area.y + area.height + scale - 1) / scale);
+    if (x2 <= x || y2 <= y) {
+      dst.setTo(Scalar.all(0));
+      return;
+    }
+    Mat crop = overview.toMat().submat(new Rect(x, y, x2 - x, y2 - y));
+    Mat zoom = new Mat();
+    try {
+      Imgproc.resize(
+          crop,
+          zoom,
+          new Size((x2 - x) * (double) scale, (y2 - y) * (double) scale),
+          0,
+          0,
+          Imgproc.INTER_LINEAR);
+      int w = Math.min(area.width, zoom.width() - (area.x - x * scale));
+      int h = Math.min(area.height, zoom.height() - (area.y - y * scale));
+      dst.setTo(Scalar.all(0));
+      zoom.submat(new Rect(area.x - x * scale, area.y - y * scale, w, h))
+          .copyTo(dst.submat(new Rect(0, 0, w, h)));
+    } finally {
+      zoom.release();
+    }
+  }
+
+  private void loadTile(TileKey key, Runnable tileLoaded) {
+    try {
+      if (visibleTiles.contains(key) && !TILE_CACHE.containsKey(key)) {
+        PlanarImage tile = readTile(key);
+        if (tile != null) {
+          synchronized (TILE_CACHE) {
+            TILE_CACHE.put(key, tile);
+          }
+          tileLoaded.run();
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.error("Cannot read the tile: {}", key, e);
+    } finally {
+      PENDING_TILES.remove(key);
+    }
+  }
+
+  private PlanarImage readTile(TileKey key) throws Exception {
+    PlanarImage tile = reader.getTile(image, pyramid, key);
+    if (tile == null && key.getLevel() > 0) {
+      // Build the tile from the upper resolution level
+      Rectangle b = pyramid.getTileBounds(key.getLevel(), key.getX(), key.getY());
+      int upperLevel = key.getLevel() - 1;
+      Rectangle area =
+          new Rectangle(b.x * 2, b.y * 2, b.width * 2, b.height * 2)
+              .intersection(pyramid.getLevelBounds(upperLevel));
+      try (ImageCV region = readRegion(upperLevel, area)) {
+        if (region != null) {
+          return ImageProcessor.scale(region, new Dimension(b.width, b.height), Imgproc.INTER_AREA);
+        }
+      }
+    }
+    return tile;
+  }
+
+  private ImageCV readRegion(int level, Rectangle area) throws Exception {
+    ImageCV dst = null;
+    int tw = pyramid.getTileWidth();
+    int th = pyramid.getTileHeight();
+    for (int r = area.y / th; r <= (area.y + area.height - 1) / th; r++) {
+      for (int c = area.x / tw; c <= (area.x + area.width - 1) / tw; c++) {
+        TileKey key = new TileKey(image, level, c, r);
+        Rectangle bounds = pyramid.getTileBounds(level, c, r);
+        synchronized (TILE_CACHE) {
+          PlanarImage tile = TILE_CACHE.get(key);
+          if (tile != null) {
+            dst = copyTile(tile, bounds, dst, area);
+            continue;
+          }
+        }
+        PlanarImage tile = readTile(key);
+        if (tile != null) {
+          synchronized (TILE_CACHE) {
+            // Copy before putting in cache, the tile may be released when the cache is full
+            dst = copyTile(tile, bounds, dst, area);
+            TILE_CACHE.put(key, tile);
+          }
+        }
+      }
+    }
+    return dst;
+  }
+
+  private static ImageCV copyTile(
+      PlanarImage tile, Rectangle bounds, ImageCV dst, Rectangle area) {
+    ImageCV img = dst;
+    if (img == null) {
+      img = new ImageCV(area.height, area.width, tile.type());
+      img.setTo(Scalar.all(0));
+    }
+    Rectangle r =
+        area.intersection(new Rectangle(bounds.x, bounds.y, tile.width(), tile.height()))
+            .intersection(bounds);
+    if (!r.isEmpty()) {
+      tile.toMat()
+          .submat(new Rect(r.x - bounds.x, r.y - bounds.y, r.width, r.height))
+          .copyTo(img.submat(new Rect(r.x - area.x, r.y - area.y, r.width, r.height)));
+    }
+    return img;
+  }
+
+  /** Removes the tiles of this image from the cache. */
+  public void dispose() {
+    visibleTiles = Collections.emptySet();
+    synchronized (TILE_CACHE) {
+      List<TileKey> keys =
+          TILE_CACHE.keySet().stream()
+              .filter(k -> k.getImage() == image)
+              .collect(Collectors.toList());
+      keys.forEach(TILE_CACHE::remove);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * A reader able to decode an image by tiles, for images too large to be decoded in one piece
+ * (e.g. whole-slide microscopy or huge TIFF).
+ */
+public interface TiledMediaReader extends MediaReader {
+
+  /**
+   * @param media the image
+   * @return the pyramid of the image or null when the image must be decoded in one piece
+   */
+  TilePyramid getTilePyramid(MediaElement media);
+
+  /**
+   * Decodes one tile.
+   *
+   * @param media the image
+   * @param pyramid the pyramid of the image
+   * @param key the tile to decode
+   * @return the tile or null when the resolution level is not available in the source, then the
+   *     tile is built from the upper resolution level
+   * @throws Exception if the tile cannot be decoded
+   */
+  PlanarImage getTile(MediaElement media, TilePyramid pyramid, TileKey key) throws Exception;
+
+  /**
+   * Decodes the overview from a lower resolution source (e.g. another instance of a
+   * multi-resolution series) instead of the tiles of the pyramid.
+   *
+   * @param media the image
+   * @param pyramid the pyramid of the image
+   * @param level the resolution level of the overview
+   * @return the image of the whole level or null when there is no lower resolution source, then the
+   *     overview is built from the tiles
+   * @throws Exception if the image cannot be decoded
+   */
+  default PlanarImage getOverview(MediaElement media, TilePyramid pyramid, int level)
+      throws Exception {
+    return null;
+  }
+}
@@ -9,6 +9,7 @@
  */
 package org.weasis.core.api.util;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -93,6 +94,27 @@ public class GzipManager {
     }
   }
 
+  /**
+   * Gets a stream which uncompresses the data on the fly when they are gzip-compressed, the data
+   * are never loaded entirely in memory.
+   *
+   * @param inputStream the stream to read, compressed or not
+   * @return the uncompressed stream
+   * @throws IOException if the gzip header is not valid
+   */
+  public static InputStream gzipUncompressToStream(InputStream inputStream) throws IOException {
+    BufferedInputStream in = new BufferedInputStream(inputStream, 8192);
+    in.mark(2);
+    int b1 = in.read();
+    int b2 = in.read();
+    in.reset();
+    // GZIP Magic Two-Byte Number: 0x8b1f (35615)
+    if (b1 >= 0 && b2 >= 0 && ((b2 << 8) | b1) == GZIPInputStream.GZIP_MAGIC) {
+      return new GZIPInputStream(in, 8192);
+    }
+    return in;
+  }
+
   public static byte[] gzipUncompressToByte(byte[] bytes) throws IOException {
     if (isGzip(bytes)) {
       try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.image.cv;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.weasis.core.api.gui.util.ActionW;
+import org.weasis.core.api.image.FilterOp;
+import org.weasis.core.api.image.ImageOpNode.Param;
+import org.weasis.core.api.image.PseudoColorOp;
+import org.weasis.core.api.image.WindowOp;
+import org.weasis.core.api.image.op.ByteLut;
+import org.weasis.core.api.image.util.KernelData;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.MediaReader;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+public class TileProcessorTest {
+  // Larger than the default minimum number of pixels of the tiling (4 Mpixels)
+  private static final int WIDTH = 2048;
+  private static final int HEIGHT = 2100;
+
+  private static boolean nativeLoaded;
+
+  @BeforeClass
+  public static void loadNativeLibrary() {
+    try {
+      String dir = System.getProperty("weasis.native.dir");
+      if (dir == null) {
+        System.loadLibrary("opencv_java");
+      } else {
+        System.load(new File(dir, System.mapLibraryName("opencv_java")).getAbsolutePath());
+      }
+      nativeLoaded = true;
+    } catch (UnsatisfiedLinkError e) {
+      nativeLoaded = false;
+    }
+    // Enable the tiling whatever the number of processors
+    BundleTools.SYSTEM_PREFERENCES.putIntProperty(TileProcessor.TILE_THREADS, 4);
+  }
+
+  private static Mat buildImage(int type, double max) {
+    Assume.assumeTrue("OpenCV native library not available", nativeLoaded);
+    Mat img = new Mat(HEIGHT, WIDTH, type);
+    Core.randu(img, 0, max);
+    Assert.assertTrue(TileProcessor.getNumberOfTiles(img) > 1);
+    return img;
+  }
+
+  private static void assertSameImage(Mat expected, PlanarImage actual) {
+    Assert.assertNotNull(actual);
+    Mat result = actual.toMat();
+    Assert.assertEquals(expected.size(), result.size());
+    Assert.assertEquals(expected.type(), result.type());
+    Assert.assertEquals(0.0, Core.norm(expected, result, Core.NORM_INF), 0.0);
+  }
+
+  @Test
+  public void testNumberOfTiles() {
+    Assert.assertEquals(1, TileProcessor.getNumberOfTiles(TileProcessor.MIN_TILE_ROWS - 1, 8));
+    Assert.assertEquals(3, TileProcessor.getNumberOfTiles(TileProcessor.MIN_TILE_ROWS * 3, 8));
+    Assert.assertEquals(32, TileProcessor.getNumberOfTiles(4096, 8));
+    Assert.assertEquals(4, TileProcessor.getNumberOfTiles(4096, 1));
+  }
+
+  @Test
+  public void testTileBounds() {
+    int rows = 1001;
+    int nbTiles = 7;
+    int[] bounds = TileProcessor.getTileBounds(rows, nbTiles);
+    Assert.assertEquals(nbTiles + 1, bounds.length);
+    Assert.assertEquals(0, bounds[0]);
+    Assert.assertEquals(rows, bounds[nbTiles]);
+    for (int i = 0; i < nbTiles; i++) {
+      int height = bounds[i + 1] - bounds[i];
+      // The tiles cover all the rows with nearly the same height
+      Assert.assertTrue(height == rows / nbTiles || height == rows / nbTiles + 1);
+    }
+  }
+
+  @Test
+  public void testWindowOp() throws Exception {
+    Mat source = buildImage(CvType.CV_16UC1, 4096);
+    MediaReader reader =
+        (MediaReader)
+            Proxy.newProxyInstance(
+                MediaReader.class.getClassLoader(),
+                new Class<?>[] {MediaReader.class},
+                (proxy, method, args) -> null);
+    double window = 400.0;
+    double level = 1000.0;
+    WindowOp op = new WindowOp();
+    op.setParam(WindowOp.P_IMAGE_ELEMENT, new ImageElement(reader, 0));
+    op.setParam(ActionW.WINDOW.cmd(), window);
+    op.setParam(ActionW.LEVEL.cmd(), level);
+    op.setParam(Param.INPUT_IMG, ImageCV.toImageCV(source));
+    op.process();
+
+    double slope = 255.0 / window;
+    double yInt = 255.0 - slope * (level + window / 2.0);
+    assertSameImage(
+        ImageProcessor.rescaleToByte(source, slope, yInt).toMat(),
+        (PlanarImage) op.getParam(Param.OUTPUT_IMG));
+  }
+
+  @Test
+  public void testPseudoColorOp() throws Exception {
+    Mat source = buildImage(CvType.CV_8UC1, 256);
+    byte[][] lut = new byte[3][256];
+    for (int i = 0; i < 256; i++) {
+      lut[0][i] = (byte) i;
+      lut[1][i] = (byte) (255 - i);
+      lut[2][i] = (byte) (i * 7);
+    }
+    PseudoColorOp op = new PseudoColorOp();
+    op.setParam(PseudoColorOp.P_LUT, new ByteLut("test", lut));
+    op.setParam(Param.INPUT_IMG, ImageCV.toImageCV(source));
+    op.process();
+
+    assertSameImage(
+        ImageProcessor.applyLUT(source, lut).toMat(),
+        (PlanarImage) op.getParam(Param.OUTPUT_IMG));
+  }
+
+  @Test
+  public void testFilterOp() throws Exception {
+    Mat source = buildImage(CvType.CV_16UC1, 4096);
+    KernelData kernel = KernelData.BLURMORE;
+    FilterOp op = new FilterOp();
+    op.setParam(FilterOp.P_KERNEL_DATA, kernel);
+    op.setParam(Param.INPUT_IMG, ImageCV.toImageCV(source));
+    op.process();
+
+    Mat k = new Mat(kernel.getHeight(), kernel.getWidth(), CvType.CV_32F);
+    k.put(0, 0, kernel.getData());
+    Mat expected = new Mat();
+    Imgproc.filter2D(source, expected, -1, k);
+    assertSameImage(expected, (PlanarImage) op.getParam(Param.OUTPUT_IMG));
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+  private static class StringCache extends BoundedCache<Integer, String> {
+    private final List<Integer> removed = new ArrayList<>();
+
+    StringCache(long maxSize) {
+      super("test", maxSize); // NON-NLS
+    }
+
+    @Override
+    protected long sizeOf(String value) {
+      return value.length();
+    }
+
+    @Override
+    protected void afterEntryRemove(Integer key, String value) {
+      removed.add(key);
+    }
+  }
+
+  @Test
+  public void testEvictLeastRecentlyUsed() {
+    StringCache cache = new StringCache(10);
+    cache.put(1, "aaaa"); // NON-NLS
+    cache.put(2, "bbbb"); // NON-NLS
+    Assert.assertEquals("aaaa", cache.get(1)); // NON-NLS
+    cache.put(3, "cccc"); // NON-NLS
+
+    Assert.assertNull(cache.get(2));
+    Assert.assertEquals("aaaa", cache.get(1)); // NON-NLS
+    Assert.assertEquals("cccc", cache.get(3)); // NON-NLS
+    Assert.assertEquals(8L, cache.getUsedSize());
+    Assert.assertEquals(1L, cache.getEvictionCount());
+    Assert.assertEquals(3L, cache.getHitCount());
+    Assert.assertEquals(1L, cache.getMissCount());
+    Assert.assertEquals(1, cache.removed.size());
+    Assert.assertEquals(Integer.valueOf(2), cache.removed.get(0));
+  }
+
+  @Test
+  public void testKeepValueLargerThanBudget() {
+    StringCache cache = new StringCache(4);
+    cache.put(1, "aa"); // NON-NLS
+    cache.put(2, "bbbbbbbb"); // NON-NLS
+
+    Assert.assertNull(cache.get(1));
+    Assert.assertEquals("bbbbbbbb", cache.get(2)); // NON-NLS
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    StringCache cache = new StringCache(100);
+    cache.put(1, "aa"); // NON-NLS
+    Assert.assertEquals("aa", cache.put(1, "bbbb")); // NON-NLS
+    Assert.assertEquals(4L, cache.getUsedSize());
+    Assert.assertTrue(cache.removed.isEmpty());
+
+    Assert.assertEquals("bbbb", cache.remove(1)); // NON-NLS
+    Assert.assertEquals(0L, cache.getUsedSize());
+    Assert.assertEquals(0L, cache.getEvictionCount());
+    Assert.assertEquals(1, cache.removed.size());
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NativeMemoryGovernorTest {
+
+  private static class Memory implements NativeMemoryGovernor.EvictableMemory {
+    private final String name;
+    private final int priority;
+    private long used;
+    private long evicted;
+
+    Memory(String name, int priority, long used) {
+      this.name = name;
+      this.priority = priority;
+      this.used = used;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getPriority() {
+      return priority;
+    }
+
+    @Override
+    public long getUsedNativeMemory() {
+      return used;
+    }
+
+    @Override
+    public long getHitCount() {
+      return 3;
+    }
+
+    @Override
+    public long getMissCount() {
+      return 1;
+    }
+
+    @Override
+    public long getEvictionCount() {
+      return evicted;
+    }
+
+    @Override
+    public long evict(long bytes) {
+      long freed = Math.min(used, bytes);
+      used -= freed;
+      evicted += freed;
+      return freed;
+    }
+  }
+
+  @Test
+  public void testEvictLowestPriorityFirst() {
+    NativeMemoryGovernor governor = new NativeMemoryGovernor(1000);
+    Memory high = new Memory("high", NativeMemoryGovernor.PRIORITY_HIGH, 300); // NON-NLS
+    Memory low = new Memory("low", NativeMemoryGovernor.PRIORITY_LOW, 300); // NON-NLS
+    Memory normal = new Memory("normal", NativeMemoryGovernor.PRIORITY_NORMAL, 300); // NON-NLS
+    governor.register(high);
+    governor.register(low);
+    governor.register(normal);
+    governor.register(normal);
+    Assert.assertEquals(900L, governor.getUsedBytes());
+
+    governor.makeRoom(100);
+    Assert.assertEquals(0L, governor.getOverBudgetCount());
+
+    // Exceeded by 200 + 5% of the budget
+    governor.makeRoom(300);
+    Assert.assertEquals(1L, governor.getOverBudgetCount());
+    Assert.assertEquals(50L, low.getUsedNativeMemory());
+    Assert.assertEquals(300L, normal.getUsedNativeMemory());
+
+    governor.makeRoom(700);
+    Assert.assertEquals(0L, low.getUsedNativeMemory());
+    Assert.assertEquals(0L, normal.getUsedNativeMemory());
+    Assert.assertEquals(250L, high.getUsedNativeMemory());
+    Assert.assertEquals(3, governor.getCaches().length);
+  }
+
+  @Test
+  public void testReservations() {
+    NativeMemoryGovernor governor = new NativeMemoryGovernor(1000);
+    Memory images = new Memory("images", NativeMemoryGovernor.PRIORITY_NORMAL, 800); // NON-NLS
+    governor.register(images);
+
+    governor.reserve("mpr", 400); // NON-NLS
+    Assert.assertEquals(400L, governor.getReservedBytes());
+    Assert.assertEquals(550L, images.getUsedNativeMemory());
+
+    governor.release("mpr", 400); // NON-NLS
+    Assert.assertEquals(0L, governor.getReservedBytes());
+    Assert.assertEquals(550L, governor.getUsedBytes());
+    Assert.assertEquals(1, governor.getReservations().length);
+  }
+
+  @Test
+  public void testMetrics() {
+    NativeMemoryGovernor governor = new NativeMemoryGovernor(1000);
+    Memory images = new Memory("images", NativeMemoryGovernor.PRIORITY_NORMAL, 800); // NON-NLS
+    governor.register(images);
+    governor.register(new Memory("tiles", NativeMemoryGovernor.PRIORITY_LOW, 0)); // NON-NLS
+    Assert.assertEquals(6L, governor.getHitCount());
+    Assert.assertEquals(2L, governor.getMissCount());
+    Assert.assertEquals(0.75, governor.getHitRate(), 1e-9);
+
+    // A lower budget evicts immediately
+    governor.setMaxBytes(500);
+    Assert.assertEquals(475L, images.getUsedNativeMemory());
+    Assert.assertEquals(325L, governor.getEvictionCount());
+
+    governor.unregister(images);
+    Assert.assertEquals(0L, governor.getUsedBytes());
+  }
+}
@@ -168,7 +168,8 @@ public class CalibrationView extends JPanel {
         Point2D ptA = line.getStartPoint();
         Point2D ptB = line.getEndPoint();
         if (Objects.nonNull(ptA) && Objects.nonNull(ptB)) {
-          jTextFieldLineWidth.setValue(ptA.distance(ptB) * image.getPixelSize());
+          jTextFieldLineWidth.setValue(
+              ptA.distance(ptB) * image.getPixelSize() * image.getImageDownsampling());
         }
       } else {
         GridBagConstraints gbcTextPane = new GridBagConstraints();
@@ -256,7 +257,9 @@ public class CalibrationView extends JPanel {
           if (Objects.isNull(lineLength) || lineLength < 1d) {
             lineLength = 1.0;
           }
-          double newRatio = inputCalibVal.doubleValue() / lineLength;
+          // The line is drawn on the overview when the image is tiled
+          double newRatio =
+              inputCalibVal.doubleValue() / (lineLength * image.getImageDownsampling());
           if ((Objects.nonNull(imgRatio) && MathUtil.isDifferent(newRatio, imgRatio))
               || !Objects.equals(unit, imgUnit)) {
             applyCalibration(newRatio, unit);
@@ -348,7 +348,7 @@ public abstract class DefaultView2d<E extends ImageElement> extends GraphicsPane
           // Handle special case of non square pixel image
           pixelInfo.setPosition(new Point(p.x, p.y));
           pixelInfo.setPixelSpacingUnit(imageElement.getPixelSpacingUnit());
-          pixelInfo.setPixelSize(imageElement.getPixelSize());
+          pixelInfo.setPixelSize(imageElement.getPixelSize() * imageElement.getImageDownsampling());
           double[] c = image.get(p.y, p.x);
           pixelInfo.setPixelValueUnit(imageElement.getPixelValueUnit());
           fillPixelInfo(pixelInfo, imageElement, c);
@@ -698,7 +698,11 @@ public abstract class DefaultView2d<E extends ImageElement> extends GraphicsPane
           if (realFactor > 0.0) {
             Unit imgUnit = img.getPixelSpacingUnit();
             if (!Unit.PIXEL.equals(imgUnit)) {
-              viewScale = imgUnit.getConvFactor() * img.getPixelSize() / realFactor;
+              viewScale =
+                  imgUnit.getConvFactor()
+                      * img.getPixelSize()
+                      * img.getImageDownsampling()
+                      / realFactor;
               viewScale = -adjustViewScale(viewScale);
             }
           }
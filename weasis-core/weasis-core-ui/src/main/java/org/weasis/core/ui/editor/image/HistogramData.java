@@ -257,9 +257,27 @@ public class HistogramData {
     if (selChannels.length == 0) {
       return Collections.emptyList();
     }
-    // Number of histogram bins
-    MatOfInt histSize = new MatOfInt(nbBins);
-    MatOfFloat histRange = new MatOfFloat((float) pixMin, (float) pixMax + 1.0f);
+    List<Mat> channels = getChannels(imageSource, selChannels.length, model);
+
+    if (channels.size() == 1) {
+      return Arrays.asList(computeHistogram(channels, 0, mask, nbBins, pixMin, pixMax));
+    }
+
+    List<Mat> histograms = new ArrayList<>();
+    for (int i = 0; i < selChannels.length; i++) {
+      histograms.add(computeHistogram(channels, selChannels[i], mask, nbBins, pixMin, pixMax));
+    }
+    return histograms;
+  }
+
+  /**
+   * @param imageSource the source image
+   * @param nbChannels the number of channels to compute
+   * @param model the color model of the histograms
+   * @return the image channels (converted into the color model) which can be used for computing
+   *     the histograms
+   */
+  public static List<Mat> getChannels(Mat imageSource, int nbChannels, Model model) {
     Mat img;
     int cvType = CvType.depth(imageSource.type());
     if (cvType == CvType.CV_16S || cvType == CvType.CV_32S) {
@@ -271,7 +289,7 @@ public class HistogramData {
     }
 
     List<Mat> channels = new ArrayList<>();
-    if (selChannels.length == 1) {
+    if (nbChannels == 1) {
       channels.add(img);
     } else {
       if (Model.RGB == model) {
@@ -293,22 +311,47 @@ public class HistogramData {
         Core.split(dstImg, channels);
       }
     }
+    return channels;
+  }
 
+  /**
+   * @param channels the image channels, see {@link #getChannels(Mat, int, Model)}
+   * @param channel the index of the channel
+   * @param mask the mask of the region or null for the whole image
+   * @param nbBins the number of bins
+   * @param pixMin the minimum value of the pixels
+   * @param pixMax the maximum value of the pixels
+   * @return the histogram of the channel
+   */
+  public static Mat computeHistogram(
+      List<Mat> channels, int channel, Mat mask, int nbBins, double pixMin, double pixMax) {
+    // Number of histogram bins
+    MatOfInt histSize = new MatOfInt(nbBins);
+    MatOfFloat histRange = new MatOfFloat((float) pixMin, (float) pixMax + 1.0f);
     Mat msk = mask == null ? new Mat() : mask;
+    Mat hist = new Mat();
+    Imgproc.calcHist(channels, new MatOfInt(channel), msk, hist, histSize, histRange, false);
+    return hist;
+  }
 
-    if (channels.size() == 1) {
-      Mat hist = new Mat();
-      Imgproc.calcHist(channels, new MatOfInt(0), msk, hist, histSize, histRange, false);
-      return Arrays.asList(hist);
+  /**
+   * Re-bins a histogram computed over the same range of values. For integer images, a histogram
+   * with one bin per value gives exactly the histogram which would be computed from the pixels with
+   * the given number of bins.
+   *
+   * @param histogram the source histogram
+   * @param nbBins the number of bins of the new histogram
+   * @return the new histogram
+   */
+  public static float[] rebin(float[] histogram, int nbBins) {
+    if (histogram.length == nbBins) {
+      return histogram.clone();
     }
-
-    List<Mat> histograms = new ArrayList<>();
-    for (int i = 0; i < selChannels.length; i++) {
-      Mat hist = new Mat();
-      Imgproc.calcHist(
-          channels, new MatOfInt(selChannels[i]), msk, hist, histSize, histRange, false);
-      histograms.add(hist);
+    float[] bins = new float[nbBins];
+    long length = histogram.length;
+    for (int i = 0; i < histogram.length; i++) {
+      bins[(int) (i * (long) nbBins / length)] += histogram[i];
     }
-    return histograms;
+    return bins;
   }
 }
@@ -71,7 +71,10 @@ public class HistogramPanel extends JPanel {
   @Override
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
-    if (!(g instanceof Graphics2D) || data.getHistValues() == null || data.getLut() == null) {
+    if (!(g instanceof Graphics2D)
+        || data == null
+        || data.getHistValues() == null
+        || data.getLut() == null) {
       return;
     }
     Graphics2D g2d = (Graphics2D) g;
@@ -326,6 +329,9 @@ public class HistogramPanel extends JPanel {
   }
 
   public void saveHistogramInCSV(File csvOutputFile) {
+    if (data == null) {
+      return;
+    }
     try (PrintWriter pw = new PrintWriter(csvOutputFile)) {
       pw.println("Class,Occurrences"); // NON-NLS
       float[] histValues = data.getHistValues();
@@ -373,6 +379,9 @@ public class HistogramPanel extends JPanel {
     }
 
     private void showPopup(MouseEvent e) {
+      if (data == null) {
+        return;
+      }
       float[] histValues = data.getHistValues();
       float lpos = (e.getX() - SLIDER_X) / xAxisHistoRescaleRatio;
       int i = Math.round(lpos);
@@ -13,16 +13,24 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Shape;
 import java.awt.event.ActionEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
 import java.awt.image.DataBuffer;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.swing.BorderFactory;
@@ -37,6 +45,7 @@ import javax.swing.JPanel;
 import javax.swing.JSpinner;
 import javax.swing.JTable;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingWorker;
 import javax.swing.border.TitledBorder;
 import org.opencv.core.Mat;
 import org.slf4j.Logger;
@@ -49,6 +58,7 @@ import org.weasis.core.api.image.op.ByteLut;
 import org.weasis.core.api.image.util.MeasurableLayer;
 import org.weasis.core.api.image.util.WindLevelParameters;
 import org.weasis.core.api.util.FontTools;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.Messages;
 import org.weasis.core.ui.editor.SeriesViewer;
 import org.weasis.core.ui.editor.SeriesViewerEvent;
@@ -67,11 +77,27 @@ import org.weasis.core.util.StringUtil;
 import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 
+/**
+ * Displays the histograms of the selected image or of the selected graphic. The histograms are
+ * computed in a background thread with one bin per pixel value (limited to {@link #MAX_BINS}),
+ * kept for each image and region, and then re-binned according to the number of bins of the view.
+ * The channels are displayed as soon as they are computed.
+ */
 public class HistogramView extends JComponent
     implements SeriesViewerListener, GraphicSelectionListener {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HistogramView.class);
 
+  /** Maximum number of bins of the cached histograms */
+  static final int MAX_BINS = 65536;
+
+  private static final int MAX_REGIONS_PER_IMAGE = 4;
+  private static final ExecutorService HISTOGRAM_EXECUTOR =
+      ThreadUtil.buildNewSingleThreadExecutor("Histogram"); // NON-NLS
+  // Full histograms by source image (weak reference) and by region
+  private static final Map<PlanarImage, Map<HistogramKey, float[][]>> CACHE =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
   private final JPanel view = new JPanel();
   private final JPanel histView = new JPanel();
   private final SeriesViewer<?> viewer;
@@ -88,6 +114,8 @@ public class HistogramView extends JComponent
       };
   private final JComboBox<Model> jComboBoxImgChannel = new JComboBox<>();
   private AbstractDragGraphicArea selectedGraphic;
+  private HistogramWorker histogramWorker;
+  private final List<String> panelNames = new ArrayList<>();
 
   public HistogramView(SeriesViewer<?> viewer) {
     this.viewer = viewer;
@@ -96,6 +124,7 @@ public class HistogramView extends JComponent
     add(view, BorderLayout.CENTER);
     setPreferredSize(new Dimension(400, 300));
     setMinimumSize(new Dimension(150, 50));
+    spinnerBins.addChangeListener(e -> buildHistogram());
   }
 
   @Override
@@ -111,7 +140,8 @@ public class HistogramView extends JComponent
           WindLevelParameters p = getWinLeveParameters();
           for (int i = 0; i < histView.getComponentCount(); i++) {
             Component c = histView.getComponent(i);
-            if (c instanceof ChannelHistogramPanel) {
+            if (c instanceof ChannelHistogramPanel
+                && ((ChannelHistogramPanel) c).getData() != null) {
               ((ChannelHistogramPanel) c).setWindLevelParameters(p);
               ((ChannelHistogramPanel) c).getData().updateVoiLut(view2DPane);
             }
@@ -128,7 +158,9 @@ public class HistogramView extends JComponent
         DisplayByteLut[] lut = getLut(p, colorModel);
         for (int i = 0; i < histView.getComponentCount(); i++) {
           Component c = histView.getComponent(i);
-          if (c instanceof ChannelHistogramPanel) {
+          if (c instanceof ChannelHistogramPanel
+              && ((ChannelHistogramPanel) c).getData() != null
+              && i < lut.length) {
             ((ChannelHistogramPanel) c).setLut(lut[i]);
           }
         }
@@ -204,7 +236,6 @@ public class HistogramView extends JComponent
         }
       }
       row2.add(spinnerBins);
-      spinnerBins.addChangeListener(e -> buildHistogram());
       row2.add(Box.createHorizontalStrut(15));
 
       final JButton stats = new JButton(Messages.getString("HistogramView.stats"));
@@ -228,6 +259,10 @@ public class HistogramView extends JComponent
       if (c instanceof ChannelHistogramPanel) {
         hist[i] = (ChannelHistogramPanel) c;
       }
+      if (hist[i] == null || hist[i].getData() == null) {
+        // Not computed yet
+        return;
+      }
     }
     if (hist.length == 0) {
       return;
@@ -324,77 +359,270 @@ public class HistogramView extends JComponent
   }
 
   private void buildHistogram() {
-    if (view2DPane != null && view2DPane.getSourceImage() != null) {
-      ChannelHistogramPanel[] old = new ChannelHistogramPanel[histView.getComponentCount()];
-      for (int i = 0; i < old.length; i++) {
-        Component c = histView.getComponent(i);
-        if (c instanceof ChannelHistogramPanel) {
-          old[i] = (ChannelHistogramPanel) c;
+    if (histogramWorker != null) {
+      // Stale request
+      histogramWorker.cancel(false);
+      histogramWorker = null;
+    }
+    if (view2DPane == null || view2DPane.getSourceImage() == null) {
+      return;
+    }
+    WindLevelParameters p = getWinLeveParameters();
+    MeasurableLayer layer = view2DPane.getMeasurableLayer();
+    PlanarImage image = layer == null ? null : layer.getSourceRenderedImage();
+    if (p == null || image == null) {
+      histView.removeAll();
+      panelNames.clear();
+      histView.revalidate();
+      histView.repaint();
+      return;
+    }
+
+    PlanarImage imageSource = view2DPane.getSourceImage();
+    Model colorModel = getSelectedColorModel(imageSource.channels());
+    HistogramKey key = new HistogramKey(selectedGraphic, colorModel, layer);
+    preparePanels(colorModel, layer);
+
+    float[][] full = getCachedHistograms(image, key);
+    if (full != null) {
+      for (int i = 0; i < full.length; i++) {
+        setChannelHistogram(i, full[i], colorModel, p, layer);
+      }
+    } else {
+      histogramWorker = new HistogramWorker(image, key, layer);
+      HISTOGRAM_EXECUTOR.execute(histogramWorker);
+    }
+  }
+
+  /** Reuses the panels of the channels when possible to keep their display options. */
+  private void preparePanels(Model colorModel, MeasurableLayer layer) {
+    ByteLut[] lut = colorModel.getByteLut();
+    List<String> names = new ArrayList<>(lut.length);
+    for (ByteLut l : lut) {
+      StringBuilder name = new StringBuilder(l.getName());
+      name.append(StringUtil.SPACE);
+      name.append(Messages.getString("HistogramView.histo"));
+      if (StringUtil.hasText(layer.getPixelValueUnit())) {
+        name.append(" [");
+        name.append(layer.getPixelValueUnit());
+        name.append("]");
+      }
+      names.add(name.toString());
+    }
+    if (names.equals(panelNames) && histView.getComponentCount() == names.size()) {
+      return;
+    }
+
+    ChannelHistogramPanel[] old = new ChannelHistogramPanel[histView.getComponentCount()];
+    for (int i = 0; i < old.length; i++) {
+      Component c = histView.getComponent(i);
+      if (c instanceof ChannelHistogramPanel) {
+        old[i] = (ChannelHistogramPanel) c;
+      }
+    }
+    histView.removeAll();
+    for (int i = 0; i < names.size(); i++) {
+      ChannelHistogramPanel chartPanel;
+      if (i >= old.length || old[i] == null) {
+        chartPanel = new ChannelHistogramPanel(names.get(i));
+      } else {
+        chartPanel =
+            new ChannelHistogramPanel(
+                names.get(i),
+                old[i].isAccumulate(),
+                old[i].isLogarithmic(),
+                old[i].isShowIntensity());
+      }
+      histView.add(chartPanel);
+    }
+    panelNames.clear();
+    panelNames.addAll(names);
+    histView.revalidate();
+    histView.repaint();
+  }
+
+  private void setChannelHistogram(
+      int index, float[] full, Model colorModel, WindLevelParameters p, MeasurableLayer layer) {
+    if (index >= histView.getComponentCount()) {
+      return;
+    }
+    Component c = histView.getComponent(index);
+    if (c instanceof ChannelHistogramPanel) {
+      int nbins = (Integer) spinnerBins.getValue();
+      float[] histValues = HistogramData.rebin(full, nbins);
+      DisplayByteLut[] displut = getLut(p, colorModel);
+      HistogramData data =
+          new HistogramData(
+              histValues,
+              displut[Math.min(index, displut.length - 1)],
+              index,
+              colorModel,
+              p,
+              layer.getPixelMin(),
+              layer.getPixelMax(),
+              layer);
+      data.updateVoiLut(view2DPane);
+      ((ChannelHistogramPanel) c).setHistogramBins(data);
+    }
+  }
+
+  private static float[][] getCachedHistograms(PlanarImage image, HistogramKey key) {
+    synchronized (CACHE) {
+      Map<HistogramKey, float[][]> regions = CACHE.get(image);
+      return regions == null ? null : regions.get(key);
+    }
+  }
+
+  private static void putCachedHistograms(PlanarImage image, HistogramKey key, float[][] full) {
+    synchronized (CACHE) {
+      CACHE
+          .computeIfAbsent(
+              image,
+              k ->
+                  new LinkedHashMap<HistogramKey, float[][]>(8, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<HistogramKey, float[][]> e) {
+                      return size() > MAX_REGIONS_PER_IMAGE;
+                    }
+                  })
+          .put(key, full);
+    }
+  }
+
+  /**
+   * @return the number of bins giving one bin per value for integer images (limited to {@link
+   *     #MAX_BINS}), otherwise {@link #MAX_BINS}
+   */
+  static int getFullNumberOfBins(int datatype, double pixMin, double pixMax) {
+    if (datatype >= DataBuffer.TYPE_BYTE && datatype < DataBuffer.TYPE_INT) {
+      long range = (long) pixMax - (long) pixMin + 1L;
+      return (int) Math.max(1L, Math.min(range, MAX_BINS));
+    }
+    return MAX_BINS;
+  }
+
+  /** Identifies the histograms of an image: region, color model and range of values */
+  static class HistogramKey {
+    private final String graphicType;
+    private final List<Point2D> points;
+    // Copy of the region, the worker must not read the graphic which can be moved meanwhile
+    private final Shape shape;
+    private final Model colorModel;
+    private final double pixMin;
+    private final double pixMax;
+
+    HistogramKey(AbstractDragGraphicArea graphic, Model colorModel, MeasurableLayer layer) {
+      this.graphicType = graphic == null ? null : graphic.getClass().getName();
+      this.points = new ArrayList<>();
+      if (graphic != null) {
+        // Copy the points which are modified in place when the graphic is moved
+        for (Point2D.Double pt : graphic.getPts()) {
+          points.add(pt == null ? null : (Point2D) pt.clone());
         }
       }
-      histView.removeAll();
+      this.shape =
+          graphic != null && graphic.isShapeValid() ? new Path2D.Double(graphic.getShape()) : null;
+      this.colorModel = colorModel;
+      this.pixMin = layer.getPixelMin();
+      this.pixMax = layer.getPixelMax();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      HistogramKey that = (HistogramKey) o;
+      return Double.compare(that.pixMin, pixMin) == 0
+          && Double.compare(that.pixMax, pixMax) == 0
+          && Objects.equals(graphicType, that.graphicType)
+          && points.equals(that.points)
+          && colorModel == that.colorModel;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(graphicType, points, colorModel, pixMin, pixMax);
+    }
+  }
+
+  /** Computes the full histograms and displays each channel as soon as it is ready. */
+  private class HistogramWorker extends SwingWorker<float[][], Object[]> {
+    private final PlanarImage image;
+    private final HistogramKey key;
+    private final MeasurableLayer layer;
+
+    HistogramWorker(PlanarImage image, HistogramKey key, MeasurableLayer layer) {
+      this.image = image;
+      this.key = key;
+      this.layer = layer;
+    }
 
+    @Override
+    protected float[][] doInBackground() {
+      if (key.graphicType != null && key.shape == null) {
+        // Invalid shape of the graphic
+        return null;
+      }
+      List<Mat> imgPr = ImageRegionStatistics.prepareInputImages(key.shape, layer);
+      if (imgPr.size() < 2 || isCancelled()) {
+        return null;
+      }
+      Mat srcImg = imgPr.get(0);
+      Mat mask = imgPr.get(1);
+      int nbChannels = key.colorModel.getByteLut().length;
+      int datatype = ImageConversion.convertToDataType(srcImg.type());
+      int nbins = getFullNumberOfBins(datatype, key.pixMin, key.pixMax);
+
+      List<Mat> channels = HistogramData.getChannels(srcImg, srcImg.channels(), key.colorModel);
+      float[][] full = new float[nbChannels][];
+      for (int i = 0; i < nbChannels; i++) {
+        if (isCancelled()) {
+          return null;
+        }
+        int channel = channels.size() == 1 ? 0 : i;
+        Mat h =
+            HistogramData.computeHistogram(
+                channels, channel, mask, nbins, key.pixMin, key.pixMax);
+        full[i] = new float[h.rows()];
+        h.get(0, 0, full[i]);
+        publish(new Object[] {i, full[i]});
+      }
+      putCachedHistograms(image, key, full);
+      return full;
+    }
+
+    @Override
+    protected void process(List<Object[]> chunks) {
+      if (histogramWorker != this || isCancelled()) {
+        return;
+      }
       WindLevelParameters p = getWinLeveParameters();
       if (p == null) {
         return;
       }
-      MeasurableLayer layer = view2DPane.getMeasurableLayer();
-      double pixMin = layer.getPixelMin();
-      double pixMax = layer.getPixelMax();
-      PlanarImage imageSource = view2DPane.getSourceImage();
-      int channels = imageSource.channels();
-      Model colorModel = getSelectedColorModel(channels);
-      int[] selChannels = new int[channels];
-      for (int i = 0; i < selChannels.length; i++) {
-        selChannels[i] = i;
+      for (Object[] c : chunks) {
+        setChannelHistogram((Integer) c[0], (float[]) c[1], key.colorModel, p, layer);
+      }
+    }
+
+    @Override
+    protected void done() {
+      if (histogramWorker == this) {
+        histogramWorker = null;
       }
       try {
-        int nbins = (Integer) spinnerBins.getValue();
-        List<Mat> imgPr = ImageRegionStatistics.prepareInputImages(selectedGraphic, layer);
-        if (imgPr.size() > 1) {
-          Mat srcImg = imgPr.get(0);
-          Mat mask = imgPr.get(1);
-          List<Mat> listHisto =
-              HistogramData.computeHistogram(
-                  srcImg, mask, nbins, selChannels, colorModel, pixMin, pixMax);
-
-          ByteLut[] lut = colorModel.getByteLut();
-          DisplayByteLut[] displut = getLut(p, colorModel);
-          for (int i = 0; i < lut.length; i++) {
-            ChannelHistogramPanel chartPanel;
-            StringBuilder name = new StringBuilder(lut[i].getName());
-            name.append(StringUtil.SPACE);
-            name.append(Messages.getString("HistogramView.histo"));
-            if (StringUtil.hasText(layer.getPixelValueUnit())) {
-              name.append(" [");
-              name.append(layer.getPixelValueUnit());
-              name.append("]");
-            }
-            if (i >= old.length || old[i] == null) {
-              chartPanel = new ChannelHistogramPanel(name.toString());
-            } else {
-              chartPanel =
-                  new ChannelHistogramPanel(
-                      name.toString(),
-                      old[i].isAccumulate(),
-                      old[i].isLogarithmic(),
-                      old[i].isShowIntensity());
-            }
-            histView.add(chartPanel);
-            Mat h = listHisto.get(i);
-            float[] histValues = new float[h.rows()];
-            h.get(0, 0, histValues);
-            HistogramData data =
-                new HistogramData(histValues, displut[i], i, colorModel, p, pixMin, pixMax, layer);
-            data.updateVoiLut(view2DPane);
-            chartPanel.setHistogramBins(data);
-          }
+        if (!isCancelled()) {
+          get();
         }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       } catch (Exception e) {
         LOGGER.error("Build histogram", e);
       }
-      histView.revalidate();
-      histView.repaint();
     }
   }
 
@@ -22,6 +22,8 @@ import static org.weasis.core.ui.model.utils.ImageStatistics.IMAGE_STD;
 import java.awt.Point;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.DataBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -36,6 +38,7 @@ import org.weasis.core.api.image.util.MeasurableLayer;
 import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.ui.editor.image.HistogramData.Model;
+import org.weasis.core.ui.editor.image.IntegralImageStatistics.RegionStatistics;
 import org.weasis.core.ui.model.graphic.AbstractDragGraphicArea;
 import org.weasis.core.ui.model.utils.bean.MeasureItem;
 import org.weasis.core.ui.model.utils.bean.Measurement;
@@ -50,15 +53,23 @@ public class ImageRegionStatistics {
 
   public static List<Mat> prepareInputImages(
       AbstractDragGraphicArea graphic, MeasurableLayer layer) {
-    if (layer != null && layer.hasContent()) {
-      Shape shape = null;
-      if (graphic != null) {
-        if (!graphic.isShapeValid()) {
-          return Collections.emptyList();
-        }
-        shape = graphic.getShape();
+    Shape shape = null;
+    if (graphic != null) {
+      if (!graphic.isShapeValid()) {
+        return Collections.emptyList();
       }
+      shape = graphic.getShape();
+    }
+    return prepareInputImages(shape, layer);
+  }
 
+  /**
+   * @param shape the region in the coordinates of the graphics, null for the whole image
+   * @param layer the image layer
+   * @return the source image and the mask of the region, or an empty list
+   */
+  public static List<Mat> prepareInputImages(Shape shape, MeasurableLayer layer) {
+    if (layer != null && layer.hasContent()) {
       PlanarImage image = layer.getSourceRenderedImage();
       if (image == null) {
         return Collections.emptyList();
@@ -66,15 +77,7 @@ public class ImageRegionStatistics {
 
       Shape roi = null;
       if (shape != null) {
-        AffineTransform transform = layer.getShapeTransform();
-        Point offset = layer.getOffset();
-        if (offset != null) {
-          if (transform == null) {
-            transform = AffineTransform.getTranslateInstance(-offset.getX(), -offset.getY());
-          } else {
-            transform.translate(-offset.getX(), -offset.getY());
-          }
-        }
+        AffineTransform transform = getShapeTransform(layer);
         if (transform != null) {
           // Rescale ROI, if needed
           roi = transform.createTransformedShape(shape);
@@ -91,6 +94,19 @@ public class ImageRegionStatistics {
     return Collections.emptyList();
   }
 
+  private static AffineTransform getShapeTransform(MeasurableLayer layer) {
+    AffineTransform transform = layer.getShapeTransform();
+    Point offset = layer.getOffset();
+    if (offset != null) {
+      if (transform == null) {
+        transform = AffineTransform.getTranslateInstance(-offset.getX(), -offset.getY());
+      } else {
+        transform.translate(-offset.getX(), -offset.getY());
+      }
+    }
+    return transform;
+  }
+
   public static List<MeasureItem> getImageStatistics(MeasurableLayer layer) {
     return getImageStatistics(null, layer, true);
   }
@@ -156,16 +172,15 @@ public class ImageRegionStatistics {
               || IMAGE_SKEW.getComputed()
               || IMAGE_KURTOSIS.getComputed()
               || IMAGE_ENTROPY.getComputed())) {
-
-        List<HistogramData> hists = getHistogram(graphic, layer);
-        for (int i = 0; i < hists.size(); i++) {
-          HistogramData data = hists.get(i);
-          List<MeasureItem> mItems =
-              getStatistics(data, hists.size() == 1 ? null : data.getBandIndex());
-          if (i > 0) {
-            mItems.remove(0);
-          }
-          measVal.addAll(mItems);
+        addHistogramStatistics(measVal, graphic, layer);
+      } else if (!releaseEvent
+          && (IMAGE_PIXELS.getComputed() || IMAGE_MEAN.getComputed() || IMAGE_STD.getComputed())) {
+        List<MeasureItem> quickStats = getQuickStatistics(graphic, layer);
+        if (quickStats == null) {
+          // The summed-area tables are being built
+          addHistogramStatistics(measVal, graphic, layer);
+        } else {
+          measVal.addAll(quickStats);
         }
       }
       return measVal;
@@ -174,6 +189,102 @@ public class ImageRegionStatistics {
     return Collections.emptyList();
   }
 
+  private static void addHistogramStatistics(
+      List<MeasureItem> measVal, AbstractDragGraphicArea graphic, MeasurableLayer layer) {
+    List<HistogramData> hists = getHistogram(graphic, layer);
+    for (int i = 0; i < hists.size(); i++) {
+      HistogramData data = hists.get(i);
+      List<MeasureItem> mItems =
+          getStatistics(data, hists.size() == 1 ? null : data.getBandIndex());
+      if (i > 0) {
+        mItems.remove(0);
+      }
+      measVal.addAll(mItems);
+    }
+  }
+
+  /**
+   * Computes the number of pixels, the mean and the standard deviation of a rectangle or an ellipse
+   * from the summed-area tables of the image, which is fast enough for updating the measurements
+   * while the shape is dragged. The other statistics are computed from the histogram when the
+   * mouse is released.
+   *
+   * @return the measurements, an empty list when the region is not supported, or null when the
+   *     tables are not available yet
+   */
+  static List<MeasureItem> getQuickStatistics(
+      AbstractDragGraphicArea graphic, MeasurableLayer layer) {
+    if (graphic == null || !graphic.isShapeValid()) {
+      return Collections.emptyList();
+    }
+    Shape shape = graphic.getShape();
+    if (!(shape instanceof Rectangle2D) && !(shape instanceof Ellipse2D)) {
+      return Collections.emptyList();
+    }
+    // The padding values cannot be excluded from the tables
+    if (layer.getSourceTagValue(TagW.get("PixelPaddingValue")) != null) {
+      return Collections.emptyList();
+    }
+    AffineTransform transform = getShapeTransform(layer);
+    if (transform != null
+        && (transform.getType()
+                & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_MASK_SCALE))
+            != 0) {
+      // Not an axis-aligned region in the image
+      return Collections.emptyList();
+    }
+    // Only a linear modality LUT can be applied to the mean and the standard deviation
+    double intercept = layer.pixelToRealValue(0.0);
+    double slope = layer.pixelToRealValue(1.0) - intercept;
+    if (MathUtil.isDifferent(layer.pixelToRealValue(2.0) - intercept, 2.0 * slope)) {
+      return Collections.emptyList();
+    }
+
+    PlanarImage image = layer.getSourceRenderedImage();
+    if (!IntegralImageStatistics.isSupported(image)) {
+      return Collections.emptyList();
+    }
+    IntegralImageStatistics tables = IntegralImageStatistics.getInstance(image);
+    if (tables == null) {
+      return null;
+    }
+    Rectangle2D bounds =
+        transform == null
+            ? shape.getBounds2D()
+            : transform.createTransformedShape(shape).getBounds2D();
+    RegionStatistics stats =
+        shape instanceof Ellipse2D ? tables.getEllipse(bounds) : tables.getRectangle(bounds);
+    if (stats.getCount() == 0) {
+      return Collections.emptyList();
+    }
+
+    List<MeasureItem> measList = new ArrayList<>();
+    String unit = layer.getPixelValueUnit();
+    int channels = tables.getChannels();
+    for (int i = 0; i < channels; i++) {
+      Integer channelIndex = channels == 1 ? null : i;
+      if (i == 0) {
+        addMeasure(
+            measList,
+            IMAGE_PIXELS,
+            channelIndex,
+            (double) stats.getCount(),
+            Unit.PIXEL.getAbbreviation());
+      }
+      // Same order as the histograms (RGB instead of BGR)
+      int band = channels - 1 - i;
+      double mean = stats.getMean(band) * slope + intercept;
+      addMeasure(measList, IMAGE_MEAN, channelIndex, mean, unit);
+      addMeasure(measList, IMAGE_STD, channelIndex, stats.getStd(band) * Math.abs(slope), null);
+
+      Double suv = (Double) layer.getSourceTagValue(TagW.SuvFactor);
+      if (channelIndex == null && Objects.nonNull(suv)) {
+        addMeasure(measList, IMAGE_MEAN, null, mean * suv, "SUVbw");
+      }
+    }
+    return measList;
+  }
+
   private static void addMeasure(
       List<MeasureItem> measVal,
       Measurement measure,
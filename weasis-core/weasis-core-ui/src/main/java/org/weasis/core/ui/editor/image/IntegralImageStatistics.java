@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.ui.editor.image;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.media.data.NativeCache;
+import org.weasis.core.api.media.data.NativeMemoryGovernor;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Summed-area tables (sum and sum of squares) of an image. Once the tables are built, the number of
+ * pixels, the mean and the standard deviation of a rectangle are computed in constant time and
+ * those of an ellipse with one rectangle per row. A pixel belongs to the region when its center is
+ * inside the shape.
+ *
+ * <p>The tables are built in background and kept in native memory while their image is in the
+ * image cache.
+ */
+public final class IntegralImageStatistics {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IntegralImageStatistics.class);
+
+  private static final ExecutorService TABLE_BUILDER =
+      ThreadUtil.buildNewSingleThreadExecutor("Statistics Tables"); // NON-NLS
+
+  private static final TableCache TABLES = new TableCache();
+  private static final Set<PlanarImage> PENDING_IMAGES = ConcurrentHashMap.newKeySet();
+
+  private final int width;
+  private final int height;
+  private final int channels;
+  // The sums (CV_64F) of the channels followed by the sums of squares
+  private final ImageCV tables;
+
+  /**
+   * Cache of the tables, keyed by their source image. The tables are evicted first when the native
+   * memory is required and removed when their image is released by the image cache.
+   */
+  private static class TableCache extends NativeCache<PlanarImage, ImageCV> {
+
+    TableCache() {
+      super("Statistics tables", NativeMemoryGovernor.PRIORITY_LOW, Long.MAX_VALUE); // NON-NLS
+    }
+
+    @Override
+    protected void afterEntryRemove(PlanarImage key, ImageCV tables) {
+      if (tables != null) {
+        // Not while reading the tables
+        synchronized (IntegralImageStatistics.class) {
+          tables.release();
+        }
+      }
+    }
+
+    void removeReleasedImages() {
+      List<PlanarImage> released = new ArrayList<>();
+      synchronized (hash) {
+        for (PlanarImage img : hash.keySet()) {
+          if (img.width() <= 0) {
+            released.add(img);
+          }
+        }
+      }
+      released.forEach(this::remove);
+    }
+  }
+
+  IntegralImageStatistics(int width, int height, int channels, ImageCV tables) {
+    this.width = width;
+    this.height = height;
+    this.channels = channels;
+    this.tables = tables;
+  }
+
+  /**
+   * @param image the source image
+   * @return true if the tables of the image can fit in the native memory
+   */
+  public static boolean isSupported(PlanarImage image) {
+    if (image == null || image.width() <= 0 || image.height() <= 0) {
+      return false;
+    }
+    // Two tables of doubles
+    long size = (image.width() + 1L) * (image.height() + 1L) * image.channels() * 16L;
+    return size <= NativeMemoryGovernor.getInstance().getMaxBytes() / 4;
+  }
+
+  /**
+   * @param image the source image
+   * @return the tables of the image, or null when the tables are not available yet (they are
+   *     built in background) or when the image is not supported
+   */
+  public static IntegralImageStatistics getInstance(PlanarImage image) {
+    if (!isSupported(image)) {
+      return null;
+    }
+    TABLES.removeReleasedImages();
+    ImageCV tables = TABLES.get(image);
+    if (tables != null) {
+      return new IntegralImageStatistics(image.width(), image.height(), image.channels(), tables);
+    }
+    if (PENDING_IMAGES.add(image)) {
+      TABLE_BUILDER.execute(() -> buildTables(image));
+    }
+    return null;
+  }
+
+  private static void buildTables(PlanarImage image) {
+    try {
+      ImageCV tables = computeTables(image.toMat());
+      if (image.width() > 0) {
+        TABLES.put(image, tables);
+      } else {
+        // The image has been released meanwhile
+        tables.release();
+      }
+    } catch (Exception e) {
+      LOGGER.error("Cannot build the summed-area tables", e);
+    } finally {
+      PENDING_IMAGES.remove(image);
+    }
+  }
+
+  /** @return the sums (CV_64F) of the channels followed by the sums of squares in one image */
+  static ImageCV computeTables(Mat source) {
+    Mat src = source;
+    int depth = CvType.depth(source.type());
+    // Source depths not supported by integral()
+    if (depth == CvType.CV_8S || depth == CvType.CV_32S) {
+      src = new Mat();
+      source.convertTo(src, CvType.CV_64F);
+    }
+    Mat sum = new Mat();
+    Mat sqSum = new Mat();
+    List<Mat> sums = new ArrayList<>();
+    List<Mat> sqSums = new ArrayList<>();
+    try {
+      Imgproc.integral2(src, sum, sqSum, CvType.CV_64F, CvType.CV_64F);
+      Core.split(sum, sums);
+      Core.split(sqSum, sqSums);
+      sums.addAll(sqSums);
+      ImageCV tables = new ImageCV();
+      Core.merge(sums, tables);
+      return tables;
+    } finally {
+      if (src != source) {
+        src.release();
+      }
+      sum.release();
+      sqSum.release();
+      sums.forEach(Mat::release);
+    }
+  }
+
+  public int getChannels() {
+    return channels;
+  }
+
+  /**
+   * @param bounds the rectangle in pixel coordinates
+   * @return the statistics of the pixels inside the rectangle
+   */
+  public RegionStatistics getRectangle(Rectangle2D bounds) {
+    synchronized (IntegralImageStatistics.class) {
+      return computeRectangle(bounds);
+    }
+  }
+
+  private RegionStatistics computeRectangle(Rectangle2D bounds) {
+    RegionStatistics stats = new RegionStatistics(channels);
+    int y1 = Math.max(0, firstPixel(bounds.getMinY()));
+    int y2 = Math.min(height - 1, lastPixel(bounds.getMaxY()));
+    int x1 = Math.max(0, firstPixel(bounds.getMinX()));
+    int x2 = Math.min(width - 1, lastPixel(bounds.getMaxX()));
+    addArea(stats, x1, y1, x2, y2);
+    return stats;
+  }
+
+  /**
+   * @param bounds the bounding rectangle of the ellipse in pixel coordinates
+   * @return the statistics of the pixels inside the ellipse
+   */
+  public RegionStatistics getEllipse(Rectangle2D bounds) {
+    synchronized (IntegralImageStatistics.class) {
+      return computeEllipse(bounds);
+    }
+  }
+
+  private RegionStatistics computeEllipse(Rectangle2D bounds) {
+    RegionStatistics stats = new RegionStatistics(channels);
+    double rx = bounds.getWidth() / 2.0;
+    double ry = bounds.getHeight() / 2.0;
+    if (rx <= 0.0 || ry <= 0.0) {
+      return stats;
+    }
+    double cx = bounds.getCenterX();
+    double cy = bounds.getCenterY();
+    int y1 = Math.max(0, firstPixel(bounds.getMinY()));
+    int y2 = Math.min(height - 1, lastPixel(bounds.getMaxY()));
+    for (int y = y1; y <= y2; y++) {
+      double dy = (y + 0.5 - cy) / ry;
+      double dx = 1.0 - dy * dy;
+      if (dx < 0.0) {
+        continue;
+      }
+      double half = rx * Math.sqrt(dx);
+      int x1 = Math.max(0, firstPixel(cx - half));
+      int x2 = Math.min(width - 1, lastPixel(cx + half));
+      addArea(stats, x1, y, x2, y);
+    }
+    return stats;
+  }
+
+  // First pixel whose center is greater or equal to the coordinate
+  private static int firstPixel(double min) {
+    return (int) Math.ceil(min - 0.5);
+  }
+
+  // Last pixel whose center is lower or equal to the coordinate
+  private static int lastPixel(double max) {
+    return (int) Math.floor(max - 0.5);
+  }
+
+  private void addArea(RegionStatistics stats, int x1, int y1, int x2, int y2) {
+    if (x2 < x1 || y2 < y1) {
+      return;
+    }
+    // Null when the tables have been released
+    double[] a = tables.get(y1, x1);
+    double[] b = tables.get(y1, x2 + 1);
+    double[] c = tables.get(y2 + 1, x1);
+    double[] d = tables.get(y2 + 1, x2 + 1);
+    if (a == null || b == null || c == null || d == null) {
+      return;
+    }
+    for (int k = 0; k < channels; k++) {
+      int q = k + channels;
+      stats.sum[k] += d[k] - b[k] - c[k] + a[k];
+      stats.sqSum[k] += d[q] - b[q] - c[q] + a[q];
+    }
+    stats.count += (long) (x2 - x1 + 1) * (y2 - y1 + 1);
+  }
+
+  /** Number of pixels, sum and sum of squares of the pixel values of a region */
+  public static class RegionStatistics {
+    private long count;
+    private final double[] sum;
+    private final double[] sqSum;
+
+    RegionStatistics(int channels) {
+      this.sum = new double[channels];
+      this.sqSum = new double[channels];
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean(int channel) {
+      return count == 0 ? 0.0 : sum[channel] / count;
+    }
+
+    /** @return the sample standard deviation (like the statistics computed from the histogram) */
+    public double getStd(int channel) {
+      if (count < 2) {
+        return 0.0;
+      }
+      double mean = sum[channel] / count;
+      double variance = (sqSum[channel] - count * mean * mean) / (count - 1);
+      return variance > 0.0 ? Math.sqrt(variance) : 0.0;
+    }
+  }
+}
@@ -82,6 +82,7 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
   private final List<GraphicModelChangeListener> modelListeners = new ArrayList<>();
   private final List<PropertyChangeListener> graphicsListeners = new ArrayList<>();
   private Boolean changeFireingSuspended = Boolean.FALSE;
+  private transient GraphicSpatialIndex spatialIndex;
 
   private Function<Graphic, GraphicLayer> getLayer = g -> g.getLayer();
   private Function<Graphic, DragGraphic> castToDragGraphic = DragGraphic.class::cast;
@@ -96,7 +97,7 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
   public AbstractGraphicModel(List<ReferencedSeries> referencedSeries) {
     setReferencedSeries(referencedSeries);
     this.layers = Collections.synchronizedList(new ArrayList<>());
-    this.models = Collections.synchronizedList(new ArrayList<>());
+    setGraphicList(new GraphicSpatialIndex.GraphicList());
   }
 
   @XmlElementWrapper(name = "graphics")
@@ -151,11 +152,33 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
   @Override
   public void setModels(List<Graphic> models) {
     if (models != null) {
-      this.models = Collections.synchronizedList(models);
+      setGraphicList(new GraphicSpatialIndex.GraphicList(models));
       this.layers = Collections.synchronizedList(getLayerlist());
     }
   }
 
+  private void setGraphicList(GraphicSpatialIndex.GraphicList list) {
+    if (spatialIndex != null) {
+      spatialIndex.dispose();
+    }
+    this.models = Collections.synchronizedList(list);
+    this.spatialIndex = new GraphicSpatialIndex(list);
+  }
+
+  /**
+   * @param rect the area in image coordinates, null returns all the graphics
+   * @param transform the transform of the view
+   * @return the graphics which may intersect the area, in the drawing order. The caller must hold
+   *     the lock of the models.
+   */
+  private List<Graphic> getGraphicsNear(Rectangle2D rect, AffineTransform transform) {
+    if (spatialIndex == null) {
+      // Model deserialized or with a list which has not been set by this class
+      return new ArrayList<>(models);
+    }
+    return spatialIndex.query(rect, transform);
+  }
+
   @Override
   public void addGraphic(Graphic graphic) {
     if (graphic != null) {
@@ -346,8 +369,9 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
     ArrayList<Graphic> selectedGraphicList = new ArrayList<>();
     if (rectangle != null) {
       synchronized (models) {
-        for (int i = models.size() - 1; i >= 0; i--) {
-          Graphic graphic = models.get(i);
+        List<Graphic> candidates = getGraphicsNear(rectangle, transform);
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+          Graphic graphic = candidates.get(i);
           GraphicLayer layer = graphic.getLayer();
           if (layer.getVisible() && layer.getSelectable()) {
 
@@ -385,8 +409,9 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
     ArrayList<Graphic> selectedGraphicList = new ArrayList<>();
     if (rectangle != null) {
       synchronized (models) {
-        for (int i = models.size() - 1; i >= 0; i--) {
-          Graphic graphic = models.get(i);
+        List<Graphic> candidates = getGraphicsNear(rectangle, transform);
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+          Graphic graphic = candidates.get(i);
           GraphicLayer layer = graphic.getLayer();
           if (layer.getVisible() && layer.getSelectable()) {
 
@@ -441,8 +466,12 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
     final Point2D mousePt = mouseEvent.getImageCoordinates();
     Graphic firstSelectedGraph = null;
     synchronized (models) {
-      for (int i = models.size() - 1; i >= 0; i--) {
-        Graphic g = models.get(i);
+      List<Graphic> candidates =
+          getGraphicsNear(
+              new Rectangle2D.Double(mousePt.getX(), mousePt.getY(), 0, 0),
+              DefaultView2d.getAffineTransform(mouseEvent));
+      for (int i = candidates.size() - 1; i >= 0; i--) {
+        Graphic g = candidates.get(i);
         GraphicLayer l = g.getLayer();
         if (l.getVisible() && l.getSelectable()) {
           if (g.isOnGraphicLabel(mouseEvent)) {
@@ -604,7 +633,11 @@ public abstract class AbstractGraphicModel extends DefaultUUID implements Graphi
 
     g2d.translate(0.5, 0.5);
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, DefaultView2d.antialiasingOn);
-    models.forEach(g -> applyPaint(g, g2d, transform, bound));
+    List<Graphic> candidates;
+    synchronized (models) {
+      candidates = getGraphicsNear(bound, transform);
+    }
+    candidates.forEach(g -> applyPaint(g, g2d, transform, bound));
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, DefaultView2d.antialiasingOff);
     g2d.translate(-0.5, -0.5);
   }
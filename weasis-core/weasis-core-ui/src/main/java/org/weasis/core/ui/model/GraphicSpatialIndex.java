@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.ui.model;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.weasis.core.api.gui.util.GeomUtil;
+import org.weasis.core.ui.model.graphic.Graphic;
+import org.weasis.core.ui.model.graphic.GraphicLabel;
+import org.weasis.core.ui.model.utils.bean.AdvancedShape;
+
+/**
+ * Uniform grid of the graphic bounds in image coordinates, used to find the graphics near a point
+ * or a rectangle without testing the whole model.
+ *
+ * <p>The index is rebuilt when the list is structurally modified or reordered, and a graphic is
+ * re-indexed when its shape, its label or its position changes. The parts of a graphic which have
+ * a constant size in the view (handles, line thickness, label) are taken into account with a margin
+ * in view pixels, converted with the scale of the query. The graphics with an {@link
+ * AdvancedShape} have decorations that depend on the transform and are always returned.
+ */
+final class GraphicSpatialIndex implements PropertyChangeListener {
+
+  /** Number of cells on the largest side of the indexed area */
+  private static final int GRID_SIZE = 64;
+
+  private final GraphicList graphics;
+  private final Map<Graphic, Entry> entries = new IdentityHashMap<>();
+  private final Map<Long, List<Entry>> cells = new HashMap<>();
+  private final List<Entry> unbounded = new ArrayList<>();
+
+  private int modCount = -1;
+  private double originX;
+  private double originY;
+  private double cellSize = 1.0;
+  private double maxMargin;
+  private int queryStamp;
+
+  GraphicSpatialIndex(GraphicList graphics) {
+    this.graphics = graphics;
+  }
+
+  /**
+   * Returns the graphics which may intersect the rectangle, in the order of the model. The caller
+   * must hold the lock of the synchronized model list.
+   *
+   * @param rect the rectangle in image coordinates, null returns all the graphics
+   * @param transform the transform of the view, used to convert the view margins
+   * @return the candidate graphics sorted as in the model (the last one is painted on top)
+   */
+  synchronized List<Graphic> query(Rectangle2D rect, AffineTransform transform) {
+    if (rect == null) {
+      return new ArrayList<>(graphics);
+    }
+    if (modCount != graphics.getModCount()) {
+      rebuild();
+    }
+    double scale = GeomUtil.extractScalingFactor(transform);
+    double grow = maxMargin / scale;
+    int cx0 = cellIndex(rect.getMinX() - grow, originX);
+    int cy0 = cellIndex(rect.getMinY() - grow, originY);
+    int cx1 = cellIndex(rect.getMaxX() + grow, originX);
+    int cy1 = cellIndex(rect.getMaxY() + grow, originY);
+
+    queryStamp++;
+    List<Entry> found = new ArrayList<>();
+    if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > cells.size()) {
+      for (Entry e : entries.values()) {
+        addCandidate(found, e, rect, scale);
+      }
+    } else {
+      for (int cx = cx0; cx <= cx1; cx++) {
+        for (int cy = cy0; cy <= cy1; cy++) {
+          List<Entry> cell = cells.get(cellKey(cx, cy));
+          if (cell != null) {
+            for (Entry e : cell) {
+              addCandidate(found, e, rect, scale);
+            }
+          }
+        }
+      }
+      for (Entry e : unbounded) {
+        addCandidate(found, e, rect, scale);
+      }
+    }
+
+    found.sort(Comparator.comparingInt(e -> e.order));
+    List<Graphic> result = new ArrayList<>(found.size());
+    for (Entry e : found) {
+      result.add(e.graphic);
+    }
+    return result;
+  }
+
+  private void addCandidate(List<Entry> found, Entry e, Rectangle2D rect, double scale) {
+    if (e.stamp == queryStamp) {
+      return;
+    }
+    e.stamp = queryStamp;
+    if (e.envelope == null) {
+      found.add(e);
+    } else {
+      double grow = e.margin / scale;
+      if (e.envelope.getMaxX() + grow >= rect.getMinX()
+          && e.envelope.getMinX() - grow <= rect.getMaxX()
+          && e.envelope.getMaxY() + grow >= rect.getMinY()
+          && e.envelope.getMinY() - grow <= rect.getMaxY()) {
+        found.add(e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void propertyChange(PropertyChangeEvent evt) {
+    String name = evt.getPropertyName();
+    if ("bounds".equals(name) // NON-NLS
+        || "graphicLabel".equals(name) // NON-NLS
+        || "move".equals(name)) { // NON-NLS
+      Entry e = entries.get(evt.getSource());
+      if (e != null) {
+        removeFromCells(e);
+        updateEnvelope(e);
+        addToCells(e);
+      }
+    }
+  }
+
+  /** Stops listening the indexed graphics. */
+  synchronized void dispose() {
+    for (Graphic g : entries.keySet()) {
+      g.removePropertyChangeListener(this);
+    }
+    entries.clear();
+    cells.clear();
+    unbounded.clear();
+    modCount = -1;
+  }
+
+  private void rebuild() {
+    Map<Graphic, Entry> old = new IdentityHashMap<>(entries);
+    entries.clear();
+    cells.clear();
+    unbounded.clear();
+    maxMargin = 0;
+
+    Rectangle2D union = null;
+    for (int i = 0; i < graphics.size(); i++) {
+      Graphic g = graphics.get(i);
+      Entry e = old.remove(g);
+      if (e == null) {
+        e = new Entry(g);
+      }
+      // Listeners are removed when a graphic is deleted, it can be added again afterwards
+      g.addPropertyChangeListener(this);
+      e.order = i;
+      updateEnvelope(e);
+      entries.put(g, e);
+      if (e.envelope != null) {
+        if (union == null) {
+          union = (Rectangle2D) e.envelope.clone();
+        } else {
+          union.add(e.envelope);
+        }
+      }
+    }
+    for (Graphic g : old.keySet()) {
+      g.removePropertyChangeListener(this);
+    }
+
+    if (union == null) {
+      originX = 0;
+      originY = 0;
+      cellSize = 1.0;
+    } else {
+      originX = union.getMinX();
+      originY = union.getMinY();
+      cellSize = Math.max(1.0, Math.max(union.getWidth(), union.getHeight()) / GRID_SIZE);
+    }
+    for (Entry e : entries.values()) {
+      addToCells(e);
+    }
+    modCount = graphics.getModCount();
+  }
+
+  private void updateEnvelope(Entry e) {
+    Graphic g = e.graphic;
+    Shape shape = g.getShape();
+    Float thickness = g.getLineThickness();
+    // Same tolerance as the repaint bounds
+    double halfLine = thickness == null ? 0.0 : thickness / 2.0;
+    double margin = Math.max(Graphic.HANDLE_SIZE * 1.5 / 2.0, halfLine) + 2.0;
+    Rectangle2D envelope = null;
+    if (shape != null && !(shape instanceof AdvancedShape)) {
+      envelope = shape.getBounds2D();
+      List<Point2D.Double> pts = g.getPts();
+      if (pts != null) {
+        for (Point2D p : pts) {
+          if (p != null) {
+            envelope.add(p);
+          }
+        }
+      }
+      GraphicLabel label = g.getGraphicLabel();
+      Rectangle2D labelBounds = label == null ? null : label.getLabelBounds();
+      if (labelBounds != null) {
+        envelope.add(
+            labelBounds.getX() + label.getOffsetX(), labelBounds.getY() + label.getOffsetY());
+        // The label has a constant size in the view and can be rotated around its anchor
+        margin = Math.max(margin, labelBounds.getWidth() + 2.0 * labelBounds.getHeight());
+      }
+    }
+    e.envelope = envelope;
+    e.margin = margin;
+    maxMargin = Math.max(maxMargin, margin);
+  }
+
+  private void addToCells(Entry e) {
+    if (e.envelope == null || isUnbounded(e.envelope)) {
+      e.indexed = false;
+      unbounded.add(e);
+      return;
+    }
+    e.indexed = true;
+    e.cx0 = cellIndex(e.envelope.getMinX(), originX);
+    e.cy0 = cellIndex(e.envelope.getMinY(), originY);
+    e.cx1 = cellIndex(e.envelope.getMaxX(), originX);
+    e.cy1 = cellIndex(e.envelope.getMaxY(), originY);
+    for (int cx = e.cx0; cx <= e.cx1; cx++) {
+      for (int cy = e.cy0; cy <= e.cy1; cy++) {
+        cells.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<>(4)).add(e);
+      }
+    }
+  }
+
+  private void removeFromCells(Entry e) {
+    if (!e.indexed) {
+      unbounded.remove(e);
+      return;
+    }
+    for (int cx = e.cx0; cx <= e.cx1; cx++) {
+      for (int cy = e.cy0; cy <= e.cy1; cy++) {
+        Long key = cellKey(cx, cy);
+        List<Entry> cell = cells.get(key);
+        if (cell != null) {
+          cell.remove(e);
+          if (cell.isEmpty()) {
+            cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isUnbounded(Rectangle2D envelope) {
+    // Avoid filling too many cells when a graphic has grown after the last rebuild
+    double max = cellSize * GRID_SIZE / 4.0;
+    return envelope.getWidth() > max || envelope.getHeight() > max;
+  }
+
+  private int cellIndex(double value, double origin) {
+    double index = Math.floor((value - origin) / cellSize);
+    return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, index));
+  }
+
+  private static long cellKey(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xffffffffL);
+  }
+
+  private static class Entry {
+    private final Graphic graphic;
+    private int order;
+    private Rectangle2D envelope;
+    private double margin;
+    private boolean indexed;
+    private int cx0;
+    private int cy0;
+    private int cx1;
+    private int cy1;
+    private int stamp;
+
+    Entry(Graphic graphic) {
+      this.graphic = graphic;
+    }
+  }
+
+  /**
+   * List of the graphics which counts the reorderings (e.g. bring to front) in addition to the
+   * structural modifications.
+   */
+  static class GraphicList extends ArrayList<Graphic> {
+    private static final long serialVersionUID = -2786462624880766214L;
+
+    private int reorderCount;
+
+    GraphicList() {
+      super();
+    }
+
+    GraphicList(Collection<? extends Graphic> c) {
+      super(c);
+    }
+
+    @Override
+    public Graphic set(int index, Graphic element) {
+      // Not counted in modCount to keep the list iterators valid
+      reorderCount++;
+      return super.set(index, element);
+    }
+
+    int getModCount() {
+      return modCount + reorderCount;
+    }
+  }
+}
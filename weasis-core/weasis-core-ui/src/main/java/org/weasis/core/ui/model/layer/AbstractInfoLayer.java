@@ -372,7 +372,7 @@ public abstract class AbstractInfoLayer<E extends ImageElement> extends DefaultU
 
     double zoomFactor = view2DPane.getViewModel().getViewScale();
 
-    double scale = image.getPixelSize() / zoomFactor;
+    double scale = image.getPixelSize() * image.getImageDownsampling() / zoomFactor;
     double scaleSizex =
         ajustShowScale(
             scale,
@@ -11,17 +11,21 @@ package org.weasis.core.ui.model.layer.imp;
 
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.gui.util.ActionW;
+import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.image.AffineTransformOp;
 import org.weasis.core.api.image.ImageOpEvent;
 import org.weasis.core.api.image.ImageOpNode;
@@ -37,6 +41,7 @@ import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.TagReadable;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.media.data.TiledImage;
 import org.weasis.core.ui.editor.image.Canvas;
 import org.weasis.core.ui.model.layer.Layer;
 import org.weasis.core.ui.model.layer.LayerType;
@@ -67,6 +72,7 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID
   private Boolean visible = true;
   private boolean enableDispOperations = true;
   private Point offset;
+  private final AtomicBoolean tileUpdatePending = new AtomicBoolean(false);
 
   public RenderedImageLayer() {
     this(null);
@@ -399,6 +405,21 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID
     g2d.setClip(clip);
   }
 
+  /**
+   * Releases the display image and the intermediate images of the display operations, they are
+   * computed again by {@link #updateDisplayOperations()}.
+   */
+  public void releaseDisplayImage() {
+    PlanarImage imgSource = disOpManager.getFirstNodeInputImage();
+    disOpManager.clearNodeIOCache();
+    disOpManager.setFirstNode(imgSource);
+    // Not the source image which can be shared with the image cache
+    if (displayImage != null && displayImage != imgSource) {
+      ImageConversion.releasePlanarImage(displayImage);
+    }
+    displayImage = null;
+  }
+
   public void dispose() {
     sourceImage = null;
     displayImage = null;
@@ -456,11 +477,84 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID
   @Override
   public void updateDisplayOperations() {
     if (isEnableDispOperations()) {
-      displayImage = disOpManager.process();
+      displayImage = processDisplayImage();
       fireImageChanged();
     }
   }
 
+  private PlanarImage processDisplayImage() {
+    TiledImage tiledImage =
+        sourceImage == null || preprocessing != null ? null : sourceImage.getTiledImage();
+    PlanarImage source = disOpManager.getFirstNodeInputImage();
+    double[] matrix =
+        (double[])
+            disOpManager.getParamValue(
+                AffineTransformOp.OP_NAME, AffineTransformOp.P_AFFINE_MATRIX);
+    Rectangle2D bound =
+        (Rectangle2D)
+            disOpManager.getParamValue(AffineTransformOp.OP_NAME, AffineTransformOp.P_DST_BOUNDS);
+    if (tiledImage == null || source == null || matrix == null || bound == null) {
+      return disOpManager.process();
+    }
+
+    // The source is the overview, use the tiles of a higher resolution level when zooming in
+    double scale = Math.sqrt(Math.abs(matrix[0] * matrix[4] - matrix[1] * matrix[3]));
+    int level = tiledImage.getBestLevel(scale);
+    if (level >= tiledImage.getOverviewLevel()) {
+      return disOpManager.process();
+    }
+    Rectangle area;
+    try {
+      AffineTransform inverse =
+          new AffineTransform(matrix[0], matrix[3], matrix[1], matrix[4], matrix[2], matrix[5])
+              .createInverse();
+      Rectangle2D viewArea = new Rectangle2D.Double(0, 0, bound.getWidth(), bound.getHeight());
+      area =
+          tiledImage.getLevelArea(level, inverse.createTransformedShape(viewArea).getBounds2D());
+    } catch (NoninvertibleTransformException e) {
+      LOGGER.error("Cannot get the visible area", e);
+      return disOpManager.process();
+    }
+    if (area.isEmpty()) {
+      return disOpManager.process();
+    }
+
+    PlanarImage region =
+        tiledImage.getRegion(level, area, source, () -> updateLoadedTiles(tiledImage));
+    // Map the pixels of the region to the view
+    double k = 1.0 / (1 << (tiledImage.getOverviewLevel() - level));
+    double[] m = {
+      matrix[0] * k,
+      matrix[1] * k,
+      (matrix[0] * area.x + matrix[1] * area.y) * k + matrix[2],
+      matrix[3] * k,
+      matrix[4] * k,
+      (matrix[3] * area.x + matrix[4] * area.y) * k + matrix[5]
+    };
+    // Process the region with a copy of the display operations, the shared ones keep the overview
+    SimpleOpManager regionOps = new SimpleOpManager(disOpManager.getName());
+    for (ImageOpNode op : disOpManager.getOperations()) {
+      regionOps.addImageOperationAction(op.copy());
+    }
+    regionOps.setFirstNode(region);
+    regionOps.setParamValue(AffineTransformOp.OP_NAME, AffineTransformOp.P_AFFINE_MATRIX, m);
+    return regionOps.process();
+  }
+
+  private void updateLoadedTiles(TiledImage tiledImage) {
+    // Merge the repaints when many tiles are loaded at the same time
+    if (tileUpdatePending.compareAndSet(false, true)) {
+      GuiExecutor.instance()
+          .execute(
+              () -> {
+                tileUpdatePending.set(false);
+                if (sourceImage != null && sourceImage.getTiledImage() == tiledImage) {
+                  updateDisplayOperations();
+                }
+              });
+    }
+  }
+
   @Override
   public MeasurementsAdapter getMeasurementAdapter(Unit displayUnit) {
     if (hasContent()) {
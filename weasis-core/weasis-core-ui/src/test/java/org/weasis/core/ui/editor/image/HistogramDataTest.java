@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.ui.editor.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.DataBuffer;
+import org.junit.Test;
+
+public class HistogramDataTest {
+
+  @Test
+  public void testRebin() {
+    // One bin per value from 0 to 7
+    float[] full = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    assertThat(HistogramData.rebin(full, 4)).containsExactly(3, 7, 11, 15);
+    assertThat(HistogramData.rebin(full, 3)).containsExactly(6, 15, 15);
+    assertThat(HistogramData.rebin(full, 16))
+        .containsExactly(1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0, 7, 0, 8, 0);
+    float[] same = HistogramData.rebin(full, 8);
+    assertThat(same).containsExactly(full).isNotSameAs(full);
+  }
+
+  @Test
+  public void testFullNumberOfBins() {
+    assertThat(HistogramView.getFullNumberOfBins(DataBuffer.TYPE_BYTE, 0, 255)).isEqualTo(256);
+    assertThat(HistogramView.getFullNumberOfBins(DataBuffer.TYPE_SHORT, -1024, 3071))
+        .isEqualTo(4096);
+    assertThat(HistogramView.getFullNumberOfBins(DataBuffer.TYPE_USHORT, 0, 65535))
+        .isEqualTo(HistogramView.MAX_BINS);
+    assertThat(HistogramView.getFullNumberOfBins(DataBuffer.TYPE_FLOAT, 0, 1))
+        .isEqualTo(HistogramView.MAX_BINS);
+  }
+}
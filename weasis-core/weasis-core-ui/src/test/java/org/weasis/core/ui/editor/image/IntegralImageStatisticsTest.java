@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.ui.editor.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.weasis.core.ui.editor.image.IntegralImageStatistics.RegionStatistics;
+import org.weasis.opencv.data.ImageCV;
+
+public class IntegralImageStatisticsTest {
+  private static final int WIDTH = 7;
+  private static final int HEIGHT = 5;
+
+  private static boolean nativeLoaded;
+
+  @BeforeClass
+  public static void loadNativeLibrary() {
+    try {
+      String dir = System.getProperty("weasis.native.dir");
+      if (dir == null) {
+        System.loadLibrary("opencv_java");
+      } else {
+        System.load(new File(dir, System.mapLibraryName("opencv_java")).getAbsolutePath());
+      }
+      nativeLoaded = true;
+    } catch (UnsatisfiedLinkError e) {
+      nativeLoaded = false;
+    }
+  }
+
+  private static double[] buildPixels(int channels) {
+    double[] pixels = new double[WIDTH * HEIGHT * channels];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = (i * 37) % 11 - 3.0;
+    }
+    return pixels;
+  }
+
+  private static ImageCV buildImage(int type, double[] pixels) {
+    Assume.assumeTrue("OpenCV native library not available", nativeLoaded);
+    ImageCV img = new ImageCV(HEIGHT, WIDTH, type);
+    ImageCV values = new ImageCV(HEIGHT, WIDTH, CvType.makeType(CvType.CV_64F, img.channels()));
+    values.put(0, 0, pixels);
+    values.convertTo(img, type);
+    values.release();
+    return img;
+  }
+
+  private static IntegralImageStatistics buildTables(ImageCV img) {
+    ImageCV tables = IntegralImageStatistics.computeTables(img);
+    assertThat(tables.width()).isEqualTo(WIDTH + 1);
+    assertThat(tables.height()).isEqualTo(HEIGHT + 1);
+    assertThat(tables.channels()).isEqualTo(2 * img.channels());
+    assertThat(CvType.depth(tables.type())).isEqualTo(CvType.CV_64F);
+    return new IntegralImageStatistics(img.width(), img.height(), img.channels(), tables);
+  }
+
+  private static void assertRectangle(IntegralImageStatistics tables, double[] pixels) {
+    // Pixels 1 to 4 in x and 2 to 3 in y
+    RegionStatistics stats = tables.getRectangle(new Rectangle2D.Double(1.0, 2.0, 4.0, 2.0));
+    double sum = 0.0;
+    double sqSum = 0.0;
+    for (int y = 2; y <= 3; y++) {
+      for (int x = 1; x <= 4; x++) {
+        double val = pixels[y * WIDTH + x];
+        sum += val;
+        sqSum += val * val;
+      }
+    }
+    double mean = sum / 8.0;
+    double std = Math.sqrt((sqSum - 8.0 * mean * mean) / 7.0);
+    assertThat(stats.getCount()).isEqualTo(8L);
+    assertThat(stats.getMean(0)).isCloseTo(mean, within(1e-9));
+    assertThat(stats.getStd(0)).isCloseTo(std, within(1e-9));
+  }
+
+  @Test
+  public void testRectangle() {
+    double[] pixels = buildPixels(1);
+    IntegralImageStatistics tables = buildTables(buildImage(CvType.CV_32FC1, pixels));
+    assertRectangle(tables, pixels);
+
+    // Clipped to the image
+    RegionStatistics all = tables.getRectangle(new Rectangle2D.Double(-10.0, -10.0, 50.0, 50.0));
+    assertThat(all.getCount()).isEqualTo((long) WIDTH * HEIGHT);
+    // Outside the image
+    assertThat(tables.getRectangle(new Rectangle2D.Double(20.0, 0.0, 5.0, 5.0)).getCount())
+        .isZero();
+  }
+
+  @Test
+  public void testUnsupportedIntegralDepths() {
+    double[] pixels = buildPixels(1);
+    // Converted before computing the tables
+    assertRectangle(buildTables(buildImage(CvType.CV_8SC1, pixels)), pixels);
+    assertRectangle(buildTables(buildImage(CvType.CV_32SC1, pixels)), pixels);
+  }
+
+  @Test
+  public void testEllipse() {
+    double[] pixels = buildPixels(1);
+    IntegralImageStatistics tables = buildTables(buildImage(CvType.CV_16SC1, pixels));
+
+    Rectangle2D bounds = new Rectangle2D.Double(0.5, 0.2, 6.0, 4.4);
+    RegionStatistics stats = tables.getEllipse(bounds);
+    double rx = bounds.getWidth() / 2.0;
+    double ry = bounds.getHeight() / 2.0;
+    long count = 0;
+    double sum = 0.0;
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        double dx = (x + 0.5 - bounds.getCenterX()) / rx;
+        double dy = (y + 0.5 - bounds.getCenterY()) / ry;
+        if (dx * dx + dy * dy <= 1.0) {
+          count++;
+          sum += pixels[y * WIDTH + x];
+        }
+      }
+    }
+    assertThat(count).isGreaterThan(0L).isLessThan((long) WIDTH * HEIGHT);
+    assertThat(stats.getCount()).isEqualTo(count);
+    assertThat(stats.getMean(0)).isCloseTo(sum / count, within(1e-9));
+  }
+
+  @Test
+  public void testChannels() {
+    double[] pixels = new double[WIDTH * HEIGHT * 3];
+    for (int i = 0; i < pixels.length; i += 3) {
+      pixels[i] = 10.0;
+      pixels[i + 1] = 20.0;
+      pixels[i + 2] = i / 3.0;
+    }
+    IntegralImageStatistics tables = buildTables(buildImage(CvType.CV_8UC3, pixels));
+    RegionStatistics stats = tables.getRectangle(new Rectangle2D.Double(0.0, 0.0, WIDTH, HEIGHT));
+
+    assertThat(tables.getChannels()).isEqualTo(3);
+    assertThat(stats.getMean(0)).isCloseTo(10.0, within(1e-9));
+    assertThat(stats.getMean(1)).isCloseTo(20.0, within(1e-9));
+    assertThat(stats.getStd(1)).isCloseTo(0.0, within(1e-9));
+    assertThat(stats.getMean(2)).isCloseTo((WIDTH * HEIGHT - 1) / 2.0, within(1e-9));
+  }
+
+  @Test
+  public void testGetInstance() throws InterruptedException {
+    double[] pixels = buildPixels(1);
+    ImageCV img = buildImage(CvType.CV_16UC1, pixels);
+    // The negative values are saturated
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = img.get(i / WIDTH, i % WIDTH)[0];
+    }
+
+    // The tables are built in background
+    IntegralImageStatistics tables = IntegralImageStatistics.getInstance(img);
+    for (int i = 0; tables == null && i < 200; i++) {
+      Thread.sleep(25);
+      tables = IntegralImageStatistics.getInstance(img);
+    }
+    assertThat(tables).isNotNull();
+    assertRectangle(tables, pixels);
+
+    img.release();
+    assertThat(IntegralImageStatistics.isSupported(img)).isFalse();
+    assertThat(IntegralImageStatistics.getInstance(img)).isNull();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.ui.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.weasis.core.ui.model.graphic.Graphic;
+import org.weasis.core.ui.model.graphic.imp.area.RectangleGraphic;
+import org.weasis.core.ui.model.imp.XmlGraphicModel;
+
+public class GraphicSpatialIndexTest {
+
+  private static RectangleGraphic buildRectangle(double x, double y, double w, double h)
+      throws Exception {
+    return new RectangleGraphic().buildGraphic(new Rectangle2D.Double(x, y, w, h));
+  }
+
+  private static List<Graphic> bruteForce(
+      GraphicModel model, Rectangle rect, AffineTransform transform) {
+    List<Graphic> list = new ArrayList<>();
+    List<Graphic> models = model.getModels();
+    for (int i = models.size() - 1; i >= 0; i--) {
+      Graphic g = models.get(i);
+      Rectangle bounds = g.getBounds(transform);
+      Area area = g.getArea(transform);
+      if (bounds != null && bounds.intersects(rect) && area != null && area.intersects(rect)) {
+        list.add(g);
+      }
+    }
+    return list;
+  }
+
+  @Test
+  public void testIntersectingGraphicsMatchFullScan() throws Exception {
+    GraphicModel model = new XmlGraphicModel();
+    for (int i = 0; i < 100; i++) {
+      for (int j = 0; j < 100; j++) {
+        model.addGraphic(buildRectangle(i * 20.0, j * 20.0, 10.0 + (i % 3), 10.0 + (j % 4)));
+      }
+    }
+
+    AffineTransform transform = AffineTransform.getScaleInstance(2.0, 2.0);
+    Rectangle[] rects = {
+      new Rectangle(0, 0, 5, 5),
+      new Rectangle(105, 215, 40, 3),
+      new Rectangle(1990, 1990, 30, 30),
+      new Rectangle(-50, -50, 3000, 3000),
+      new Rectangle(5000, 5000, 10, 10)
+    };
+    for (Rectangle rect : rects) {
+      assertThat(model.getSelectedAllGraphicsIntersecting(rect, transform))
+          .containsExactlyElementsOf(bruteForce(model, rect, transform));
+    }
+  }
+
+  @Test
+  public void testGraphicIsReindexedWhenChanged() throws Exception {
+    GraphicModel model = new XmlGraphicModel();
+    RectangleGraphic moved = buildRectangle(0, 0, 10, 10);
+    model.addGraphic(moved);
+    model.addGraphic(buildRectangle(100, 100, 10, 10));
+
+    AffineTransform transform = new AffineTransform();
+    Rectangle target = new Rectangle(1000, 1000, 5, 5);
+    assertThat(model.getSelectedAllGraphicsIntersecting(target, transform)).isEmpty();
+
+    moved.buildGraphic(new Rectangle2D.Double(998, 998, 10, 10));
+    assertThat(model.getSelectedAllGraphicsIntersecting(target, transform)).containsExactly(moved);
+    assertThat(model.getSelectedAllGraphicsIntersecting(new Rectangle(0, 0, 5, 5), transform))
+        .isEmpty();
+  }
+
+  @Test
+  public void testFrontGraphicIsReturnedFirst() throws Exception {
+    GraphicModel model = new XmlGraphicModel();
+    RectangleGraphic back = buildRectangle(0, 0, 10, 10);
+    RectangleGraphic front = buildRectangle(5, 5, 10, 10);
+    model.addGraphic(back);
+    model.addGraphic(front);
+
+    AffineTransform transform = new AffineTransform();
+    Rectangle rect = new Rectangle(6, 6, 2, 2);
+    assertThat(model.getSelectedAllGraphicsIntersecting(rect, transform))
+        .containsExactly(front, back);
+
+    // Same operation as bring to back
+    Collections.rotate(model.getModels(), 1);
+    assertThat(model.getSelectedAllGraphicsIntersecting(rect, transform))
+        .containsExactly(back, front);
+  }
+}
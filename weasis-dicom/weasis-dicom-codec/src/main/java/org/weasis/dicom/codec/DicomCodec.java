@@ -9,6 +9,7 @@
  */
 package org.weasis.dicom.codec;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Dictionary;
@@ -33,6 +34,7 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.media.data.Codec;
 import org.weasis.core.api.media.data.MediaReader;
 import org.weasis.core.api.service.AuditLog;
@@ -182,6 +184,11 @@ public class DicomCodec implements Codec {
       ImageioUtil.registerServiceProvider(p);
     }
 
+    File dataFolder = AppProperties.getBundleDataFolder(context.getBundleContext());
+    if (dataFolder != null) {
+      DicomHeaderIndex.setIndexDir(new File(dataFolder, "header-index")); // NON-NLS
+    }
+
     ConfigurationAdmin confAdmin =
         BundlePreferences.getService(context.getBundleContext(), ConfigurationAdmin.class);
     if (confAdmin != null) {
@@ -208,6 +215,7 @@ public class DicomCodec implements Codec {
   @Deactivate
   protected void deactivate(ComponentContext context) {
     LOGGER.info("Deactivate DicomCodec");
+    DicomHeaderIndex.close();
     for (IIOServiceProvider p : dcm4cheCodecs) {
       ImageioUtil.deregisterServiceProvider(p);
     }
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.imageio.plugins.dcm.DicomMetaData;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.BoundedCache;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.util.FileUtil;
+
+/**
+ * Persistent index of the DICOM headers of local files. There is one index file per folder, each
+ * entry is keyed by the file name and is valid only while the size and the last modified time of
+ * the file are unchanged. The headers are stored without their bulk data (pixel data, overlays,
+ * waveforms...) which are replaced by empty values.
+ *
+ * <p>The index allows to build the DICOM model without opening the files again. It is disabled by
+ * default as it keeps a copy of the patient headers of every folder opened (including removable
+ * media). The index files of the folders in the temporary directory (e.g. the file cache or the
+ * imported archives) are written in the temporary directory as they are deleted at the next launch.
+ * The other index files are deleted when they have not been used for a while or when they exceed
+ * their disk size limit.
+ */
+public final class DicomHeaderIndex {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DicomHeaderIndex.class);
+
+  /** Enable the header index (disabled by default) */
+  public static final String HEADER_INDEX = "weasis.dicom.header.index"; // NON-NLS
+  /** Maximum size (in MB) of the folder indexes kept in memory */
+  public static final String HEADER_INDEX_SIZE = "weasis.dicom.header.index.size"; // NON-NLS
+  /** Number of days after which an unused index file is deleted */
+  public static final String HEADER_INDEX_MAX_AGE = "weasis.dicom.header.index.max.age"; // NON-NLS
+  /** Maximum size (in MB) of the index files on disk */
+  public static final String HEADER_INDEX_DISK_SIZE =
+      "weasis.dicom.header.index.disk.size"; // NON-NLS
+
+  private static final int MAGIC = 0x57444849; // WDHI
+  private static final int VERSION = 1;
+  private static final String INDEX_EXTENSION = ".idx"; // NON-NLS
+
+  private static final BoundedCache<File, FolderIndex> FOLDERS =
+      new BoundedCache<File, FolderIndex>(
+          "DICOM header index", // NON-NLS
+          BoundedCache.getMaxSizeProperty(HEADER_INDEX_SIZE, 64L << 20)) {
+
+        @Override
+        protected long sizeOf(FolderIndex index) {
+          return index.getSize();
+        }
+
+        @Override
+        protected void afterEntryRemove(File folder, FolderIndex index) {
+          // Written at the next flush, not while evicting
+          if (index.isModified()) {
+            EVICTED.put(folder, index);
+          }
+        }
+      };
+
+  // Modified indexes removed from memory before being written
+  private static final Map<File, FolderIndex> EVICTED = new ConcurrentHashMap<>();
+
+  private static final ExecutorService WRITER =
+      ThreadUtil.buildNewSingleThreadExecutor("DICOM Header Index"); // NON-NLS
+
+  private static volatile File indexDir;
+
+  private DicomHeaderIndex() {}
+
+  /**
+   * @param dir the folder where the index files are written, null to keep the index only in
+   *     memory
+   */
+  public static void setIndexDir(File dir) {
+    indexDir = dir;
+    if (dir != null && isEnabled()) {
+      WRITER.execute(() -> cleanIndexDir(dir));
+    }
+  }
+
+  public static File getIndexDir() {
+    return indexDir;
+  }
+
+  public static boolean isEnabled() {
+    return BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(HEADER_INDEX, false);
+  }
+
+  /**
+   * @param file the DICOM file
+   * @return true if the index contains a valid header of the file
+   */
+  public static boolean contains(File file) {
+    FolderIndex index = getFolderIndex(file, false);
+    return index != null && index.getEntry(file) != null;
+  }
+
+  /**
+   * @param file the DICOM file
+   * @return the indexed header of the file (without bulk data) or null if the file is not indexed
+   *     or has been modified since
+   */
+  public static DicomMetaData get(File file) {
+    FolderIndex index = getFolderIndex(file, false);
+    if (index != null) {
+      Entry entry = index.getEntry(file);
+      if (entry != null) {
+        try {
+          return new DicomMetaData(decode(entry.fmi), decode(entry.dataset));
+        } catch (IOException e) {
+          LOGGER.warn("Cannot read the indexed header of {}", file, e);
+          index.remove(file);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the header of a file into the index of its folder.
+   *
+   * @param file the DICOM file
+   * @param metadata the header read from the file
+   */
+  public static void put(File file, DicomMetaData metadata) {
+    if (file == null || metadata == null || metadata.getAttributes() == null) {
+      return;
+    }
+    FolderIndex index = getFolderIndex(file, true);
+    // Do not encode again the header of a file already indexed and unchanged
+    if (index != null && index.getEntry(file) == null) {
+      try {
+        byte[] fmi = encode(metadata.getFileMetaInformation());
+        byte[] dataset = encode(metadata.getAttributes());
+        index.put(new Entry(file.getName(), file.length(), file.lastModified(), fmi, dataset));
+        // Update the weight of the folder index
+        FOLDERS.put(index.folder, index);
+      } catch (IOException e) {
+        LOGGER.warn("Cannot index the header of {}", file, e);
+      }
+    }
+  }
+
+  /** Writes the modified folder indexes on disk in background. */
+  public static void flush() {
+    List<FolderIndex> indexes = getModifiedIndexes();
+    if (!indexes.isEmpty()) {
+      WRITER.execute(() -> save(indexes));
+    }
+  }
+
+  /** Writes the modified folder indexes on disk and waits until they are written. */
+  public static void close() {
+    save(getModifiedIndexes());
+  }
+
+  private static List<FolderIndex> getModifiedIndexes() {
+    List<FolderIndex> indexes = new ArrayList<>(EVICTED.values());
+    synchronized (FOLDERS) {
+      for (FolderIndex index : FOLDERS.values()) {
+        if (index.isModified()) {
+          indexes.add(index);
+        }
+      }
+    }
+    return indexes;
+  }
+
+  private static void save(List<FolderIndex> indexes) {
+    for (FolderIndex index : indexes) {
+      index.save();
+      if (!index.isModified()) {
+        EVICTED.remove(index.folder, index);
+      }
+    }
+  }
+
+  /**
+   * @param file the DICOM file
+   * @param create true to create the index of the folder when it does not exist
+   * @return the index of the folder of the file or null
+   */
+  private static FolderIndex getFolderIndex(File file, boolean create) {
+    if (file == null || !isEnabled()) {
+      return null;
+    }
+    File folder = file.getAbsoluteFile().getParentFile();
+    if (folder == null) {
+      return null;
+    }
+    synchronized (FOLDERS) {
+      FolderIndex index = FOLDERS.get(folder);
+      if (index == null) {
+        // Reuse an evicted index which has not been written yet
+        index = EVICTED.get(folder);
+        if (index == null) {
+          File indexFile = getIndexFile(folder);
+          if (!create && (indexFile == null || !indexFile.isFile())) {
+            return null;
+          }
+          index = new FolderIndex(folder, indexFile);
+          index.load();
+        }
+        FOLDERS.put(folder, index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Deletes the index files which have not been used since the maximum age and then the oldest
+   * ones until the total size is lower than the disk size limit.
+   *
+   * @param dir the folder of the index files
+   */
+  static void cleanIndexDir(File dir) {
+    File[] files = dir.listFiles((d, name) -> name.endsWith(INDEX_EXTENSION));
+    if (files == null) {
+      return;
+    }
+    long maxAge =
+        TimeUnit.DAYS.toMillis(
+            BundleTools.SYSTEM_PREFERENCES.getLongProperty(HEADER_INDEX_MAX_AGE, 30L));
+    long maxSize = BoundedCache.getMaxSizeProperty(HEADER_INDEX_DISK_SIZE, 256L << 20);
+    long limit = System.currentTimeMillis() - maxAge;
+    // The most recently used first
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    long size = 0L;
+    for (File f : files) {
+      size += f.length();
+      if (f.lastModified() < limit || size > maxSize) {
+        FileUtil.delete(f);
+      }
+    }
+  }
+
+  /**
+   * @param folder the folder of the DICOM files
+   * @return true if the index of the folder is in memory
+   */
+  static boolean isLoaded(File folder) {
+    return folder != null && FOLDERS.containsKey(folder.getAbsoluteFile());
+  }
+
+  private static File getIndexFile(File folder) {
+    File dir = indexDir;
+    if (dir == null) {
+      return null;
+    }
+    if (folder.getPath().startsWith(AppProperties.APP_TEMP_DIR.getAbsolutePath())) {
+      dir = new File(AppProperties.APP_TEMP_DIR, "header-index"); // NON-NLS
+    }
+    String name =
+        UUID.nameUUIDFromBytes(folder.getPath().getBytes(StandardCharsets.UTF_8)).toString();
+    return new File(dir, name + INDEX_EXTENSION);
+  }
+
+  static byte[] encode(Attributes attributes) throws IOException {
+    if (attributes == null) {
+      return new byte[0];
+    }
+    Attributes attrs = new Attributes(attributes);
+    removeBulkData(attrs);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+    try (DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian)) {
+      dos.writeDataset(null, attrs);
+    }
+    return out.toByteArray();
+  }
+
+  static Attributes decode(byte[] data) throws IOException {
+    if (data.length == 0) {
+      return null;
+    }
+    try (DicomInputStream dis =
+        new DicomInputStream(new ByteArrayInputStream(data), UID.ExplicitVRLittleEndian)) {
+      return dis.readDataset();
+    }
+  }
+
+  /**
+   * Replaces the bulk data values by empty values, the attributes are kept to preserve their
+   * presence in the header (e.g. Pixel Data).
+   */
+  private static void removeBulkData(Attributes attrs) throws IOException {
+    List<Object[]> bulkData = new ArrayList<>();
+    try {
+      attrs.accept(
+          (item, tag, vr, value) -> {
+            if (value instanceof BulkData || value instanceof Fragments) {
+              bulkData.add(new Object[] {item, tag, vr});
+            }
+            return true;
+          },
+          true);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    for (Object[] b : bulkData) {
+      ((Attributes) b[0]).setNull((Integer) b[1], (VR) b[2]);
+    }
+  }
+
+  static class Entry {
+    private final String name;
+    private final long length;
+    private final long lastModified;
+    private final byte[] fmi;
+    private final byte[] dataset;
+
+    Entry(String name, long length, long lastModified, byte[] fmi, byte[] dataset) {
+      this.name = name;
+      this.length = length;
+      this.lastModified = lastModified;
+      this.fmi = fmi;
+      this.dataset = dataset;
+    }
+
+    long getSize() {
+      return 64L + 2L * name.length() + fmi.length + dataset.length;
+    }
+  }
+
+  static class FolderIndex {
+    private final File folder;
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long size;
+    private boolean modified;
+
+    FolderIndex(File folder, File indexFile) {
+      this.folder = folder;
+      this.indexFile = indexFile;
+    }
+
+    synchronized long getSize() {
+      return 128L + size;
+    }
+
+    synchronized boolean isModified() {
+      return modified;
+    }
+
+    synchronized Entry getEntry(File file) {
+      Entry entry = entries.get(file.getName());
+      if (entry != null
+          && (entry.length != file.length() || entry.lastModified != file.lastModified())) {
+        // The file has changed, its header must be read again
+        remove(file);
+        return null;
+      }
+      return entry;
+    }
+
+    synchronized void put(Entry entry) {
+      Entry old = entries.put(entry.name, entry);
+      if (old != null) {
+        size -= old.getSize();
+      }
+      size += entry.getSize();
+      modified = true;
+    }
+
+    synchronized void remove(File file) {
+      Entry old = entries.remove(file.getName());
+      if (old != null) {
+        size -= old.getSize();
+        modified = true;
+      }
+    }
+
+    synchronized void load() {
+      if (indexFile == null || !indexFile.canRead()) {
+        return;
+      }
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536))) {
+        if (in.readInt() != MAGIC
+            || in.readInt() != VERSION
+            || !folder.getPath().equals(in.readUTF())) {
+          LOGGER.info("Ignore the header index {}", indexFile);
+          return;
+        }
+        int nb = in.readInt();
+        for (int i = 0; i < nb; i++) {
+          String name = in.readUTF();
+          long length = in.readLong();
+          long lastModified = in.readLong();
+          byte[] fmi = new byte[in.readInt()];
+          in.readFully(fmi);
+          byte[] dataset = new byte[in.readInt()];
+          in.readFully(dataset);
+          Entry entry = new Entry(name, length, lastModified, fmi, dataset);
+          entries.put(name, entry);
+          size += entry.getSize();
+        }
+        LOGGER.debug("Load {} headers from the index of {}", nb, folder);
+        // Keep the index file as recently used for the cleanup
+        indexFile.setLastModified(System.currentTimeMillis());
+      } catch (IOException e) {
+        LOGGER.error("Cannot read the header index {}", indexFile, e);
+        entries.clear();
+        size = 0L;
+      }
+    }
+
+    synchronized void save() {
+      if (!modified || indexFile == null) {
+        return;
+      }
+      // Remove the files which have been deleted
+      if (entries.values().removeIf(e -> !new File(folder, e.name).exists())) {
+        size = entries.values().stream().mapToLong(Entry::getSize).sum();
+      }
+      File parent = indexFile.getParentFile();
+      parent.mkdirs();
+      File tmp = new File(parent, indexFile.getName() + ".tmp"); // NON-NLS
+      try {
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536))) {
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          out.writeUTF(folder.getPath());
+          out.writeInt(entries.size());
+          for (Entry e : entries.values()) {
+            out.writeUTF(e.name);
+            out.writeLong(e.length);
+            out.writeLong(e.lastModified);
+            out.writeInt(e.fmi.length);
+            out.write(e.fmi);
+            out.writeInt(e.dataset.length);
+            out.write(e.dataset);
+          }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        modified = false;
+      } catch (IOException e) {
+        LOGGER.error("Cannot write the header index {}", indexFile, e);
+        tmp.delete();
+      }
+    }
+  }
+}
@@ -25,8 +25,8 @@ import org.weasis.core.api.gui.util.MathUtil;
 import org.weasis.core.api.image.LutShape;
 import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.image.util.WindLevelParameters;
+import org.weasis.core.api.media.data.BoundedCache;
 import org.weasis.core.api.media.data.ImageElement;
-import org.weasis.core.api.media.data.SoftHashMap;
 import org.weasis.core.api.media.data.TagReadable;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.dicom.codec.display.PresetWindowLevel;
@@ -45,7 +45,20 @@ public class DicomImageElement extends ImageElement {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DicomImageElement.class);
 
-  private static final SoftHashMap<LutParameters, LookupTableCV> LUT_Cache = new SoftHashMap<>();
+  /** Maximum size of the modality LUT cache (in MB) */
+  public static final String LUT_CACHE_SIZE = "weasis.dicom.lut.cache.size"; // NON-NLS
+
+  private static final BoundedCache<LutParameters, LookupTableCV> LUT_Cache =
+      new BoundedCache<LutParameters, LookupTableCV>(
+          "Modality LUT", // NON-NLS
+          BoundedCache.getMaxSizeProperty(LUT_CACHE_SIZE, 64L << 20)) {
+
+        @Override
+        protected long sizeOf(LookupTableCV lut) {
+          int bytes = lut.getDataType() == DataBuffer.TYPE_BYTE ? 1 : 2;
+          return 64L + (long) lut.getNumEntries() * lut.getNumBands() * bytes;
+        }
+      };
 
   private List<PresetWindowLevel> windowingPresetCollection = null;
   private Collection<LutShape> lutShapeCollection = null;
@@ -9,6 +9,7 @@
  */
 package org.weasis.dicom.codec;
 
+import java.awt.Dimension;
 import java.awt.image.DataBuffer;
 import java.io.BufferedInputStream;
 import java.io.File;
@@ -17,7 +18,6 @@ import java.io.IOException;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
-import java.lang.ref.Reference;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteOrder;
@@ -37,6 +37,7 @@ import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
 import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.Implementation;
+import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
@@ -52,11 +53,15 @@ import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
 import org.opencv.core.MatOfInt;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
 import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.BoundedCache;
 import org.weasis.core.api.media.data.Codec;
 import org.weasis.core.api.media.data.FileCache;
 import org.weasis.core.api.media.data.MediaElement;
@@ -64,12 +69,15 @@ import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.SimpleTagable;
-import org.weasis.core.api.media.data.SoftHashMap;
 import org.weasis.core.api.media.data.TagView;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.media.data.TileKey;
+import org.weasis.core.api.media.data.TilePyramid;
+import org.weasis.core.api.media.data.TiledMediaReader;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.util.FileUtil;
 import org.weasis.core.util.StringUtil;
+import org.weasis.dicom.codec.SlideLevels.SlideLevel;
 import org.weasis.dicom.codec.TagD.Level;
 import org.weasis.dicom.codec.display.CornerDisplay;
 import org.weasis.dicom.codec.display.Modality;
@@ -85,7 +93,7 @@ import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 import org.weasis.opencv.op.ImageProcessor;
 
-public class DicomMediaIO implements DcmMediaReader {
+public class DicomMediaIO implements DcmMediaReader, TiledMediaReader {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DicomMediaIO.class);
 
@@ -106,6 +114,9 @@ public class DicomMediaIO implements DcmMediaReader {
   public static final String UNREADABLE = "unreadable/dicom"; // NON-NLS
   public static final String SERIES_XDSI = "xds-i/dicom"; // NON-NLS
 
+  /** Maximum size of the DICOM header cache (in MB) */
+  public static final String HEADER_CACHE_SIZE = "weasis.dicom.header.cache.size"; // NON-NLS
+
   private static final AtomicInteger instanceID = new AtomicInteger(1);
   public static final TagManager tagManager = new TagManager();
 
@@ -254,20 +265,24 @@ public class DicomMediaIO implements DcmMediaReader {
         });
   }
 
-  private static final SoftHashMap<DicomMediaIO, DicomMetaData> HEADER_CACHE =
-      new SoftHashMap<DicomMediaIO, DicomMetaData>() {
+  private static final BoundedCache<DicomMediaIO, DicomMetaData> HEADER_CACHE =
+      new BoundedCache<DicomMediaIO, DicomMetaData>(
+          "DICOM header", // NON-NLS
+          BoundedCache.getMaxSizeProperty(
+              HEADER_CACHE_SIZE, Math.min(Runtime.getRuntime().maxMemory() / 8, 512L << 20))) {
 
         @Override
-        public void removeElement(Reference<? extends DicomMetaData> soft) {
-          DicomMediaIO key = reverseLookup.remove(soft);
-          if (key != null) {
-            hash.remove(key);
-            key.reset();
-          }
+        protected long sizeOf(DicomMetaData metadata) {
+          return estimateSize(metadata);
+        }
+
+        @Override
+        protected void afterEntryRemove(DicomMediaIO key, DicomMetaData metadata) {
+          key.reset();
         }
       };
 
-  // The above softReference HEADER_CACHE shall be used instead of the following dcmMetadata
+  // The above HEADER_CACHE shall be used instead of the following dcmMetadata
   // variable to get access to
   // the current DicomObject unless it's virtual and then URI doesn't exit. This case appends when
   // the dcmMetadata is
@@ -281,6 +296,8 @@ public class DicomMediaIO implements DcmMediaReader {
 
   private URI uri;
   private int numberOfFrame;
+  private TilePyramid tilePyramid;
+  private String slideSeriesUID;
   private final Map<TagW, Object> tags;
   private MediaElement[] image = null;
   private String mimeType;
@@ -370,7 +387,7 @@ public class DicomMediaIO implements DcmMediaReader {
 
     if (tags.size() == 0) {
       try {
-        DicomMetaData md = readMetaData();
+        DicomMetaData md = readMetaData(true);
         Attributes fmi = md.getFileMetaInformation();
         Attributes header = md.getAttributes();
         // Exclude DICOMDIR
@@ -778,6 +795,146 @@ public class DicomMediaIO implements DcmMediaReader {
     return null;
   }
 
+  /**
+   * @return true for a VL Whole Slide Microscopy image of the slide volume (or its thumbnail) in
+   *     the full tiled organization (TILED_FULL: all the tiles are stored in row-major order) with
+   *     a single focal plane and a single optical path
+   */
+  private static boolean isSlideVolume(Attributes ds) {
+    if (!UID.VLWholeSlideMicroscopyImageStorage.equals(ds.getString(Tag.SOPClassUID))
+        || !"TILED_FULL".equals(ds.getString(Tag.DimensionOrganizationType))) { // NON-NLS
+      return false;
+    }
+    String type = ds.getString(Tag.ImageType, 2);
+    if (type != null && !"VOLUME".equals(type) && !"THUMBNAIL".equals(type)) { // NON-NLS
+      // LABEL and OVERVIEW images are not part of the pyramid
+      return false;
+    }
+    Sequence paths = ds.getSequence(Tag.OpticalPathSequence);
+    return ds.getInt(Tag.TotalPixelMatrixFocalPlanes, 1) == 1
+        && ds.getInt(Tag.NumberOfOpticalPaths, 1) == 1
+        && (paths == null || paths.size() <= 1);
+  }
+
+  /**
+   * Builds the pyramid of a VL Whole Slide Microscopy image, where each frame is a tile of the
+   * total pixel matrix. The lower resolution levels are read from the other instances of the
+   * series, or computed from the tiles when they are not available.
+   */
+  private static TilePyramid buildTilePyramid(Attributes ds, int frames) {
+    if (frames > 1 && isSlideVolume(ds)) {
+      int width = ds.getInt(Tag.TotalPixelMatrixColumns, 0);
+      int height = ds.getInt(Tag.TotalPixelMatrixRows, 0);
+      int tileWidth = ds.getInt(Tag.Columns, 0);
+      int tileHeight = ds.getInt(Tag.Rows, 0);
+      if (width > tileWidth && height > 0 && tileWidth > 0 && tileHeight > 0) {
+        TilePyramid pyramid = new TilePyramid(width, height, tileWidth, tileHeight);
+        if (pyramid.getTileColumns(0) * pyramid.getTileRows(0) <= frames) {
+          return pyramid;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Registers this instance as a resolution level of the slide series. */
+  private void registerSlideLevel(Attributes ds) {
+    slideSeriesUID = null;
+    if (isSlideVolume(ds)) {
+      int tileWidth = ds.getInt(Tag.Columns, 0);
+      int tileHeight = ds.getInt(Tag.Rows, 0);
+      int width = ds.getInt(Tag.TotalPixelMatrixColumns, tileWidth);
+      int height = ds.getInt(Tag.TotalPixelMatrixRows, tileHeight);
+      if (width > 0 && height > 0 && tileWidth > 0 && tileHeight > 0) {
+        SlideLevel level = new SlideLevel(this, width, height, tileWidth, tileHeight);
+        if (level.getTileColumns() * level.getTileRows() <= numberOfFrame) {
+          slideSeriesUID = ds.getString(Tag.SeriesInstanceUID);
+          SlideLevels.register(slideSeriesUID, level);
+        }
+      }
+    }
+  }
+
+  @Override
+  public TilePyramid getTilePyramid(MediaElement media) {
+    if (isReadableDicom()) {
+      return tilePyramid;
+    }
+    return null;
+  }
+
+  @Override
+  public PlanarImage getTile(MediaElement media, TilePyramid pyramid, TileKey key)
+      throws Exception {
+    if (key.getLevel() == 0) {
+      int frame = key.getY() * pyramid.getTileColumns(0) + key.getX();
+      return getImageFragment(media, frame);
+    }
+    // The lower resolutions are stored in other instances of the series
+    SlideLevel level =
+        SlideLevels.getLevel(
+            slideSeriesUID,
+            pyramid.getLevelWidth(key.getLevel()),
+            pyramid.getLevelHeight(key.getLevel()),
+            pyramid.getTileWidth(),
+            pyramid.getTileHeight());
+    if (level == null || level.reader == this) {
+      return null;
+    }
+    return readSlideTile(level, key.getX(), key.getY());
+  }
+
+  @Override
+  public PlanarImage getOverview(MediaElement media, TilePyramid pyramid, int level)
+      throws Exception {
+    int width = pyramid.getLevelWidth(level);
+    int height = pyramid.getLevelHeight(level);
+    // The lowest resolution instance of the series which has enough pixels for the overview
+    SlideLevel slide = SlideLevels.getSmallestLevel(slideSeriesUID, width, height);
+    if (slide == null
+        || slide.reader == this
+        || (long) slide.width * slide.height > 16L * width * height) {
+      return null;
+    }
+    ImageCV img = null;
+    for (int r = 0; r < slide.getTileRows(); r++) {
+      for (int c = 0; c < slide.getTileColumns(); c++) {
+        PlanarImage tile = readSlideTile(slide, c, r);
+        if (tile == null) {
+          continue;
+        }
+        try {
+          if (img == null) {
+            img = new ImageCV(slide.height, slide.width, tile.type());
+            img.setTo(Scalar.all(0));
+          }
+          int x = c * slide.tileWidth;
+          int y = r * slide.tileHeight;
+          int w = Math.min(tile.width(), slide.width - x);
+          int h = Math.min(tile.height(), slide.height - y);
+          tile.toMat().submat(new Rect(0, 0, w, h)).copyTo(img.submat(new Rect(x, y, w, h)));
+        } finally {
+          tile.release();
+        }
+      }
+    }
+    if (img == null || (slide.width == width && slide.height == height)) {
+      return img;
+    }
+    try (ImageCV src = img) {
+      return ImageProcessor.scale(src, new Dimension(width, height), Imgproc.INTER_AREA);
+    }
+  }
+
+  private static PlanarImage readSlideTile(SlideLevel level, int tileX, int tileY)
+      throws Exception {
+    MediaElement[] elements = level.reader.getMediaElement();
+    if (elements == null || elements.length == 0) {
+      return null;
+    }
+    return level.reader.getImageFragment(elements[0], tileY * level.getTileColumns() + tileX);
+  }
+
   private static Mat getMatBuffer(ExtendSegmentedInputImageStream extParams) throws IOException {
     try (RandomAccessFile raf = new RandomAccessFile(extParams.getFile(), "r")) {
 
@@ -957,7 +1114,10 @@ public class DicomMediaIO implements DcmMediaReader {
       } else if (SERIES_ENCAP_DOC_MIMETYPE.equals(mimeType)) {
         image = new MediaElement[] {new DicomEncapDocElement(this, null)};
       } else {
-        if (numberOfFrame > 0) {
+        if (tilePyramid != null) {
+          // The frames are the tiles of one image
+          image = new MediaElement[] {new DicomImageElement(this, 0)};
+        } else if (numberOfFrame > 0) {
           image = new MediaElement[numberOfFrame];
           for (int i = 0; i < image.length; i++) {
             image[i] = new DicomImageElement(this, i);
@@ -1009,7 +1169,7 @@ public class DicomMediaIO implements DcmMediaReader {
 
   @Override
   public int getMediaElementNumber() {
-    return numberOfFrame;
+    return tilePyramid == null ? numberOfFrame : 1;
   }
 
   @Override
@@ -1174,6 +1334,7 @@ public class DicomMediaIO implements DcmMediaReader {
 
   public void dispose() {
     HEADER_CACHE.remove(this);
+    SlideLevels.unregister(this);
     readingHeader = false;
     readingImage = false;
     reset();
@@ -1200,16 +1361,71 @@ public class DicomMediaIO implements DcmMediaReader {
     tsuid = null;
   }
 
+  /** @return the DICOM header cache, for its size and hit/miss/eviction counters */
+  public static BoundedCache<DicomMediaIO, DicomMetaData> getHeaderCache() {
+    return HEADER_CACHE;
+  }
+
+  /**
+   * @param metadata the DICOM header
+   * @return the estimated size in bytes of the header in memory
+   */
+  static long estimateSize(DicomMetaData metadata) {
+    long[] size = {256L};
+    Attributes.Visitor visitor =
+        (attrs, tag, vr, value) -> {
+          size[0] += 32L + estimateValueSize(value);
+          return true;
+        };
+    try {
+      if (metadata.getFileMetaInformation() != null) {
+        metadata.getFileMetaInformation().accept(visitor, true);
+      }
+      if (metadata.getAttributes() != null) {
+        metadata.getAttributes().accept(visitor, true);
+      }
+    } catch (Exception e) {
+      LOGGER.debug("Cannot estimate the header size", e);
+    }
+    return size[0];
+  }
+
+  private static long estimateValueSize(Object value) {
+    if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    } else if (value instanceof String) {
+      return 40L + 2L * ((String) value).length();
+    } else if (value instanceof String[]) {
+      long size = 16L;
+      for (String v : (String[]) value) {
+        size += v == null ? 4L : 40L + 2L * v.length();
+      }
+      return size;
+    } else if (value instanceof BulkData) {
+      String uri = ((BulkData) value).getURI();
+      return 64L + (uri == null ? 0L : 2L * uri.length());
+    }
+    // Nested datasets of a sequence are visited
+    return 16L;
+  }
+
   public DicomMetaData getStreamMetadata() throws IOException {
     return readMetaData();
   }
 
+  private DicomMetaData readMetaData() throws IOException {
+    return readMetaData(false);
+  }
+
   /**
    * Reads the DICOM header meta-data, up to, but not including pixel data.
    *
+   * @param useIndex true to get the header from {@link DicomHeaderIndex} when the file has not
+   *     changed. This header has no bulk data and does not set the pixel data location, it is only
+   *     used to build the tags of the instance.
    * @throws Exception
    */
-  private synchronized DicomMetaData readMetaData() throws IOException {
+  private synchronized DicomMetaData readMetaData(boolean useIndex) throws IOException {
     DicomMetaData header = HEADER_CACHE.get(this);
     if (header != null) {
       return header;
@@ -1217,6 +1433,20 @@ public class DicomMediaIO implements DcmMediaReader {
       return dcmMetadata;
     }
 
+    boolean indexable = "file".equals(uri.getScheme()) && DicomHeaderIndex.isEnabled(); // NON-NLS
+    if (useIndex && indexable) {
+      header = DicomHeaderIndex.get(new File(uri));
+      if (header != null) {
+        Attributes ds = header.getAttributes();
+        Attributes fmi = header.getFileMetaInformation();
+        if (getPixelData(ds) != null) {
+          tsuid = fmi == null ? null : fmi.getString(Tag.TransferSyntaxUID);
+          readPixelDescription(ds);
+        }
+        return header;
+      }
+    }
+
     try {
       readingHeader = true;
       if (iis == null) {
@@ -1243,18 +1473,11 @@ public class DicomMediaIO implements DcmMediaReader {
         fmi = ds.createFileMetaInformation(dis.getTransferSyntax());
       }
       DicomMetaData metadata = new DicomMetaData(fmi, ds);
-      Object pixdata = ds.getValue(Tag.PixelData, pixeldataVR);
-      if (pixdata == null) {
-        pixdata = ds.getValue(Tag.FloatPixelData, pixeldataVR);
-      }
-      if (pixdata == null) {
-        pixdata = ds.getValue(Tag.DoubleFloatPixelData, pixeldataVR);
-      }
+      Object pixdata = getPixelData(ds);
 
       if (pixdata != null) {
         tsuid = dis.getTransferSyntax();
-        numberOfFrame = ds.getInt(Tag.NumberOfFrames, 1);
-        hasPixel = ds.getInt(Tag.BitsStored, ds.getInt(Tag.BitsAllocated, 0)) > 0;
+        readPixelDescription(ds);
 
         if (!tsuid.startsWith("1.2.840.10008.1.2.4.10") && hasPixel) {
 
@@ -1287,6 +1510,9 @@ public class DicomMediaIO implements DcmMediaReader {
       }
 
       HEADER_CACHE.put(this, metadata);
+      if (indexable) {
+        DicomHeaderIndex.put(new File(uri), metadata);
+      }
       return metadata;
     } finally {
       readingHeader = false;
@@ -1295,6 +1521,24 @@ public class DicomMediaIO implements DcmMediaReader {
     }
   }
 
+  private Object getPixelData(Attributes ds) {
+    Object pixdata = ds.getValue(Tag.PixelData, pixeldataVR);
+    if (pixdata == null) {
+      pixdata = ds.getValue(Tag.FloatPixelData, pixeldataVR);
+    }
+    if (pixdata == null) {
+      pixdata = ds.getValue(Tag.DoubleFloatPixelData, pixeldataVR);
+    }
+    return pixdata;
+  }
+
+  private void readPixelDescription(Attributes ds) {
+    numberOfFrame = ds.getInt(Tag.NumberOfFrames, 1);
+    hasPixel = ds.getInt(Tag.BitsStored, ds.getInt(Tag.BitsAllocated, 0)) > 0;
+    tilePyramid = buildTilePyramid(ds, numberOfFrame);
+    registerSlideLevel(ds);
+  }
+
   private boolean decodeJpeg2000(ImageInputStream iis) throws IOException {
     iis.mark();
     try {
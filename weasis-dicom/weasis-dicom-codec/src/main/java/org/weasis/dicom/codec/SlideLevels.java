@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The resolution levels of the VL Whole Slide Microscopy series. Each level of the pyramid is
+ * stored in a separate instance of the series, the instances are registered when their header is
+ * read.
+ */
+final class SlideLevels {
+
+  private static final Map<String, List<SlideLevel>> SERIES = new ConcurrentHashMap<>();
+
+  private SlideLevels() {}
+
+  static class SlideLevel {
+    final DicomMediaIO reader;
+    final int width;
+    final int height;
+    final int tileWidth;
+    final int tileHeight;
+
+    SlideLevel(DicomMediaIO reader, int width, int height, int tileWidth, int tileHeight) {
+      this.reader = reader;
+      this.width = width;
+      this.height = height;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+    }
+
+    int getTileColumns() {
+      return (width + tileWidth - 1) / tileWidth;
+    }
+
+    int getTileRows() {
+      return (height + tileHeight - 1) / tileHeight;
+    }
+  }
+
+  static void register(String seriesUID, SlideLevel level) {
+    if (seriesUID != null && level != null) {
+      List<SlideLevel> levels =
+          SERIES.computeIfAbsent(seriesUID, k -> new CopyOnWriteArrayList<>());
+      levels.removeIf(l -> l.reader == level.reader);
+      levels.add(level);
+    }
+  }
+
+  static void unregister(DicomMediaIO reader) {
+    SERIES.values().forEach(l -> l.removeIf(s -> s.reader == reader));
+    SERIES.values().removeIf(List::isEmpty);
+  }
+
+  /**
+   * @return the instance having exactly the size and the tile size of a level of the pyramid, or
+   *     null
+   */
+  static SlideLevel getLevel(
+      String seriesUID, int width, int height, int tileWidth, int tileHeight) {
+    List<SlideLevel> levels = seriesUID == null ? null : SERIES.get(seriesUID);
+    if (levels != null) {
+      for (SlideLevel l : levels) {
+        // Tolerate the rounding of the downsampling
+        if (Math.abs(l.width - width) <= 1
+            && Math.abs(l.height - height) <= 1
+            && l.tileWidth == tileWidth
+            && l.tileHeight == tileHeight) {
+          return l;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** @return the smallest instance which is at least of the given size, or null */
+  static SlideLevel getSmallestLevel(String seriesUID, int minWidth, int minHeight) {
+    List<SlideLevel> levels = seriesUID == null ? null : SERIES.get(seriesUID);
+    SlideLevel best = null;
+    if (levels != null) {
+      for (SlideLevel l : levels) {
+        if (l.width >= minWidth
+            && l.height >= minHeight
+            && (best == null || (long) l.width * l.height < (long) best.width * best.height)) {
+          best = l;
+        }
+      }
+    }
+    return best;
+  }
+}
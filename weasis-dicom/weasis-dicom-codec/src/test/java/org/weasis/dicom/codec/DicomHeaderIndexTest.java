@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.imageio.plugins.dcm.DicomMetaData;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.core.api.service.BundleTools;
+
+public class DicomHeaderIndexTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void enableIndex() {
+    BundleTools.SYSTEM_PREFERENCES.putBooleanProperty(DicomHeaderIndex.HEADER_INDEX, true);
+  }
+
+  @Test
+  public void testEncodeWithoutBulkData() throws Exception {
+    Attributes attrs = new Attributes();
+    attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4");
+    attrs.setString(Tag.PatientName, VR.PN, "Doe^John");
+    attrs.setInt(Tag.Rows, VR.US, 512);
+    attrs.setValue(Tag.PixelData, VR.OW, new BulkData("file:/dummy.dcm", 1024, 524288, false));
+    Sequence seq = attrs.newSequence(Tag.WaveformSequence, 1);
+    Attributes item = new Attributes();
+    item.setInt(Tag.NumberOfWaveformChannels, VR.US, 12);
+    item.setValue(Tag.WaveformData, VR.OW, new BulkData("file:/dummy.dcm", 4096, 2048, false));
+    seq.add(item);
+
+    Attributes decoded = DicomHeaderIndex.decode(DicomHeaderIndex.encode(attrs));
+
+    assertEquals("1.2.3.4", decoded.getString(Tag.SOPInstanceUID));
+    assertEquals("Doe^John", decoded.getString(Tag.PatientName));
+    assertEquals(512, decoded.getInt(Tag.Rows, 0));
+    // The bulk data are kept as empty attributes
+    assertTrue(decoded.contains(Tag.PixelData));
+    assertEquals(0, decoded.getBytes(Tag.PixelData).length);
+    Attributes decodedItem = decoded.getNestedDataset(Tag.WaveformSequence);
+    assertEquals(12, decodedItem.getInt(Tag.NumberOfWaveformChannels, 0));
+    assertTrue(decodedItem.contains(Tag.WaveformData));
+    // The source attributes are unchanged
+    assertTrue(attrs.getValue(Tag.PixelData) instanceof BulkData);
+  }
+
+  @Test
+  public void testEncodeNull() throws Exception {
+    assertNull(DicomHeaderIndex.decode(DicomHeaderIndex.encode(null)));
+  }
+
+  @Test
+  public void testSeveralFoldersStayInMemory() throws Exception {
+    int nbFolders = 10;
+    int nbFiles = 20;
+    File[] folders = new File[nbFolders];
+    for (int i = 0; i < nbFolders; i++) {
+      folders[i] = tempFolder.newFolder("series" + i);
+      for (int j = 0; j < nbFiles; j++) {
+        File file = new File(folders[i], "image" + j + ".dcm");
+        Files.write(file.toPath(), new byte[] {0});
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + i + "." + j);
+        attrs.setString(Tag.PatientName, VR.PN, "Doe^John");
+        DicomHeaderIndex.put(file, new DicomMetaData(null, attrs));
+      }
+    }
+
+    for (int i = 0; i < nbFolders; i++) {
+      assertTrue(DicomHeaderIndex.isLoaded(folders[i]));
+      for (int j = 0; j < nbFiles; j++) {
+        DicomMetaData md = DicomHeaderIndex.get(new File(folders[i], "image" + j + ".dcm"));
+        assertNotNull(md);
+        assertEquals("1.2.3." + i + "." + j, md.getAttributes().getString(Tag.SOPInstanceUID));
+      }
+    }
+  }
+
+  @Test
+  public void testContainsDoesNotCreateIndex() throws Exception {
+    File folder = tempFolder.newFolder("notIndexed");
+    File file = new File(folder, "image.dcm");
+    Files.write(file.toPath(), new byte[] {0});
+
+    assertFalse(DicomHeaderIndex.contains(file));
+    assertNull(DicomHeaderIndex.get(file));
+    assertFalse(DicomHeaderIndex.isLoaded(folder));
+  }
+
+  @Test
+  public void testCleanIndexDir() throws Exception {
+    File dir = tempFolder.newFolder("header-index");
+    long now = System.currentTimeMillis();
+    File old = new File(dir, "old.idx");
+    Files.write(old.toPath(), new byte[16]);
+    old.setLastModified(now - TimeUnit.DAYS.toMillis(60));
+    File recent = new File(dir, "recent.idx");
+    Files.write(recent.toPath(), new byte[16]);
+    File other = new File(dir, "other.txt");
+    Files.write(other.toPath(), new byte[16]);
+
+    DicomHeaderIndex.cleanIndexDir(dir);
+
+    assertFalse(old.exists());
+    assertTrue(recent.exists());
+    assertTrue(other.exists());
+  }
+}
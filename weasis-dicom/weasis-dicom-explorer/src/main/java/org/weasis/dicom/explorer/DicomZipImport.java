@@ -11,9 +11,7 @@ package org.weasis.dicom.explorer;
 
 import java.awt.FlowLayout;
 import java.io.File;
-import java.io.IOException;
 import java.net.URI;
-import java.util.List;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
@@ -22,16 +20,9 @@ import javax.swing.border.TitledBorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.gui.util.AbstractItemDialogPage;
-import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.FileFormatFilter;
-import org.weasis.core.api.service.BundleTools;
-import org.weasis.core.api.util.ClosableURLConnection;
-import org.weasis.core.api.util.NetworkUtil;
-import org.weasis.core.api.util.URLParameters;
-import org.weasis.core.util.FileUtil;
 import org.weasis.core.util.StringUtil;
 import org.weasis.dicom.explorer.internal.Activator;
-import org.weasis.dicom.explorer.wado.LoadSeries;
 
 @SuppressWarnings("serial")
 public class DicomZipImport extends AbstractItemDialogPage implements ImportDicom {
@@ -115,48 +106,23 @@ public class DicomZipImport extends AbstractItemDialogPage implements ImportDico
 
   public static void loadDicomZip(File file, DicomModel dicomModel) {
     if (file != null && file.canRead()) {
-      File dir =
-          FileUtil.createTempDir(
-              AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
-      try {
-        FileUtil.unzip(file, dir);
-      } catch (IOException e) {
-        LOGGER.error("unzipping", e);
-      }
-      File dicomdir = new File(dir, "DICOMDIR");
-      if (dicomdir.canRead()) {
-        DicomDirLoader dirImport = new DicomDirLoader(dicomdir, dicomModel, false);
-        List<LoadSeries> loadSeries = dirImport.readDicomDir();
-        if (loadSeries != null && !loadSeries.isEmpty()) {
-          DicomModel.LOADING_EXECUTOR.execute(new LoadDicomDir(loadSeries, dicomModel));
-        } else {
-          LOGGER.error("Cannot import DICOM from {}", file);
-        }
-      } else {
-        LoadLocalDicom dicom = new LoadLocalDicom(new File[] {dir}, true, dicomModel);
-        DicomModel.LOADING_EXECUTOR.execute(dicom);
-      }
+      LoadDicomZip.ZIP_EXECUTOR.execute(new LoadDicomZip(file, dicomModel));
     }
   }
 
   public static void loadDicomZip(String uri, DicomModel dicomModel) {
     if (StringUtil.hasText(uri)) {
-      File tempFile = null;
       try {
         URI u = new URI(uri);
         if (u.toString().startsWith("file:")) { // NON-NLS
-          tempFile = new File(u.getPath());
+          loadDicomZip(new File(u.getPath()), dicomModel);
         } else {
-          tempFile = File.createTempFile("dicom_", ".zip", AppProperties.APP_TEMP_DIR); // NON-NLS
-          ClosableURLConnection urlConnection =
-              NetworkUtil.getUrlConnection(
-                  u.toURL(), new URLParameters(BundleTools.SESSION_TAGS_FILE));
-          FileUtil.writeStreamWithIOException(urlConnection.getInputStream(), tempFile);
+          // The remote archive is read as a stream, entries are loaded while downloading
+          LoadDicomZip.ZIP_EXECUTOR.execute(new LoadDicomZip(u, dicomModel));
         }
       } catch (Exception e) {
         LOGGER.error("Loading DICOM Zip", e);
       }
-      loadDicomZip(tempFile, dicomModel);
     }
   }
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.SeriesThumbnail;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ClosableURLConnection;
+import org.weasis.core.api.util.NetworkUtil;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.api.util.URLParameters;
+import org.weasis.core.util.FileUtil;
+import org.weasis.dicom.codec.DicomHeaderIndex;
+import org.weasis.dicom.codec.DicomMediaIO;
+
+/**
+ * Loads the DICOM files of a ZIP archive entry by entry. Each entry is written into a temporary
+ * cache folder and added to the model as soon as it is complete, so the first series can be
+ * displayed while the rest of the archive is still being read.
+ *
+ * <p>A local archive is read with random access through its central directory, a remote archive
+ * is read sequentially from the network stream without being downloaded first. The archive is read
+ * on its own thread, only the groups of extracted files are added to the model on {@link
+ * DicomModel#LOADING_EXECUTOR}.
+ *
+ * <p>The graphics files (xml) can be anywhere in the archive, they are associated with their DICOM
+ * file when both have been read. The extracted files which are not part of the model are deleted
+ * at the end of the import, the DICOM files are kept as their pixel data are read from them.
+ */
+public class LoadDicomZip extends LoadLocalDicom {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadDicomZip.class);
+
+  /** Reads the archives, must not be the executor of the DICOM model */
+  public static final ExecutorService ZIP_EXECUTOR =
+      ThreadUtil.buildNewSingleThreadExecutor("DICOM Zip"); // NON-NLS
+
+  private static final int BATCH_SIZE = 50;
+
+  private final File zipFile;
+  private final URI zipUri;
+  private final DicomModel dicomModel;
+  // Extracted files not yet added to the model, only accessed by the reading thread
+  private final List<File> extractedFiles = new ArrayList<>();
+  // The following fields are only accessed by the thread of the DICOM model.
+  // The DICOM files loaded before their graphics file, the loaders are kept by the model.
+  private final Map<File, Reference<DicomMediaIO>> filesWithoutGraphics = new HashMap<>();
+  private final List<File> presentationFiles = new ArrayList<>();
+  private final List<File> unusedFiles = new ArrayList<>();
+  private int nbDicomFiles;
+
+  public LoadDicomZip(File zipFile, DicomModel dicomModel) {
+    super(new File[0], false, dicomModel);
+    if (zipFile == null) {
+      throw new IllegalArgumentException("invalid parameters");
+    }
+    this.zipFile = zipFile;
+    this.zipUri = null;
+    this.dicomModel = dicomModel;
+  }
+
+  public LoadDicomZip(URI zipUri, DicomModel dicomModel) {
+    super(new File[0], false, dicomModel);
+    if (zipUri == null) {
+      throw new IllegalArgumentException("invalid parameters");
+    }
+    this.zipFile = null;
+    this.zipUri = zipUri;
+    this.dicomModel = dicomModel;
+  }
+
+  @Override
+  protected Boolean doInBackground() throws Exception {
+    dicomModel.firePropertyChange(
+        new ObservableEvent(ObservableEvent.BasicAction.LOADING_START, dicomModel, null, this));
+    File dir =
+        FileUtil.createTempDir(
+            AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
+    try {
+      if (zipFile != null) {
+        readZipFile(zipFile, dir);
+      } else {
+        readZipStream(zipUri, dir);
+      }
+    } catch (IOException e) {
+      LOGGER.error("Loading DICOM Zip", e);
+    } finally {
+      submitExtractedFiles();
+      // Wait until all the files are added to the model
+      DicomModel.LOADING_EXECUTOR
+          .submit(
+              () -> {
+                filesWithoutGraphics.clear();
+                unusedFiles.addAll(presentationFiles);
+                presentationFiles.clear();
+                deleteUnusedFiles(dir);
+                DicomHeaderIndex.flush();
+              })
+          .get();
+    }
+    return true;
+  }
+
+  private void readZipFile(File file, File dir) throws IOException {
+    try (ZipFile zip = new ZipFile(file)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements() && !isCancelled()) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.isDirectory()) {
+          try (InputStream in = zip.getInputStream(entry)) {
+            readEntry(entry, in, dir);
+          }
+        }
+      }
+    }
+  }
+
+  private void readZipStream(URI uri, File dir) throws IOException {
+    ClosableURLConnection urlConnection =
+        NetworkUtil.getUrlConnection(
+            uri.toURL(), new URLParameters(BundleTools.SESSION_TAGS_FILE));
+    try (ZipInputStream zis =
+        new ZipInputStream(new BufferedInputStream(urlConnection.getInputStream()))) {
+      ZipEntry entry;
+      while (!isCancelled() && (entry = zis.getNextEntry()) != null) {
+        if (!entry.isDirectory()) {
+          readEntry(entry, zis, dir);
+        }
+      }
+    } finally {
+      urlConnection.close();
+    }
+  }
+
+  private void readEntry(ZipEntry entry, InputStream in, File dir) throws IOException {
+    File file = new File(dir, entry.getName());
+    if (!file.getCanonicalPath().startsWith(dir.getCanonicalPath() + File.separator)) {
+      // Security check
+      LOGGER.warn("Entry is trying to leave the target dir: {}", entry.getName());
+      return;
+    }
+    file.getParentFile().mkdirs(); // NOSONAR only create a folder in the target directory
+    Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    extractedFiles.add(file);
+    if (extractedFiles.size() >= BATCH_SIZE) {
+      submitExtractedFiles();
+    }
+  }
+
+  private void submitExtractedFiles() {
+    if (!extractedFiles.isEmpty()) {
+      File[] files = extractedFiles.toArray(new File[0]);
+      extractedFiles.clear();
+      DicomModel.LOADING_EXECUTOR.execute(() -> addExtractedFiles(files));
+    }
+  }
+
+  private void addExtractedFiles(File[] files) {
+    List<SeriesThumbnail> thumbs = new ArrayList<>();
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(".xml")) { // NON-NLS
+        presentationFiles.add(file);
+        // Graphics file read after its DICOM file
+        String path = file.getPath();
+        Reference<DicomMediaIO> ref =
+            filesWithoutGraphics.remove(
+                new File(path.substring(0, path.length() - ".xml".length()))); // NON-NLS
+        DicomMediaIO loader = ref == null ? null : ref.get();
+        if (loader != null) {
+          setPresentationModel(loader, file);
+        }
+      } else if ("DICOMDIR".equalsIgnoreCase(name)) { // NON-NLS
+        // Each instance carries its own header, the DICOMDIR is not required to build the model
+        unusedFiles.add(file);
+      } else {
+        DicomMediaIO loader = addFile(file, thumbs);
+        if (loader == null) {
+          unusedFiles.add(file);
+        } else {
+          nbDicomFiles++;
+          if (!getPresentationFile(file).exists()) {
+            filesWithoutGraphics.put(file, new WeakReference<>(loader));
+          }
+        }
+      }
+    }
+    rebuildThumbnails(thumbs);
+  }
+
+  private void deleteUnusedFiles(File dir) {
+    if (nbDicomFiles == 0) {
+      FileUtil.recursiveDelete(dir);
+    } else {
+      for (File f : unusedFiles) {
+        FileUtil.delete(f);
+      }
+    }
+    unusedFiles.clear();
+  }
+}
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import org.dcm4che3.data.Tag;
 import org.slf4j.LoggerFactory;
@@ -36,6 +37,7 @@ import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.core.util.FileUtil;
 import org.weasis.dicom.codec.DicomCodec;
+import org.weasis.dicom.codec.DicomHeaderIndex;
 import org.weasis.dicom.codec.DicomMediaIO;
 import org.weasis.dicom.codec.DicomSpecialElement;
 import org.weasis.dicom.codec.TagD;
@@ -65,6 +67,7 @@ public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
     dicomModel.firePropertyChange(
         new ObservableEvent(ObservableEvent.BasicAction.LOADING_START, dicomModel, null, this));
     addSelectionAndnotify(files, true);
+    DicomHeaderIndex.flush();
     return true;
   }
 
@@ -94,28 +97,55 @@ public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
           folders.add(file[i]);
         }
       } else {
-        if (file[i].canRead()) {
-          if (FileUtil.isFileExtensionMatching(file[i], DicomCodec.FILE_EXTENSIONS)
-              || MimeInspector.isMatchingMimeTypeFromMagicNumber(
-                  file[i], DicomMediaIO.DICOM_MIMETYPE)) {
-            DicomMediaIO loader = new DicomMediaIO(file[i]);
-            if (loader.isReadableDicom()) {
-              // Issue: must handle adding image to viewer and building thumbnail (middle image)
-              SeriesThumbnail t = buildDicomStructure(loader, openPlugin);
-              if (t != null) {
-                thumbs.add(t);
-              }
+        addFile(file[i], thumbs);
+      }
+    }
+    rebuildThumbnails(thumbs);
+    for (int i = 0; i < folders.size(); i++) {
+      addSelectionAndnotify(folders.get(i).listFiles(), false);
+    }
+  }
 
-              File gpxFile = new File(file[i].getPath() + ".xml");
-              GraphicModel graphicModel = XmlSerializer.readPresentationModel(gpxFile);
-              if (graphicModel != null) {
-                loader.setTag(TagW.PresentationModel, graphicModel);
-              }
-            }
-          }
+  /**
+   * Adds a single DICOM file to the model when it is readable.
+   *
+   * @param file the DICOM file
+   * @param thumbs the list of thumbnails to rebuild once the loading of a group of files is done
+   * @return the reader of the file or null if the file is not a readable DICOM file
+   */
+  protected DicomMediaIO addFile(File file, List<SeriesThumbnail> thumbs) {
+    if (file.canRead()
+        && (FileUtil.isFileExtensionMatching(file, DicomCodec.FILE_EXTENSIONS)
+            || DicomHeaderIndex.contains(file)
+            || MimeInspector.isMatchingMimeTypeFromMagicNumber(
+                file, DicomMediaIO.DICOM_MIMETYPE))) {
+      DicomMediaIO loader = new DicomMediaIO(file);
+      if (loader.isReadableDicom()) {
+        // Issue: must handle adding image to viewer and building thumbnail (middle image)
+        SeriesThumbnail t = buildDicomStructure(loader, openPlugin);
+        if (t != null) {
+          thumbs.add(t);
         }
+        setPresentationModel(loader, getPresentationFile(file));
+        return loader;
       }
     }
+    return null;
+  }
+
+  /** @return the file of the graphics (xml) associated to a DICOM file */
+  protected static File getPresentationFile(File file) {
+    return new File(file.getPath() + ".xml"); // NON-NLS
+  }
+
+  protected static void setPresentationModel(DicomMediaIO loader, File gpxFile) {
+    GraphicModel graphicModel = XmlSerializer.readPresentationModel(gpxFile);
+    if (graphicModel != null) {
+      loader.setTag(TagW.PresentationModel, graphicModel);
+    }
+  }
+
+  protected void rebuildThumbnails(List<SeriesThumbnail> thumbs) {
     for (final SeriesThumbnail t : thumbs) {
       MediaSeries<MediaElement> series = t.getSeries();
       // Avoid to rebuild most of CR series thumbnail
@@ -123,9 +153,6 @@ public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
         GuiExecutor.instance().execute(t::reBuildThumbnail);
       }
     }
-    for (int i = 0; i < folders.size(); i++) {
-      addSelectionAndnotify(folders.get(i).listFiles(), false);
-    }
   }
 
   private SeriesThumbnail buildDicomStructure(DicomMediaIO dicomReader, boolean open) {
@@ -48,7 +48,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.util.AbstractItemDialogPage;
-import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.FileFormatFilter;
 import org.weasis.core.api.gui.util.JMVUtils;
 import org.weasis.core.api.media.data.MediaElement;
@@ -465,15 +464,10 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
     boolean writeDicomdir;
     boolean cdCompatible;
 
-    File writeDir;
-
     if (zipFile) {
       keepNames = false;
       writeDicomdir = true;
       cdCompatible = true;
-      writeDir =
-          FileUtil.createTempDir(
-              AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
     } else {
       Properties pref = Activator.IMPORT_EXPORT_PERSISTENCE;
       writeDicomdir = Boolean.valueOf(pref.getProperty(INC_DICOMDIR, Boolean.TRUE.toString()));
@@ -482,22 +476,18 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
               ? false
               : Boolean.valueOf(pref.getProperty(KEEP_INFO_DIR, Boolean.TRUE.toString()));
       cdCompatible = Boolean.valueOf(pref.getProperty(CD_COMPATIBLE, Boolean.FALSE.toString()));
-      writeDir = exportDir;
     }
 
-    DicomDirWriter writer = null;
-    try {
-
-      if (writeDicomdir) {
-        File dcmdirFile = new File(writeDir, "DICOMDIR");
-        writer = DicomDirLoader.open(dcmdirFile);
-      }
+    try (LocalExportWriter exportWriter =
+        new LocalExportWriter(exportDir, zipFile, writeDicomdir)) {
+      File writeDir = exportWriter.getWriteDir();
+      DicomDirWriter writer = exportWriter.getDicomDirWriter();
 
       synchronized (exportTree) {
-        ArrayList<String> uids = new ArrayList<>();
         TreePath[] paths = model.getCheckingPaths();
         for (TreePath treePath : paths) {
           if (task.isCancelled()) {
+            exportWriter.cancel();
             return;
           }
 
@@ -506,10 +496,7 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
           if (node.getUserObject() instanceof DicomImageElement) {
             DicomImageElement img = (DicomImageElement) node.getUserObject();
             String iuid = TagD.getTagValue(img, Tag.SOPInstanceUID, String.class);
-            int index = uids.indexOf(iuid);
-            if (index == -1) {
-              uids.add(iuid);
-            } else {
+            if (!exportWriter.addInstance(iuid)) {
               // Write only once the file for multiframe
               continue;
             }
@@ -518,17 +505,7 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
             }
 
             String path = buildPath(img, keepNames, writeDicomdir, cdCompatible, node);
-            File destinationDir = new File(writeDir, path);
-            destinationDir.mkdirs();
-
-            File destinationFile = new File(destinationDir, iuid);
-            if (img.saveToFile(destinationFile)) {
-              writeInDicomDir(writer, img, node, iuid, destinationFile);
-            } else {
-              LOGGER.error(
-                  "Cannot export DICOM file: {}",
-                  img.getFileCache().getOriginalFile().orElse(null));
-            }
+            exportWriter.write(img, node, path, iuid);
           } else if (node.getUserObject() instanceof MediaElement) {
             MediaElement dcm = (MediaElement) node.getUserObject();
             String iuid = TagD.getTagValue(dcm, Tag.SOPInstanceUID, String.class);
@@ -537,13 +514,7 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
             }
 
             String path = buildPath(dcm, keepNames, writeDicomdir, cdCompatible, node);
-            File destinationDir = new File(writeDir, path);
-            destinationDir.mkdirs();
-
-            File destinationFile = new File(destinationDir, iuid);
-            if (dcm.saveToFile(destinationFile)) {
-              writeInDicomDir(writer, dcm, node, iuid, destinationFile);
-            }
+            exportWriter.write(dcm, node, path, iuid);
           } else if (node.getUserObject() instanceof Series) {
             MediaSeries<?> s = (MediaSeries<?>) node.getUserObject();
             if (LangUtil.getNULLtoFalse((Boolean) s.getTagValue(TagW.ObjectToSave))) {
@@ -567,21 +538,6 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
       throw e;
     } catch (Exception e) {
       LOGGER.error("Cannot export DICOM", e);
-    } finally {
-      if (writer != null) {
-        // Commit DICOMDIR changes and close the file
-        writer.close();
-      }
-    }
-
-    if (zipFile) {
-      try {
-        FileUtil.zip(writeDir, exportDir);
-      } catch (Exception e) {
-        LOGGER.error("Cannot export DICOM ZIP file: {}", exportDir, e);
-      } finally {
-        FileUtil.recursiveDelete(writeDir);
-      }
     }
   }
 
@@ -677,7 +633,7 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
     return value.endsWith(".") ? value.substring(0, value.length() - 1) : value;
   }
 
-  private static boolean writeInDicomDir(
+  static boolean writeInDicomDir(
       DicomDirWriter writer,
       MediaElement img,
       DefaultMutableTreeNode node,
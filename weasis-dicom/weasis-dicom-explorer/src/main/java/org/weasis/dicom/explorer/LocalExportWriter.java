@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.dcm4che3.media.DicomDirWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.util.FileUtil;
+import org.weasis.dicom.codec.DicomMediaIO;
+
+/**
+ * Writes the DICOM files of a local export. The files are copied in parallel into the export
+ * folder or streamed directly into a ZIP file without intermediate folder. The DICOMDIR records
+ * are written by batch from the calling thread as {@link DicomDirWriter} is not thread-safe. When
+ * the export is cancelled, the partial output is deleted.
+ */
+public class LocalExportWriter implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalExportWriter.class);
+
+  public static final String EXPORT_THREADS = "weasis.export.threads"; // NON-NLS
+  private static final int BATCH_SIZE = 100;
+
+  private final File exportFile;
+  private final File writeDir;
+  private final ZipOutputStream zipStream;
+  private final DicomDirWriter dicomDirWriter;
+  private final ExecutorService copyExecutor;
+  private final Set<String> writtenUIDs = new HashSet<>();
+  private final List<Future<ExportedFile>> pending = new ArrayList<>();
+  private final List<File> writtenFiles = new ArrayList<>();
+  private volatile boolean cancelled;
+
+  /**
+   * @param exportFile the export folder or the ZIP file
+   * @param zipFile true to stream the files into the ZIP file {@code exportFile}
+   * @param writeDicomdir true to write the DICOMDIR
+   * @throws IOException if the ZIP file or the DICOMDIR cannot be created
+   */
+  public LocalExportWriter(File exportFile, boolean zipFile, boolean writeDicomdir)
+      throws IOException {
+    this.exportFile = exportFile;
+    if (zipFile) {
+      // Only the DICOMDIR and the files which are not on disk are written in this folder
+      this.writeDir =
+          FileUtil.createTempDir(
+              AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
+      this.zipStream =
+          new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(exportFile)));
+      // DICOM files are barely compressible, favor the throughput
+      zipStream.setLevel(Deflater.BEST_SPEED);
+    } else {
+      this.writeDir = exportFile;
+      this.zipStream = null;
+    }
+    this.dicomDirWriter =
+        writeDicomdir ? DicomDirLoader.open(new File(writeDir, "DICOMDIR")) : null;
+    int nbThreads = BundleTools.SYSTEM_PREFERENCES.getIntProperty(EXPORT_THREADS, 4);
+    this.copyExecutor =
+        zipFile
+            ? null
+            : ThreadUtil.buildNewFixedThreadExecutor(nbThreads, "Export DICOM"); // NON-NLS
+  }
+
+  /** @return the folder where the DICOMDIR and the generated files must be written */
+  public File getWriteDir() {
+    return writeDir;
+  }
+
+  public DicomDirWriter getDicomDirWriter() {
+    return dicomDirWriter;
+  }
+
+  /**
+   * @param sopInstanceUID the SOP Instance UID
+   * @return false if the instance has already been written (e.g. another frame of a multiframe)
+   */
+  public boolean addInstance(String sopInstanceUID) {
+    return writtenUIDs.add(sopInstanceUID);
+  }
+
+  /**
+   * Writes a DICOM file asynchronously, its DICOMDIR record is written at the next flush.
+   *
+   * @param media the media to export
+   * @param node the node of the export tree
+   * @param path the relative path of the destination folder
+   * @param fileID the name of the destination file
+   * @throws IOException if the file cannot be written in the ZIP stream
+   */
+  public void write(MediaElement media, DefaultMutableTreeNode node, String path, String fileID)
+      throws IOException {
+    File destinationDir = new File(writeDir, path);
+    File destinationFile = new File(destinationDir, fileID);
+    ExportedFile exported = new ExportedFile(media, node, fileID, destinationFile);
+    if (zipStream == null) {
+      writtenFiles.add(destinationFile);
+      pending.add(
+          copyExecutor.submit(
+              () -> {
+                destinationDir.mkdirs();
+                exported.written = media.saveToFile(destinationFile);
+                return exported;
+              }));
+    } else {
+      exported.written = writeZipEntry(media, path, destinationFile);
+      pending.add(CompletableFuture.completedFuture(exported));
+    }
+    if (pending.size() >= BATCH_SIZE) {
+      flush();
+    }
+  }
+
+  private boolean writeZipEntry(MediaElement media, String path, File destinationFile)
+      throws IOException {
+    Optional<File> source = media.getFileCache().getOriginalFile();
+    if (media.getMediaReader() instanceof DicomMediaIO
+        && !media.getFileCache().isElementInMemory()
+        && source.isPresent()) {
+      zipStream.putNextEntry(new ZipEntry(toEntryName(path, destinationFile.getName())));
+      Files.copy(source.get().toPath(), zipStream);
+      zipStream.closeEntry();
+      return true;
+    }
+    // Generated or in-memory files are written on disk and zipped when closing
+    destinationFile.getParentFile().mkdirs();
+    return media.saveToFile(destinationFile);
+  }
+
+  private static String toEntryName(String path, String name) {
+    return (path + File.separator + name).replace(File.separatorChar, '/');
+  }
+
+  /**
+   * Waits for the pending copies and writes their DICOMDIR records.
+   *
+   * @throws IOException if the DICOMDIR cannot be written
+   */
+  public void flush() throws IOException {
+    try {
+      for (Future<ExportedFile> f : pending) {
+        ExportedFile exported = getExportedFile(f);
+        if (exported == null) {
+          continue;
+        }
+        if (exported.written) {
+          LocalExport.writeInDicomDir(
+              dicomDirWriter,
+              exported.media,
+              exported.node,
+              exported.fileID,
+              exported.destinationFile);
+        } else {
+          LOGGER.error(
+              "Cannot export DICOM file: {}",
+              exported.media.getFileCache().getOriginalFile().orElse(null));
+        }
+      }
+    } finally {
+      pending.clear();
+    }
+  }
+
+  private static ExportedFile getExportedFile(Future<ExportedFile> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOGGER.error("Cannot export DICOM file", e.getCause());
+    }
+    return null;
+  }
+
+  /**
+   * Interrupts the pending copies, the partial output is deleted when closing the writer instead of
+   * being finished.
+   */
+  public void cancel() {
+    cancelled = true;
+    for (Future<ExportedFile> f : pending) {
+      f.cancel(true);
+    }
+    pending.clear();
+    if (copyExecutor != null) {
+      copyExecutor.shutdownNow();
+      try {
+        if (!copyExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+          LOGGER.warn("The DICOM copies are still running after the cancellation of the export");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (cancelled) {
+      deletePartialOutput();
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      if (copyExecutor != null) {
+        copyExecutor.shutdown();
+      }
+      if (dicomDirWriter != null) {
+        // Commit DICOMDIR changes and close the file
+        dicomDirWriter.close();
+      }
+      if (zipStream != null) {
+        try {
+          addFolderToZip(writeDir, "");
+        } finally {
+          FileUtil.safeClose(zipStream);
+          FileUtil.recursiveDelete(writeDir);
+        }
+      }
+    }
+  }
+
+  private void deletePartialOutput() {
+    if (dicomDirWriter != null) {
+      FileUtil.safeClose(dicomDirWriter);
+    }
+    if (zipStream == null) {
+      // Do not delete the export folder, it may contain other files
+      for (File f : writtenFiles) {
+        FileUtil.delete(f);
+      }
+      if (dicomDirWriter != null) {
+        FileUtil.delete(new File(writeDir, "DICOMDIR")); // NON-NLS
+      }
+    } else {
+      FileUtil.safeClose(zipStream);
+      FileUtil.recursiveDelete(writeDir);
+      FileUtil.delete(exportFile);
+    }
+    LOGGER.info("The export has been cancelled, delete the partial output in {}", exportFile);
+  }
+
+  private void addFolderToZip(File folder, String path) throws IOException {
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        String name = path.isEmpty() ? f.getName() : path + "/" + f.getName();
+        if (f.isDirectory()) {
+          addFolderToZip(f, name);
+        } else {
+          zipStream.putNextEntry(new ZipEntry(name));
+          Files.copy(f.toPath(), zipStream);
+          zipStream.closeEntry();
+        }
+      }
+    }
+  }
+
+  private static class ExportedFile {
+    private final MediaElement media;
+    private final DefaultMutableTreeNode node;
+    private final String fileID;
+    private final File destinationFile;
+    private volatile boolean written;
+
+    ExportedFile(
+        MediaElement media, DefaultMutableTreeNode node, String fileID, File destinationFile) {
+      this.media = media;
+      this.node = node;
+      this.fileID = fileID;
+      this.destinationFile = destinationFile;
+    }
+  }
+}
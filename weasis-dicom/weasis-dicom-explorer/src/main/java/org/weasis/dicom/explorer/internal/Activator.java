@@ -22,6 +22,7 @@ import org.weasis.core.util.FileUtil;
 import org.weasis.dicom.explorer.DicomExplorer;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.wado.DicomManager;
+import org.weasis.dicom.explorer.wado.DownloadCache;
 
 @Header(name = Constants.BUNDLE_ACTIVATOR, value = "${@class}")
 public class Activator implements BundleActivator {
@@ -37,6 +38,8 @@ public class Activator implements BundleActivator {
     FileUtil.readProperties(
         new File(BundlePreferences.getDataFolder(context), "import-export.properties"),
         IMPORT_EXPORT_PERSISTENCE);
+    DownloadCache.setCacheDir(
+        new File(BundlePreferences.getDataFolder(context), "download-cache")); // NON-NLS
   }
 
   @Override
@@ -47,6 +50,7 @@ public class Activator implements BundleActivator {
         null);
 
     DicomModel.LOADING_EXECUTOR.shutdownNow();
+    DownloadCache.prune();
     DataExplorerView explorer = UIManager.getExplorerplugin(DicomExplorer.NAME);
     if (explorer instanceof DicomExplorer) {
       DicomExplorer dexp = (DicomExplorer) explorer;
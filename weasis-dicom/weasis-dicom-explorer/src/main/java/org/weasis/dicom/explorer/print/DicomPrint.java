@@ -15,6 +15,7 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.geom.Point2D;
@@ -28,7 +29,9 @@ import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Executors;
@@ -37,11 +40,15 @@ import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.net.ApplicationEntity;
 import org.dcm4che3.net.Association;
 import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.DataWriter;
+import org.dcm4che3.net.DataWriterAdapter;
 import org.dcm4che3.net.Device;
 import org.dcm4che3.net.DimseRSP;
+import org.dcm4che3.net.PDVOutputStream;
 import org.dcm4che3.net.Status;
 import org.dcm4che3.net.pdu.AAssociateRQ;
 import org.dcm4che3.net.pdu.PresentationContext;
@@ -64,16 +71,35 @@ import org.weasis.opencv.data.PlanarImage;
 public class DicomPrint {
   private static final Logger LOGGER = LoggerFactory.getLogger(DicomPrint.class);
 
+  /** Number of rows of the film rendered at once */
+  private static final int BAND_HEIGHT = 256;
+
   private final DicomPrintNode dcmNode;
   private final DicomPrintOptions printOptions;
   private int interpolation;
   private double placeholderX;
   private double placeholderY;
 
-  private int lastx;
-  private double lastwx;
-  private double[] lastwy;
-  private double wx;
+  private int filmWidth;
+  private int filmHeight;
+  private final List<PrintCell> cells = new ArrayList<>();
+
+  private static class PrintCell {
+    private final ExportImage<? extends ImageElement> image;
+    private final double x;
+    private final double y;
+
+    PrintCell(ExportImage<? extends ImageElement> image, double x, double y) {
+      this.image = image;
+      this.x = x;
+      this.y = y;
+    }
+
+    /** @return the last row of the film covered by the cell, including the border */
+    double getBottom() {
+      return y + image.getSize().height + 2.0;
+    }
+  }
 
   public DicomPrint(DicomPrintNode dicomPrintNode, DicomPrintOptions printOptions) {
     if (dicomPrintNode == null) {
@@ -88,76 +114,87 @@ public class DicomPrint {
       return null;
     }
 
-    BufferedImage bufferedImage = initialize(layout);
+    initialize(layout);
+    BufferedImage bufferedImage = createFilmBuffer(filmWidth, filmHeight);
     Graphics2D g2d = (Graphics2D) bufferedImage.getGraphics();
-
     if (g2d != null) {
-      Color borderColor =
-          "WHITE".equals(printOptions.getBorderDensity()) ? Color.WHITE : Color.BLACK;
-      Color background = "WHITE".equals(printOptions.getEmptyDensity()) ? Color.WHITE : Color.BLACK;
-      g2d.setBackground(background);
-      if (!Color.BLACK.equals(background)) {
-        // Change background color
-        g2d.clearRect(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight());
+      paintBand(g2d, 0, filmHeight);
+      g2d.dispose();
+    }
+    return bufferedImage;
+  }
+
+  /**
+   * Prints the layout. The film is rendered by horizontal bands which are directly written into
+   * the N-SET request of the image box, so the memory required does not depend on the film size.
+   * The rendered image of a cell is released once the last band covering the cell is written.
+   *
+   * @param layout the layout to print
+   * @throws Exception if the print fails
+   */
+  public void print(ExportLayout<? extends ImageElement> layout) throws Exception {
+    if (layout == null) {
+      return;
+    }
+    initialize(layout);
+    Attributes imageBoxAttrs = new Attributes();
+    imageBoxAttrs.setInt(Tag.ImageBoxPosition, VR.US, 1);
+    Attributes dicomImage = new Attributes();
+    setImagePixelModule(dicomImage, filmWidth, filmHeight, printOptions.isColorPrint());
+    sendFilm(new FilmWriter(imageBoxAttrs, dicomImage));
+  }
+
+  private BufferedImage createFilmBuffer(int width, int height) {
+    if (printOptions.isColorPrint()) {
+      return createRGBBufferedImage(width, height);
+    } else {
+      return createGrayBufferedImage(width, height);
+    }
+  }
+
+  /**
+   * Paints the part of the film between bandY and bandY + bandHeight at the top of the graphics.
+   */
+  private void paintBand(Graphics2D g2d, int bandY, int bandHeight) {
+    Color borderColor = "WHITE".equals(printOptions.getBorderDensity()) ? Color.WHITE : Color.BLACK;
+    Color background = "WHITE".equals(printOptions.getEmptyDensity()) ? Color.WHITE : Color.BLACK;
+    // Nothing is painted outside the band
+    g2d.setClip(0, 0, filmWidth, bandHeight);
+    g2d.setBackground(background);
+    // Always clear as the buffer of the bands is reused
+    g2d.clearRect(0, 0, filmWidth, bandHeight);
+    g2d.translate(0, -bandY);
+    Shape bandClip = g2d.getClip();
+
+    Rectangle2D band = new Rectangle2D.Double(0, bandY, filmWidth, bandHeight);
+    for (PrintCell cell : cells) {
+      ExportImage<? extends ImageElement> image = cell.image;
+      Dimension viewSize = image.getSize();
+      // Includes the border
+      if (!band.intersects(cell.x - 2, cell.y - 2, viewSize.width + 4.0, viewSize.height + 4.0)) {
+        continue;
       }
-      final Map<LayoutConstraints, Component> elements = layout.getLayoutModel().getConstraints();
-      Iterator<Entry<LayoutConstraints, Component>> enumVal = elements.entrySet().iterator();
-      while (enumVal.hasNext()) {
-        Entry<LayoutConstraints, Component> e = enumVal.next();
-        LayoutConstraints key = e.getKey();
-        Component value = e.getValue();
-
-        ExportImage<? extends ImageElement> image = null;
-        Point2D.Double pad = new Point2D.Double(0.0, 0.0);
-
-        if (value instanceof ExportImage) {
-          image = (ExportImage) value;
-          formatImage(image, key, pad);
-        }
+      boolean wasBuffered = ImagePrint.disableDoubleBuffering(image);
 
-        if (key.gridx == 0) {
-          wx = 0.0;
-        } else if (lastx < key.gridx) {
-          wx += lastwx;
-        }
-        double wy = lastwy[key.gridx];
-
-        double x =
-            5 + (placeholderX * wx) + (MathUtil.isEqualToZero(wx) ? 0 : key.gridx * 5) + pad.x;
-        double y =
-            5 + (placeholderY * wy) + (MathUtil.isEqualToZero(wy) ? 0 : key.gridy * 5) + pad.y;
-        lastx = key.gridx;
-        lastwx = key.weightx;
-        for (int i = key.gridx; i < key.gridx + key.gridwidth; i++) {
-          lastwy[i] += key.weighty;
-        }
+      // Set us to the upper left corner
+      g2d.translate(cell.x, cell.y);
+      g2d.clip(image.getBounds());
+      image.draw(g2d);
+      ImagePrint.restoreDoubleBuffering(image, wasBuffered);
+      g2d.translate(-cell.x, -cell.y);
+      g2d.setClip(bandClip);
 
-        if (image != null) {
-          boolean wasBuffered = ImagePrint.disableDoubleBuffering(image);
-
-          // Set us to the upper left corner
-          g2d.translate(x, y);
-          g2d.setClip(image.getBounds());
-          image.draw(g2d);
-          ImagePrint.restoreDoubleBuffering(image, wasBuffered);
-          g2d.translate(-x, -y);
-
-          if (!borderColor.equals(background)) {
-            // Change background color
-            g2d.setClip(null);
-            g2d.setColor(borderColor);
-            g2d.setStroke(new BasicStroke(2));
-            Dimension viewSize = image.getSize();
-            g2d.drawRect((int) x - 1, (int) y - 1, viewSize.width + 1, viewSize.height + 1);
-          }
-        }
+      if (!borderColor.equals(background)) {
+        // Change background color
+        g2d.setColor(borderColor);
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawRect((int) cell.x - 1, (int) cell.y - 1, viewSize.width + 1, viewSize.height + 1);
       }
     }
-
-    return bufferedImage;
+    g2d.translate(0, bandY);
   }
 
-  private BufferedImage initialize(ExportLayout<? extends ImageElement> layout) {
+  private void initialize(ExportLayout<? extends ImageElement> layout) {
     Dimension dimGrid = layout.getLayoutModel().getGridSize();
     FilmSize filmSize = printOptions.getFilmSizeId();
     PrintOptions.DotPerInches dpi = printOptions.getDpi();
@@ -170,6 +207,8 @@ public class DicomPrint {
       width = height;
       height = tmp;
     }
+    filmWidth = width;
+    filmHeight = height;
 
     String mType = printOptions.getMagnificationType();
     interpolation = 1;
@@ -184,15 +223,48 @@ public class DicomPrint {
     placeholderX = width - (dimGrid.width + 1) * 5.0;
     placeholderY = height - (dimGrid.height + 1) * 5.0;
 
-    lastx = 0;
-    lastwx = 0.0;
-    lastwy = new double[dimGrid.width];
-    wx = 0.0;
+    int lastx = 0;
+    double lastwx = 0.0;
+    double[] lastwy = new double[dimGrid.width];
+    double wx = 0.0;
+
+    // Format the images and compute their position only once for all the bands
+    cells.clear();
+    final Map<LayoutConstraints, Component> elements = layout.getLayoutModel().getConstraints();
+    Iterator<Entry<LayoutConstraints, Component>> enumVal = elements.entrySet().iterator();
+    while (enumVal.hasNext()) {
+      Entry<LayoutConstraints, Component> e = enumVal.next();
+      LayoutConstraints key = e.getKey();
+      Component value = e.getValue();
+
+      ExportImage<? extends ImageElement> image = null;
+      Point2D.Double pad = new Point2D.Double(0.0, 0.0);
+
+      if (value instanceof ExportImage) {
+        image = (ExportImage) value;
+        formatImage(image, key, pad);
+      }
 
-    if (printOptions.isColorPrint()) {
-      return createRGBBufferedImage(width, height);
-    } else {
-      return createGrayBufferedImage(width, height);
+      if (key.gridx == 0) {
+        wx = 0.0;
+      } else if (lastx < key.gridx) {
+        wx += lastwx;
+      }
+      double wy = lastwy[key.gridx];
+
+      double x =
+          5 + (placeholderX * wx) + (MathUtil.isEqualToZero(wx) ? 0 : key.gridx * 5) + pad.x;
+      double y =
+          5 + (placeholderY * wy) + (MathUtil.isEqualToZero(wy) ? 0 : key.gridy * 5) + pad.y;
+      lastx = key.gridx;
+      lastwx = key.weightx;
+      for (int i = key.gridx; i < key.gridx + key.gridwidth; i++) {
+        lastwy[i] += key.weighty;
+      }
+
+      if (image != null) {
+        cells.add(new PrintCell(image, x, y));
+      }
     }
   }
 
@@ -270,10 +342,24 @@ public class DicomPrint {
   }
 
   public void printImage(BufferedImage image) throws Exception {
-    Attributes filmSessionAttrs = new Attributes();
-    Attributes filmBoxAttrs = new Attributes();
     Attributes imageBoxAttrs = new Attributes();
     Attributes dicomImage = new Attributes();
+    storeRasterInDicom(image, dicomImage, printOptions.isColorPrint());
+    imageBoxAttrs.setInt(Tag.ImageBoxPosition, VR.US, 1);
+
+    Sequence seq =
+        imageBoxAttrs.ensureSequence(
+            printOptions.isColorPrint()
+                ? Tag.BasicColorImageSequence
+                : Tag.BasicGrayscaleImageSequence,
+            1);
+    seq.add(dicomImage);
+    sendFilm(new DataWriterAdapter(imageBoxAttrs));
+  }
+
+  private void sendFilm(DataWriter imageBox) throws Exception {
+    Attributes filmSessionAttrs = new Attributes();
+    Attributes filmBoxAttrs = new Attributes();
     final String printManagementSOPClass =
         printOptions.isColorPrint()
             ? UID.BasicColorPrintManagementMeta
@@ -281,10 +367,6 @@ public class DicomPrint {
     final String imageBoxSOPClass =
         printOptions.isColorPrint() ? UID.BasicColorImageBox : UID.BasicGrayscaleImageBox;
 
-    storeRasterInDicom(image, dicomImage, printOptions.isColorPrint());
-
-    // writeDICOM(new File("/tmp/print.dcm"), dicomImage);
-
     String weasisAet =
         BundleTools.SYSTEM_PREFERENCES.getProperty("weasis.aet", "WEASIS_AE"); // NON-NLS
 
@@ -325,21 +407,13 @@ public class DicomPrint {
     filmBoxAttrs.setInt(Tag.MinDensity, VR.US, printOptions.getMinDensity());
     filmBoxAttrs.setInt(Tag.MaxDensity, VR.US, printOptions.getMaxDensity());
     filmBoxAttrs.setString(Tag.ImageDisplayFormat, VR.ST, printOptions.getImageDisplayFormat());
-    imageBoxAttrs.setInt(Tag.ImageBoxPosition, VR.US, 1);
 
-    Sequence seq =
-        imageBoxAttrs.ensureSequence(
-            printOptions.isColorPrint()
-                ? Tag.BasicColorImageSequence
-                : Tag.BasicGrayscaleImageSequence,
-            1);
-    seq.add(dicomImage);
     final String filmSessionUID = UIDUtils.createUID();
     final String filmBoxUID = UIDUtils.createUID();
     Attributes filmSessionSequenceObject = new Attributes();
     filmSessionSequenceObject.setString(Tag.ReferencedSOPClassUID, VR.UI, UID.BasicFilmSession);
     filmSessionSequenceObject.setString(Tag.ReferencedSOPInstanceUID, VR.UI, filmSessionUID);
-    seq = filmBoxAttrs.ensureSequence(Tag.ReferencedFilmSessionSequence, 1);
+    Sequence seq = filmBoxAttrs.ensureSequence(Tag.ReferencedFilmSessionSequence, 1);
     seq.add(filmSessionSequenceObject);
 
     AAssociateRQ rq = new AAssociateRQ();
@@ -376,7 +450,7 @@ public class DicomPrint {
               printManagementSOPClass,
               imageBoxSOPClass,
               imageBoxSequence.getString(Tag.ReferencedSOPInstanceUID),
-              imageBoxAttrs,
+              imageBox,
               UID.ImplicitVRLittleEndian));
       // Send N-ACTION message with the print action
       dimseRSPHandler(
@@ -420,24 +494,10 @@ public class DicomPrint {
       BufferedImage image, Attributes dcmObj, Boolean printInColor) {
     byte[] bytesOut = null;
     if (dcmObj != null && image != null) {
-      dcmObj.setInt(Tag.Columns, VR.US, image.getWidth());
-      dcmObj.setInt(Tag.Rows, VR.US, image.getHeight());
-      dcmObj.setInt(Tag.PixelRepresentation, VR.US, 0);
-      dcmObj.setString(
-          Tag.PhotometricInterpretation, VR.CS, printInColor ? "RGB" : "MONOCHROME2"); // NON-NLS
-      dcmObj.setInt(Tag.SamplesPerPixel, VR.US, printInColor ? 3 : 1);
-      dcmObj.setInt(Tag.BitsAllocated, VR.US, 8);
-      dcmObj.setInt(Tag.BitsStored, VR.US, 8);
-      dcmObj.setInt(Tag.HighBit, VR.US, 7);
-      // Assumed that the displayed image has always an 1/1 aspect ratio.
-      dcmObj.setInt(Tag.PixelAspectRatio, VR.IS, 1, 1);
-      // Issue with some PrintSCP servers
-      // dcmObj.putString(Tag.TransferSyntaxUID, VR.UI, UID.ImplicitVRLittleEndian);
+      setImagePixelModule(dcmObj, image.getWidth(), image.getHeight(), printInColor);
 
       DataBuffer dataBuffer;
       if (printInColor) {
-        // Must be PixelInterleavedSampleModel
-        dcmObj.setInt(Tag.PlanarConfiguration, VR.US, 0);
         dataBuffer = image.getRaster().getDataBuffer();
       } else {
         dataBuffer = convertRGBImageToMonochrome(image).getRaster().getDataBuffer();
@@ -460,6 +520,96 @@ public class DicomPrint {
     }
   }
 
+  private static void setImagePixelModule(
+      Attributes dcmObj, int width, int height, boolean printInColor) {
+    dcmObj.setInt(Tag.Columns, VR.US, width);
+    dcmObj.setInt(Tag.Rows, VR.US, height);
+    dcmObj.setInt(Tag.PixelRepresentation, VR.US, 0);
+    dcmObj.setString(
+        Tag.PhotometricInterpretation, VR.CS, printInColor ? "RGB" : "MONOCHROME2"); // NON-NLS
+    dcmObj.setInt(Tag.SamplesPerPixel, VR.US, printInColor ? 3 : 1);
+    dcmObj.setInt(Tag.BitsAllocated, VR.US, 8);
+    dcmObj.setInt(Tag.BitsStored, VR.US, 8);
+    dcmObj.setInt(Tag.HighBit, VR.US, 7);
+    // Assumed that the displayed image has always an 1/1 aspect ratio.
+    dcmObj.setInt(Tag.PixelAspectRatio, VR.IS, 1, 1);
+    // Issue with some PrintSCP servers
+    // dcmObj.putString(Tag.TransferSyntaxUID, VR.UI, UID.ImplicitVRLittleEndian);
+    if (printInColor) {
+      // Must be PixelInterleavedSampleModel
+      dcmObj.setInt(Tag.PlanarConfiguration, VR.US, 0);
+    }
+  }
+
+  /**
+   * Writes the image box of the N-SET request, the pixel data of the film is rendered and written
+   * band by band.
+   */
+  private class FilmWriter implements DataWriter {
+    private final Attributes imageBoxAttrs;
+    private final Attributes dicomImage;
+
+    FilmWriter(Attributes imageBoxAttrs, Attributes dicomImage) {
+      this.imageBoxAttrs = imageBoxAttrs;
+      this.dicomImage = dicomImage;
+    }
+
+    @Override
+    public void writeTo(PDVOutputStream out, String tsuid) throws IOException {
+      boolean color = printOptions.isColorPrint();
+      int samples = color ? 3 : 1;
+      int rowLength = filmWidth * samples;
+      long length = (long) rowLength * filmHeight;
+      if (length > Integer.MAX_VALUE - 1L) {
+        throw new IOException("The film is too large: " + filmWidth + "x" + filmHeight);
+      }
+
+      @SuppressWarnings("resource")
+      DicomOutputStream dos = new DicomOutputStream(out, tsuid);
+      imageBoxAttrs.writeTo(dos);
+      int seqTag = color ? Tag.BasicColorImageSequence : Tag.BasicGrayscaleImageSequence;
+      dos.writeHeader(seqTag, VR.SQ, -1);
+      dos.writeHeader(Tag.Item, null, -1);
+      dicomImage.writeTo(dos);
+      dos.writeHeader(Tag.PixelData, VR.OW, (int) ((length + 1) & ~1L));
+
+      int bandHeight = Math.min(BAND_HEIGHT, filmHeight);
+      BufferedImage band = createFilmBuffer(filmWidth, bandHeight);
+      Graphics2D g2d = band.createGraphics();
+      List<PrintCell> remainingCells = new ArrayList<>(cells);
+      try {
+        for (int y = 0; y < filmHeight; y += bandHeight) {
+          int rows = Math.min(bandHeight, filmHeight - y);
+          paintBand(g2d, y, rows);
+          BufferedImage img = color ? band : convertRGBImageToMonochrome(band);
+          byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+          dos.write(data, 0, rows * rowLength);
+          releasePaintedCells(remainingCells, y + rows);
+        }
+      } finally {
+        g2d.dispose();
+      }
+      if ((length & 1) != 0) {
+        dos.write(0);
+      }
+      dos.writeHeader(Tag.ItemDelimitationItem, null, 0);
+      dos.writeHeader(Tag.SequenceDelimitationItem, null, 0);
+      dos.flush();
+    }
+  }
+
+  /** Releases the images of the cells which are entirely above the given row of the film. */
+  private static void releasePaintedCells(List<PrintCell> remainingCells, int row) {
+    Iterator<PrintCell> it = remainingCells.iterator();
+    while (it.hasNext()) {
+      PrintCell cell = it.next();
+      if (cell.getBottom() <= row) {
+        cell.image.getImageLayer().releaseDisplayImage();
+        it.remove();
+      }
+    }
+  }
+
   private static BufferedImage convertRGBImageToMonochrome(BufferedImage colorImage) {
     if (colorImage.getType() == BufferedImage.TYPE_BYTE_GRAY) {
       return colorImage;
@@ -254,7 +254,7 @@ public class DicomPrintDialog<I extends ImageElement> extends JDialog {
     }
 
     try {
-      dicomPrint.printImage(dicomPrint.printImage(layout));
+      dicomPrint.print(layout);
     } catch (Exception e) {
       LOGGER.error("DICOM Print Service", e);
       JOptionPane.showMessageDialog(
@@ -12,10 +12,12 @@ package org.weasis.dicom.explorer.rs;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import javax.swing.JOptionPane;
 import org.dcm4che3.data.Tag;
@@ -56,6 +58,8 @@ public class RsQueryParams extends ExplorerTask<Boolean, String> {
 
   private final DicomModel dicomModel;
   private final Map<String, LoadSeries> seriesMap;
+  private final Set<String> startedSeries = new HashSet<>();
+  private final WadoParameters thumbnailParameters;
   private final Properties properties;
   private final Map<String, String> queryHeaders;
   private final Map<String, String> retrieveHeaders;
@@ -84,6 +88,9 @@ public class RsQueryParams extends ExplorerTask<Boolean, String> {
     this.seriesMap = new HashMap<>();
     this.queryHeaders = queryHeaders == null ? Collections.emptyMap() : queryHeaders;
     this.retrieveHeaders = retrieveHeaders == null ? Collections.emptyMap() : retrieveHeaders;
+    this.thumbnailParameters = new WadoParameters("", true, true);
+    this.retrieveHeaders.forEach(thumbnailParameters::addHttpTag);
+    thumbnailParameters.addHttpTag("Accept", "image/jpeg"); // NON-NLS
     String uid = properties.getProperty(RsQueryParams.P_AUTH_UID);
     AuthMethod method = null;
     if (StringUtil.hasText(uid)) {
@@ -156,27 +163,51 @@ public class RsQueryParams extends ExplorerTask<Boolean, String> {
   @Override
   protected Boolean doInBackground() throws Exception {
     fillPatientList();
-    WadoParameters wp = new WadoParameters("", true, true);
-    getRetrieveHeaders().forEach(wp::addHttpTag);
-    wp.addHttpTag("Accept", "image/jpeg"); // NON-NLS
+    if (arcConfig.isPartial()) {
+      LOGGER.warn("Some series or instances are missing, a QIDO-RS request has failed");
+    }
 
+    // Start the series which have not been started while reading the query results
     for (final LoadSeries loadSeries : seriesMap.values()) {
-      String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
-      boolean ps = ("PR".equals(modality) || "KO".equals(modality)); // NON-NLS
-      if (!ps) {
-        loadSeries.startDownloadImageReference(wp);
-      }
-      DownloadManager.addLoadSeries(loadSeries, dicomModel, loadSeries.isStartDownloading());
+      startLoadSeries(loadSeries);
     }
 
     // Sort tasks from the download priority order (low number has a higher priority), TASKS
     // is sorted from low to high priority).
-    Collections.sort(DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
+    synchronized (DownloadManager.class) {
+      Collections.sort(
+          DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
+    }
 
     DownloadManager.CONCURRENT_EXECUTOR.prestartAllCoreThreads();
     return true;
   }
 
+  /**
+   * Starts the download of a series once all its instances are known. The other series of the
+   * query can still be read.
+   *
+   * @param loadSeries the task of the series
+   */
+  public void startLoadSeries(LoadSeries loadSeries) {
+    String seriesUID =
+        TagD.getTagValue(loadSeries.getDicomSeries(), Tag.SeriesInstanceUID, String.class);
+    if (!startedSeries.add(seriesUID)) {
+      return;
+    }
+    String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
+    boolean ps = ("PR".equals(modality) || "KO".equals(modality)); // NON-NLS
+    if (!ps) {
+      loadSeries.startDownloadImageReference(thumbnailParameters);
+    }
+    DownloadManager.addLoadSeries(loadSeries, dicomModel, loadSeries.isStartDownloading());
+    DownloadManager.CONCURRENT_EXECUTOR.prestartAllCoreThreads();
+  }
+
+  public boolean isSeriesStarted(String seriesUID) {
+    return startedSeries.contains(seriesUID);
+  }
+
   private void fillPatientList() {
     try {
       String requestType = getRequestType();
@@ -20,7 +20,9 @@ import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.json.Json;
+import javax.swing.SwingWorker.StateValue;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.json.JSONReader;
@@ -66,11 +68,14 @@ public class RsQueryResult extends AbstractQueryResult {
       multiParams("0008103E,00080060,0020000E,00200011,00081190"); // NON-NLS
   public static final String INSTANCE_QUERY = multiParams("00080018,00200013,00081190");
   public static final String QIDO_REQUEST = "QIDO-RS request: {}"; // NON-NLS
+  /** Number of results by page for the series and instance queries, 0 to disable the paging */
+  public static final String QIDO_PAGE_SIZE = "weasis.qido.page.size"; // NON-NLS
 
   private final RsQueryParams rsQueryParams;
   private final WadoParameters wadoParameters;
   private final boolean defaultStartDownloading;
   private final AuthMethod authMethod;
+  private volatile boolean partial;
 
   public RsQueryResult(RsQueryParams rsQueryParams, AuthMethod authMethod) {
     this.rsQueryParams = rsQueryParams;
@@ -137,14 +142,43 @@ public class RsQueryResult extends AbstractQueryResult {
   public static List<Attributes> parseJSON(
       String url, AuthMethod authMethod, URLParameters urlParameters) throws Exception {
     List<Attributes> items = new ArrayList<>();
+    parseJSON(url, authMethod, urlParameters, items::add);
+    return items;
+  }
+
+  /**
+   * Reads the JSON response of a QIDO-RS request dataset by dataset, the whole response is never
+   * kept in memory.
+   *
+   * @param url the QIDO-RS request
+   * @param authMethod the authentication method, can be null
+   * @param urlParameters the parameters of the connection
+   * @param consumer the consumer of each dataset
+   * @return the number of datasets or -1 when the response status is not successful
+   * @throws Exception if the request or the parsing fails
+   */
+  public static int parseJSON(
+      String url,
+      AuthMethod authMethod,
+      URLParameters urlParameters,
+      Consumer<Attributes> consumer)
+      throws Exception {
+    int[] count = {-1};
     try (HttpResponse response = NetworkUtil.getHttpResponse(url, urlParameters, authMethod);
         InputStreamReader instream =
             new InputStreamReader(response.getInputStream(), StandardCharsets.UTF_8)) {
       int code = response.getResponseCode();
       if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_PARTIAL) {
+        count[0] = 0;
         JSONReader reader = new JSONReader(Json.createParser(instream));
-        Callback callback = (fmi, dataset) -> items.add(dataset);
+        Callback callback =
+            (fmi, dataset) -> {
+              count[0]++;
+              consumer.accept(dataset);
+            };
         reader.readDatasets(callback);
+      } else if (code == HttpURLConnection.HTTP_NO_CONTENT) {
+        count[0] = 0;
       }
       if (code == HttpURLConnection.HTTP_ENTITY_TOO_LARGE) {
         throw new IllegalStateException(
@@ -154,7 +188,67 @@ public class RsQueryResult extends AbstractQueryResult {
         authMethod.getToken();
       }
     }
-    return items;
+    return count[0];
+  }
+
+  /**
+   * Sends a QIDO-RS request by pages with the limit and offset parameters. Each page is handed off
+   * before requesting the next one, so the memory depends only on the page size. When the server
+   * does not support the paging, the request is sent once without these parameters.
+   *
+   * @param query the QIDO-RS request, already containing query parameters
+   * @param authMethod the authentication method, can be null
+   * @param urlParameters the parameters of the connection
+   * @param pageSize the maximum number of results by page, 0 to read all the results at once
+   * @param pageConsumer the consumer of each page
+   * @return false when a page after the first one has failed, then the results are incomplete
+   * @throws Exception if a request or the parsing fails
+   */
+  public static boolean parsePagedJSON(
+      String query,
+      AuthMethod authMethod,
+      URLParameters urlParameters,
+      int pageSize,
+      Consumer<List<Attributes>> pageConsumer)
+      throws Exception {
+    if (pageSize <= 0) {
+      pageConsumer.accept(parseJSON(query, authMethod, urlParameters));
+      return true;
+    }
+    Attributes previousFirst = null;
+    for (int offset = 0; ; offset += pageSize) {
+      String url = String.format("%s&limit=%d&offset=%d", query, pageSize, offset); // NON-NLS
+      List<Attributes> page = new ArrayList<>(pageSize);
+      int nb = parseJSON(url, authMethod, urlParameters, page::add);
+      if (nb < 0) {
+        if (offset == 0) {
+          // The paging parameters may not be supported
+          pageConsumer.accept(parseJSON(query, authMethod, urlParameters));
+          return true;
+        }
+        LOGGER.error("QIDO-RS page at offset {} has failed, incomplete results: {}", offset, query);
+        return false;
+      }
+      if (nb == 0 || page.get(0).equals(previousFirst)) {
+        // Stop when the server ignores the offset and returns the same page
+        return true;
+      }
+      pageConsumer.accept(page);
+      if (nb != pageSize) {
+        // Last page or the server ignores the limit
+        return true;
+      }
+      previousFirst = page.get(0);
+    }
+  }
+
+  /** @return true when some series or instances are missing because a page has failed */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  private int getPageSize() {
+    return BundleTools.SYSTEM_PREFERENCES.getIntProperty(QIDO_PAGE_SIZE, 1000);
   }
 
   private void applyAllFilters(List<Attributes> studies) {
@@ -370,7 +464,7 @@ public class RsQueryResult extends AbstractQueryResult {
           MediaSeriesGroup study = getStudy(patient, dataset, rsQueryParams.getDicomModel());
           for (Attributes seriesDataset : series) {
             Series<?> dicomSeries = getSeries(study, seriesDataset, defaultStartDownloading);
-            fillInstance(seriesDataset, dicomSeries);
+            fillInstanceAndStart(seriesDataset, dicomSeries);
           }
           studyHashSet.add(dataset.getString(Tag.StudyInstanceUID));
         }
@@ -435,25 +529,69 @@ public class RsQueryResult extends AbstractQueryResult {
 
       try {
         LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> series =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!series.isEmpty()) {
-          // Get patient from each study in case IssuerOfPatientID is different
-          MediaSeriesGroup patient = getPatient(studyDataSet, rsQueryParams.getDicomModel());
-          MediaSeriesGroup study = getStudy(patient, studyDataSet, rsQueryParams.getDicomModel());
-          for (Attributes seriesDataset : series) {
-            Series<?> dicomSeries = getSeries(study, seriesDataset, startDownloading);
-            fillInstance(seriesDataset, dicomSeries);
-          }
-        }
+        boolean complete =
+            parsePagedJSON(
+                buf.toString(),
+                authMethod,
+                new URLParameters(rsQueryParams.getQueryHeaders()),
+                getPageSize(),
+                series -> {
+                  if (!series.isEmpty()) {
+                    // Get patient from each study in case IssuerOfPatientID is different
+                    MediaSeriesGroup patient =
+                        getPatient(studyDataSet, rsQueryParams.getDicomModel());
+                    MediaSeriesGroup study =
+                        getStudy(patient, studyDataSet, rsQueryParams.getDicomModel());
+                    for (Attributes seriesDataset : series) {
+                      Series<?> dicomSeries = getSeries(study, seriesDataset, startDownloading);
+                      fillInstanceAndStart(seriesDataset, dicomSeries);
+                    }
+                  }
+                });
+        partial |= !complete;
       } catch (Exception e) {
+        partial = true;
         LOGGER.error("QIDO-RS all series with studyUID {}", studyInstanceUID, e);
       }
     }
   }
 
-  private void fillInstance(Attributes seriesDataset, Series<?> dicomSeries) {
+  /**
+   * Reads the instances of a series and starts its download after the first page, without waiting
+   * for the next pages and the other series of the query.
+   */
+  private void fillInstanceAndStart(Attributes seriesDataset, Series<?> dicomSeries) {
+    String seriesUID = seriesDataset.getString(Tag.SeriesInstanceUID);
+    if (rsQueryParams.isSeriesStarted(seriesUID)) {
+      // Already read and being downloaded (e.g. whole study of a requested series)
+      return;
+    }
+    fillInstance(seriesDataset, dicomSeries, () -> startOrUpdateSeries(seriesUID));
+    // Start also the series without instance or when the paging has failed
+    LoadSeries loadSeries = rsQueryParams.getSeriesMap().get(seriesUID);
+    if (loadSeries != null) {
+      rsQueryParams.startLoadSeries(loadSeries);
+    }
+  }
+
+  private void startOrUpdateSeries(String seriesUID) {
+    LoadSeries loadSeries = rsQueryParams.getSeriesMap().get(seriesUID);
+    if (loadSeries == null) {
+      return;
+    }
+    if (!rsQueryParams.isSeriesStarted(seriesUID)) {
+      rsQueryParams.startLoadSeries(loadSeries);
+    } else if (!StateValue.PENDING.equals(loadSeries.getState()) && !loadSeries.isCancelled()) {
+      // A running task downloads only the instances known when it has started, it is replaced by
+      // a task downloading the new instances (the instances already loaded are skipped). A task
+      // which is not started reads the merged list.
+      rsQueryParams.getSeriesMap().put(seriesUID, loadSeries.cancelAndReplace(loadSeries));
+    }
+  }
+
+  /** @param newInstances called after each page of instances adding instances to the series */
+  private void fillInstance(
+      Attributes seriesDataset, Series<?> dicomSeries, Runnable newInstances) {
     String serieInstanceUID = seriesDataset.getString(Tag.SeriesInstanceUID);
     if (StringUtil.hasText(serieInstanceUID)) {
       String seriesRetrieveURL = TagD.getTagValue(dicomSeries, Tag.RetrieveURL, String.class);
@@ -462,21 +600,31 @@ public class RsQueryResult extends AbstractQueryResult {
       buf.append(INSTANCE_QUERY);
       buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
 
+      SeriesInstanceList seriesInstanceList =
+          (SeriesInstanceList) dicomSeries.getTagValue(TagW.WadoInstanceReferenceList);
+      if (seriesInstanceList == null) {
+        return;
+      }
       try {
         LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> instances =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!instances.isEmpty()) {
-          SeriesInstanceList seriesInstanceList =
-              (SeriesInstanceList) dicomSeries.getTagValue(TagW.WadoInstanceReferenceList);
-          if (seriesInstanceList != null) {
-            for (Attributes instanceDataSet : instances) {
-              addSopInstance(instanceDataSet, seriesInstanceList, seriesRetrieveURL);
-            }
-          }
-        }
+        boolean complete =
+            parsePagedJSON(
+                buf.toString(),
+                authMethod,
+                new URLParameters(rsQueryParams.getQueryHeaders()),
+                getPageSize(),
+                instances -> {
+                  int nb = seriesInstanceList.size();
+                  for (Attributes instanceDataSet : instances) {
+                    addSopInstance(instanceDataSet, seriesInstanceList, seriesRetrieveURL);
+                  }
+                  if (seriesInstanceList.size() > nb) {
+                    newInstances.run();
+                  }
+                });
+        partial |= !complete;
       } catch (Exception e) {
+        partial = true;
         LOGGER.error("QIDO-RS all instances with seriesUID {}", serieInstanceUID, e);
       }
     }
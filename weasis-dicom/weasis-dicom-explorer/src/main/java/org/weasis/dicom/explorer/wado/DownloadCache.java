@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer.wado;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.util.FileUtil;
+
+/**
+ * Persistent cache of the downloaded DICOM instances. The complete files are kept between sessions
+ * so that reopening the same manifest does not download again the instances already received. The
+ * interrupted transfers are kept as partial files and resumed with an HTTP Range request when the
+ * server has provided a validator (strong ETag or Last-Modified).
+ *
+ * <p>The entries are keyed by the SOP Instance UID and the requested transfer syntax, the files
+ * modified on the fly by the client (e.g. overriding the patient attributes) are not cached. The
+ * entries of each server and user are stored in a separate folder, an instance downloaded with the
+ * credentials of a user is never given to another one.
+ */
+public final class DownloadCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DownloadCache.class);
+
+  /** Enable the persistent download cache (enabled by default) */
+  public static final String DOWNLOAD_CACHE = "weasis.download.cache"; // NON-NLS
+  /** Maximum size (in MB) of the download cache */
+  public static final String DOWNLOAD_CACHE_SIZE = "weasis.download.cache.size"; // NON-NLS
+
+  private static final String COMPLETE_EXTENSION = ".dcm"; // NON-NLS
+  private static final String PART_EXTENSION = ".part"; // NON-NLS
+  private static final String VALIDATOR_EXTENSION = ".tag"; // NON-NLS
+  private static final long PART_MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+  // Serializes the writers of the same entry, a key always gets the same lock
+  private static final Object[] LOCKS = new Object[64];
+
+  static {
+    Arrays.setAll(LOCKS, i -> new Object());
+  }
+
+  private static volatile File cacheDir;
+
+  private DownloadCache() {}
+
+  /** @param dir the folder of the download cache, null to disable the cache */
+  public static void setCacheDir(File dir) {
+    if (dir != null) {
+      dir.mkdirs();
+    }
+    cacheDir = dir;
+  }
+
+  public static File getCacheDir() {
+    return cacheDir;
+  }
+
+  public static boolean isEnabled() {
+    return cacheDir != null
+        && BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(DOWNLOAD_CACHE, true);
+  }
+
+  /**
+   * @param key the key of the cache entry
+   * @return the lock to hold while reading or writing the files of the entry
+   */
+  public static Object getLock(String key) {
+    return LOCKS[Math.floorMod(key.hashCode(), LOCKS.length)];
+  }
+
+  /**
+   * @param server the URL of the server
+   * @param user the user who downloads the file
+   * @param values the values identifying the content of the downloaded file
+   * @return the key of the cache entry, which is the relative path of the entry in the folder of
+   *     the server and the user
+   */
+  public static String buildKey(String server, String user, String... values) {
+    return toUUID(server, user) + "/" + toUUID(values); // NON-NLS
+  }
+
+  private static String toUUID(String... values) {
+    String id = String.join("|", values);
+    return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  private static File getFile(String key, String extension) {
+    File file = new File(cacheDir, key + extension);
+    file.getParentFile().mkdirs();
+    return file;
+  }
+
+  /**
+   * @param key the key of the cache entry
+   * @return the complete file or null if the instance has not been fully downloaded
+   */
+  public static File getCompleteFile(String key) {
+    File dir = cacheDir;
+    if (key == null || dir == null) {
+      return null;
+    }
+    File file = new File(dir, key + COMPLETE_EXTENSION);
+    if (file.isFile() && file.length() > 0) {
+      // The last modified time is the last access time for removing the least recently used files
+      if (!file.setLastModified(System.currentTimeMillis())) {
+        LOGGER.debug("Cannot update the access time of {}", file);
+      }
+      return file;
+    }
+    return null;
+  }
+
+  /**
+   * @param key the key of the cache entry
+   * @return the file of the partial download (can be empty or not exist)
+   */
+  public static File getPartialFile(String key) {
+    return getFile(key, PART_EXTENSION);
+  }
+
+  /**
+   * @param key the key of the cache entry
+   * @return the validator of the partial download or null
+   */
+  public static String getValidator(String key) {
+    File file = new File(cacheDir, key + VALIDATOR_EXTENSION);
+    if (file.canRead()) {
+      try {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        LOGGER.warn("Cannot read the download validator {}", file, e);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param key the key of the cache entry
+   * @param validator the ETag or the Last-Modified value of the response, null to remove it
+   */
+  public static void setValidator(String key, String validator) {
+    File file = getFile(key, VALIDATOR_EXTENSION);
+    if (validator == null) {
+      FileUtil.delete(file);
+      return;
+    }
+    try {
+      Files.write(file.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOGGER.warn("Cannot write the download validator {}", file, e);
+    }
+  }
+
+  /**
+   * Moves a fully downloaded file into the cache.
+   *
+   * @param key the key of the cache entry
+   * @param file the downloaded file
+   * @return the file in the cache, or the downloaded file if it cannot be moved
+   */
+  public static File complete(String key, File file) {
+    File target = getFile(key, COMPLETE_EXTENSION);
+    try {
+      Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      setValidator(key, null);
+      return target;
+    } catch (IOException e) {
+      LOGGER.warn("Cannot move {} into the download cache", file, e);
+      return file;
+    }
+  }
+
+  /**
+   * Removes the partial download.
+   *
+   * @param key the key of the cache entry
+   */
+  public static void discard(String key) {
+    FileUtil.delete(getPartialFile(key));
+    setValidator(key, null);
+  }
+
+  /**
+   * Removes the least recently used complete files when the cache exceeds its maximum size and the
+   * partial downloads which have not been resumed for a week.
+   */
+  public static void prune() {
+    File dir = cacheDir;
+    File[] folders = dir == null ? null : dir.listFiles(File::isDirectory);
+    if (folders == null) {
+      return;
+    }
+    List<File> files = new ArrayList<>();
+    for (File folder : folders) {
+      File[] list = folder.listFiles(File::isFile);
+      if (list != null) {
+        files.addAll(Arrays.asList(list));
+      }
+    }
+    long maxSize =
+        BundleTools.SYSTEM_PREFERENCES.getIntProperty(DOWNLOAD_CACHE_SIZE, 4096) * 1024L * 1024L;
+    long now = System.currentTimeMillis();
+    files.sort(Comparator.comparingLong(File::lastModified).reversed());
+    long size = 0L;
+    int nbDeleted = 0;
+    for (File f : files) {
+      String name = f.getName();
+      boolean delete;
+      if (name.endsWith(COMPLETE_EXTENSION)) {
+        size += f.length();
+        delete = size > maxSize;
+      } else {
+        delete = now - f.lastModified() > PART_MAX_AGE;
+      }
+      if (delete && FileUtil.delete(f)) {
+        nbDeleted++;
+      }
+    }
+    for (File folder : folders) {
+      String[] list = folder.list();
+      if (list != null && list.length == 0 && !folder.delete()) {
+        LOGGER.debug("Cannot delete the empty folder {}", folder);
+      }
+    }
+    LOGGER.debug("Remove {} files from the download cache", nbDeleted);
+  }
+}
@@ -19,7 +19,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -29,7 +29,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPInputStream;
+import java.util.function.Consumer;
 import javax.swing.JOptionPane;
 import javax.swing.SwingWorker.StateValue;
 import javax.xml.XMLConstants;
@@ -51,7 +51,7 @@ import org.weasis.core.api.auth.AuthMethod;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
-import org.weasis.core.api.media.MimeInspector;
+import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.MediaSeriesGroupNode;
 import org.weasis.core.api.media.data.Series;
@@ -61,6 +61,7 @@ import org.weasis.core.api.media.data.Thumbnail;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.util.BiConsumerWithException;
 import org.weasis.core.api.util.ClosableURLConnection;
+import org.weasis.core.api.util.GzipManager;
 import org.weasis.core.api.util.NetworkUtil;
 import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.api.util.URLParameters;
@@ -134,7 +135,12 @@ public class DownloadManager {
       DownloadPriority val1 = o1.getPriority();
       DownloadPriority val2 = o2.getPriority();
 
-      int rep = val1.getPriority().compareTo(val2.getPriority());
+      // What is displayed to the user comes first
+      int rep = Integer.compare(val1.getViewRank(), val2.getViewRank());
+      if (rep != 0) {
+        return rep;
+      }
+      rep = val1.getPriority().compareTo(val2.getPriority());
       if (rep != 0) {
         return rep;
       }
@@ -165,11 +171,11 @@ public class DownloadManager {
 
   public static void offerSeriesInQueue(final LoadSeries series) {
     if (series.getPriority().hasConcurrentDownload()) {
-      if (DownloadManager.PRIORITY_QUEUE.offer(series)) {
+      if (!DownloadManager.PRIORITY_QUEUE.offer(series)) {
         LOGGER.warn("Cannot add series {} to download queue", series.getDicomSeries());
       }
     } else {
-      if (DownloadManager.UNIQUE_QUEUE.offer(series)) {
+      if (!DownloadManager.UNIQUE_QUEUE.offer(series)) {
         LOGGER.warn("Cannot add series {} to download queue", series.getDicomSeries());
       }
     }
@@ -196,6 +202,7 @@ public class DownloadManager {
       if (!DownloadManager.TASKS.contains(series)) {
         DownloadManager.TASKS.add(series);
       }
+      ViewPriorityTracker.start();
     }
   }
 
@@ -218,8 +225,34 @@ public class DownloadManager {
         // (series)
         DownloadManager.CONCURRENT_EXECUTOR.setCorePoolSize(
             BundleTools.SYSTEM_PREFERENCES.getIntProperty(DownloadManager.CONCURRENT_SERIES, 3));
+        ViewPriorityTracker.stop();
+      }
+    }
+  }
+
+  /**
+   * Re-orders the series waiting in the download queues according to what is displayed to the
+   * user: series in a viewport first, then series with a visible thumbnail. The running downloads
+   * are not interrupted.
+   *
+   * @return the series of the loading tasks
+   */
+  static synchronized List<MediaSeries<?>> reschedule() {
+    List<MediaSeries<?>> seriesList = new ArrayList<>(TASKS.size());
+    for (LoadSeries loadSeries : TASKS) {
+      seriesList.add(loadSeries.getDicomSeries());
+      DownloadPriority p = loadSeries.getPriority();
+      if (p == null || !StateValue.PENDING.equals(loadSeries.getState())) {
+        continue;
+      }
+      int rank = ViewPriorityTracker.getViewRank(loadSeries.getDicomSeries());
+      // The priority cannot be changed while the task is in the queue
+      if (rank != p.getViewRank() && removeSeriesInQueue(loadSeries)) {
+        p.setViewRank(rank);
+        offerSeriesInQueue(loadSeries);
       }
     }
+    return seriesList;
   }
 
   public static void stopDownloading(DicomSeries series, DicomModel dicomModel) {
@@ -266,7 +299,24 @@ public class DownloadManager {
 
   public static Collection<LoadSeries> buildDicomSeriesFromXml(URI uri, final DicomModel model)
       throws DownloadException {
-    Map<String, LoadSeries> seriesMap = new HashMap<>();
+    return buildDicomSeriesFromXml(uri, model, null);
+  }
+
+  /**
+   * Reads a manifest as a stream. Each series is added to the model when its element starts and
+   * is handed off when its element ends, so the download can start before the end of the
+   * manifest.
+   *
+   * @param uri the URI of the manifest (xml or gzip-compressed xml)
+   * @param model the DICOM model
+   * @param seriesHandler the consumer of each new series task, can be null
+   * @return all the series tasks of the manifest
+   * @throws DownloadException when the manifest cannot be downloaded
+   */
+  public static Collection<LoadSeries> buildDicomSeriesFromXml(
+      URI uri, final DicomModel model, Consumer<LoadSeries> seriesHandler)
+      throws DownloadException {
+    Map<String, LoadSeries> seriesMap = new LinkedHashMap<>();
     XMLStreamReader xmler = null;
     InputStream stream = null;
     try {
@@ -286,58 +336,20 @@ public class DownloadManager {
           NetworkUtil.getUrlConnection(uri.toURL(), urlParameters);
 
       LOGGER.info("Downloading XML manifest: {}", path);
-      InputStream urlInputStream = urlConnection.getInputStream();
-
-      if (path.endsWith(".gz")) {
-        stream = new BufferedInputStream(new GZIPInputStream(urlInputStream));
-      } else if (path.endsWith(".xml")) {
-        stream = urlInputStream;
-      } else {
-        // In case wado file has no extension
-        File outFile = File.createTempFile("wado_", "", AppProperties.APP_TEMP_DIR); // NON-NLS
-        FileUtil.writeStreamWithIOException(urlInputStream, outFile);
-        if (MimeInspector.isMatchingMimeTypeFromMagicNumber(
-            outFile, "application/x-gzip")) { // NON-NLS
-          stream = new BufferedInputStream(new GZIPInputStream(new FileInputStream(outFile)));
-        } else {
-          stream = new FileInputStream(outFile);
-        }
-      }
+      // Uncompress on the fly when the manifest is gzipped (with or without .gz extension)
+      stream = GzipManager.gzipUncompressToStream(urlConnection.getInputStream());
 
-      File tempFile = null;
-      if (uri.toString().startsWith("file:") && path.endsWith(".xml")) { // NON-NLS
-        tempFile = new File(path);
-      } else {
-        tempFile = File.createTempFile("wado_", ".xml", AppProperties.APP_TEMP_DIR); // NON-NLS
+      if (LOGGER.isDebugEnabled()) {
+        // The validation requires a first pass on the whole document
+        File tempFile = File.createTempFile("wado_", ".xml", AppProperties.APP_TEMP_DIR); // NON-NLS
         FileUtil.writeStreamWithIOException(stream, tempFile);
+        validateManifest(factory, tempFile);
+        stream = new BufferedInputStream(new FileInputStream(tempFile));
       }
-      xmler = factory.createXMLStreamReader(new FileInputStream(tempFile));
 
-      Source xmlFile = new StAXSource(xmler);
-      SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-      try {
-        Schema schema =
-            schemaFactory.newSchema(
-                new Source[] {
-                  new StreamSource(
-                      DownloadManager.class.getResource("/config/wado_query.xsd").toExternalForm()),
-                  new StreamSource(
-                      DownloadManager.class.getResource("/config/manifest.xsd").toExternalForm())
-                });
-        Validator validator = schema.newValidator();
-        validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, StringUtil.EMPTY_STRING);
-        validator.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, StringUtil.EMPTY_STRING);
-        validator.validate(xmlFile);
-        LOGGER.info("[Validate with XSD schema] wado_query is valid");
-      } catch (SAXException e) {
-        LOGGER.error("[Validate with XSD schema] wado_query is NOT valid", e);
-      } catch (Exception e) {
-        LOGGER.error("Error when validate XSD schema. Try to update JRE", e);
-      }
-
-      ReaderParams params = new ReaderParams(model, seriesMap);
+      ReaderParams params = new ReaderParams(model, seriesMap, seriesHandler);
       // Try to read the xml even it is not valid.
-      xmler = factory.createXMLStreamReader(new FileInputStream(tempFile));
+      xmler = factory.createXMLStreamReader(stream);
 
       BiConsumerWithException<XMLStreamReader, ReaderParams, XMLStreamException> method =
           (x, r) -> {
@@ -401,6 +413,33 @@ public class DownloadManager {
     return seriesMap.values();
   }
 
+  private static void validateManifest(XMLInputFactory factory, File xmlFile) {
+    XMLStreamReader xmler = null;
+    try {
+      xmler = factory.createXMLStreamReader(new FileInputStream(xmlFile));
+      SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+      Schema schema =
+          schemaFactory.newSchema(
+              new Source[] {
+                new StreamSource(
+                    DownloadManager.class.getResource("/config/wado_query.xsd").toExternalForm()),
+                new StreamSource(
+                    DownloadManager.class.getResource("/config/manifest.xsd").toExternalForm())
+              });
+      Validator validator = schema.newValidator();
+      validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, StringUtil.EMPTY_STRING);
+      validator.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, StringUtil.EMPTY_STRING);
+      validator.validate(new StAXSource(xmler));
+      LOGGER.info("[Validate with XSD schema] wado_query is valid");
+    } catch (SAXException e) {
+      LOGGER.error("[Validate with XSD schema] wado_query is NOT valid", e);
+    } catch (Exception e) {
+      LOGGER.error("Error when validate XSD schema. Try to update JRE", e);
+    } finally {
+      FileUtil.safeClose(xmler);
+    }
+  }
+
   private static String getErrorMessage(URI uri) {
     StringBuilder buf = new StringBuilder(Messages.getString("DownloadManager.error_load_xml"));
     buf.append(StringUtil.COLON_AND_SPACE);
@@ -508,13 +547,6 @@ public class DownloadManager {
                 }
               });
     }
-    for (LoadSeries loadSeries : params.getSeriesMap().values()) {
-      String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
-      boolean ps = "PR".equals(modality) || "KO".equals(modality); // NON-NLS
-      if (!ps) {
-        loadSeries.startDownloadImageReference(wadoParameters);
-      }
-    }
   }
 
   private static MediaSeriesGroup readPatient(
@@ -647,6 +679,7 @@ public class DownloadManager {
         Optional.ofNullable(
                 (SeriesInstanceList) dicomSeries.getTagValue(TagW.WadoInstanceReferenceList))
             .orElseGet(SeriesInstanceList::new);
+    int nbInstances = seriesInstanceList.size();
 
     BiConsumerWithException<XMLStreamReader, ReaderParams, XMLStreamException> method =
         (x, r) -> {
@@ -670,7 +703,17 @@ public class DownloadManager {
         xmler, TagD.Level.INSTANCE.getTagName(), TagD.Level.SERIES.getTagName(), method, params);
     dicomSeries.setTag(TagW.WadoInstanceReferenceList, seriesInstanceList);
 
-    if (!seriesInstanceList.isEmpty()) {
+    LoadSeries previousTask = params.getSeriesMap().get(seriesUID);
+    if (previousTask != null) {
+      // The Series element is repeated in the manifest. A task which is not started reads the
+      // merged list of instances, otherwise it is replaced by a task downloading the new instances
+      // (the instances already loaded are skipped). A stopped task reads the list when resumed.
+      if (seriesInstanceList.size() > nbInstances
+          && !StateValue.PENDING.equals(previousTask.getState())
+          && !previousTask.isCancelled()) {
+        params.getSeriesMap().put(seriesUID, previousTask.cancelAndReplace(previousTask));
+      }
+    } else if (!seriesInstanceList.isEmpty()) {
       AuthMethod authMethod = params.wadoUri == null ? null : params.wadoUri.getAuthMethod();
       final LoadSeries loadSeries =
           new LoadSeries(
@@ -683,6 +726,15 @@ public class DownloadManager {
               true);
       loadSeries.setPriority(new DownloadPriority(patient, study, dicomSeries, true));
       params.getSeriesMap().put(seriesUID, loadSeries);
+
+      // Start the series before reading the rest of the manifest
+      if (params.seriesHandler != null) {
+        params.seriesHandler.accept(loadSeries);
+      }
+      String modality = TagD.getTagValue(dicomSeries, Tag.Modality, String.class);
+      if (!"PR".equals(modality) && !"KO".equals(modality)) { // NON-NLS
+        loadSeries.startDownloadImageReference(wadoParameters);
+      }
     }
     return dicomSeries;
   }
@@ -865,11 +917,14 @@ public class DownloadManager {
   static class ReaderParams {
     private final DicomModel model;
     private final Map<String, LoadSeries> seriesMap;
+    private final Consumer<LoadSeries> seriesHandler;
     private DicomWebNode wadoUri;
 
-    public ReaderParams(DicomModel model, Map<String, LoadSeries> seriesMap) {
+    public ReaderParams(
+        DicomModel model, Map<String, LoadSeries> seriesMap, Consumer<LoadSeries> seriesHandler) {
       this.model = model;
       this.seriesMap = seriesMap;
+      this.seriesHandler = seriesHandler;
     }
 
     public DicomModel getModel() {
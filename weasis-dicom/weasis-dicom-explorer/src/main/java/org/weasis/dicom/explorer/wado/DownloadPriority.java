@@ -15,9 +15,18 @@ import org.weasis.core.api.media.data.MediaSeriesGroup;
 public class DownloadPriority {
 
   public static final AtomicInteger COUNTER = new AtomicInteger(Integer.MAX_VALUE - 1);
+
+  /** The series is displayed in a viewport */
+  public static final int VIEW_DISPLAYED = 0;
+  /** The thumbnail of the series is visible in the explorer */
+  public static final int VIEW_THUMBNAIL = 1;
+  /** The series is not visible */
+  public static final int VIEW_NONE = 2;
+
   private final MediaSeriesGroup patient, study, series;
   private final boolean concurrentDownload;
   private Integer priority;
+  private volatile int viewRank;
 
   public DownloadPriority(
       MediaSeriesGroup patient,
@@ -29,6 +38,7 @@ public class DownloadPriority {
     this.series = series;
     this.concurrentDownload = concurrentDownload;
     priority = Integer.MAX_VALUE;
+    viewRank = VIEW_NONE;
   }
 
   public MediaSeriesGroup getPatient() {
@@ -54,4 +64,19 @@ public class DownloadPriority {
   public void setPriority(Integer priority) {
     this.priority = priority == null ? Integer.MAX_VALUE : priority;
   }
+
+  /** @return the visibility of the series in the user interface, see VIEW_* constants */
+  public int getViewRank() {
+    return viewRank;
+  }
+
+  /**
+   * Must not be called while the task is in a download queue, the queue would not be ordered
+   * anymore.
+   *
+   * @param viewRank the visibility of the series in the user interface
+   */
+  public void setViewRank(int viewRank) {
+    this.viewRank = viewRank;
+  }
 }
@@ -171,15 +171,22 @@ public class LoadRemoteDicomManifest extends ExplorerTask<Boolean, String> {
   private void downloadManifest(Iterator<String> iter) throws DownloadException {
     try {
       URI uri = NetworkUtil.getURI(iter.next());
-      Collection<LoadSeries> wadoTasks = DownloadManager.buildDicomSeriesFromXml(uri, dicomModel);
+      boolean downloadImmediately =
+          BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(
+              SeriesDownloadPrefView.DOWNLOAD_IMMEDIATELY, true);
+      // Each series is queued as soon as it is read in the manifest
+      Collection<LoadSeries> wadoTasks =
+          DownloadManager.buildDicomSeriesFromXml(
+              uri,
+              dicomModel,
+              s -> {
+                loadSeriesList.add(s);
+                DownloadManager.addLoadSeries(s, dicomModel, downloadImmediately);
+              });
       iter.remove();
 
-      if (wadoTasks != null) {
-        loadSeriesList.addAll(wadoTasks);
-        boolean downloadImmediately =
-            BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(
-                SeriesDownloadPrefView.DOWNLOAD_IMMEDIATELY, true);
-        startDownloadingSeries(wadoTasks, downloadImmediately);
+      if (!wadoTasks.isEmpty()) {
+        sortTasks();
       }
     } catch (URISyntaxException | MalformedURLException e) {
       LOGGER.error("Loading manifest", e);
@@ -191,9 +198,15 @@ public class LoadRemoteDicomManifest extends ExplorerTask<Boolean, String> {
     for (final LoadSeries loadSeries : wadoTasks) {
       DownloadManager.addLoadSeries(loadSeries, dicomModel, downloadImmediately);
     }
+    sortTasks();
+  }
 
+  private static void sortTasks() {
     // Sort tasks from the download priority order (low number has a higher priority), TASKS
     // is sorted from low to high priority).
-    Collections.sort(DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
+    synchronized (DownloadManager.class) {
+      Collections.sort(
+          DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
+    }
   }
 }
@@ -14,9 +14,11 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelListener;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -381,7 +383,8 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
 
     ExecutorService imageDownloader =
         ThreadUtil.buildNewFixedThreadExecutor(concurrentDownloads, "Image Downloader"); // NON-NLS
-    ArrayList<Callable<Boolean>> tasks = new ArrayList<>(sopList.size());
+    List<Download> tasks = new ArrayList<>(sopList.size());
+    Map<String, Integer> positions = new HashMap<>(sopList.size());
     int[] dindex = generateDownladOrder(sopList.size());
     GuiExecutor.instance()
         .execute(
@@ -394,6 +397,7 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
       if (isCancelled()) {
         return true;
       }
+      positions.putIfAbsent(instance.getSopInstanceUID(), dindex[k]);
 
       if (seriesInstanceList.isContainsMultiframes()
           && seriesInstanceList.getSopInstance(instance.getSopInstanceUID()) != instance) {
@@ -442,13 +446,30 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
       String url = request.toString();
 
       LOGGER.debug("Download DICOM instance {} index {}.", url, k);
-      Download ref = new Download(url);
+      Download ref = new Download(url, dindex[k], getCacheKey(wado, instance, url));
       tasks.add(ref);
     }
 
+    // Each worker takes the next image according to the image displayed in a viewport
+    List<Callable<Boolean>> workers = new ArrayList<>(concurrentDownloads);
+    for (int i = 0; i < concurrentDownloads; i++) {
+      workers.add(
+          () -> {
+            Download download;
+            while (!isCancelled() && (download = nextDownload(tasks, positions)) != null) {
+              try {
+                download.call();
+              } catch (Exception e) {
+                LOGGER.error("Downloading", e);
+              }
+            }
+            return Boolean.TRUE;
+          });
+    }
+
     try {
       dicomSeries.setTag(DOWNLOAD_START_TIME, System.currentTimeMillis());
-      imageDownloader.invokeAll(tasks);
+      imageDownloader.invokeAll(workers);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
@@ -457,6 +478,33 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
     return true;
   }
 
+  /**
+   * @return the key of the instance in the download cache, or null when the file must not be
+   *     cached (local file or attributes overridden by the manifest)
+   */
+  private String getCacheKey(WadoParameters wado, SopInstance instance, String url) {
+    if (!writeInCache
+        || !DownloadCache.isEnabled()
+        || url.startsWith("file:") // NON-NLS
+        || wado.getOverrideDicomTagIDList() != null) {
+      return null;
+    }
+    String tsuid = (String) dicomSeries.getTagValue(TagW.WadoTransferSyntaxUID);
+    Integer rate = (Integer) dicomSeries.getTagValue(TagW.WadoCompressionRate);
+    // The instances are shared only with the same server and the same user
+    String user =
+        authMethod == null
+            ? AppProperties.WEASIS_USER
+            : AppProperties.WEASIS_USER + "|" + authMethod.getUid(); // NON-NLS
+    return DownloadCache.buildKey(
+        wado.getBaseURL(),
+        user,
+        instance.getSopInstanceUID(),
+        tsuid == null ? "" : tsuid,
+        rate == null ? "" : rate.toString(),
+        wado.isWadoRS() ? "rs" : "uri"); // NON-NLS
+  }
+
   private static Map<String, String> getHttpTags(WadoParameters wadoParams) {
     boolean hasBundleTags = !BundleTools.SESSION_TAGS_FILE.isEmpty();
     boolean hasWadoTags = wadoParams != null && wadoParams.getHttpTaglist() != null;
@@ -672,6 +720,33 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
     return outFile;
   }
 
+  /**
+   * Takes the next image to download. When an image of the series is displayed, the nearest images
+   * are taken first (the next ones before the previous ones at the same distance), otherwise the
+   * initial order is kept.
+   */
+  private Download nextDownload(List<Download> pending, Map<String, Integer> positions) {
+    synchronized (pending) {
+      if (pending.isEmpty()) {
+        return null;
+      }
+      int index = 0;
+      Integer focus = positions.get(ViewPriorityTracker.getDisplayedInstance(dicomSeries));
+      if (focus != null) {
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < pending.size(); i++) {
+          int d = pending.get(i).position - focus;
+          int distance = d >= 0 ? 2 * d : 1 - 2 * d;
+          if (distance < best) {
+            best = distance;
+            index = i;
+          }
+        }
+      }
+      return pending.remove(index);
+    }
+  }
+
   private int[] generateDownladOrder(final int size) {
     int[] dindex = new int[size];
     if (size < 4) {
@@ -712,10 +787,14 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
   class Download implements Callable<Boolean> {
 
     private final String url; // download URL
+    private final int position; // position in the sorted instance list
+    private final String cacheKey; // key in the download cache, null when not cached
     private Status status; // current status of download
 
-    public Download(String url) {
+    public Download(String url, int position, String cacheKey) {
       this.url = url;
+      this.position = position;
+      this.cacheKey = cacheKey;
       this.status = Status.DOWNLOADING;
     }
 
@@ -778,6 +857,16 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
       return DICOM_TMP_DIR;
     }
 
+    private boolean process() throws IOException, URISyntaxException {
+      if (cacheKey == null) {
+        return download();
+      }
+      // One writer by cache entry, the next one reads the file completed by the previous one
+      synchronized (DownloadCache.getLock(cacheKey)) {
+        return download();
+      }
+    }
+
     /**
      * Download file.
      *
@@ -785,17 +874,26 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
      * @throws IOException
      * @throws URISyntaxException
      */
-    private boolean process() throws IOException, URISyntaxException {
+    private boolean download() throws IOException, URISyntaxException {
       boolean cache = true;
-      File tempFile = null;
-      DicomMediaIO dicomReader = null;
-      HttpResponse urlcon = NetworkUtil.getHttpResponse(url, urlParams, authMethod);
+      File tempFile = DownloadCache.getCompleteFile(cacheKey);
+      if (tempFile != null) {
+        // Already downloaded in a previous session, the file belongs to the download cache
+        LOGGER.debug("Load DICOM instance {} from the download cache.", url);
+        dicomSeries.setFileSize(dicomSeries.getFileSize() + tempFile.length());
+        return readDownloadedFile(tempFile, false);
+      }
+      HttpResponse urlcon = NetworkUtil.getHttpResponse(url, getUrlParameters(), authMethod);
       int code = urlcon.getResponseCode();
       if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
         if (authMethod != null && code == HttpURLConnection.HTTP_UNAUTHORIZED) {
           authMethod.resetToken();
           authMethod.getToken();
         }
+        if (cacheKey != null && code == 416) {
+          // Range Not Satisfiable: restart from the beginning at the next attempt
+          DownloadCache.discard(cacheKey);
+        }
         throw new IllegalStateException("Response code of server: " + urlcon.getResponseCode());
       }
       try (InputStream stream = urlcon.getInputStream()) {
@@ -803,75 +901,157 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
         if (!writeInCache && url.startsWith("file:")) { // NON-NLS
           cache = false;
         }
-        if (cache) {
-          tempFile = File.createTempFile("image_", ".dcm", getDicomTmpDir());
-        }
-
-        // Cannot resume with WADO because the stream is modified on the fly by the wado server. In
-        // dcm4chee,
-        // see
-        // http://www.dcm4che.org/jira/browse/DCMEE-421
         progressBar.setIndeterminate(progressBar.getMaximum() < 3);
 
-        if (dicomSeries != null) {
-          if (cache) {
-            LOGGER.debug("Start to download DICOM instance {} to {}.", url, tempFile.getName());
-            int bytesTransferred = downloadInFileCache(urlcon, tempFile);
-            if (bytesTransferred == -1) {
-              LOGGER.info("End of downloading {} ", url);
-            } else if (bytesTransferred >= 0) {
-              return false;
-            }
+        if (cache && isResumable()) {
+          tempFile = DownloadCache.getPartialFile(cacheKey);
+          boolean append = code == HttpURLConnection.HTTP_PARTIAL;
+          if (!append) {
+            DownloadCache.setValidator(cacheKey, getValidator(urlcon));
+          }
+          LOGGER.debug("Start to download DICOM instance {} to {}.", url, tempFile.getName());
+          if (!writePartialFile(stream, tempFile, append)) {
+            return false;
+          }
+          LOGGER.info("End of downloading {} ", url);
+          tempFile = DownloadCache.complete(cacheKey, tempFile);
+          cache = false;
+        } else if (cache) {
+          tempFile = File.createTempFile("image_", ".dcm", getDicomTmpDir());
+          LOGGER.debug("Start to download DICOM instance {} to {}.", url, tempFile.getName());
+          int bytesTransferred = downloadInFileCache(urlcon, tempFile);
+          if (bytesTransferred == -1) {
+            LOGGER.info("End of downloading {} ", url);
+          } else if (bytesTransferred >= 0) {
+            return false;
+          }
 
+          if (cacheKey == null) {
             File renameFile = new File(DicomMediaIO.DICOM_EXPORT_DIR, tempFile.getName());
             if (tempFile.renameTo(renameFile)) {
               tempFile = renameFile;
             }
           } else {
-            tempFile = new File(NetworkUtil.getURI(url));
-          }
-          // Ensure the stream is closed if image is not written in cache
-          FileUtil.safeClose(stream);
-
-          dicomReader = new DicomMediaIO(tempFile);
-          if (dicomReader.isReadableDicom() && dicomSeries.size(null) == 0) {
-            // Override the group (patient, study and series) by the dicom fields except the UID of
-            // the
-            // group
-            MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
-            dicomReader.writeMetaData(patient);
-            MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
-            dicomReader.writeMetaData(study);
-            dicomReader.writeMetaData(dicomSeries);
-            GuiExecutor.instance()
-                .invokeAndWait(
-                    () -> {
-                      Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
-                      if (thumb != null) {
-                        thumb.repaint();
-                      }
-                      dicomModel.firePropertyChange(
-                          new ObservableEvent(
-                              ObservableEvent.BasicAction.UDPATE_PARENT,
-                              dicomModel,
-                              null,
-                              dicomSeries));
-                    });
+            tempFile = DownloadCache.complete(cacheKey, tempFile);
+            cache = false;
           }
+        } else {
+          tempFile = new File(NetworkUtil.getURI(url));
+        }
+        // Ensure the stream is closed if image is not written in cache
+        FileUtil.safeClose(stream);
+      }
+      return readDownloadedFile(tempFile, cache);
+    }
+
+    /**
+     * Only the raw WADO-URI responses can be resumed, the multipart responses of WADO-RS and the
+     * files with overridden attributes are rewritten by the client. As some WADO servers build the
+     * stream on the fly, the transfer is resumed only when the server has provided a validator.
+     */
+    private boolean isResumable() {
+      return cacheKey != null
+          && !((WadoParameters) dicomSeries.getTagValue(TagW.WadoParameters)).isWadoRS();
+    }
+
+    private URLParameters getUrlParameters() {
+      if (cacheKey == null || !isResumable()) {
+        return urlParams;
+      }
+      File partialFile = DownloadCache.getPartialFile(cacheKey);
+      String validator = DownloadCache.getValidator(cacheKey);
+      long offset = partialFile.length();
+      if (offset <= 0 || validator == null) {
+        return urlParams;
+      }
+      // The server returns the whole file if it has changed since the interruption
+      Map<String, String> headers = new HashMap<>(urlParams.getUnmodifiableHeaders());
+      headers.put("Range", "bytes=" + offset + "-"); // NON-NLS
+      headers.put("If-Range", validator); // NON-NLS
+      LOGGER.info("Resume downloading {} from byte {}", url, offset);
+      return new URLParameters(headers);
+    }
+
+    private String getValidator(HttpResponse response) {
+      String etag = response.getHeaderField("ETag"); // NON-NLS
+      // Weak ETags cannot be used with If-Range
+      if (StringUtil.hasText(etag) && !etag.startsWith("W/")) {
+        return etag;
+      }
+      String lastModified = response.getHeaderField("Last-Modified"); // NON-NLS
+      return StringUtil.hasText(lastModified) ? lastModified : null;
+    }
+
+    /**
+     * Writes the stream at the end of the partial file, which is kept when the transfer is
+     * interrupted.
+     *
+     * @return true when the stream has been fully written, false when the loading is stopped
+     * @throws StreamIOException when the connection is lost
+     */
+    private boolean writePartialFile(InputStream stream, File file, boolean append)
+        throws StreamIOException {
+      try (InputStream in = new DicomSeriesProgressMonitor(dicomSeries, stream, false);
+          OutputStream out = new FileOutputStream(file, append)) {
+        byte[] buf = new byte[8192];
+        int offset;
+        while ((offset = in.read(buf)) > 0) {
+          out.write(buf, 0, offset);
+        }
+        out.flush();
+        return true;
+      } catch (InterruptedIOException e) {
+        LOGGER.info("Stop downloading {}, {} bytes kept to resume", url, file.length());
+        return false;
+      } catch (IOException e) {
+        throw new StreamIOException(e);
+      }
+    }
+
+    private boolean readDownloadedFile(File file, boolean temporary) {
+      DicomMediaIO dicomReader = null;
+      if (dicomSeries != null && file != null) {
+        dicomReader = new DicomMediaIO(file);
+        if (dicomReader.isReadableDicom() && dicomSeries.size(null) == 0) {
+          // Override the group (patient, study and series) by the dicom fields except the UID of
+          // the
+          // group
+          MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
+          dicomReader.writeMetaData(patient);
+          MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
+          dicomReader.writeMetaData(study);
+          dicomReader.writeMetaData(dicomSeries);
+          GuiExecutor.instance()
+              .invokeAndWait(
+                  () -> {
+                    Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
+                    if (thumb != null) {
+                      thumb.repaint();
+                    }
+                    dicomModel.firePropertyChange(
+                        new ObservableEvent(
+                            ObservableEvent.BasicAction.UDPATE_PARENT,
+                            dicomModel,
+                            null,
+                            dicomSeries));
+                  });
         }
       }
 
       // Change status to complete if this point was reached because downloading has finished.
       if (status == Status.DOWNLOADING) {
         status = Status.COMPLETE;
-        if (tempFile != null && dicomSeries != null && dicomReader.isReadableDicom()) {
-          if (cache) {
-            dicomReader.getFileCache().setOriginalTempFile(tempFile);
+        if (file != null && dicomReader != null && dicomReader.isReadableDicom()) {
+          if (temporary) {
+            dicomReader.getFileCache().setOriginalTempFile(file);
           }
           final DicomMediaIO reader = dicomReader;
           // Necessary to wait the runnable because the dicomSeries must be added to the dicomModel
           // before reaching done() of SwingWorker
           GuiExecutor.instance().invokeAndWait(() -> updateUI(reader));
+        } else if (file != null && cacheKey != null) {
+          // Do not keep an unreadable file in the download cache
+          FileUtil.delete(file);
         }
       }
       // Increment progress bar in EDT and repaint when downloaded
@@ -16,12 +16,13 @@ import java.util.List;
 import java.util.Map;
 import org.weasis.dicom.mf.SopInstance;
 
+/** The instances of a series to download, the list can be completed while the manifest is read. */
 public class SeriesInstanceList {
   private final Map<String, SopInstance> dicomInstanceMap = new HashMap<>();
   private final Map<String, SopInstance> dicomUniqueSopInstanceMap = new HashMap<>();
   private boolean containsMultiframes = false;
 
-  public void addSopInstance(SopInstance s) {
+  public synchronized void addSopInstance(SopInstance s) {
     if (s != null) {
       SopInstance.addSopInstance(dicomInstanceMap, s);
       SopInstance sop = dicomUniqueSopInstanceMap.get(s.getSopInstanceUID());
@@ -33,27 +34,27 @@ public class SeriesInstanceList {
     }
   }
 
-  public SopInstance getSopInstance(String sopUID, Integer instanceNumber) {
+  public synchronized SopInstance getSopInstance(String sopUID, Integer instanceNumber) {
     return SopInstance.getSopInstance(dicomInstanceMap, sopUID, instanceNumber);
   }
 
-  public SopInstance getSopInstance(String sopUID) {
+  public synchronized SopInstance getSopInstance(String sopUID) {
     return dicomUniqueSopInstanceMap.get(sopUID);
   }
 
-  public boolean isContainsMultiframes() {
+  public synchronized boolean isContainsMultiframes() {
     return containsMultiframes;
   }
 
-  public boolean isEmpty() {
+  public synchronized boolean isEmpty() {
     return dicomInstanceMap.isEmpty();
   }
 
-  public int size() {
+  public synchronized int size() {
     return dicomInstanceMap.size();
   }
 
-  public List<SopInstance> getSortedList() {
+  public synchronized List<SopInstance> getSortedList() {
     ArrayList<SopInstance> sopList = new ArrayList<>(dicomInstanceMap.values());
     Collections.sort(sopList);
     return sopList;
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer.wado;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import org.dcm4che3.data.Tag;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.MediaSeries;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.ui.docking.UIManager;
+import org.weasis.core.ui.editor.image.ImageViewerPlugin;
+import org.weasis.core.ui.editor.image.ViewCanvas;
+import org.weasis.core.ui.editor.image.ViewerPlugin;
+import org.weasis.dicom.codec.TagD;
+
+/**
+ * Follows what is displayed to the user while series are downloading. The state of the viewports
+ * and of the thumbnails is read periodically in the EDT, then the pending series are re-ordered
+ * in a background thread (see {@link DownloadManager#reschedule()}).
+ */
+final class ViewPriorityTracker {
+
+  private static final int REFRESH_DELAY = 300;
+
+  private static final ExecutorService SCHEDULER =
+      ThreadUtil.buildNewSingleThreadExecutor("Download Scheduler"); // NON-NLS
+  private static final Timer TIMER = new Timer(REFRESH_DELAY, e -> refresh());
+
+  // Displayed series with the SOP Instance UID of the current image (can be null)
+  private static volatile Map<MediaSeries<?>, String> displayedSeries = Collections.emptyMap();
+  private static volatile Set<MediaSeries<?>> visibleSeries = Collections.emptySet();
+  private static volatile List<MediaSeries<?>> loadingSeries = Collections.emptyList();
+
+  private ViewPriorityTracker() {}
+
+  static void start() {
+    if (!TIMER.isRunning()) {
+      TIMER.start();
+    }
+  }
+
+  static void stop() {
+    TIMER.stop();
+    displayedSeries = Collections.emptyMap();
+    visibleSeries = Collections.emptySet();
+    loadingSeries = Collections.emptyList();
+  }
+
+  /**
+   * @param series the downloading series
+   * @return the visibility of the series, see DownloadPriority.VIEW_* constants
+   */
+  static int getViewRank(MediaSeries<?> series) {
+    if (displayedSeries.containsKey(series)) {
+      return DownloadPriority.VIEW_DISPLAYED;
+    }
+    return visibleSeries.contains(series)
+        ? DownloadPriority.VIEW_THUMBNAIL
+        : DownloadPriority.VIEW_NONE;
+  }
+
+  /**
+   * @param series the downloading series
+   * @return the SOP Instance UID of the image displayed in a viewport or null
+   */
+  static String getDisplayedInstance(MediaSeries<?> series) {
+    return displayedSeries.get(series);
+  }
+
+  private static void refresh() {
+    Map<MediaSeries<?>, String> displayed = new HashMap<>();
+    synchronized (UIManager.VIEWER_PLUGINS) {
+      for (ViewerPlugin<?> p : UIManager.VIEWER_PLUGINS) {
+        if (p instanceof ImageViewerPlugin && p.isShowing()) {
+          for (ViewCanvas<?> view : ((ImageViewerPlugin<?>) p).getImagePanels()) {
+            MediaSeries<?> series = view.getSeries();
+            if (series != null) {
+              ImageElement image = view.getImage();
+              String uid =
+                  image == null ? null : TagD.getTagValue(image, Tag.SOPInstanceUID, String.class);
+              if (uid != null || !displayed.containsKey(series)) {
+                displayed.put(series, uid);
+              }
+            }
+          }
+        }
+      }
+    }
+
+    Set<MediaSeries<?>> visible = new HashSet<>();
+    for (MediaSeries<?> series : loadingSeries) {
+      Object thumbnail = series.getTagValue(TagW.Thumbnail);
+      if (thumbnail instanceof JComponent && isVisible((JComponent) thumbnail)) {
+        visible.add(series);
+      }
+    }
+    displayedSeries = displayed;
+    visibleSeries = visible;
+    SCHEDULER.execute(() -> loadingSeries = DownloadManager.reschedule());
+  }
+
+  private static boolean isVisible(JComponent component) {
+    if (!component.isShowing()) {
+      return false;
+    }
+    Rectangle rect = component.getVisibleRect();
+    return rect.width > 0 && rect.height > 0;
+  }
+}
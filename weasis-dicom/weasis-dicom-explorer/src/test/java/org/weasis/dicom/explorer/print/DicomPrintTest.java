@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer.print;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Component;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Commands;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.Dimse;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.AbstractDicomService;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.dcm4che3.util.UIDUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.weasis.core.api.image.GridBagLayoutModel;
+import org.weasis.core.api.image.LayoutConstraints;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.ui.util.ExportLayout;
+import org.weasis.core.ui.util.PrintOptions.DotPerInches;
+import org.weasis.dicom.explorer.pref.node.DicomPrintNode;
+import org.weasis.dicom.explorer.print.DicomPrintDialog.FilmSize;
+
+public class DicomPrintTest {
+  private static final String SCP_AET = "PRINT_SCP";
+
+  private final AtomicReference<Attributes> imageBox = new AtomicReference<>();
+  private Device device;
+  private ExecutorService executor;
+  private ScheduledExecutorService scheduledExecutor;
+  private int port;
+
+  /** Minimal Print SCP which keeps the dataset of the N-SET request of the image box. */
+  private class PrintService extends AbstractDicomService {
+
+    PrintService() {
+      super(
+          UID.BasicFilmSession,
+          UID.BasicFilmBox,
+          UID.BasicGrayscaleImageBox,
+          UID.BasicColorImageBox);
+    }
+
+    @Override
+    protected void onDimseRQ(
+        Association as, PresentationContext pc, Dimse dimse, Attributes cmd, Attributes data)
+        throws IOException {
+      switch (dimse) {
+        case N_CREATE_RQ:
+          Attributes rspData = null;
+          if (UID.BasicFilmBox.equals(cmd.getString(Tag.AffectedSOPClassUID))) {
+            boolean color = UID.BasicColorPrintManagementMeta.equals(pc.getAbstractSyntax());
+            Attributes ref = new Attributes(2);
+            ref.setString(
+                Tag.ReferencedSOPClassUID,
+                VR.UI,
+                color ? UID.BasicColorImageBox : UID.BasicGrayscaleImageBox);
+            ref.setString(Tag.ReferencedSOPInstanceUID, VR.UI, UIDUtils.createUID());
+            rspData = new Attributes(1);
+            rspData.newSequence(Tag.ReferencedImageBoxSequence, 1).add(ref);
+          }
+          as.writeDimseRSP(pc, Commands.mkNCreateRSP(cmd, Status.Success), rspData);
+          break;
+        case N_SET_RQ:
+          imageBox.set(data);
+          as.writeDimseRSP(pc, Commands.mkNSetRSP(cmd, Status.Success));
+          break;
+        case N_ACTION_RQ:
+          as.writeDimseRSP(pc, Commands.mkNActionRSP(cmd, Status.Success));
+          break;
+        case N_DELETE_RQ:
+          as.writeDimseRSP(pc, Commands.mkNDeleteRSP(cmd, Status.Success));
+          break;
+        default:
+          throw new IllegalStateException("Unexpected request: " + dimse);
+      }
+    }
+  }
+
+  @Before
+  public void startPrintScp() throws Exception {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    device = new Device("print-scp");
+    ApplicationEntity ae = new ApplicationEntity(SCP_AET);
+    Connection conn = new Connection();
+    conn.setHostname("localhost");
+    conn.setPort(port);
+    device.addConnection(conn);
+    device.addApplicationEntity(ae);
+    ae.addConnection(conn);
+    ae.setAssociationAcceptor(true);
+    ae.addTransferCapability(new TransferCapability(null, "*", TransferCapability.Role.SCP, "*"));
+
+    DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+    serviceRegistry.addDicomService(new PrintService());
+    device.setDimseRQHandler(serviceRegistry);
+    executor = Executors.newCachedThreadPool();
+    scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+    device.setExecutor(executor);
+    device.setScheduledExecutor(scheduledExecutor);
+    device.bindConnections();
+  }
+
+  @After
+  public void stopPrintScp() {
+    device.unbindConnections();
+    executor.shutdown();
+    scheduledExecutor.shutdown();
+  }
+
+  private static ExportLayout<ImageElement> buildLayout() {
+    GridBagLayoutModel model =
+        new GridBagLayoutModel(new LinkedHashMap<LayoutConstraints, Component>(), "test", "");
+    return new ExportLayout<>(model);
+  }
+
+  private DicomPrint buildDicomPrint(boolean color, String emptyDensity) {
+    DicomPrintOptions options = new DicomPrintOptions();
+    options.setColorPrint(color);
+    options.setEmptyDensity(emptyDensity);
+    // 827 x 1169: odd length and last band partially filled
+    options.setFilmSizeId(FilmSize.A4);
+    options.setDpi(DotPerInches.DPI_100);
+    options.setFilmOrientation("PORTRAIT");
+    DicomPrintNode node = new DicomPrintNode("test", SCP_AET, "localhost", port, options);
+    return new DicomPrint(node, options);
+  }
+
+  private void assertPrintedFilm(boolean color, String emptyDensity, int expectedValue)
+      throws Exception {
+    DicomPrint dicomPrint = buildDicomPrint(color, emptyDensity);
+    ExportLayout<ImageElement> layout = buildLayout();
+    dicomPrint.print(layout);
+
+    Attributes box = imageBox.get();
+    assertThat(box).isNotNull();
+    assertThat(box.getInt(Tag.ImageBoxPosition, 0)).isEqualTo(1);
+    Attributes image =
+        box.getNestedDataset(
+            color ? Tag.BasicColorImageSequence : Tag.BasicGrayscaleImageSequence);
+    assertThat(image).isNotNull();
+    int width = FilmSize.A4.getWidth(DotPerInches.DPI_100);
+    int height = FilmSize.A4.getHeight(DotPerInches.DPI_100);
+    int samples = color ? 3 : 1;
+    assertThat(image.getInt(Tag.Columns, 0)).isEqualTo(width);
+    assertThat(image.getInt(Tag.Rows, 0)).isEqualTo(height);
+    assertThat(image.getInt(Tag.SamplesPerPixel, 0)).isEqualTo(samples);
+
+    int length = width * height * samples;
+    byte[] pixels = image.getBytes(Tag.PixelData);
+    assertThat(pixels).hasSize((length + 1) & ~1);
+    byte[] expected = new byte[length];
+    Arrays.fill(expected, (byte) expectedValue);
+    assertThat(Arrays.copyOf(pixels, length)).isEqualTo(expected);
+
+    // Same pixels as the film rendered at once
+    BufferedImage film = dicomPrint.printImage(layout);
+    byte[] filmData = ((DataBufferByte) film.getRaster().getDataBuffer()).getData();
+    assertThat(Arrays.copyOf(pixels, length)).isEqualTo(filmData);
+  }
+
+  @Test
+  public void testGrayscaleFilm() throws Exception {
+    assertPrintedFilm(false, "WHITE", 0xFF);
+  }
+
+  @Test
+  public void testColorFilm() throws Exception {
+    assertPrintedFilm(true, "BLACK", 0);
+  }
+}
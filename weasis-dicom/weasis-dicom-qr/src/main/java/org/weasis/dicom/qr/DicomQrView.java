@@ -93,6 +93,7 @@ import org.weasis.dicom.op.CFind;
 import org.weasis.dicom.param.AdvancedParams;
 import org.weasis.dicom.param.ConnectOptions;
 import org.weasis.dicom.param.DicomParam;
+import org.weasis.dicom.param.DicomProgress;
 import org.weasis.dicom.param.DicomState;
 import org.weasis.dicom.tool.DicomListener;
 
@@ -268,6 +269,8 @@ public class DicomQrView extends AbstractItemDialogPage implements ImportDicom {
       new JComboBox<>(RetrieveType.values());
   private final JComboBox<AbstractDicomNode> comboCallingNode = new JComboBox<>();
   private final DicomListener dicomListener;
+  // Notified by the listener each time a file is stored
+  private final DicomProgress listenerProgress = new DicomProgress();
   private final ExecutorService executor =
       ThreadUtil.buildNewFixedThreadExecutor(3, "Dicom Q/R task"); // NON-NLS
   private final JSpinner limitSpinner = new JSpinner();
@@ -296,7 +299,7 @@ public class DicomQrView extends AbstractItemDialogPage implements ImportDicom {
 
     DicomListener dcmListener = null;
     try {
-      dcmListener = new DicomListener(tempDir);
+      dcmListener = new DicomListener(tempDir, listenerProgress);
     } catch (IOException e) {
       LOGGER.error("Cannot creast DICOM listener", e);
     }
@@ -891,6 +894,10 @@ public class DicomQrView extends AbstractItemDialogPage implements ImportDicom {
     return dicomListener;
   }
 
+  public DicomProgress getListenerProgress() {
+    return listenerProgress;
+  }
+
   public JPanel getBasePanel() {
     return basePanel;
   }
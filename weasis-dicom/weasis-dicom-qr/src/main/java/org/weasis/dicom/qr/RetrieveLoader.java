@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.qr;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.dicom.explorer.DicomModel;
+import org.weasis.dicom.explorer.LoadLocalDicom;
+
+/**
+ * Adds the retrieved files to the DICOM explorer as soon as they are received, while the retrieve
+ * associations are still running. The files are collected on a dedicated thread and only the
+ * loading of each group of files is submitted to the executor of the DICOM model.
+ */
+public class RetrieveLoader implements Runnable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RetrieveLoader.class);
+
+  private static final ExecutorService COLLECTOR =
+      ThreadUtil.buildNewSingleThreadExecutor("Retrieve Loader"); // NON-NLS
+
+  // Maximum number of files loaded by one task of the DICOM model executor
+  private static final int MAX_BATCH_SIZE = 50;
+
+  private final DicomModel dicomModel;
+  private final BlockingQueue<File> queue = new LinkedBlockingQueue<>();
+  private final Set<String> receivedFiles = ConcurrentHashMap.newKeySet();
+  private volatile boolean finished;
+
+  public RetrieveLoader(DicomModel dicomModel) {
+    this.dicomModel = dicomModel;
+  }
+
+  /** Starts collecting the received files. */
+  public void start() {
+    COLLECTOR.execute(this);
+  }
+
+  /**
+   * Hands off a received file, a file is loaded only once.
+   *
+   * @param file the received DICOM file
+   */
+  public void addReceivedFile(File file) {
+    if (file != null && receivedFiles.add(file.getPath())) {
+      queue.offer(file);
+    }
+  }
+
+  /**
+   * Hands off all the received files of a folder which have not been loaded yet.
+   *
+   * @param dir the folder of the received files
+   */
+  public void addReceivedFolder(File dir) {
+    File[] files = dir == null ? null : dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        if (f.isDirectory()) {
+          addReceivedFolder(f);
+        } else {
+          addReceivedFile(f);
+        }
+      }
+    }
+  }
+
+  /** Notifies that no more file will be received, the task ends when the queue is empty. */
+  public void finish() {
+    finished = true;
+  }
+
+  @Override
+  public void run() {
+    List<File> batch = new ArrayList<>();
+    try {
+      while (true) {
+        File file = queue.poll(500, TimeUnit.MILLISECONDS);
+        if (file != null) {
+          batch.add(file);
+        }
+        if (file == null || batch.size() >= MAX_BATCH_SIZE) {
+          submit(batch);
+          if (file == null && finished && queue.isEmpty()) {
+            break;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      LOGGER.warn("Collecting the retrieved files interrupted");
+      Thread.currentThread().interrupt();
+    } finally {
+      submit(batch);
+    }
+  }
+
+  private void submit(List<File> batch) {
+    if (!batch.isEmpty()) {
+      DicomModel.LOADING_EXECUTOR.execute(
+          new LoadLocalDicom(batch.toArray(new File[0]), false, dicomModel));
+      batch.clear();
+    }
+  }
+}
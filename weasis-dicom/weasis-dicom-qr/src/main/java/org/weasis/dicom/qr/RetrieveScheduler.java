@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.qr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.net.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.task.CircularProgressBar;
+import org.weasis.core.api.gui.util.GuiExecutor;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.MediaSeriesGroupNode;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.explorer.DicomModel;
+import org.weasis.dicom.explorer.ExplorerTask;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomParam;
+import org.weasis.dicom.param.DicomProgress;
+import org.weasis.dicom.param.DicomState;
+
+/**
+ * Splits a C-GET or C-MOVE retrieve by series (or by study when the series are unknown) and runs
+ * the jobs with several parallel associations. The number of concurrent associations is limited
+ * per DICOM node, even when several retrieve tasks are running. The next job is always taken
+ * according to what the user is viewing: series of an open study first, then series of the same
+ * patient.
+ */
+public class RetrieveScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RetrieveScheduler.class);
+
+  /** Maximum number of concurrent associations with the same DICOM node */
+  public static final String MAX_ASSOCIATIONS = "weasis.qr.max.associations"; // NON-NLS
+
+  private static final Map<String, Semaphore> NODE_PERMITS = new ConcurrentHashMap<>();
+
+  @FunctionalInterface
+  public interface JobProcessor {
+    DicomState process(RetrieveJob job, DicomProgress progress);
+  }
+
+  public static class RetrieveJob {
+    private final String studyUID;
+    private final String seriesUID;
+
+    public RetrieveJob(String studyUID, String seriesUID) {
+      this.studyUID = Objects.requireNonNull(studyUID);
+      this.seriesUID = seriesUID;
+    }
+
+    public String getStudyUID() {
+      return studyUID;
+    }
+
+    public String getSeriesUID() {
+      return seriesUID;
+    }
+
+    /** @return the unique identifier of the job (Series or Study Instance UID) */
+    public String getKey() {
+      return seriesUID == null ? studyUID : seriesUID;
+    }
+
+    public DicomParam[] getKeys() {
+      if (seriesUID == null) {
+        return new DicomParam[] {new DicomParam(Tag.StudyInstanceUID, studyUID)};
+      }
+      return new DicomParam[] {
+        new DicomParam(Tag.QueryRetrieveLevel, "SERIES"), // NON-NLS
+        new DicomParam(Tag.StudyInstanceUID, studyUID),
+        new DicomParam(Tag.SeriesInstanceUID, seriesUID)
+      };
+    }
+
+    @Override
+    public String toString() {
+      return getKey();
+    }
+  }
+
+  private final List<RetrieveJob> pendingJobs;
+  private final List<RetrieveJob> startedJobs = new ArrayList<>();
+  private final DicomModel explorerModel;
+  private final Semaphore permits;
+  private final int nbJobs;
+  private final double[] jobProgress;
+
+  public RetrieveScheduler(List<RetrieveJob> jobs, DicomModel explorerModel, DicomNode calledNode) {
+    this.pendingJobs = Collections.synchronizedList(new ArrayList<>(jobs));
+    this.explorerModel = Objects.requireNonNull(explorerModel);
+    this.nbJobs = jobs.size();
+    this.jobProgress = new double[nbJobs];
+    String nodeKey =
+        calledNode.getAet() + "@" + calledNode.getHostname() + ":" + calledNode.getPort();
+    int max = Math.max(1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(MAX_ASSOCIATIONS, 3));
+    this.permits = NODE_PERMITS.computeIfAbsent(nodeKey, k -> new Semaphore(max));
+  }
+
+  /**
+   * Builds the retrieve jobs from the series of the query result. A study without series gives a
+   * study-level job.
+   *
+   * @param studies the Study Instance UIDs to retrieve
+   * @param queryModel the model containing the query result
+   * @return the list of jobs
+   */
+  public static List<RetrieveJob> buildJobs(List<String> studies, DicomModel queryModel) {
+    List<RetrieveJob> jobs = new ArrayList<>();
+    for (String studyUID : studies) {
+      List<RetrieveJob> seriesJobs = new ArrayList<>();
+      MediaSeriesGroup study = queryModel == null ? null : queryModel.getStudyNode(studyUID);
+      if (study != null) {
+        for (MediaSeriesGroup s : queryModel.getChildren(study)) {
+          String seriesUID = TagD.getTagValue(s, Tag.SeriesInstanceUID, String.class);
+          if (seriesUID != null) {
+            seriesJobs.add(new RetrieveJob(studyUID, seriesUID));
+          }
+        }
+      }
+      if (seriesJobs.isEmpty()) {
+        jobs.add(new RetrieveJob(studyUID, null));
+      } else {
+        jobs.addAll(seriesJobs);
+      }
+    }
+    return jobs;
+  }
+
+  /**
+   * Executes all the jobs and waits until they are done or the task is cancelled.
+   *
+   * @param processor the retrieve operation of one job
+   * @param task the task of the retrieve, used for progression and cancellation
+   * @return the state of the first failed job, the state of the last job, or a cancel state when
+   *     the task has been cancelled or interrupted before the end of a job
+   */
+  public DicomState execute(JobProcessor processor, ExplorerTask<?, ?> task) {
+    int nbWorkers = Math.min(nbJobs, Math.max(1, permits.availablePermits()));
+    List<Callable<DicomState>> workers = new ArrayList<>(nbWorkers);
+    for (int i = 0; i < nbWorkers; i++) {
+      workers.add(() -> runJobs(processor, task));
+    }
+
+    DicomState result = null;
+    ExecutorService executor =
+        ThreadUtil.buildNewFixedThreadExecutor(
+            Math.max(1, nbWorkers), "Dicom Retrieve"); // NON-NLS
+    try {
+      for (Future<DicomState> f : executor.invokeAll(workers)) {
+        DicomState state = f.get();
+        if (state != null && (result == null || isFailed(state))) {
+          result = state;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOGGER.error("Dicom retrieve", e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    if (result == null) {
+      return new DicomState(Status.Cancel, null, null);
+    }
+    return result;
+  }
+
+  private DicomState runJobs(JobProcessor processor, ExplorerTask<?, ?> task)
+      throws InterruptedException {
+    DicomState result = null;
+    while (!task.isCancelled()) {
+      permits.acquire();
+      try {
+        RetrieveJob job = nextJob();
+        if (job == null) {
+          break;
+        }
+        int index = startJob(job);
+        DicomProgress progress = new DicomProgress();
+        progress.addProgressListener(
+            p -> {
+              int c = p.getNumberOfCompletedSuboperations() + p.getNumberOfFailedSuboperations();
+              int r = p.getNumberOfRemainingSuboperations();
+              if (c + r > 0) {
+                updateProgress(task, index, c / (double) (c + r));
+              }
+            });
+        synchronized (task) {
+          task.addCancelListener(progress);
+        }
+        LOGGER.info("Start retrieving {}", job);
+        DicomState state = processor.process(job, progress);
+        synchronized (task) {
+          task.removeCancelListener(progress);
+        }
+        updateProgress(task, index, 1.0);
+        if (state != null && (result == null || isFailed(state))) {
+          result = state;
+        }
+      } finally {
+        permits.release();
+      }
+    }
+    return result;
+  }
+
+  private static boolean isFailed(DicomState state) {
+    return state.getStatus() != Status.Success && state.getStatus() != Status.Cancel;
+  }
+
+  private int startJob(RetrieveJob job) {
+    synchronized (startedJobs) {
+      startedJobs.add(job);
+      return startedJobs.size() - 1;
+    }
+  }
+
+  private RetrieveJob nextJob() {
+    synchronized (pendingJobs) {
+      RetrieveJob next = null;
+      int bestPriority = Integer.MAX_VALUE;
+      for (RetrieveJob job : pendingJobs) {
+        int priority = getPriority(job);
+        // Keep the initial order for jobs of the same priority
+        if (priority < bestPriority) {
+          bestPriority = priority;
+          next = job;
+        }
+      }
+      if (next != null) {
+        pendingJobs.remove(next);
+      }
+      return next;
+    }
+  }
+
+  /**
+   * @param job the retrieve job
+   * @return 0 when the series is displayed, 1 when the study is displayed, 2 when the patient is
+   *     displayed, otherwise 3.
+   */
+  private int getPriority(RetrieveJob job) {
+    MediaSeriesGroup study = explorerModel.getStudyNode(job.getStudyUID());
+    if (study == null) {
+      return 3;
+    }
+    int priority = getOpenPriority(study, job.getSeriesUID());
+    if (priority < 3) {
+      return priority;
+    }
+    MediaSeriesGroup patient = explorerModel.getParent(study, DicomModel.patient);
+    if (patient != null && patient != MediaSeriesGroupNode.rootNode) {
+      for (MediaSeriesGroup st : explorerModel.getChildren(patient)) {
+        if (st != study && getOpenPriority(st, null) < 3) {
+          return 2;
+        }
+      }
+    }
+    return 3;
+  }
+
+  private int getOpenPriority(MediaSeriesGroup study, String seriesUID) {
+    int priority = 3;
+    Collection<MediaSeriesGroup> seriesList = explorerModel.getChildren(study);
+    for (MediaSeriesGroup s : seriesList) {
+      if (s instanceof Series && ((Series<?>) s).isOpen()) {
+        if (seriesUID != null
+            && seriesUID.equals(TagD.getTagValue(s, Tag.SeriesInstanceUID, String.class))) {
+          return 0;
+        }
+        priority = 1;
+      }
+    }
+    return priority;
+  }
+
+  private void updateProgress(ExplorerTask<?, ?> task, int index, double value) {
+    double sum = 0.0;
+    synchronized (jobProgress) {
+      jobProgress[index] = value;
+      for (double v : jobProgress) {
+        sum += v;
+      }
+    }
+    int progress = (int) Math.round(sum * 100.0 / nbJobs);
+    CircularProgressBar bar = task.getBar();
+    GuiExecutor.instance().execute(() -> bar.setValue(progress));
+  }
+}
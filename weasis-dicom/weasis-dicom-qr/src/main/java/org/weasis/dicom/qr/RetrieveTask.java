@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import javax.swing.JOptionPane;
 import org.dcm4che3.data.Attributes;
@@ -29,7 +30,6 @@ import org.dcm4che3.net.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
-import org.weasis.core.api.gui.task.CircularProgressBar;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
@@ -45,7 +45,6 @@ import org.weasis.dicom.codec.DicomSeries;
 import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.ExplorerTask;
-import org.weasis.dicom.explorer.LoadLocalDicom;
 import org.weasis.dicom.explorer.pref.download.SeriesDownloadPrefView;
 import org.weasis.dicom.explorer.pref.node.AbstractDicomNode;
 import org.weasis.dicom.explorer.pref.node.AbstractDicomNode.RetrieveType;
@@ -66,10 +65,9 @@ import org.weasis.dicom.op.CGet;
 import org.weasis.dicom.op.CMove;
 import org.weasis.dicom.param.AdvancedParams;
 import org.weasis.dicom.param.ConnectOptions;
-import org.weasis.dicom.param.DicomParam;
-import org.weasis.dicom.param.DicomProgress;
 import org.weasis.dicom.param.DicomState;
 import org.weasis.dicom.param.ListenerParams;
+import org.weasis.dicom.param.ProgressListener;
 import org.weasis.dicom.qr.manisfest.CFindQueryResult;
 import org.weasis.dicom.tool.DicomListener;
 import org.weasis.dicom.web.Multipart;
@@ -96,27 +94,6 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
 
     ExplorerTask<Boolean, String> loadingTask = null;
     String errorMessage = null;
-    final CircularProgressBar progressBar = getBar();
-    DicomProgress progress = new DicomProgress();
-    progress.addProgressListener(
-        p ->
-            GuiExecutor.instance()
-                .execute(
-                    () -> {
-                      int c =
-                          p.getNumberOfCompletedSuboperations()
-                              + p.getNumberOfFailedSuboperations();
-                      int r = p.getNumberOfRemainingSuboperations();
-                      int t = c + r;
-                      if (t > 0) {
-                        progressBar.setValue((c * 100) / t);
-                      }
-                    }));
-
-    addCancelListener(progress);
-
-    DicomParam[] dcmParams = {new DicomParam(Tag.StudyInstanceUID, studies.toArray(new String[0]))};
-
     Object selectedItem = dicomQrView.getComboDestinationNode().getSelectedItem();
     if (selectedItem instanceof DefaultDicomNode) {
       final DefaultDicomNode node = (DefaultDicomNode) selectedItem;
@@ -144,17 +121,37 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
               LOGGER.error("SOP Class url conversion", e);
             }
           }
-          state =
-              CGet.process(
-                  params,
-                  callingNode.getDicomNodeWithOnlyAET(),
-                  node.getDicomNode(),
-                  progress,
-                  DicomQrView.tempDir,
-                  url,
-                  dcmParams);
+          final URL sopClassUrl = url;
+          RetrieveLoader loader = startLoader();
+          try {
+            state =
+                buildScheduler(node)
+                    .execute(
+                        (job, progress) -> {
+                          // Each job has its own folder to hand off its files when it ends
+                          File dir = new File(DicomQrView.tempDir, job.getKey());
+                          progress.addProgressListener(
+                              p -> loader.addReceivedFile(p.getProcessedFile()));
+                          DicomState s =
+                              CGet.process(
+                                  params,
+                                  callingNode.getDicomNodeWithOnlyAET(),
+                                  node.getDicomNode(),
+                                  progress,
+                                  dir,
+                                  sopClassUrl,
+                                  job.getKeys());
+                          loader.addReceivedFolder(dir);
+                          return s;
+                        },
+                        this);
+          } finally {
+            loader.finish();
+          }
         } else if (RetrieveType.CMOVE == type) {
           DicomListener dicomListener = dicomQrView.getDicomListener();
+          // The files of this retrieve are stored in their own folder of the listener directory
+          File moveDir = new File(DicomQrView.tempDir, "move-" + UUID.randomUUID()); // NON-NLS
           try {
             if (dicomListener == null) {
               errorMessage = Messages.getString("RetrieveTask.msg_start_listener");
@@ -162,7 +159,9 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
               if (dicomListener.isRunning()) {
                 errorMessage = Messages.getString("RetrieveTask.msg_running_listener");
               } else {
-                ListenerParams lparams = new ListenerParams(params, true);
+                ListenerParams lparams =
+                    new ListenerParams(
+                        params, true, moveDir.getName() + "/{00080018}", null); // NON-NLS
                 dicomListener.start(callingNode.getDicomNode(), lparams);
               }
             }
@@ -178,16 +177,31 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
           if (errorMessage != null) {
             state = new DicomState(Status.UnableToProcess, errorMessage, null);
           } else {
-            state =
-                CMove.process(
-                    params,
-                    callingNode.getDicomNode(),
-                    node.getDicomNode(),
-                    callingNode.getAeTitle(),
-                    progress,
-                    dcmParams);
-            if (dicomListener != null) {
-              dicomListener.stop();
+            RetrieveLoader loader = startLoader();
+            // Hand off each file as soon as it is stored by the listener
+            ProgressListener storeListener = p -> loader.addReceivedFile(p.getProcessedFile());
+            dicomQrView.getListenerProgress().addProgressListener(storeListener);
+            try {
+              state =
+                  buildScheduler(node)
+                      .execute(
+                          (job, progress) ->
+                              CMove.process(
+                                  params,
+                                  callingNode.getDicomNode(),
+                                  node.getDicomNode(),
+                                  callingNode.getAeTitle(),
+                                  progress,
+                                  job.getKeys()),
+                          this);
+            } finally {
+              dicomQrView.getListenerProgress().removeProgressListener(storeListener);
+              // Files which may have been stored without notification
+              loader.addReceivedFolder(moveDir);
+              loader.finish();
+              if (dicomListener != null) {
+                dicomListener.stop();
+              }
             }
           }
         } else if (RetrieveType.WADO == type) {
@@ -252,10 +266,6 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
           }
           LOGGER.error("Dicom retrieve error: {}", errorMessage);
         }
-
-        loadingTask =
-            new LoadLocalDicom(
-                new File[] {new File(DicomQrView.tempDir.getPath())}, false, explorerDcmModel);
       }
 
     } else if (selectedItem instanceof DicomWebNode) {
@@ -296,6 +306,19 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
     }
   }
 
+  private RetrieveLoader startLoader() {
+    RetrieveLoader loader = new RetrieveLoader(explorerDcmModel);
+    loader.start();
+    return loader;
+  }
+
+  private RetrieveScheduler buildScheduler(DefaultDicomNode node) {
+    return new RetrieveScheduler(
+        RetrieveScheduler.buildJobs(studies, dicomQrView.getDicomModel()),
+        explorerDcmModel,
+        node.getDicomNode());
+  }
+
   static DicomWebNode getWadoUrl(
       DicomQrView dicomQrView, String host, List<AbstractDicomNode> webNodes, String message1) {
     List<DicomWebNode> wadoURLs = new ArrayList<>();
@@ -418,7 +441,10 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
 
     // Sort tasks from the download priority order (low number has a higher priority), TASKS
     // is sorted from low to high priority).
-    Collections.sort(DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
+    synchronized (DownloadManager.class) {
+      Collections.sort(
+          DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
+    }
 
     DownloadManager.CONCURRENT_EXECUTOR.prestartAllCoreThreads();
   }
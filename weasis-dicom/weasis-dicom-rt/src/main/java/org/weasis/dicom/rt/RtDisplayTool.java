@@ -60,12 +60,13 @@ import org.weasis.core.api.gui.util.JMVUtils;
 import org.weasis.core.api.gui.util.JSliderW;
 import org.weasis.core.api.gui.util.SliderChangeListener;
 import org.weasis.core.api.gui.util.WinUtil;
+import org.weasis.core.api.media.data.BoundedCache;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.MediaElement;
 import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
-import org.weasis.core.api.media.data.SoftHashMap;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.ui.docking.PluginTool;
 import org.weasis.core.ui.editor.SeriesViewerEvent;
 import org.weasis.core.ui.editor.SeriesViewerListener;
@@ -92,7 +93,20 @@ public class RtDisplayTool extends PluginTool implements SeriesViewerListener {
 
   public static final String BUTTON_NAME = Messages.getString("rt.tool");
 
-  private static final SoftHashMap<String, RtSet> RtSet_Cache = new SoftHashMap<>();
+  /** Maximum number of RT sets kept in memory */
+  public static final String RT_CACHE_SIZE = "weasis.rt.cache.size"; // NON-NLS
+
+  // The content of a RtSet is loaded after being cached, so the budget is a number of sets
+  private static final BoundedCache<String, RtSet> RtSet_Cache =
+      new BoundedCache<String, RtSet>(
+          "RT set", // NON-NLS
+          Math.max(1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(RT_CACHE_SIZE, 4))) {
+
+        @Override
+        protected long sizeOf(RtSet set) {
+          return 1L;
+        }
+      };
   public static final String BR = "<br>";
   public static final String HTML2 = "</html>";
   public static final String HTML1 = "<html>";
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.send;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.dcm4che3.net.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.task.CircularProgressBar;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.gui.util.GuiExecutor;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.util.FileUtil;
+import org.weasis.dicom.explorer.ExplorerTask;
+import org.weasis.dicom.explorer.pref.node.DicomWebNode;
+import org.weasis.dicom.op.CStore;
+import org.weasis.dicom.param.AdvancedParams;
+import org.weasis.dicom.param.ConnectOptions;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomProgress;
+import org.weasis.dicom.param.DicomState;
+import org.weasis.dicom.web.Multipart;
+import org.weasis.dicom.web.StowrsMultiFiles;
+
+/**
+ * Sends DICOM files directly from where they are stored (usually the file cache), without making
+ * a copy before. The files are split among several parallel C-STORE associations or STOW-RS
+ * requests and the progression is reported in bytes per second.
+ */
+public class DicomSender {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DicomSender.class);
+
+  /** Number of parallel associations or STOW-RS requests */
+  public static final String SEND_CONNECTIONS = "weasis.send.connections"; // NON-NLS
+  /** Maximum length of the sent PDU (in bytes) */
+  public static final String SEND_MAX_PDU_LENGTH = "weasis.send.max.pdu.length"; // NON-NLS
+  /** Number of DICOM parts in one STOW-RS request */
+  public static final String STOW_PARTS = "weasis.send.stow.parts"; // NON-NLS
+
+  private final List<File> files;
+  private final ExplorerTask<Boolean, String> task;
+  private final int nbConnections;
+  private final AtomicLong sentBytes = new AtomicLong();
+  private final int[][] operations;
+  private long startTime;
+
+  public DicomSender(List<File> files, ExplorerTask<Boolean, String> task) {
+    this.files = files;
+    this.task = task;
+    int nb = BundleTools.SYSTEM_PREFERENCES.getIntProperty(SEND_CONNECTIONS, 2);
+    this.nbConnections = Math.max(1, Math.min(nb, files.size()));
+    this.operations = new int[nbConnections][2];
+  }
+
+  public DicomState sendCStore(DicomNode callingNode, DicomNode calledNode) {
+    AdvancedParams params = new AdvancedParams();
+    ConnectOptions connectOptions = new ConnectOptions();
+    connectOptions.setConnectTimeout(3000);
+    connectOptions.setAcceptTimeout(5000);
+    int pduLength = BundleTools.SYSTEM_PREFERENCES.getIntProperty(SEND_MAX_PDU_LENGTH, 0);
+    if (pduLength > 0) {
+      connectOptions.setMaxPdulenSnd(pduLength);
+    }
+    params.setConnectOptions(connectOptions);
+
+    List<List<File>> partitions = split(files, nbConnections);
+    List<Callable<DicomState>> calls = new ArrayList<>(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      final int index = i;
+      final List<String> paths =
+          partitions.get(i).stream().map(File::getPath).collect(Collectors.toList());
+      DicomProgress dicomProgress = new DicomProgress();
+      dicomProgress.addProgressListener(
+          p -> {
+            File processed = p.getProcessedFile();
+            updateProgress(
+                index,
+                p.getNumberOfCompletedSuboperations() + p.getNumberOfFailedSuboperations(),
+                p.getNumberOfRemainingSuboperations(),
+                processed == null ? 0L : processed.length());
+          });
+      task.addCancelListener(dicomProgress);
+      calls.add(
+          () -> {
+            try {
+              return CStore.process(params, callingNode, calledNode, paths, dicomProgress);
+            } catch (Exception e) {
+              // Reported like the other failed transfers and not thrown by execute()
+              LOGGER.error("DICOM send to {}", calledNode, e);
+              return new DicomState(
+                  Status.UnableToProcess, "DICOM send failed: " + e.getMessage(), null); // NON-NLS
+            }
+          });
+    }
+
+    DicomState result = null;
+    for (DicomState state : execute(calls)) {
+      if (result == null
+          || (state.getStatus() != Status.Success && state.getStatus() != Status.Cancel)) {
+        result = state;
+      }
+    }
+    if (result == null || Thread.currentThread().isInterrupted()) {
+      // Interrupted before the end of the transfers
+      return new DicomState(Status.Cancel, "DICOM send interrupted", null); // NON-NLS
+    }
+    return result;
+  }
+
+  public void sendStowRs(DicomWebNode destination) throws Exception {
+    int parts = Math.max(1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(STOW_PARTS, 100));
+    List<List<File>> partitions = split(files, nbConnections);
+    List<Callable<Boolean>> calls = new ArrayList<>(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      final int index = i;
+      final List<File> partition = partitions.get(i);
+      calls.add(
+          () -> {
+            try (StowrsMultiFiles stowRS =
+                new StowrsMultiFiles(
+                    destination.getUrl().toString(),
+                    Multipart.ContentType.DICOM,
+                    AppProperties.WEASIS_NAME,
+                    destination.getHeaders())) {
+              for (int k = 0; k < partition.size() && !task.isCancelled(); k += parts) {
+                List<File> batch = partition.subList(k, Math.min(k + parts, partition.size()));
+                stowRS.uploadDicom(
+                    batch.stream().map(File::getPath).collect(Collectors.toList()), true);
+                long length = batch.stream().mapToLong(File::length).sum();
+                int done = k + batch.size();
+                updateProgress(index, done, partition.size() - done, length);
+              }
+            }
+            return Boolean.TRUE;
+          });
+    }
+    execute(calls);
+  }
+
+  private <T> List<T> execute(List<Callable<T>> calls) {
+    startTime = System.currentTimeMillis();
+    List<T> results = new ArrayList<>(calls.size());
+    ExecutorService executor =
+        ThreadUtil.buildNewFixedThreadExecutor(calls.size(), "Dicom Send"); // NON-NLS
+    try {
+      List<Future<T>> futures = executor.invokeAll(calls);
+      for (Future<T> f : futures) {
+        results.add(f.get());
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    long time = System.currentTimeMillis() - startTime;
+    LOGGER.info(
+        "Dicom send: {} in {} ms ({}/s) with {} connection(s)",
+        FileUtil.humanReadableByte(sentBytes.get(), false),
+        time,
+        FileUtil.humanReadableByte(getBytesPerSecond(), false),
+        calls.size());
+    return results;
+  }
+
+  private void updateProgress(int index, int completed, int remaining, long bytes) {
+    long total = sentBytes.addAndGet(bytes);
+    int c = 0;
+    int r = 0;
+    synchronized (operations) {
+      operations[index][0] = completed;
+      operations[index][1] = remaining;
+      for (int[] op : operations) {
+        c += op[0];
+        r += op[1];
+      }
+    }
+    int progress = c + r == 0 ? 0 : (c * 100) / (c + r);
+    String rate = FileUtil.humanReadableByte(getBytesPerSecond(), false) + "/s"; // NON-NLS
+    CircularProgressBar bar = task.getBar();
+    GuiExecutor.instance()
+        .execute(
+            () -> {
+              bar.setValue(progress);
+              bar.setToolTipText(FileUtil.humanReadableByte(total, false) + " - " + rate);
+            });
+  }
+
+  public long getBytesPerSecond() {
+    long time = System.currentTimeMillis() - startTime;
+    return time <= 0 ? 0L : sentBytes.get() * 1000L / time;
+  }
+
+  private static List<List<File>> split(List<File> files, int nbPartitions) {
+    List<List<File>> partitions = new ArrayList<>(nbPartitions);
+    // Consecutive files are kept together (same series) to limit the presentation contexts
+    int size = (files.size() + nbPartitions - 1) / nbPartitions;
+    for (int i = 0; i < files.size(); i += size) {
+      partitions.add(files.subList(i, Math.min(i + size, files.size())));
+    }
+    return partitions;
+  }
+}
@@ -13,9 +13,15 @@ import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 import javax.swing.ComboBoxModel;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -30,10 +36,10 @@ import org.dcm4che3.util.UIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
-import org.weasis.core.api.gui.task.CircularProgressBar;
 import org.weasis.core.api.gui.util.AbstractItemDialogPage;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
+import org.weasis.core.api.media.data.FileCache;
 import org.weasis.core.api.media.data.MediaElement;
 import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.Series;
@@ -44,7 +50,7 @@ import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.util.FileUtil;
 import org.weasis.core.util.LangUtil;
 import org.weasis.core.util.StringUtil;
-import org.weasis.dicom.codec.DicomImageElement;
+import org.weasis.dicom.codec.DicomMediaIO;
 import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.explorer.CheckTreeModel;
 import org.weasis.dicom.explorer.DicomModel;
@@ -56,14 +62,8 @@ import org.weasis.dicom.explorer.pref.node.AbstractDicomNode;
 import org.weasis.dicom.explorer.pref.node.AbstractDicomNode.UsageType;
 import org.weasis.dicom.explorer.pref.node.DefaultDicomNode;
 import org.weasis.dicom.explorer.pref.node.DicomWebNode;
-import org.weasis.dicom.op.CStore;
-import org.weasis.dicom.param.AdvancedParams;
-import org.weasis.dicom.param.ConnectOptions;
 import org.weasis.dicom.param.DicomNode;
-import org.weasis.dicom.param.DicomProgress;
 import org.weasis.dicom.param.DicomState;
-import org.weasis.dicom.web.Multipart;
-import org.weasis.dicom.web.StowrsMultiFiles;
 
 public class SendDicomView extends AbstractItemDialogPage implements ExportDicom {
 
@@ -172,58 +172,28 @@ public class SendDicomView extends AbstractItemDialogPage implements ExportDicom
         FileUtil.createTempDir(
             AppProperties.buildAccessibleTempDirectory("tmp", "send")); // NON-NLS
     try {
-      writeDicom(t, exportDir, model);
+      List<File> files = getDicomFiles(t, exportDir, model);
 
-      if (t.isCancelled()) {
+      if (t.isCancelled() || files.isEmpty()) {
         return false;
       }
 
       String weasisAet =
           BundleTools.SYSTEM_PREFERENCES.getProperty("weasis.aet", "WEASIS_AE"); // NON-NLS
 
-      List<String> files = new ArrayList<>();
-      files.add(exportDir.getAbsolutePath());
-
-      final CircularProgressBar progressBar = t.getBar();
-      DicomProgress dicomProgress = new DicomProgress();
-      dicomProgress.addProgressListener(
-          p ->
-              GuiExecutor.instance()
-                  .execute(
-                      () -> {
-                        int c =
-                            p.getNumberOfCompletedSuboperations()
-                                + p.getNumberOfFailedSuboperations();
-                        int r = p.getNumberOfRemainingSuboperations();
-                        progressBar.setValue((c * 100) / (c + r));
-                      }));
-      t.addCancelListener(dicomProgress);
-
+      DicomSender sender = new DicomSender(files, t);
       Object selectedItem = comboNode.getSelectedItem();
       if (selectedItem instanceof DefaultDicomNode) {
         final DefaultDicomNode node = (DefaultDicomNode) selectedItem;
-        AdvancedParams params = new AdvancedParams();
-        ConnectOptions connectOptions = new ConnectOptions();
-        connectOptions.setConnectTimeout(3000);
-        connectOptions.setAcceptTimeout(5000);
-        params.setConnectOptions(connectOptions);
-        final DicomState state =
-            CStore.process(
-                params, new DicomNode(weasisAet), node.getDicomNode(), files, dicomProgress);
+        final DicomState state = sender.sendCStore(new DicomNode(weasisAet), node.getDicomNode());
         if (state.getStatus() != Status.Success && state.getStatus() != Status.Cancel) {
           showErrorMessage(null, null, state);
         } else {
           LOGGER.info("Dicom send: {}", state.getMessage());
         }
       } else if (selectedItem instanceof DicomWebNode) {
-        DicomWebNode destination = (DicomWebNode) selectedItem;
-        try (StowrsMultiFiles stowRS =
-            new StowrsMultiFiles(
-                destination.getUrl().toString(),
-                Multipart.ContentType.DICOM,
-                AppProperties.WEASIS_NAME,
-                destination.getHeaders())) {
-          stowRS.uploadDicom(files, true);
+        try {
+          sender.sendStowRs((DicomWebNode) selectedItem);
         } catch (Exception e) {
           showErrorMessage("StowRS error: {}", e, null); // NON-NLS
         }
@@ -249,46 +219,38 @@ public class SendDicomView extends AbstractItemDialogPage implements ExportDicom
                     JOptionPane.ERROR_MESSAGE));
   }
 
-  private void writeDicom(ExplorerTask<Boolean, String> task, File writeDir, CheckTreeModel model)
-      throws IOException {
+  /**
+   * Gets the files to send. The DICOM files are sent from their current location, only the
+   * presentation states and the instances which are not stored in a file are written in {@code
+   * writeDir}.
+   */
+  private List<File> getDicomFiles(
+      ExplorerTask<Boolean, String> task, File writeDir, CheckTreeModel model) throws IOException {
+    List<File> files = new ArrayList<>();
+    File prDir = new File(writeDir, "pr"); // NON-NLS
     synchronized (this) {
-      ArrayList<String> uids = new ArrayList<>();
+      Set<String> uids = new HashSet<>();
       TreePath[] paths = model.getCheckingPaths();
       for (TreePath treePath : paths) {
         if (task.isCancelled()) {
-          return;
+          return files;
         }
         DefaultMutableTreeNode node = (DefaultMutableTreeNode) treePath.getLastPathComponent();
 
-        if (node.getUserObject() instanceof DicomImageElement) {
-          DicomImageElement img = (DicomImageElement) node.getUserObject();
-          String iuid = TagD.getTagValue(img, Tag.SOPInstanceUID, String.class);
-          int index = uids.indexOf(iuid);
-          if (index == -1) {
-            uids.add(iuid);
-          } else {
-            // Write only once the file for multiframes
-            continue;
-          }
-
-          String path = LocalExport.buildPath(img, false, false, false, node);
-          File destinationDir = new File(writeDir, path);
-          destinationDir.mkdirs();
-
-          File destinationFile = new File(destinationDir, iuid);
-          if (!img.saveToFile(destinationFile)) {
-            LOGGER.error(
-                "Cannot export DICOM file: {}", img.getFileCache().getOriginalFile().orElse(null));
-          }
-        } else if (node.getUserObject() instanceof MediaElement) {
+        if (node.getUserObject() instanceof MediaElement) {
           MediaElement dcm = (MediaElement) node.getUserObject();
           String iuid = TagD.getTagValue(dcm, Tag.SOPInstanceUID, String.class);
-
-          String path = LocalExport.buildPath(dcm, false, false, false, node);
-          File destinationDir = new File(writeDir, path);
-          destinationDir.mkdirs();
-
-          dcm.saveToFile(new File(destinationDir, iuid));
+          // Write only once the file for multiframes
+          if (uids.add(iuid)) {
+            File file = getDicomFile(dcm, node, iuid, writeDir);
+            if (file == null) {
+              LOGGER.error(
+                  "Cannot export DICOM file: {}",
+                  dcm.getFileCache().getOriginalFile().orElse(null));
+            } else {
+              files.add(file);
+            }
+          }
         } else if (node.getUserObject() instanceof Series) {
           MediaSeries<?> s = (MediaSeries<?>) node.getUserObject();
           if (LangUtil.getNULLtoFalse((Boolean) s.getTagValue(TagW.ObjectToSave))) {
@@ -300,7 +262,7 @@ public class SendDicomView extends AbstractItemDialogPage implements ExportDicom
                 if (grModel != null && grModel.hasSerializableGraphics()) {
                   String path = LocalExport.buildPath(dcm, false, false, false, node);
                   LocalExport.buildAndWritePR(
-                      dcm, false, new File(writeDir, path), null, node, seriesInstanceUID);
+                      dcm, false, new File(prDir, path), null, node, seriesInstanceUID);
                 }
               }
             }
@@ -308,5 +270,27 @@ public class SendDicomView extends AbstractItemDialogPage implements ExportDicom
         }
       }
     }
+    if (prDir.isDirectory()) {
+      try (Stream<Path> stream = Files.walk(prDir.toPath())) {
+        stream.filter(Files::isRegularFile).map(Path::toFile).forEach(files::add);
+      }
+    }
+    return files;
+  }
+
+  private static File getDicomFile(
+      MediaElement dcm, DefaultMutableTreeNode node, String iuid, File writeDir) {
+    FileCache fileCache = dcm.getFileCache();
+    Optional<File> file = fileCache.getOriginalFile();
+    if (dcm.getMediaReader() instanceof DicomMediaIO
+        && !fileCache.isElementInMemory()
+        && file.isPresent()) {
+      return file.get();
+    }
+    // Generated or in-memory instance, must be written into a file
+    File destinationDir = new File(writeDir, LocalExport.buildPath(dcm, false, false, false, node));
+    destinationDir.mkdirs();
+    File destinationFile = new File(destinationDir, iuid);
+    return dcm.saveToFile(destinationFile) ? destinationFile : null;
   }
 }
@@ -36,8 +36,14 @@ import org.weasis.dicom.explorer.pr.PrGraphicUtil;
 public class SRReader {
   private static final Logger LOGGER = LoggerFactory.getLogger(SRReader.class);
 
+  /** Prefix of the links which display the content of a collapsed item */
+  public static final String EXPAND_LINK = "#expand-"; // NON-NLS
+  /** Prefix of the HTML id of the collapsed items */
+  public static final String COLLAPSED_ID = "sr-"; // NON-NLS
+
   private final DicomSpecialElement dicomSR;
   private final Attributes dcmItems;
+  private boolean lazy;
 
   public SRReader(Series series, DicomSpecialElement dicomSR) {
     if (dicomSR == null) {
@@ -62,6 +68,104 @@ public class SRReader {
     return null;
   }
 
+  /**
+   * @param lazy true to render only the first level of the content, the children of an item are
+   *     rendered with {@link #readContent(StringBuilder, String, Map)} when it is expanded
+   */
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+  }
+
+  public boolean isLazy() {
+    return lazy;
+  }
+
+  /**
+   * @param limit the maximum number of items to count
+   * @return the number of content items, stops counting when the limit is exceeded
+   */
+  public int countContentItems(int limit) {
+    if (dcmItems == null) {
+      return 0;
+    }
+    return countContentItems(dcmItems.getSequence(Tag.ContentSequence), 0, limit);
+  }
+
+  private static int countContentItems(Sequence cts, int count, int limit) {
+    if (cts != null) {
+      for (Attributes item : cts) {
+        if (count > limit) {
+          break;
+        }
+        count = countContentItems(item.getSequence(Tag.ContentSequence), count + 1, limit);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @param level the identifier of the item (e.g. 1.2.3 for the third child of the second item)
+   * @return the content item or null if not found
+   */
+  public SRDocumentContent getContentItem(String level) {
+    if (dcmItems == null || level == null) {
+      return null;
+    }
+    String[] ids = level.split("\\.");
+    Attributes item = dcmItems;
+    // The first identifier is the root of the document
+    for (int i = 1; i < ids.length; i++) {
+      Sequence cts = item.getSequence(Tag.ContentSequence);
+      int index;
+      try {
+        index = Integer.parseInt(ids[i]) - 1;
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (cts == null || index < 0 || index >= cts.size()) {
+        return null;
+      }
+      item = cts.get(index);
+    }
+    return new SRDocumentContent(item);
+  }
+
+  /**
+   * Renders the children of an item which has been collapsed.
+   *
+   * @param html the HTML content of the children
+   * @param level the identifier of the item
+   * @param map the image references
+   */
+  public void readContent(StringBuilder html, String level, Map<String, SRImageReference> map) {
+    SRDocumentContent c = getContentItem(level);
+    if (c != null) {
+      addContent(html, c, map, level, false, lazy);
+    }
+  }
+
+  /**
+   * Gets the reference of an image, including the references of the items which have not been
+   * rendered yet.
+   *
+   * @param id the identifier of the item referencing an image
+   * @param map the image references
+   * @return the image reference or null
+   */
+  public SRImageReference getImageReference(String id, Map<String, SRImageReference> map) {
+    SRImageReference imgRef = map.get(id);
+    if (imgRef == null || imgRef.getSopInstanceReference() == null) {
+      SRDocumentContent c = getContentItem(id);
+      if (c != null) {
+        SRImageReference ref = getReferencedImage(map, id, c.getAttributes());
+        if (ref != null) {
+          imgRef = ref;
+        }
+      }
+    }
+    return imgRef;
+  }
+
   public void readDocumentGeneralModule(StringBuilder html, Map<String, SRImageReference> map) {
     if (dcmItems != null) {
       SRDocumentContentModule content = new SRDocumentContentModule(dcmItems);
@@ -151,7 +255,7 @@ public class SRReader {
           addCodeMeaning(html, code, "<B>", "</B>"); // NON-NLS
           convertContentToHTML(html, c, false, code == null, map, level);
           html.append("<BR>");
-          addContent(html, c, map, level);
+          addContent(html, c, map, level, lazy, lazy);
         }
       }
     }
@@ -330,10 +434,30 @@ public class SRReader {
   }
 
   private static void addContent(
-      StringBuilder html, SRDocumentContent c, Map<String, SRImageReference> map, String level) {
+      StringBuilder html,
+      SRDocumentContent c,
+      Map<String, SRImageReference> map,
+      String level,
+      boolean collapse,
+      boolean lazy) {
     Sequence cts = c.getContent();
-    if (cts != null) {
+    if (cts != null && !cts.isEmpty()) {
       boolean continuity = "CONTINUOUS".equals(c.getContinuityOfContent());
+      // The continuous content is text, not collapsed
+      if (collapse && !continuity) {
+        html.append("<div id=\""); // NON-NLS
+        html.append(COLLAPSED_ID);
+        html.append(level);
+        html.append("\"><a href=\""); // NON-NLS
+        html.append(EXPAND_LINK);
+        html.append(level);
+        html.append("\">"); // NON-NLS
+        html.append(Messages.getString("SRReader.expand"));
+        html.append(" (");
+        html.append(cts.size());
+        html.append(")</a></div>"); // NON-NLS
+        return;
+      }
       if (!continuity) {
         html.append("<OL>");
       }
@@ -347,7 +471,7 @@ public class SRReader {
         }
         String level2 = level + "." + (i + 1);
         convertContentToHTML(html, srContent, continuity, code == null, map, level2);
-        addContent(html, srContent, map, level2);
+        addContent(html, srContent, map, level2, lazy, lazy);
         html.append(continuity ? " " : "</LI>");
       }
       if (!continuity) {
@@ -12,6 +12,7 @@ package org.weasis.dicom.sr;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.beans.PropertyChangeListener;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -27,8 +28,14 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.HyperlinkEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.html.HTMLDocument;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.DataExplorerView;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.util.JMVUtils;
@@ -38,6 +45,7 @@ import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.ui.docking.UIManager;
 import org.weasis.core.ui.editor.SeriesViewerEvent;
 import org.weasis.core.ui.editor.SeriesViewerEvent.EVENT;
@@ -68,11 +76,19 @@ import org.weasis.dicom.explorer.LoadDicomObjects;
 import org.weasis.dicom.explorer.MimeSystemAppFactory;
 
 public class SRView extends JScrollPane implements SeriesViewerListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SRView.class);
+
+  /**
+   * Number of content items from which the content is rendered incrementally: only the first
+   * level is displayed and the other items are rendered when their parent is expanded.
+   */
+  public static final String LAZY_THRESHOLD = "weasis.sr.lazy.threshold"; // NON-NLS
 
   private final JTextPane htmlPanel = new JTextPane();
   private final Map<String, SRImageReference> map = new HashMap<>();
   private Series<?> series;
   private KOSpecialElement keyReferences;
+  private SRReader reader;
 
   public SRView() {
     this(null);
@@ -96,8 +112,10 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
           } else if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
             String desc = e.getDescription();
             URL url = e.getURL();
-            if (url == null && desc != null && desc.startsWith("#")) {
-              htmlPanel.scrollToReference(desc.substring(1));
+            if (url == null && desc != null && desc.startsWith(SRReader.EXPAND_LINK)) {
+              expand(desc.substring(SRReader.EXPAND_LINK.length()));
+            } else if (url == null && desc != null && desc.startsWith("#")) {
+              showNode(desc.substring(1));
             } else {
               openRelatedSeries(e.getURL().getHost());
             }
@@ -184,17 +202,61 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
   private void displayLimitedDicomInfo(DicomSpecialElement media) {
 
     StringBuilder html = new StringBuilder();
+    map.clear();
+    reader = null;
     if (media != null) {
-      SRReader reader = new SRReader(series, media);
-      map.clear();
+      reader = new SRReader(series, media);
+      int threshold = BundleTools.SYSTEM_PREFERENCES.getIntProperty(LAZY_THRESHOLD, 1000);
+      reader.setLazy(reader.countContentItems(threshold) > threshold);
       reader.readDocumentGeneralModule(html, map);
     }
     htmlPanel.setText(html.toString());
     this.setViewportView(htmlPanel);
   }
 
+  /**
+   * Replaces the link of a collapsed item by its content.
+   *
+   * @param level the identifier of the item
+   * @return true if the item has been expanded
+   */
+  private boolean expand(String level) {
+    Document doc = htmlPanel.getDocument();
+    if (reader != null && doc instanceof HTMLDocument) {
+      HTMLDocument htmlDoc = (HTMLDocument) doc;
+      Element elem = htmlDoc.getElement(SRReader.COLLAPSED_ID + level);
+      if (elem != null) {
+        StringBuilder html = new StringBuilder("<div>"); // NON-NLS
+        reader.readContent(html, level, map);
+        html.append("</div>"); // NON-NLS
+        try {
+          htmlDoc.setOuterHTML(elem, html.toString());
+          return true;
+        } catch (BadLocationException | IOException e) {
+          LOGGER.error("Cannot expand the SR item {}", level, e);
+        }
+      }
+    }
+    return false;
+  }
+
+  private void showNode(String level) {
+    if (reader != null && reader.isLazy()) {
+      // Expand the parents of the referenced item
+      String[] ids = level.split("\\.");
+      StringBuilder parent = new StringBuilder(ids[0]);
+      for (int i = 1; i < ids.length - 1; i++) {
+        parent.append('.');
+        parent.append(ids[i]);
+        expand(parent.toString());
+      }
+    }
+    htmlPanel.scrollToReference(level);
+  }
+
   private void openRelatedSeries(String reference) {
-    SRImageReference imgRef = map.get(reference);
+    SRImageReference imgRef =
+        reader == null ? map.get(reference) : reader.getImageReference(reference, map);
     if (imgRef != null) {
       SOPInstanceReference ref = imgRef.getSopInstanceReference();
       if (ref != null) {
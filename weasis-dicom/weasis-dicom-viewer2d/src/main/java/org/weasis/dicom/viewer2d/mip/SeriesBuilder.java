@@ -31,6 +31,7 @@ import org.weasis.core.api.image.op.MeanCollectionZprojection;
 import org.weasis.core.api.image.op.MinCollectionZprojection;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.MediaSeries;
+import org.weasis.core.api.media.data.NativeMemoryGovernor;
 import org.weasis.core.api.media.data.SeriesComparator;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.util.FileUtil;
@@ -48,6 +49,8 @@ public class SeriesBuilder {
   public static final File MPR_CACHE_DIR =
       AppProperties.buildAccessibleTempDirectory(
           AppProperties.FILE_CACHE_DIR.getName(), "mip"); // NON-NLS
+  /** Name of the native memory reserved for the images being built */
+  static final String MIP_BUFFERS = "MIP buffers"; // NON-NLS
 
   private SeriesBuilder() {}
 
@@ -151,16 +154,34 @@ public class SeriesBuilder {
           k++;
         }
 
-        if (sources.size() > 1) {
-          curImage = addCollectionOperation(mipType, sources);
-        } else {
-          curImage = null;
+        // Reserve the memory of the MIP image before computing it
+        long size = sources.size() > 1 ? getExpectedSize(mipType, sources.get(0)) : 0L;
+        NativeMemoryGovernor.getInstance().reserve(MIP_BUFFERS, size);
+        try {
+          curImage = sources.size() > 1 ? addCollectionOperation(mipType, sources) : null;
+        } catch (RuntimeException e) {
+          NativeMemoryGovernor.getInstance().release(MIP_BUFFERS, size);
+          throw e;
+        }
+        if (curImage == null) {
+          NativeMemoryGovernor.getInstance().release(MIP_BUFFERS, size);
         }
 
         final DicomImageElement dicom;
         if (curImage != null) {
 
           DicomImageElement imgRef = (DicomImageElement) sources.get(sources.size() / 2);
+          int width = curImage.width();
+          int height = curImage.height();
+          // Adjust the reservation to the actual size, the MIP image is only in memory until it is
+          // written
+          long actualSize = curImage.physicalBytes();
+          if (actualSize > size) {
+            NativeMemoryGovernor.getInstance().reserve(MIP_BUFFERS, actualSize - size);
+          } else {
+            NativeMemoryGovernor.getInstance().release(MIP_BUFFERS, size - actualSize);
+          }
+          size = actualSize;
           FileRawImage raw = null;
           try {
             File mipDir =
@@ -176,6 +197,9 @@ public class SeriesBuilder {
               raw = null;
             }
             LOGGER.error("Writing MIP", e);
+          } finally {
+            curImage.release();
+            NativeMemoryGovernor.getInstance().release(MIP_BUFFERS, size);
           }
           if (raw == null) {
             return;
@@ -184,8 +208,8 @@ public class SeriesBuilder {
           rawIO.setBaseAttributes(cpTags);
 
           // Tags with same values for all the Series
-          rawIO.setTag(TagD.get(Tag.Columns), curImage.width());
-          rawIO.setTag(TagD.get(Tag.Rows), curImage.height());
+          rawIO.setTag(TagD.get(Tag.Columns), width);
+          rawIO.setTag(TagD.get(Tag.Rows), height);
           rawIO.setTag(TagD.get(Tag.BitsAllocated), imgRef.getBitsAllocated());
           rawIO.setTag(TagD.get(Tag.BitsStored), imgRef.getBitsStored());
 
@@ -294,6 +318,26 @@ public class SeriesBuilder {
     return 1.0;
   }
 
+  /**
+   * @return the estimated native memory of the MIP image (and of the accumulator of the mean) from
+   *     the attributes of a source image
+   */
+  private static long getExpectedSize(Type mipType, ImageElement img) {
+    Integer width = TagD.getTagValue(img, Tag.Columns, Integer.class);
+    Integer height = TagD.getTagValue(img, Tag.Rows, Integer.class);
+    if (width == null || height == null) {
+      return 0L;
+    }
+    Integer bits = TagD.getTagValue(img, Tag.BitsAllocated, Integer.class);
+    Integer samples = TagD.getTagValue(img, Tag.SamplesPerPixel, Integer.class);
+    int channels = samples == null ? 1 : samples;
+    int bytesPerPixel = ((bits == null ? 16 : bits) + 7) / 8 * channels;
+    if (Type.MEAN.equals(mipType)) {
+      bytesPerPixel += Float.BYTES * channels;
+    }
+    return (long) width * height * bytesPerPixel;
+  }
+
   public static PlanarImage addCollectionOperation(Type mipType, List<ImageElement> sources) {
     if (Type.MIN.equals(mipType)) {
       MinCollectionZprojection op = new MinCollectionZprojection(sources);
@@ -40,6 +40,7 @@ import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.gui.util.MathUtil;
 import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.NativeMemoryGovernor;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.TagW.TagType;
 import org.weasis.core.util.FileUtil;
@@ -64,6 +65,8 @@ public class SeriesBuilder {
   public static final File MPR_CACHE_DIR =
       AppProperties.buildAccessibleTempDirectory(
           AppProperties.FILE_CACHE_DIR.getName(), "mpr"); // NON-NLS
+  /** Name of the native memory reserved for the images being built */
+  static final String MPR_BUFFERS = "MPR buffers"; // NON-NLS
 
   private SeriesBuilder() {}
 
@@ -656,17 +659,31 @@ public class SeriesBuilder {
 
       return lastSpace;
     } finally {
-      for (int i = 0; i < newSeries.length; i++) {
-        if (newSeries[i] != null) {
-          if (abort[0]) {
-            FileUtil.delete(newSeries[i].getFile());
-          } else {
-            newSeries[i].write(builImgs[i]);
+      try {
+        for (int i = 0; i < newSeries.length; i++) {
+          if (newSeries[i] != null) {
+            if (abort[0]) {
+              FileUtil.delete(newSeries[i].getFile());
+            } else {
+              newSeries[i].write(builImgs[i]);
+            }
           }
-          builImgs[i].release();
         }
+      } finally {
+        releaseBuffers(builImgs);
+      }
+    }
+  }
+
+  private static void releaseBuffers(ImageCV[] builImgs) {
+    long size = 0;
+    for (ImageCV img : builImgs) {
+      if (img != null) {
+        size += img.physicalBytes();
+        img.release();
       }
     }
+    NativeMemoryGovernor.getInstance().release(MPR_BUFFERS, size);
   }
 
   private static void writeRasterInRaw(
@@ -682,9 +699,18 @@ public class SeriesBuilder {
       if (newSeries[0] == null) {
         File dir = new File(MPR_CACHE_DIR, params.seriesUID);
         dir.mkdirs();
+        // Evict images from the caches before allocating the new series
+        long size = (long) dstHeight * img.width() * img.elemSize();
         for (int i = 0; i < newSeries.length; i++) {
           newSeries[i] = new FileRawImage(new File(dir, "mpr_" + (i + 1) + ".wcv")); // NON-NLS
-          builImgs[i] = new ImageCV(dstHeight, img.width(), img.type());
+          NativeMemoryGovernor.getInstance().reserve(MPR_BUFFERS, size);
+          try {
+            builImgs[i] = new ImageCV(dstHeight, img.width(), img.type());
+          } catch (RuntimeException e) {
+            // Not released by releaseBuffers() as the buffer has not been allocated
+            NativeMemoryGovernor.getInstance().release(MPR_BUFFERS, size);
+            throw e;
+          }
         }
       }
 
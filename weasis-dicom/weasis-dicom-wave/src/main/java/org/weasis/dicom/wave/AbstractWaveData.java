@@ -11,6 +11,7 @@ package org.weasis.dicom.wave;
 
 import java.awt.image.DataBuffer;
 
+/** Samples of a multiplex group, the data buffer has one bank per channel. */
 public class AbstractWaveData implements WaveDataReadable {
 
   protected final DataBuffer data;
@@ -40,13 +41,12 @@ public class AbstractWaveData implements WaveDataReadable {
 
   @Override
   public double getSample(int index, ChannelDefinition channel) {
-    return data.getElem(index * nbOfChannels + channel.getPosition())
-            * channel.getAmplitudeUnitScalingFactor()
+    return data.getElem(channel.getPosition(), index) * channel.getAmplitudeUnitScalingFactor()
         + channel.getBaseline();
   }
 
   @Override
   public int getRawSample(int index, ChannelDefinition channel) {
-    return data.getElem(index * nbOfChannels + channel.getPosition());
+    return data.getElem(channel.getPosition(), index);
   }
 }
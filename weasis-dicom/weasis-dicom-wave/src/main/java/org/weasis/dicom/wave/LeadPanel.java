@@ -16,6 +16,7 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.Toolkit;
@@ -23,6 +24,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.List;
@@ -48,6 +50,17 @@ public class LeadPanel extends JPanel {
   private Measure measureType;
   private final Font fontTitle = new Font("SanSerif", Font.BOLD, 11);
 
+  // Geometry of the visible area, rebuilt only when the size, the zoom or the visible area changes
+  private final WaveDecimation decimation;
+  private Path2D wavePath;
+  private Rectangle waveClip;
+  private Dimension waveDim;
+  private int waveSampleNumber;
+  private Path2D[] gridPaths;
+  private Rectangle gridClip;
+  private Dimension gridDim;
+  private double gridPixelPerMm;
+
   public LeadPanel(WaveView view, WaveDataReadable data, ChannelDefinition channels) {
     this.view = view;
     this.data = data;
@@ -59,6 +72,7 @@ public class LeadPanel extends JPanel {
     this.markers = new ArrayList<>();
     this.markerAnnotation = new MarkerAnnotation(channels.getLead());
     this.measureType = Measure.VERTICAL;
+    this.decimation = view.getDecimation(channels);
 
     addListeners();
     setOpaque(false);
@@ -291,11 +305,14 @@ public class LeadPanel extends JPanel {
 
     Dimension dim = getPreferredSize();
     this.ratioX = dim.getWidth() / this.sampleNumber;
-    // g2.setClip(this.getVisibleRect());
+    Rectangle clip = g2d.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, dim.width, dim.height);
+    }
 
     drawSelectedBackground(g2d);
-    drawGrid(g2d);
-    drawWaveData(g2d, dim);
+    drawGrid(g2d, dim, clip);
+    drawWaveData(g2d, dim, clip);
     drawLeadTitle(g2d);
     drawSignalMarkers(g2d, dim);
 
@@ -304,7 +321,7 @@ public class LeadPanel extends JPanel {
     g2d.setStroke(oldStroke);
   }
 
-  private void drawGrid(Graphics2D g2) {
+  private void drawGrid(Graphics2D g2, Dimension dim, Rectangle clip) {
     BasicStroke thinStroke = new BasicStroke(0.25f);
     BasicStroke thickStroke = new BasicStroke(0.5f);
     g2.setColor(new Color(227, 69, 56, 175));
@@ -312,39 +329,143 @@ public class LeadPanel extends JPanel {
     double pixelPerMm =
         Toolkit.getDefaultToolkit().getScreenResolution() / 25.4 * view.getZoomRatio();
 
-    Dimension dim = getPreferredSize();
-    for (int i = 0; i < dim.height / pixelPerMm; i++) {
-      g2.setStroke(i % 5 == 0 ? thickStroke : thinStroke);
-      g2.draw(new Line2D.Double(0, i * pixelPerMm, dim.getWidth(), i * pixelPerMm));
+    if (gridPaths == null
+        || pixelPerMm != gridPixelPerMm
+        || !dim.equals(gridDim)
+        || !clip.equals(gridClip)) {
+      gridPaths = buildGridPaths(dim, clip, pixelPerMm);
+      gridPixelPerMm = pixelPerMm;
+      gridDim = dim;
+      gridClip = clip;
     }
 
-    for (int i = 0; i < dim.width / pixelPerMm; i++) {
-      g2.setStroke(i % 5 == 0 ? thickStroke : thinStroke);
-      g2.draw(new Line2D.Double(i * pixelPerMm, 0, i * pixelPerMm, dim.getHeight()));
+    // Horizontal and vertical lines are drawn separately to keep the same blending at crossings
+    for (int i = 0; i < gridPaths.length; i++) {
+      g2.setStroke(i % 2 == 0 ? thinStroke : thickStroke);
+      g2.draw(gridPaths[i]);
     }
 
     g2.setStroke(new BasicStroke(1.4f));
     g2.draw(new Rectangle2D.Double(0.7, 0.0, dim.width - 1.7, dim.height - 1.0));
   }
 
-  private void drawWaveData(Graphics2D g2, Dimension dim) {
-    double cellHeight = dim.getHeight() / this.mvCellCount;
-    double halfHeight = dim.height / 2.0; // base line
+  private static Path2D[] buildGridPaths(Dimension dim, Rectangle clip, double pixelPerMm) {
+    // Only the lines of the visible area (with one pixel of margin for the antialiasing)
+    double minX = Math.max(0.0, clip.getMinX() - 1.0);
+    double maxX = Math.min(dim.getWidth(), clip.getMaxX() + 1.0);
+    double minY = Math.max(0.0, clip.getMinY() - 1.0);
+    double maxY = Math.min(dim.getHeight(), clip.getMaxY() + 1.0);
+
+    Path2D[] paths = new Path2D[4];
+    for (int k = 0; k < paths.length; k++) {
+      paths[k] = new Path2D.Double();
+    }
 
+    int start = (int) Math.floor(minY / pixelPerMm);
+    for (int i = Math.max(0, start); i < dim.height / pixelPerMm && i * pixelPerMm <= maxY; i++) {
+      Path2D path = paths[i % 5 == 0 ? 1 : 0];
+      path.moveTo(minX, i * pixelPerMm);
+      path.lineTo(maxX, i * pixelPerMm);
+    }
+
+    start = (int) Math.floor(minX / pixelPerMm);
+    for (int i = Math.max(0, start); i < dim.width / pixelPerMm && i * pixelPerMm <= maxX; i++) {
+      Path2D path = paths[i % 5 == 0 ? 3 : 2];
+      path.moveTo(i * pixelPerMm, minY);
+      path.lineTo(i * pixelPerMm, maxY);
+    }
+    return paths;
+  }
+
+  private void drawWaveData(Graphics2D g2, Dimension dim, Rectangle clip) {
     g2.setColor(Color.BLACK);
     Stroke stroke = new BasicStroke(1.2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
     g2.setStroke(stroke);
 
-    Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, sampleNumber);
-    double x = 0.0;
-    double y = halfHeight - (data.getSample(0, channels) / 1000 * cellHeight);
-    path.moveTo(x, y);
-    for (int i = 1; i < this.sampleNumber; i++) {
-      x = ratioX * i;
-      y = halfHeight - (data.getSample(i, channels) / 1000 * cellHeight);
-      path.lineTo(x, y);
+    if (wavePath == null
+        || sampleNumber != waveSampleNumber
+        || !dim.equals(waveDim)
+        || !clip.equals(waveClip)) {
+      wavePath = buildWavePath(dim, clip);
+      waveSampleNumber = sampleNumber;
+      waveDim = dim;
+      waveClip = clip;
+    }
+    g2.draw(wavePath);
+  }
+
+  private Path2D buildWavePath(Dimension dim, Rectangle clip) {
+    double cellHeight = dim.getHeight() / this.mvCellCount;
+    double halfHeight = dim.height / 2.0; // base line
+
+    // Only the samples of the visible area, plus one on each side to join the borders
+    int first = Math.max(0, (int) Math.floor(clip.getMinX() / ratioX) - 1);
+    int last = Math.min(sampleNumber - 1, (int) Math.ceil(clip.getMaxX() / ratioX) + 1);
+    if (first > last) {
+      return new Path2D.Double();
+    }
+
+    int level = decimation == null ? -1 : decimation.getLevel(1.0 / ratioX);
+    if (level < 0) {
+      Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, last - first + 1);
+      double x = ratioX * first;
+      double y = halfHeight - (data.getSample(first, channels) / 1000 * cellHeight);
+      path.moveTo(x, y);
+      for (int i = first + 1; i <= last; i++) {
+        x = ratioX * i;
+        y = halfHeight - (data.getSample(i, channels) / 1000 * cellHeight);
+        path.lineTo(x, y);
+      }
+      return path;
+    }
+
+    // Several samples by pixel: draw the min/max range of each pixel column
+    int bucketSize = decimation.getBucketSize(level);
+    int lastBucket = Math.min(last / bucketSize, decimation.getBucketCount(level) - 1);
+    double factor = channels.getAmplitudeUnitScalingFactor();
+    double baseline = channels.getBaseline();
+    Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, 2 * (int) (clip.getWidth() + 3));
+    int column = Integer.MIN_VALUE;
+    double top = 0.0;
+    double bottom = 0.0;
+    for (int b = first / bucketSize; b <= lastBucket; b++) {
+      double y1 =
+          halfHeight
+              - ((decimation.getRawMin(level, b) * factor + baseline) / 1000 * cellHeight);
+      double y2 =
+          halfHeight
+              - ((decimation.getRawMax(level, b) * factor + baseline) / 1000 * cellHeight);
+      int c = (int) (ratioX * b * bucketSize);
+      if (c != column) {
+        if (column != Integer.MIN_VALUE) {
+          addColumn(path, column, top, bottom);
+        }
+        column = c;
+        top = Math.min(y1, y2);
+        bottom = Math.max(y1, y2);
+      } else {
+        top = Math.min(top, Math.min(y1, y2));
+        bottom = Math.max(bottom, Math.max(y1, y2));
+      }
+    }
+    if (column != Integer.MIN_VALUE) {
+      addColumn(path, column, top, bottom);
+    }
+    return path;
+  }
+
+  private static void addColumn(Path2D path, double x, double top, double bottom) {
+    Point2D current = path.getCurrentPoint();
+    if (current == null) {
+      path.moveTo(x, top);
+      path.lineTo(x, bottom);
+    } else if (Math.abs(current.getY() - top) <= Math.abs(current.getY() - bottom)) {
+      path.lineTo(x, top);
+      path.lineTo(x, bottom);
+    } else {
+      path.lineTo(x, bottom);
+      path.lineTo(x, top);
     }
-    g2.draw(path);
   }
 
   private void drawSelectedBackground(Graphics2D g2) {
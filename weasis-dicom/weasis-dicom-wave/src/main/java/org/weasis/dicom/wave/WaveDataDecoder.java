@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.wave;
+
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.dicom.codec.utils.DicomMediaUtils;
+
+/**
+ * Decodes the Waveform Data of a multiplex group directly from its stream into one array per
+ * channel. The data are read by small chunks, so only the decoded samples are kept in memory.
+ */
+public class WaveDataDecoder {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WaveDataDecoder.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private WaveDataDecoder() {}
+
+  /**
+   * @param dataset the attributes of the waveform instance
+   * @return the first multiplex group of the Waveform Sequence, the only one which is displayed
+   * @throws IOException if the instance has no multiplex group
+   */
+  public static Attributes getFirstMultiplexGroup(Attributes dataset) throws IOException {
+    Sequence groups = dataset.getSequence(Tag.WaveformSequence);
+    if (groups == null || groups.isEmpty()) {
+      throw new IOException("No multiplex group in the Waveform Sequence");
+    }
+    if (groups.size() > 1) {
+      LOGGER.warn(
+          "Only the first multiplex group is displayed, {} other groups are ignored",
+          groups.size() - 1);
+    }
+    return groups.get(0);
+  }
+
+  /**
+   * @param dcm the item of the Waveform Sequence (multiplex group)
+   * @param nbChannels the number of channels of the multiplex group
+   * @param nbSamples the number of samples per channel
+   * @return the decoded samples, one bank per channel
+   * @throws IOException if the data cannot be read or the sample format is not supported
+   */
+  public static WaveDataReadable decode(Attributes dcm, int nbChannels, int nbSamples)
+      throws IOException {
+    int bitsAllocated =
+        DicomMediaUtils.getIntegerFromDicomElement(dcm, Tag.WaveformBitsAllocated, 0);
+    if (bitsAllocated != 8 && bitsAllocated != 16) {
+      throw new IOException("Unexpected bitsAllocated value: " + bitsAllocated);
+    }
+    // UB was the implicit interpretation of 8-bit data before this tag was read
+    String interpretation =
+        dcm.getString(Tag.WaveformSampleInterpretation, bitsAllocated == 8 ? "UB" : "SS");
+    Interpretation type = Interpretation.fromCode(interpretation, bitsAllocated);
+
+    Object wdata = dcm.getValue(Tag.WaveformData);
+    InputStream input;
+    if (wdata instanceof BulkData) {
+      input = ((BulkData) wdata).openStream();
+    } else if (wdata instanceof byte[]) {
+      input = new ByteArrayInputStream((byte[]) wdata);
+    } else {
+      throw new IOException("Cannot read Waveform data");
+    }
+
+    try (InputStream in = input) {
+      return decode(in, type, dcm.bigEndian(), nbChannels, nbSamples);
+    }
+  }
+
+  private static WaveDataReadable decode(
+      InputStream in, Interpretation type, boolean bigEndian, int nbChannels, int nbSamples)
+      throws IOException {
+    byte[][] bytes = type == Interpretation.UB ? new byte[nbChannels][nbSamples] : null;
+    short[][] shorts = bytes == null ? new short[nbChannels][nbSamples] : null;
+    int bytesPerSample = type.bitsAllocated / 8;
+
+    byte[] buf = new byte[BUFFER_SIZE];
+    long total = (long) nbChannels * nbSamples;
+    long index = 0;
+    int channel = 0;
+    int sample = 0;
+    while (index < total) {
+      int length = (int) Math.min(buf.length, (total - index) * bytesPerSample);
+      int n = readFully(in, buf, length);
+      int count = n / bytesPerSample;
+      for (int k = 0; k < count; k++) {
+        switch (type) {
+          case UB:
+            bytes[channel][sample] = buf[k];
+            break;
+          case SB:
+            shorts[channel][sample] = buf[k];
+            break;
+          case MB:
+            shorts[channel][sample] = ulaw2linear(buf[k]);
+            break;
+          case AB:
+            shorts[channel][sample] = alaw2linear(buf[k]);
+            break;
+          default:
+            int b0 = buf[2 * k];
+            int b1 = buf[2 * k + 1];
+            shorts[channel][sample] =
+                (short) (bigEndian ? (b0 << 8) | (b1 & 0xff) : (b1 << 8) | (b0 & 0xff));
+        }
+        // Samples are multiplexed: all the channels of the first sample, then the next one...
+        if (++channel == nbChannels) {
+          channel = 0;
+          sample++;
+        }
+      }
+      index += count;
+      if (n < length) {
+        LOGGER.warn("Waveform data is truncated: {} samples of {}", index, total);
+        break;
+      }
+    }
+
+    if (bytes != null) {
+      return new WaveByteData(new DataBufferByte(bytes, nbSamples), nbChannels, nbSamples);
+    }
+    if (type == Interpretation.US) {
+      return new AbstractWaveData(new DataBufferUShort(shorts, nbSamples), nbChannels, nbSamples);
+    }
+    return new WaveShortData(new DataBufferShort(shorts, nbSamples), nbChannels, nbSamples);
+  }
+
+  private static int readFully(InputStream in, byte[] buf, int length) throws IOException {
+    int offset = 0;
+    while (offset < length) {
+      int n = in.read(buf, offset, length - offset);
+      if (n < 0) {
+        break;
+      }
+      offset += n;
+    }
+    return offset;
+  }
+
+  /** G.711 mu-law to 16-bit linear PCM */
+  static short ulaw2linear(byte value) {
+    int u = ~value & 0xff;
+    int t = ((u & 0x0f) << 3) + 0x84;
+    t <<= (u & 0x70) >> 4;
+    return (short) ((u & 0x80) != 0 ? 0x84 - t : t - 0x84);
+  }
+
+  /** G.711 A-law to 16-bit linear PCM */
+  static short alaw2linear(byte value) {
+    int a = (value ^ 0x55) & 0xff;
+    int t = (a & 0x0f) << 4;
+    int seg = (a & 0x70) >> 4;
+    if (seg == 0) {
+      t += 8;
+    } else {
+      t += 0x108;
+      if (seg > 1) {
+        t <<= seg - 1;
+      }
+    }
+    return (short) ((a & 0x80) != 0 ? t : -t);
+  }
+
+  enum Interpretation {
+    SB(8),
+    UB(8),
+    MB(8),
+    AB(8),
+    SS(16),
+    US(16);
+
+    private final int bitsAllocated;
+
+    Interpretation(int bitsAllocated) {
+      this.bitsAllocated = bitsAllocated;
+    }
+
+    static Interpretation fromCode(String code, int bitsAllocated) throws IOException {
+      for (Interpretation i : values()) {
+        if (i.name().equals(code) && i.bitsAllocated == bitsAllocated) {
+          return i;
+        }
+      }
+      throw new IOException(
+          String.format(
+              "Unsupported Waveform Sample Interpretation: %s (%d bits)", code, bitsAllocated));
+    }
+  }
+}
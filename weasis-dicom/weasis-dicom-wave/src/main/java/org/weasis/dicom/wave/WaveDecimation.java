@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.wave;
+
+/**
+ * Multi-level min/max decimation of the raw samples of one channel. The level {@code l} keeps the
+ * minimum and the maximum of each group of {@code FACTOR^(l+1)} consecutive samples, so a long
+ * recording can be drawn with a number of points proportional to the width in pixels.
+ */
+public class WaveDecimation {
+
+  /** Number of samples (or buckets of the previous level) aggregated in one bucket */
+  public static final int FACTOR = 8;
+
+  /** The last level has at least this number of buckets */
+  private static final int MIN_BUCKETS = 64;
+
+  private final int[][] minValues;
+  private final int[][] maxValues;
+
+  public WaveDecimation(WaveDataReadable data, ChannelDefinition channel) {
+    int nbSamples = data.getNbSamplesPerChannel();
+    int nbLevels = 0;
+    for (long b = FACTOR; nbSamples / b >= MIN_BUCKETS; b *= FACTOR) {
+      nbLevels++;
+    }
+    this.minValues = new int[nbLevels][];
+    this.maxValues = new int[nbLevels][];
+
+    for (int l = 0; l < nbLevels; l++) {
+      int prevLength = l == 0 ? nbSamples : minValues[l - 1].length;
+      int length = (prevLength + FACTOR - 1) / FACTOR;
+      int[] min = new int[length];
+      int[] max = new int[length];
+      for (int b = 0; b < length; b++) {
+        int start = b * FACTOR;
+        int end = Math.min(start + FACTOR, prevLength);
+        int vmin = Integer.MAX_VALUE;
+        int vmax = Integer.MIN_VALUE;
+        for (int i = start; i < end; i++) {
+          int lo;
+          int hi;
+          if (l == 0) {
+            lo = data.getRawSample(i, channel);
+            hi = lo;
+          } else {
+            lo = minValues[l - 1][i];
+            hi = maxValues[l - 1][i];
+          }
+          if (lo < vmin) {
+            vmin = lo;
+          }
+          if (hi > vmax) {
+            vmax = hi;
+          }
+        }
+        min[b] = vmin;
+        max[b] = vmax;
+      }
+      minValues[l] = min;
+      maxValues[l] = max;
+    }
+  }
+
+  public int getLevelCount() {
+    return minValues.length;
+  }
+
+  /**
+   * @param level the decimation level
+   * @return the number of raw samples in one bucket of the level
+   */
+  public int getBucketSize(int level) {
+    int size = FACTOR;
+    for (int l = 0; l < level; l++) {
+      size *= FACTOR;
+    }
+    return size;
+  }
+
+  public int getBucketCount(int level) {
+    return minValues[level].length;
+  }
+
+  public int getRawMin(int level, int bucket) {
+    return minValues[level][bucket];
+  }
+
+  public int getRawMax(int level, int bucket) {
+    return maxValues[level][bucket];
+  }
+
+  /**
+   * @param samplesPerPixel the number of samples displayed in one pixel
+   * @return the coarsest level having at least two buckets per pixel, or -1 when the raw samples
+   *     must be drawn
+   */
+  public int getLevel(double samplesPerPixel) {
+    int level = -1;
+    int bucketSize = FACTOR;
+    while (level + 1 < minValues.length && bucketSize * 2.0 <= samplesPerPixel) {
+      level++;
+      bucketSize *= FACTOR;
+    }
+    return level;
+  }
+}
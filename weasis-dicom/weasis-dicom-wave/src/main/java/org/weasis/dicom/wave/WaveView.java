@@ -20,14 +20,8 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
-import java.awt.image.DataBufferByte;
-import java.awt.image.DataBufferShort;
 import java.awt.print.PageFormat;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -35,10 +29,8 @@ import javax.swing.BorderFactory;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import org.dcm4che3.data.Attributes;
-import org.dcm4che3.data.BulkData;
 import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
-import org.dcm4che3.util.StreamUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.DataExplorerView;
@@ -79,6 +71,7 @@ public class WaveView extends JPanel implements SeriesViewerListener {
   private Format currentFormat;
   private int samplesPerSecond;
   private WaveDataReadable waveData;
+  private WaveDecimation[] decimations;
   private final List<ChannelDefinition> channels;
   private double zoomRatio = 1.0;
 
@@ -264,7 +257,7 @@ public class WaveView extends JPanel implements SeriesViewerListener {
     Attributes attributes = dicomImageLoader.getDicomObject();
     if (attributes != null) {
       // TODO handle several Waveforms: display a combo
-      Attributes dcm = Optional.of(attributes.getNestedDataset(Tag.WaveformSequence)).get();
+      Attributes dcm = WaveDataDecoder.getFirstMultiplexGroup(attributes);
 
       this.channelNumber =
           DicomMediaUtils.getIntegerFromDicomElement(dcm, Tag.NumberOfWaveformChannels, 0);
@@ -285,6 +278,7 @@ public class WaveView extends JPanel implements SeriesViewerListener {
 
       readWaveformData(dcm);
       getMinMax(channels);
+      buildDecimations();
 
       this.scrollPane = new JScrollPane();
       scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
@@ -335,46 +329,28 @@ public class WaveView extends JPanel implements SeriesViewerListener {
   }
 
   private void readWaveformData(Attributes dcm) throws IOException {
-    Object wdata = dcm.getValue(Tag.WaveformData);
-    ByteArrayOutputStream array;
-    if (wdata instanceof BulkData) {
-      BulkData bulkData = (BulkData) wdata;
-      try (BufferedInputStream input = new BufferedInputStream(bulkData.openStream())) {
-        array = new ByteArrayOutputStream(bulkData.length());
-        StreamUtils.copy(input, array);
-      } catch (Exception e) {
-        LOGGER.error("Reading Waveform data");
-        return;
-      }
-    } else {
-      throw new IOException("Cannot read Waveform data");
-    }
-
-    int bitsAllocated =
-        DicomMediaUtils.getIntegerFromDicomElement(dcm, Tag.WaveformBitsAllocated, 0);
-
-    ByteBuffer byteBuffer = ByteBuffer.wrap(array.toByteArray());
-    byteBuffer.order(dcm.bigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
-
-    if (bitsAllocated == 16) {
-      short[] shortData;
+    waveData = WaveDataDecoder.decode(dcm, channelNumber, sampleNumber);
+  }
 
-      shortData = new short[byteBuffer.limit() / 2];
-      for (int i = 0; i < shortData.length; i++) {
-        shortData[i] = byteBuffer.getShort();
+  private void buildDecimations() {
+    this.decimations = new WaveDecimation[channelNumber];
+    if (waveData != null) {
+      for (int i = 0; i < channelNumber && i < channels.size(); i++) {
+        decimations[i] = new WaveDecimation(waveData, channels.get(i));
       }
-      DataBufferShort dataBuffer = new DataBufferShort(shortData, shortData.length, 0);
-      waveData = new WaveShortData(dataBuffer, channelNumber, sampleNumber);
-
-    } else if (bitsAllocated == 8) {
-      byte[] byteData = byteBuffer.array();
-      DataBufferByte dataBuffer = new DataBufferByte(byteData, byteData.length, 0);
-      waveData = new WaveByteData(dataBuffer, channelNumber, sampleNumber);
-    } else {
-      throw new IOException("Unexpected bitsAllocated value: " + bitsAllocated);
     }
   }
 
+  /**
+   * @param channel the channel definition
+   * @return the min/max decimation of the channel or null if not available
+   */
+  public WaveDecimation getDecimation(ChannelDefinition channel) {
+    WaveDecimation[] d = decimations;
+    int index = channel.getPosition();
+    return d == null || index < 0 || index >= d.length ? null : d[index];
+  }
+
   private void addChannelPanels() {
     for (int i = 0; i < channels.size(); i++) {
       ChannelDefinition channel = channels.get(i);
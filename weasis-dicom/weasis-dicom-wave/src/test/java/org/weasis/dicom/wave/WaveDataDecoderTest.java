@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2009-2020 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.wave;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.Test;
+
+public class WaveDataDecoderTest {
+  private static final int CHANNELS = 3;
+  private static final int SAMPLES = 5;
+
+  private static Attributes buildGroup(
+      boolean bigEndian, int bitsAllocated, String interpretation, byte[] data) {
+    Attributes dcm = new Attributes(bigEndian, 8);
+    dcm.setInt(Tag.NumberOfWaveformChannels, VR.US, CHANNELS);
+    dcm.setInt(Tag.NumberOfWaveformSamples, VR.UL, SAMPLES);
+    dcm.setInt(Tag.WaveformBitsAllocated, VR.US, bitsAllocated);
+    if (interpretation != null) {
+      dcm.setString(Tag.WaveformSampleInterpretation, VR.CS, interpretation);
+    }
+    dcm.setBytes(Tag.WaveformData, bitsAllocated == 8 ? VR.OB : VR.OW, data);
+    return dcm;
+  }
+
+  // Different value for each channel and sample
+  private static int value(int channel, int sample) {
+    return channel * 1000 - sample * 7 - 50;
+  }
+
+  // Multiplexed samples: all the channels of the first sample, then the next one...
+  private static byte[] buildShortData(boolean bigEndian, int offset) {
+    byte[] data = new byte[CHANNELS * SAMPLES * 2];
+    int k = 0;
+    for (int s = 0; s < SAMPLES; s++) {
+      for (int c = 0; c < CHANNELS; c++) {
+        int val = value(c, s) + offset;
+        data[k++] = (byte) (bigEndian ? val >> 8 : val);
+        data[k++] = (byte) (bigEndian ? val : val >> 8);
+      }
+    }
+    return data;
+  }
+
+  private static byte[] buildByteData(int offset) {
+    byte[] data = new byte[CHANNELS * SAMPLES];
+    int k = 0;
+    for (int s = 0; s < SAMPLES; s++) {
+      for (int c = 0; c < CHANNELS; c++) {
+        data[k++] = (byte) (c * 30 - s * 4 + offset);
+      }
+    }
+    return data;
+  }
+
+  private static WaveDataReadable decode(Attributes dcm) throws IOException {
+    WaveDataReadable wave = WaveDataDecoder.decode(dcm, CHANNELS, SAMPLES);
+    assertThat(wave.getNbOfChannels()).isEqualTo(CHANNELS);
+    assertThat(wave.getNbSamplesPerChannel()).isEqualTo(SAMPLES);
+    assertThat(wave.getData().getNumBanks()).isEqualTo(CHANNELS);
+    assertThat(wave.getData().getSize()).isEqualTo(SAMPLES);
+    return wave;
+  }
+
+  private static ChannelDefinition buildChannel(int position, double sensitivity, double baseline) {
+    Attributes source = new Attributes(3);
+    source.setString(Tag.CodeValue, VR.SH, "5.6.3-9-1");
+    source.setString(Tag.CodingSchemeDesignator, VR.SH, "SCPECG");
+    source.setString(Tag.CodeMeaning, VR.LO, "Lead I");
+    Attributes units = new Attributes(2);
+    units.setString(Tag.CodeValue, VR.SH, "uV");
+    units.setString(Tag.CodeMeaning, VR.LO, "microvolt");
+    Attributes dcm = new Attributes(4);
+    dcm.newSequence(Tag.ChannelSourceSequence, 1).add(source);
+    dcm.newSequence(Tag.ChannelSensitivityUnitsSequence, 1).add(units);
+    dcm.setDouble(Tag.ChannelSensitivity, VR.DS, sensitivity);
+    dcm.setDouble(Tag.ChannelBaseline, VR.DS, baseline);
+    return new ChannelDefinition(dcm, position);
+  }
+
+  @Test
+  public void testDemultiplexSignedShort() throws IOException {
+    WaveDataReadable wave = decode(buildGroup(false, 16, "SS", buildShortData(false, 0)));
+
+    assertThat(wave.getData().getDataType()).isEqualTo(DataBuffer.TYPE_SHORT);
+    for (int c = 0; c < CHANNELS; c++) {
+      ChannelDefinition channel = buildChannel(c, 2.5, 10.0);
+      for (int s = 0; s < SAMPLES; s++) {
+        assertThat(wave.getData().getElem(c, s)).isEqualTo(value(c, s));
+        assertThat(wave.getRawSample(s, channel)).isEqualTo(value(c, s));
+        assertThat(wave.getSample(s, channel)).isCloseTo(value(c, s) * 2.5 + 10.0, within(1e-9));
+      }
+    }
+  }
+
+  @Test
+  public void testDemultiplexBigEndian() throws IOException {
+    WaveDataReadable wave = decode(buildGroup(true, 16, "SS", buildShortData(true, 0)));
+    for (int c = 0; c < CHANNELS; c++) {
+      for (int s = 0; s < SAMPLES; s++) {
+        assertThat(wave.getData().getElem(c, s)).isEqualTo(value(c, s));
+      }
+    }
+  }
+
+  @Test
+  public void testDemultiplexUnsignedShort() throws IOException {
+    WaveDataReadable wave = decode(buildGroup(false, 16, "US", buildShortData(false, 40000)));
+
+    assertThat(wave.getData().getDataType()).isEqualTo(DataBuffer.TYPE_USHORT);
+    for (int c = 0; c < CHANNELS; c++) {
+      for (int s = 0; s < SAMPLES; s++) {
+        assertThat(wave.getData().getElem(c, s)).isEqualTo(value(c, s) + 40000);
+      }
+    }
+  }
+
+  @Test
+  public void testSignedByte() throws IOException {
+    byte[] data = buildByteData(-20);
+    WaveDataReadable wave = decode(buildGroup(false, 8, "SB", data));
+
+    assertThat(wave.getData().getDataType()).isEqualTo(DataBuffer.TYPE_SHORT);
+    for (int c = 0; c < CHANNELS; c++) {
+      for (int s = 0; s < SAMPLES; s++) {
+        assertThat(wave.getData().getElem(c, s)).isEqualTo((int) data[s * CHANNELS + c]);
+      }
+    }
+  }
+
+  @Test
+  public void testUnsignedByte() throws IOException {
+    byte[] data = buildByteData(150);
+    // UB is the default interpretation of the 8-bit data
+    WaveDataReadable wave = decode(buildGroup(false, 8, null, data));
+
+    assertThat(wave.getData().getDataType()).isEqualTo(DataBuffer.TYPE_BYTE);
+    for (int c = 0; c < CHANNELS; c++) {
+      for (int s = 0; s < SAMPLES; s++) {
+        assertThat(wave.getData().getElem(c, s)).isEqualTo(data[s * CHANNELS + c] & 0xFF);
+      }
+    }
+  }
+
+  @Test
+  public void testMuLawAndALawBytes() throws IOException {
+    byte[] data = buildByteData(0);
+    WaveDataReadable mu = decode(buildGroup(false, 8, "MB", data));
+    WaveDataReadable a = decode(buildGroup(false, 8, "AB", data));
+
+    for (int c = 0; c < CHANNELS; c++) {
+      for (int s = 0; s < SAMPLES; s++) {
+        byte val = data[s * CHANNELS + c];
+        assertThat(mu.getData().getElem(c, s)).isEqualTo((int) WaveDataDecoder.ulaw2linear(val));
+        assertThat(a.getData().getElem(c, s)).isEqualTo((int) WaveDataDecoder.alaw2linear(val));
+      }
+    }
+  }
+
+  @Test
+  public void testMuLawTable() {
+    assertThat(WaveDataDecoder.ulaw2linear((byte) 0xFF)).isEqualTo((short) 0);
+    assertThat(WaveDataDecoder.ulaw2linear((byte) 0x7F)).isEqualTo((short) 0);
+    assertThat(WaveDataDecoder.ulaw2linear((byte) 0x80)).isEqualTo((short) 32124);
+    assertThat(WaveDataDecoder.ulaw2linear((byte) 0x00)).isEqualTo((short) -32124);
+    assertThat(WaveDataDecoder.ulaw2linear((byte) 0xF0)).isEqualTo((short) 120);
+    assertThat(WaveDataDecoder.ulaw2linear((byte) 0x70)).isEqualTo((short) -120);
+    // Symmetric and increasing with the inverted code
+    for (int i = 0; i < 127; i++) {
+      short val = WaveDataDecoder.ulaw2linear((byte) (0xFF - i));
+      assertThat(WaveDataDecoder.ulaw2linear((byte) (0x7F - i))).isEqualTo((short) -val);
+      assertThat(WaveDataDecoder.ulaw2linear((byte) (0xFE - i))).isGreaterThan(val);
+    }
+  }
+
+  @Test
+  public void testALawTable() {
+    assertThat(WaveDataDecoder.alaw2linear((byte) 0xD5)).isEqualTo((short) 8);
+    assertThat(WaveDataDecoder.alaw2linear((byte) 0x55)).isEqualTo((short) -8);
+    assertThat(WaveDataDecoder.alaw2linear((byte) 0xAA)).isEqualTo((short) 32256);
+    assertThat(WaveDataDecoder.alaw2linear((byte) 0x2A)).isEqualTo((short) -32256);
+    assertThat(WaveDataDecoder.alaw2linear((byte) 0xC5)).isEqualTo((short) 264);
+    // Symmetric and increasing with the code (even bits inverted)
+    for (int i = 0; i < 127; i++) {
+      short val = WaveDataDecoder.alaw2linear((byte) ((0x80 | i) ^ 0x55));
+      assertThat(WaveDataDecoder.alaw2linear((byte) (i ^ 0x55))).isEqualTo((short) -val);
+      assertThat(WaveDataDecoder.alaw2linear((byte) ((0x80 | (i + 1)) ^ 0x55)))
+          .isGreaterThan(val);
+    }
+  }
+
+  @Test
+  public void testTruncatedData() throws IOException {
+    byte[] full = buildShortData(false, 0);
+    // The last sample is missing, except one byte
+    byte[] data = new byte[full.length - CHANNELS * 2 + 1];
+    System.arraycopy(full, 0, data, 0, data.length);
+    WaveDataReadable wave = decode(buildGroup(false, 16, "SS", data));
+
+    for (int c = 0; c < CHANNELS; c++) {
+      assertThat(wave.getData().getElem(c, SAMPLES - 2)).isEqualTo(value(c, SAMPLES - 2));
+      assertThat(wave.getData().getElem(c, SAMPLES - 1)).isZero();
+    }
+  }
+
+  @Test
+  public void testUnsupportedFormat() {
+    assertThatThrownBy(() -> decode(buildGroup(false, 16, "MB", new byte[4])))
+        .isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> decode(buildGroup(false, 32, "SL", new byte[4])))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void testFirstMultiplexGroup() throws IOException {
+    Attributes dataset = new Attributes();
+    assertThatThrownBy(() -> WaveDataDecoder.getFirstMultiplexGroup(dataset))
+        .isInstanceOf(IOException.class);
+
+    Sequence groups = dataset.newSequence(Tag.WaveformSequence, 2);
+    Attributes first = buildGroup(false, 16, "SS", buildShortData(false, 0));
+    groups.add(first);
+    groups.add(buildGroup(false, 8, "UB", buildByteData(0)));
+    assertThat(WaveDataDecoder.getFirstMultiplexGroup(dataset)).isSameAs(first);
+  }
+}
@@ -9,25 +9,39 @@
  */
 package org.weasis.launcher;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.FrameworkWiring;
 import org.osgi.service.startlevel.StartLevel;
 import org.tukaani.xz.XZInputStream;
 
@@ -62,6 +76,14 @@ public class AutoProcessor {
 
   public static final String XZ_COMPRESSION = ".xz";
 
+  /** The system property name used to specify the number of threads fetching the bundles. */
+  public static final String INSTALL_THREADS_PROP = "weasis.bundle.install.threads";
+
+  private static final int DEFAULT_INSTALL_THREADS = 4;
+  private static final String CHECKSUM_FILE = "bundle-checksums.properties"; // NON-NLS
+  // Key suffix of the HTTP validator (ETag or Last-Modified) of a bundle in the checksum file
+  private static final String VALIDATOR_SUFFIX = ".validator"; // NON-NLS
+
   private AutoProcessor() {}
 
   /**
@@ -244,6 +266,7 @@ public class AutoProcessor {
       Properties modulesi18n,
       BundleContext context,
       WeasisLoader weasisLoader) {
+    long startTime = System.currentTimeMillis();
     // Retrieve the Start Level service, since it will be needed
     // to set the start level of the installed bundles.
     StartLevel sl =
@@ -261,7 +284,7 @@ public class AutoProcessor {
     // property name, where "n" is the desired start level for the list
     // of bundles. If no start level is specified, the default start
     // level is assumed.
-    Map<String, BundleElement> bundleList = new HashMap<>();
+    Map<String, BundleElement> bundleList = new LinkedHashMap<>();
 
     Set set = configMap.keySet();
     for (Iterator item = set.iterator(); item.hasNext(); ) {
@@ -293,6 +316,9 @@ public class AutoProcessor {
     weasisLoader.setMax(bundleList.size());
 
     final Map<String, Bundle> installedBundleMap = new HashMap<>();
+    // SNAPSHOT bundles are checked every time with the HTTP validators of their last download and
+    // updated only when their content has changed
+    final Map<String, Bundle> snapshotBundleMap = new HashMap<>();
     Bundle[] bundles = context.getBundles();
     for (int i = 0; i < bundles.length; i++) {
       String bundleName = getBundleNameFromLocation(bundles[i].getLocation());
@@ -310,10 +336,8 @@ public class AutoProcessor {
           }
           continue;
         }
-        // Remove snapshot version to install it every time
         if (bundles[i].getVersion().getQualifier().endsWith("SNAPSHOT")) {
-          bundles[i].uninstall();
-          LOGGER.log(Level.INFO, "Uninstall SNAPSHOT bundle: {0}", bundleName);
+          snapshotBundleMap.put(bundleName, bundles[i]);
           continue;
         }
         installedBundleMap.put(bundleName, bundles[i]);
@@ -332,9 +356,35 @@ public class AutoProcessor {
         Boolean.TRUE
             .toString()
             .equals(System.getProperty("http.bundle.cache", Boolean.TRUE.toString()));
+    File checksumFile = getChecksumFile(configMap);
+    Properties checksums = new Properties();
+    if (checksumFile != null) {
+      FileUtil.readProperties(checksumFile, checksums);
+    }
+
+    // Fetch and decompress concurrently the bundles which are not in the OSGI cache
+    List<String> fetchList = new ArrayList<>();
+    for (Entry<String, BundleElement> element : bundleList.entrySet()) {
+      String bundleName = element.getKey();
+      if (element.getValue() != null
+          && !installedBundleMap.containsKey(bundleName)
+          && (snapshotBundleMap.containsKey(bundleName)
+              || context.getBundle(getJarLocation(element.getValue().getLocation())) == null)) {
+        fetchList.add(bundleName);
+      }
+    }
+    int nbThreads = getInstallThreads();
+    // Limit the number of decompressed bundles kept in memory while waiting to be installed
+    int maxFetched = 2 * nbThreads;
+    Map<String, Future<BundleContent>> fetchedBundles = new HashMap<>();
+    ExecutorService executor = buildInstallExecutor(nbThreads);
+
     int bundleIter = 0;
+    int nextFetch = 0;
+    int nbDownloaded = fetchList.size();
+    int nbUpdated = 0;
 
-    // Parse and install the bundles associated with the key.
+    // Install the bundles into the OSGI cache in the order of the configuration
     for (Iterator<Entry<String, BundleElement>> iter = bundleList.entrySet().iterator();
         iter.hasNext(); ) {
       Entry<String, BundleElement> element = iter.next();
@@ -344,19 +394,60 @@ public class AutoProcessor {
         // Should never happen
         continue;
       }
+      while (nextFetch < fetchList.size() && fetchedBundles.size() < maxFetched) {
+        String name = fetchList.get(nextFetch++);
+        String location = bundleList.get(name).getLocation();
+        // Conditional request when the content of the SNAPSHOT bundle is known
+        String validator =
+            snapshotBundleMap.containsKey(name) && checksums.containsKey(name)
+                ? checksums.getProperty(name + VALIDATOR_SUFFIX)
+                : null;
+        fetchedBundles.put(name, executor.submit(() -> fetchBundle(location, cache, validator)));
+      }
       try {
         weasisLoader.writeLabel(WeasisLoader.LBL_DOWNLOADING + " " + bundleName);
         // Do not download again the same bundle version but with different location or already in
         // installed
         // in cache from a previous version of Weasis
         Bundle b = installedBundleMap.get(bundleName);
-        if (b == null) {
-          b = installBundle(context, bundle.getLocation(), cache);
+        Future<BundleContent> fetched = fetchedBundles.remove(bundleName);
+        if (b == null && fetched == null) {
+          // Same bundle location already in the OSGI cache
+          b = context.getBundle(getJarLocation(bundle.getLocation()));
+          if (b == null) {
+            b = installBundle(context, bundle.getLocation(), cache);
+          }
+          installedBundleMap.put(bundleName, b);
+        } else if (b == null) {
+          BundleContent content = getBundleContent(fetched);
+          Bundle snapshot = snapshotBundleMap.get(bundleName);
+          if (snapshot == null) {
+            b = context.installBundle(content.location, content.getInputStream());
+            nbUpdated++;
+          } else {
+            b = snapshot;
+            if (content.isModified()
+                && !content.checksum.equals(checksums.getProperty(bundleName))) {
+              b.update(content.getInputStream());
+              nbUpdated++;
+              LOGGER.log(Level.INFO, "Update SNAPSHOT bundle: {0}", bundleName);
+            }
+          }
+          if (content.isModified()) {
+            checksums.setProperty(bundleName, content.checksum);
+          }
+          if (content.validator == null) {
+            checksums.remove(bundleName + VALIDATOR_SUFFIX);
+          } else {
+            checksums.setProperty(bundleName + VALIDATOR_SUFFIX, content.validator);
+          }
           installedBundleMap.put(bundleName, b);
         }
         sl.setBundleStartLevel(b, bundle.getStartLevel());
         loadTranslationBundle(context, b, installedBundleMap, modulesi18n, cache);
       } catch (Exception ex) {
+        checksums.remove(bundleName);
+        checksums.remove(bundleName + VALIDATOR_SUFFIX);
         if (bundleName.contains(System.getProperty("native.library.spec"))) {
           LOGGER.log(
               Level.SEVERE,
@@ -369,6 +460,7 @@ public class AutoProcessor {
               () -> String.format("Cannot install bundle %s", bundleName)); // NON-NLS
           if (!Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT.equals(
               configMap.get(Constants.FRAMEWORK_STORAGE_CLEAN))) {
+            executor.shutdownNow();
             // Reset all the old cache
             throw new IllegalStateException("A bundle cannot be started");
           }
@@ -378,38 +470,197 @@ public class AutoProcessor {
         weasisLoader.setValue(bundleIter);
       }
     }
+    executor.shutdown();
+    if (checksumFile != null && nbDownloaded > 0) {
+      FileUtil.storeProperties(checksumFile, checksums, null);
+    }
+    long installTime = System.currentTimeMillis() - startTime;
 
     weasisLoader.writeLabel(Messages.getString("AutoProcessor.start"));
+    // Resolve all the bundles at once, then start them by start level
+    Bundle systemBundle = context.getBundle(0);
+    FrameworkWiring wiring =
+        systemBundle == null ? null : systemBundle.adapt(FrameworkWiring.class);
+    if (wiring != null) {
+      wiring.resolveBundles(null);
+    }
+    List<Entry<String, BundleElement>> startList = new ArrayList<>();
+    for (Entry<String, BundleElement> element : bundleList.entrySet()) {
+      if (element.getValue() != null && element.getValue().isCanBeStarted()) {
+        startList.add(element);
+      }
+    }
+    // Keep the configuration order for the bundles of the same start level
+    startList.sort(Comparator.comparingInt(e -> e.getValue().getStartLevel()));
+
     // Now loop through the auto-start bundles and start them.
-    for (Iterator<Entry<String, BundleElement>> iter = bundleList.entrySet().iterator();
-        iter.hasNext(); ) {
-      Entry<String, BundleElement> element = iter.next();
+    for (Entry<String, BundleElement> element : startList) {
       String bundleName = element.getKey();
       BundleElement bundle = element.getValue();
-      if (bundle == null) {
-        // Should never happen
-        continue;
+      try {
+        Bundle b = installedBundleMap.get(bundleName);
+        if (b == null) {
+          // Try to reinstall
+          b = installBundle(context, bundle.getLocation(), cache);
+        }
+        if (b != null && !isFragment(b)) {
+          b.start();
+        }
+      } catch (Exception ex) {
+        LOGGER.log(
+            Level.SEVERE,
+            ex,
+            () -> String.format("Cannot start bundle %s", bundleName)); // NON-NLS
       }
-      if (bundle.isCanBeStarted()) {
-        try {
-          Bundle b = installedBundleMap.get(bundleName);
-          if (b == null) {
-            // Try to reinstall
-            b = installBundle(context, bundle.getLocation(), cache);
-          }
-          if (b != null) {
-            b.start();
-          }
-        } catch (Exception ex) {
-          LOGGER.log(
-              Level.SEVERE,
-              ex,
-              () -> String.format("Cannot start bundle %s", bundleName)); // NON-NLS
+    }
+
+    long time = System.currentTimeMillis() - startTime;
+    int nbUpdatedBundles = nbUpdated;
+    LOGGER.log(
+        Level.INFO,
+        () ->
+            String.format(
+                "%s start: %d bundles (%d downloaded, %d installed or updated) in %d ms" // NON-NLS
+                    + ", install phase in %d ms", // NON-NLS
+                nbUpdatedBundles > 0 ? "Cold" : "Warm", // NON-NLS
+                bundleList.size(),
+                nbDownloaded,
+                nbUpdatedBundles,
+                time,
+                installTime));
+  }
+
+  private static int getInstallThreads() {
+    return Math.max(1, Integer.getInteger(INSTALL_THREADS_PROP, DEFAULT_INSTALL_THREADS));
+  }
+
+  private static ExecutorService buildInstallExecutor(int nbThreads) {
+    return Executors.newFixedThreadPool(
+        nbThreads,
+        r -> {
+          Thread t = new Thread(r, "Bundle installer"); // NON-NLS
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  private static File getChecksumFile(Map<String, String> configMap) {
+    String storage = configMap.get(Constants.FRAMEWORK_STORAGE);
+    return Utils.hasText(storage) ? new File(storage, CHECKSUM_FILE) : null;
+  }
+
+  private static BundleContent getBundleContent(Future<BundleContent> future) throws Exception {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : e;
+    }
+  }
+
+  /** @return the location of the bundle without the pack classifier */
+  private static String getJarLocation(String location) {
+    if (location.endsWith(XZ_COMPRESSION)) {
+      return location.substring(0, location.length() - XZ_COMPRESSION.length());
+    }
+    return location;
+  }
+
+  /**
+   * Downloads and decompresses a bundle in memory. The xz compressed file is preferred when the
+   * location ends with ".xz".
+   *
+   * @param location the location of the bundle
+   * @param httpCache true to use the HTTP cache
+   * @param validator the ETag or the last modified date of the previous download, null to always
+   *     download the bundle
+   * @return the content of the bundle, not modified when the validator is still valid
+   */
+  static BundleContent fetchBundle(String location, boolean httpCache, String validator)
+      throws IOException {
+    if (location.endsWith(XZ_COMPRESSION)) {
+      // Remove the pack classifier from the location path
+      String jarLocation = getJarLocation(location);
+      final URL url = new URL(location);
+      try {
+        URLConnection connection = openConnection(url, httpCache, validator);
+        if (isNotModified(connection, validator)) {
+          return new BundleContent(jarLocation, validator);
         }
+        try (XZInputStream xzStream = new XZInputStream(connection.getInputStream())) {
+          return new BundleContent(
+              jarLocation, readAllBytes(xzStream), getValidator(connection));
+        }
+      } catch (Exception e) {
+        LOGGER.log(
+            Level.SEVERE,
+            e,
+            () -> String.format("Cannot install xz compressed bundle %s", url)); // NON-NLS
       }
+      location = jarLocation;
+    }
+    URLConnection connection = openConnection(new URL(location), httpCache, validator);
+    if (isNotModified(connection, validator)) {
+      return new BundleContent(location, validator);
+    }
+    try (InputStream in = connection.getInputStream()) {
+      return new BundleContent(location, readAllBytes(in), getValidator(connection));
     }
   }
 
+  private static URLConnection openConnection(URL url, boolean httpCache, String validator)
+      throws IOException {
+    URLConnection connection = FileUtil.getAdaptedConnection(url, httpCache);
+    if (validator != null && connection instanceof HttpURLConnection) {
+      if (isEntityTag(validator)) {
+        connection.setRequestProperty("If-None-Match", validator); // NON-NLS
+      } else {
+        connection.setIfModifiedSince(Long.parseLong(validator));
+      }
+    }
+    return connection;
+  }
+
+  private static boolean isNotModified(URLConnection connection, String validator)
+      throws IOException {
+    if (validator == null) {
+      return false;
+    }
+    if (connection instanceof HttpURLConnection) {
+      int code = ((HttpURLConnection) connection).getResponseCode();
+      return code == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+    // Other protocols like file: compare the last modified date
+    return !isEntityTag(validator) && validator.equals(Long.toString(connection.getLastModified()));
+  }
+
+  /** @return the ETag or the last modified date of the resource, null if none is available */
+  private static String getValidator(URLConnection connection) {
+    String etag = connection.getHeaderField("ETag"); // NON-NLS
+    if (Utils.hasText(etag)) {
+      return etag;
+    }
+    long lastModified = connection.getLastModified();
+    return lastModified > 0 ? Long.toString(lastModified) : null;
+  }
+
+  private static boolean isEntityTag(String validator) {
+    return validator.startsWith("\"") || validator.startsWith("W/"); // NON-NLS
+  }
+
+  private static byte[] readAllBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(65536);
+    byte[] buf = new byte[16384];
+    int offset;
+    while ((offset = in.read(buf)) > 0) {
+      out.write(buf, 0, offset);
+    }
+    return out.toByteArray();
+  }
+
   static String getBundleNameFromLocation(String location) {
     if (location != null) {
       int index = location.lastIndexOf('/');
@@ -554,6 +805,38 @@ public class AutoProcessor {
         FileUtil.getAdaptedConnection(new URI(location).toURL(), httpCache).getInputStream());
   }
 
+  static class BundleContent {
+    private final String location;
+    private final byte[] content;
+    private final String checksum;
+    private final String validator;
+
+    BundleContent(String location, byte[] content, String validator) {
+      this.location = location;
+      this.content = content;
+      this.validator = validator;
+      CRC32 crc = new CRC32();
+      crc.update(content);
+      this.checksum = Long.toHexString(crc.getValue()) + "-" + content.length;
+    }
+
+    /** Content not modified since the download matching the validator */
+    BundleContent(String location, String validator) {
+      this.location = location;
+      this.content = null;
+      this.checksum = null;
+      this.validator = validator;
+    }
+
+    boolean isModified() {
+      return content != null;
+    }
+
+    InputStream getInputStream() {
+      return new ByteArrayInputStream(content);
+    }
+  }
+
   static class BundleElement {
     private final int startLevel;
     private final String location;